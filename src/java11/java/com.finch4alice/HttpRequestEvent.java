@@ -0,0 +1,78 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a request made by {@link FinchHTTP} to the Bird Brain Robot Server.
+ * Only used through {@link FinchEvents}.
+ */
+@Name("com.finch4alice.HttpRequest")
+@Label("Finch HTTP Request")
+@Category("Finch 4 Alice")
+@Description("Request made to the Bird Brain Robot Server")
+@Enabled(false)
+@StackTrace(false)
+final class HttpRequestEvent
+	extends Event
+{
+
+	/**
+	 * Status of a request which succeeded (HTTP status 200).
+	 */
+	static final int STATUS_OK = 200;
+
+	/**
+	 * Status of a request to which the server responded with an unexpected HTTP status.
+	 */
+	static final int STATUS_FAILED = 0;
+
+	/**
+	 * Status of a request which failed because the server could not be reached or did not respond
+	 * in time.
+	 */
+	static final int STATUS_UNREACHABLE = -1;
+
+	@Label("Endpoint")
+	String endpoint;
+
+	@Label("Status")
+	@Description("200 if the request succeeded, 0 for an unexpected HTTP status, or -1 if the server could not be reached or did not respond in time")
+	int status;
+
+	@Label("Response Size")
+	@DataAmount
+	long bytes;
+
+	static Object start() {
+		HttpRequestEvent event = new HttpRequestEvent();
+		if (!event.isEnabled())
+			return null;
+		event.begin();
+		return event;
+	} // start
+
+	static void finish(Object e, String path, int status, String response) {
+		HttpRequestEvent event = (HttpRequestEvent)e;
+		event.end();
+		if (event.shouldCommit()) {
+			event.endpoint = path;
+			event.status = status;
+			event.bytes = (response == null ? 0 : FinchMetrics.byteCount(response));
+			event.commit();
+		}
+	} // finish
+
+} // class HttpRequestEvent
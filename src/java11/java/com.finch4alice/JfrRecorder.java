@@ -0,0 +1,41 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+/**
+ * Emits the Flight Recorder events on behalf of {@link FinchEvents}, which loads this class by
+ * name when the {@code jdk.jfr} API is available.
+ */
+final class JfrRecorder
+	implements FinchEvents.Recorder
+{
+
+	public Object beginHttp() {
+		return HttpRequestEvent.start();
+	} // beginHttp
+
+	public void commitHttp(Object event, String path, int status, String response) {
+		HttpRequestEvent.finish(event, path, status, response);
+	} // commitHttp
+
+	public Object beginPollParse() {
+		return PollParseEvent.start();
+	} // beginPollParse
+
+	public void commitPollParse(Object event, String response, boolean connected) {
+		PollParseEvent.finish(event, response, connected);
+	} // commitPollParse
+
+	public Object beginNote() {
+		return MelodyNoteEvent.start();
+	} // beginNote
+
+	public void commitNote(Object event, int index, int frequency, int duration, long scheduled, long actual) {
+		MelodyNoteEvent.finish(event, index, frequency, duration, scheduled, actual);
+	} // commitNote
+
+} // class JfrRecorder
@@ -0,0 +1,82 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Frequency;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for a note played by {@link MelodyPlayer}.  The duration of the event is
+ * the time taken to start the note.  Only used through {@link FinchEvents}.
+ */
+@Name("com.finch4alice.MelodyNote")
+@Label("Finch Melody Note")
+@Category("Finch 4 Alice")
+@Description("Scheduled and actual start of a melody note")
+@Enabled(false)
+@StackTrace(false)
+final class MelodyNoteEvent
+	extends Event
+{
+
+	@Label("Note Index")
+	int index;
+
+	@Label("Frequency")
+	@Description("Frequency of the note in Hertz, or 0 for a rest")
+	@Frequency
+	int frequency;
+
+	@Label("Note Duration")
+	@Timespan(Timespan.MILLISECONDS)
+	int noteDuration;
+
+	@Label("Scheduled Start")
+	@Description("Scheduled start of the note, from the start of the melody")
+	@Timespan(Timespan.NANOSECONDS)
+	long scheduled;
+
+	@Label("Actual Start")
+	@Description("Actual start of the note, from the start of the melody")
+	@Timespan(Timespan.NANOSECONDS)
+	long actual;
+
+	@Label("Lateness")
+	@Description("Actual start minus scheduled start")
+	@Timespan(Timespan.NANOSECONDS)
+	long lateness;
+
+	static Object start() {
+		MelodyNoteEvent event = new MelodyNoteEvent();
+		if (!event.isEnabled())
+			return null;
+		event.begin();
+		return event;
+	} // start
+
+	static void finish(Object e, int index, int frequency, int duration, long scheduled, long actual) {
+		MelodyNoteEvent event = (MelodyNoteEvent)e;
+		event.end();
+		if (event.shouldCommit()) {
+			event.index = index;
+			event.frequency = frequency;
+			event.noteDuration = duration;
+			event.scheduled = scheduled;
+			event.actual = actual;
+			event.lateness = actual - scheduled;
+			event.commit();
+		}
+	} // finish
+
+} // class MelodyNoteEvent
@@ -0,0 +1,58 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for the parsing of a {@link FinchHTTP#poll()} response.  The duration of
+ * the event is the parse time; the request itself is recorded by a {@link HttpRequestEvent}.
+ * Only used through {@link FinchEvents}.
+ */
+@Name("com.finch4alice.PollParse")
+@Label("Finch Poll Parse")
+@Category("Finch 4 Alice")
+@Description("Parsing of a poll response into a sensor snapshot")
+@Enabled(false)
+@StackTrace(false)
+final class PollParseEvent
+	extends Event
+{
+
+	@Label("Response Size")
+	@DataAmount
+	int length;
+
+	@Label("Connected")
+	boolean connected;
+
+	static Object start() {
+		PollParseEvent event = new PollParseEvent();
+		if (!event.isEnabled())
+			return null;
+		event.begin();
+		return event;
+	} // start
+
+	static void finish(Object e, String response, boolean connected) {
+		PollParseEvent event = (PollParseEvent)e;
+		event.end();
+		if (event.shouldCommit()) {
+			event.length = (response == null ? 0 : response.length());
+			event.connected = connected;
+			event.commit();
+		}
+	} // finish
+
+} // class PollParseEvent
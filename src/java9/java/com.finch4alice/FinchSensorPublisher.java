@@ -0,0 +1,402 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * {@link Flow.Publisher} of the sensor snapshots obtained by the background poller of a
+ * {@link FinchHTTP} instance.
+ *
+ * <p>All of the subscribers share the single poll stream of the FinchHTTP instance, which is
+ * also used by the sensor getters and sensor listeners while polling is enabled.  Polling is
+ * started with the interval given to the constructor when the first subscriber subscribes, if it
+ * is not already enabled.  Polling started by the publisher is stopped again once all of the
+ * subscribers have cancelled, or the publisher is closed; polling which was already enabled is
+ * left running.  A snapshot representing a Finch which is not connected (see
+ * {@link FinchSensorSnapshot#isConnected()}) is published when a poll finds no Finch.</p>
+ *
+ * <p>Each subscriber receives snapshots at the rate it requests them.  Snapshots are conflated:
+ * when a new snapshot is polled before the previous one has been delivered to a subscriber,
+ * because the subscriber has no outstanding demand or is still processing the previous snapshot,
+ * the previous snapshot is dropped and only the most recent one is delivered.  Subscribers
+ * therefore always receive the latest readings, and never a backlog of stale ones.</p>
+ *
+ * <p>Snapshots are delivered on the executor given to the constructor, and never on the polling
+ * thread.  The polling thread only stores each snapshot and schedules delivery, so a slow
+ * subscriber does not delay the polls, or the delivery to other subscribers (as long as the
+ * executor has threads available).  Each subscriber receives its signals sequentially.</p>
+ *
+ * <p>This class requires Java 9 or later.  It is kept in the {@code java9} source set, which is
+ * only built when a JDK 11 is available (see the README), and is packaged into the same Jar as the
+ * rest of Finch 4 Alice.  Nothing else in Finch 4 Alice refers to it, so the rest of the library
+ * still runs on Java 8, where this class is never loaded.</p>
+ */
+public final class FinchSensorPublisher
+	implements Flow.Publisher<FinchSensorState>, AutoCloseable
+{
+
+	/**
+	 * Polling interval used by the {@link #FinchSensorPublisher(FinchHTTP)} constructor.
+	 */
+	public static final int DEFAULT_POLLING_INTERVAL = FinchHTTP.DEFAULT_LISTENER_POLLING_INTERVAL;
+
+	private final FinchHTTP finch;
+	private final int pollingInterval;
+	private final Executor executor;
+
+	private final CopyOnWriteArrayList<SensorSubscription> subscriptions = new CopyOnWriteArrayList<>();
+	private final Consumer<FinchSensorState> pollConsumer = this::publish;
+
+	private final LongAdder published = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+	private boolean registered;
+	private boolean closed;
+
+	/**
+	 * Whether polling was started by this publisher, and has not been stopped since.
+	 */
+	private boolean startedPolling;
+
+	/**
+	 * Constructs a new publisher which polls every {@value #DEFAULT_POLLING_INTERVAL} milliseconds
+	 * if polling is not already enabled, and delivers snapshots using the
+	 * {@link ForkJoinPool#commonPool() common pool}.
+	 * @param	finch	The Finch to publish the sensor snapshots of.
+	 */
+	public FinchSensorPublisher(FinchHTTP finch) {
+		this(finch, DEFAULT_POLLING_INTERVAL, ForkJoinPool.commonPool());
+	} // FinchSensorPublisher
+
+	/**
+	 * Constructs a new publisher.
+	 * @param	finch			The Finch to publish the sensor snapshots of.
+	 * @param	intervalMillis	The polling interval used if polling is not already enabled when
+	 *							the first subscriber subscribes.
+	 * @param	executor		The executor used to deliver snapshots to the subscribers.
+	 * @throws	IllegalArgumentException if finch or executor is null, or intervalMillis is not
+	 *			positive.
+	 */
+	public FinchSensorPublisher(FinchHTTP finch, int intervalMillis, Executor executor) {
+		if (finch == null)
+			throw new IllegalArgumentException("finch cannot be null");
+		if (intervalMillis <= 0)
+			throw new IllegalArgumentException("intervalMillis must be positive");
+		if (executor == null)
+			throw new IllegalArgumentException("executor cannot be null");
+
+		this.finch = finch;
+		this.pollingInterval = intervalMillis;
+		this.executor = executor;
+	} // FinchSensorPublisher
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>If the subscriber is already subscribed, or the publisher has been closed, the
+	 * subscriber receives an {@code onError} signal with an {@link IllegalStateException}.</p>
+	 */
+	public void subscribe(Flow.Subscriber<? super FinchSensorState> subscriber) {
+		if (subscriber == null)
+			throw new NullPointerException("subscriber cannot be null");
+
+		SensorSubscription subscription = new SensorSubscription(subscriber);
+		String error = null;
+		synchronized (this) {
+			if (closed)
+				error = "Publisher is closed";
+			else {
+				for (SensorSubscription s : subscriptions) {
+					if (s.subscriber == subscriber)
+						error = "Already subscribed";
+				}
+			}
+
+			if (error == null) {
+				if (!registered) {
+					finch.addPollConsumer(pollConsumer);
+					registered = true;
+				}
+				subscriptions.add(subscription);
+				if (finch.startPollingIfStopped(pollingInterval))
+					startedPolling = true;
+			}
+		}
+
+		subscription.start(error);
+	} // subscribe
+
+	/**
+	 * Completes all of the current subscriptions, and rejects any new subscribers.  Polling is
+	 * stopped if it was started by this publisher.
+	 */
+	public void close() {
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+			finch.removePollConsumer(pollConsumer);
+			stopPolling();
+		}
+
+		for (SensorSubscription s : subscriptions)
+			s.complete();
+		subscriptions.clear();
+	} // close
+
+	/**
+	 * Determines whether the publisher has been closed.
+	 * @return	{@code true} if {@link #close()} has been called.
+	 */
+	public synchronized boolean isClosed() {
+		return closed;
+	} // isClosed
+
+	/**
+	 * Retrieves the number of current subscribers.
+	 * @return	The number of current subscribers.
+	 */
+	public int getSubscriberCount() {
+		return subscriptions.size();
+	} // getSubscriberCount
+
+	/**
+	 * Retrieves the number of snapshots received from the poller.
+	 * @return	The number of snapshots received from the poller.
+	 */
+	public long getPublishedCount() {
+		return published.sum();
+	} // getPublishedCount
+
+	/**
+	 * Retrieves the number of snapshots which were replaced by a newer snapshot before they were
+	 * delivered to a subscriber, summed over all subscribers.
+	 * @return	The number of dropped snapshots.
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	} // getDroppedCount
+
+	/**
+	 * Stops polling if it was started by this publisher, once the last subscription has ended.
+	 * Called by each subscription when it is cancelled or terminates.
+	 */
+	private synchronized void subscriptionEnded() {
+		if (subscriptions.isEmpty())
+			stopPolling();
+	} // subscriptionEnded
+
+	/**
+	 * Stops polling, if it was started by this publisher.  Must be called while holding the lock
+	 * of this publisher.
+	 */
+	private void stopPolling() {
+		if (startedPolling) {
+			startedPolling = false;
+			finch.stopPolling();
+		}
+	} // stopPolling
+
+	/**
+	 * Receives each snapshot on the polling thread, and schedules its delivery to each subscriber.
+	 */
+	private void publish(FinchSensorState state) {
+		published.increment();
+		for (SensorSubscription s : subscriptions)
+			s.offer(state);
+	} // publish
+
+	/**
+	 * Subscription of a single subscriber.
+	 *
+	 * <p>Signals are delivered by a drain loop, which runs on the executor whenever there is
+	 * something to deliver.  The {@code pending} counter ensures only one drain loop runs at a
+	 * time for each subscription, so the subscriber's signals are never concurrent.</p>
+	 */
+	private final class SensorSubscription
+		implements Flow.Subscription
+	{
+		final Flow.Subscriber<? super FinchSensorState> subscriber;
+
+		/**
+		 * The most recent undelivered snapshot, or null.
+		 */
+		private final AtomicReference<FinchSensorState> latest = new AtomicReference<>();
+
+		private final AtomicLong demand = new AtomicLong();
+		private final AtomicInteger pending = new AtomicInteger();
+
+		private volatile boolean cancelled;
+		private volatile boolean completed;
+		private volatile Throwable error;
+
+		/**
+		 * Whether onSubscribe has been signalled.  Only accessed by the drain loop.
+		 */
+		private boolean subscribed;
+
+		SensorSubscription(Flow.Subscriber<? super FinchSensorState> subscriber) {
+			this.subscriber = subscriber;
+		} // SensorSubscription
+
+		/**
+		 * Signals onSubscribe, or onError if the subscription was rejected.
+		 * @param	rejected	The reason the subscription was rejected, or null.
+		 */
+		void start(String rejected) {
+			if (rejected != null)
+				error = new IllegalStateException(rejected);
+			schedule();
+		} // start
+
+		void offer(FinchSensorState state) {
+			if (latest.getAndSet(state) != null)
+				dropped.increment();
+			schedule();
+		} // offer
+
+		void complete() {
+			completed = true;
+			schedule();
+		} // complete
+
+		public void request(long n) {
+			if (cancelled)
+				return;
+
+			if (n <= 0) {
+				error = new IllegalArgumentException("Non-positive request: "+ n);
+			} else {
+				long d, next;
+				do {
+					d = demand.get();
+					next = d + n;
+					if (next < 0)
+						next = Long.MAX_VALUE;
+				} while (!demand.compareAndSet(d, next));
+			}
+			schedule();
+		} // request
+
+		public void cancel() {
+			cancelled = true;
+			latest.set(null);
+			if (subscriptions.remove(this))
+				subscriptionEnded();
+		} // cancel
+
+		/**
+		 * Runs the drain loop on the executor, unless it is already running.
+		 */
+		private void schedule() {
+			if (pending.getAndIncrement() == 0) {
+				try {
+					executor.execute(this::drain);
+				} catch (RejectedExecutionException e) {
+					pending.set(0);
+					System.out.println("WARNING: Unable to deliver Finch sensor snapshot: "+ e);
+				}
+			}
+		} // schedule
+
+		private void drain() {
+			int missed = 1;
+			do {
+				if (!drainOnce())
+					return;
+				missed = pending.addAndGet(-missed);
+			} while (missed != 0);
+		} // drain
+
+		/**
+		 * Delivers any pending signals.
+		 * @return	{@code false} if the subscription has terminated.
+		 */
+		private boolean drainOnce() {
+			if (!signalSubscribe())
+				return false;
+
+			Throwable e = error;
+			if (e != null) {
+				terminate();
+				subscriber.onError(e);
+				return false;
+			}
+
+			if (cancelled)
+				return false;
+
+			while (demand.get() > 0) {
+				FinchSensorState state = latest.getAndSet(null);
+				if (state == null)
+					break;
+
+				if (demand.get() != Long.MAX_VALUE)
+					demand.decrementAndGet();
+
+				try {
+					subscriber.onNext(state);
+				} catch (Throwable t) {
+					// The subscriber violated the specification, stop delivering to it
+					terminate();
+					System.out.println("WARNING: Finch sensor subscriber failed: "+ t);
+					return false;
+				}
+
+				if (cancelled)
+					return false;
+			}
+
+			if (completed) {
+				terminate();
+				subscriber.onComplete();
+				return false;
+			}
+			return true;
+		} // drainOnce
+
+		/**
+		 * Signals onSubscribe, the first time the drain loop runs.
+		 * @return	{@code false} if the subscription has terminated.
+		 */
+		private boolean signalSubscribe() {
+			if (subscribed)
+				return true;
+			subscribed = true;
+
+			try {
+				subscriber.onSubscribe(this);
+			} catch (Throwable t) {
+				terminate();
+				System.out.println("WARNING: Finch sensor subscriber failed: "+ t);
+				return false;
+			}
+			return true;
+		} // signalSubscribe
+
+		/**
+		 * Marks the subscription as terminated, so no further signals are delivered.
+		 */
+		private void terminate() {
+			cancel();
+			error = null;
+			completed = false;
+		} // terminate
+
+	} // class SensorSubscription
+
+} // class FinchSensorPublisher
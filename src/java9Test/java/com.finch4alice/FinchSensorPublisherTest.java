@@ -0,0 +1,117 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the polling started and stopped by {@link FinchSensorPublisher}.
+ */
+public class FinchSensorPublisherTest {
+
+	private static final int POLLING_INTERVAL = 10;
+	private static final long TIMEOUT = 5000;
+
+	/**
+	 * Subscriber which requests every snapshot, and counts down a latch for each one received.
+	 */
+	static final class CountingSubscriber
+		implements Flow.Subscriber<FinchSensorState>
+	{
+		final CountDownLatch received = new CountDownLatch(3);
+		final CountDownLatch completed = new CountDownLatch(1);
+		volatile Flow.Subscription subscription;
+
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(Long.MAX_VALUE);
+		}
+
+		public void onNext(FinchSensorState state) {
+			received.countDown();
+		}
+
+		public void onError(Throwable error) {
+		}
+
+		public void onComplete() {
+			completed.countDown();
+		}
+	} // class CountingSubscriber
+
+	private FinchHTTP finch;
+	private FinchSensorPublisher publisher;
+
+	@Before
+	public void setUp() {
+		finch = new FinchHTTP(new LoopbackFinchTransport(new FinchSimulator()));
+		publisher = new FinchSensorPublisher(finch, POLLING_INTERVAL, Runnable::run);
+	}
+
+	@After
+	public void tearDown() {
+		publisher.close();
+		finch.close();
+	}
+
+	@Test
+	public void stopsPollingWhenAllSubscribersCancel() throws InterruptedException {
+		CountingSubscriber first = new CountingSubscriber();
+		CountingSubscriber second = new CountingSubscriber();
+		publisher.subscribe(first);
+		publisher.subscribe(second);
+		assertTrue(finch.isPolling());
+		assertTrue(first.received.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		first.subscription.cancel();
+		assertTrue(finch.isPolling());
+		second.subscription.cancel();
+		assertFalse(finch.isPolling());
+		assertEquals(0, publisher.getSubscriberCount());
+
+		// A new subscriber starts polling again
+		CountingSubscriber third = new CountingSubscriber();
+		publisher.subscribe(third);
+		assertTrue(finch.isPolling());
+		assertTrue(third.received.await(TIMEOUT, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void stopsPollingWhenClosed() throws InterruptedException {
+		CountingSubscriber subscriber = new CountingSubscriber();
+		publisher.subscribe(subscriber);
+		assertTrue(finch.isPolling());
+
+		publisher.close();
+		assertTrue(subscriber.completed.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertFalse(finch.isPolling());
+	}
+
+	@Test
+	public void leavesExistingPollingRunning() throws InterruptedException {
+		finch.startPolling(POLLING_INTERVAL * 2);
+		CountingSubscriber subscriber = new CountingSubscriber();
+		publisher.subscribe(subscriber);
+		assertEquals(POLLING_INTERVAL * 2, finch.getPollingInterval());
+		assertTrue(subscriber.received.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		subscriber.subscription.cancel();
+		publisher.close();
+		assertTrue(finch.isPolling());
+	}
+
+} // class FinchSensorPublisherTest
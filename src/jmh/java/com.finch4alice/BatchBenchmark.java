@@ -0,0 +1,81 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.io.IOException;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks setting the LED, motors and buzzer together with a {@link FinchBatch}, against
+ * setting them one at a time, over HTTP to a local {@link FinchSimulator}.
+ *
+ * <p>The simulator applies the network round-trip time once for each burst of pipelined
+ * requests, and the server latency to every request, so a batch saves round-trips but not the
+ * time the server takes to handle each command.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BatchBenchmark {
+
+	/**
+	 * Network round-trip time of the simulated server, in milliseconds.
+	 */
+	@Param({ "0", "2" })
+	int roundTripTime;
+
+	/**
+	 * Latency of the simulated server for each request, in milliseconds.
+	 */
+	@Param({ "0", "1" })
+	int latency;
+
+	FinchSimulator simulator;
+	FinchHTTP finch;
+	int speed;
+
+	@Setup
+	public void setup() throws IOException {
+		simulator = new FinchSimulator();
+		simulator.setRoundTripTime(roundTripTime);
+		simulator.setLatency(latency, 0);
+		simulator.start(0);
+		finch = new FinchHTTP(simulator.getBaseURL());
+	}
+
+	@TearDown
+	public void tearDown() {
+		finch.close();
+		simulator.stop();
+	}
+
+	@Benchmark
+	public void sequential() {
+		speed = (speed + 1) & 0xFF;
+		finch.setLED(speed, 0, 255 - speed);
+		finch.setWheelVelocities(speed, -speed);
+		finch.buzz(440 + speed, 100);
+	}
+
+	@Benchmark
+	public void batch() {
+		speed = (speed + 1) & 0xFF;
+		finch.batch().led(speed, 0, 255 - speed).motor(speed, -speed).buzz(440 + speed, 100).submit();
+	}
+
+} // class BatchBenchmark
@@ -0,0 +1,63 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the encoding of request arguments and requests.
+ *
+ * <p>Run with the {@code gc} profiler to confirm that encoding commands allocates nothing:
+ * {@code formatScaled} and the {@code encode} benchmarks should report close to 0 B/op.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FormattingBenchmark {
+
+	double velocity = 100 / 2.55;
+	int speed = 100;
+
+	RequestEncoder encoder = new RequestEncoder("/", "localhost:22179");
+	String[] motorArgs = { "39.22", "-39.22" };
+	String[] noArgs = new String[0];
+
+	@Benchmark
+	public String formatDouble() {
+		return FinchHTTP.formatDouble(velocity);
+	}
+
+	@Benchmark
+	public String formatScaled() {
+		return FinchHTTP.formatScaled(speed);
+	}
+
+	@Benchmark
+	public int encodeMotorRequest() {
+		return encoder.encode("finch/out/motor", motorArgs).length;
+	}
+
+	@Benchmark
+	public int encodeMotorCommand() {
+		motorArgs[0] = FinchHTTP.formatScaled(speed);
+		motorArgs[1] = FinchHTTP.formatScaled(-speed);
+		return encoder.encode("finch/out/motor", motorArgs).length;
+	}
+
+	@Benchmark
+	public int encodeSensorRequest() {
+		return encoder.encode("finch/in/lights", noArgs).length;
+	}
+
+} // class FormattingBenchmark
@@ -0,0 +1,96 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.io.IOException;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks round-trips to a local {@link FinchSimulator} over HTTP.
+ *
+ * <p>The {@code aliceCallers} group models several Alice threads (eg. the branches of a
+ * {@code doTogether} block) sharing a single FinchHTTP instance, with most threads reading
+ * sensors while another sends motor commands.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HttpBenchmark {
+
+	/**
+	 * Number of idle keep-alive connections retained.  0 opens a new connection per request.
+	 */
+	@Param({ "0", "2", "8" })
+	int poolSize;
+
+	/**
+	 * Whether motor and LED commands are sent through the coalescing output dispatcher.
+	 */
+	@Param({ "false", "true" })
+	boolean asyncOutputs;
+
+	FinchSimulator simulator;
+	FinchHTTP finch;
+
+	@Setup
+	public void setup() throws IOException {
+		simulator = new FinchSimulator();
+		simulator.start(0);
+		finch = new FinchHTTP(simulator.getBaseURL());
+		finch.setConnectionPoolSize(poolSize);
+		finch.setAsyncOutputs(asyncOutputs);
+	}
+
+	@TearDown
+	public void tearDown() {
+		finch.close();
+		simulator.stop();
+	}
+
+	@Benchmark
+	public int[] getLightSensors() {
+		return finch.getLightSensors();
+	}
+
+	@Benchmark
+	public void setWheelVelocities() {
+		finch.setWheelVelocities(100, -100);
+	}
+
+	@Benchmark
+	public FinchSensorState poll() {
+		return finch.poll();
+	}
+
+	@Benchmark
+	@Group("aliceCallers")
+	@GroupThreads(6)
+	public double aliceSensorReader() {
+		return finch.getTemperature();
+	}
+
+	@Benchmark
+	@Group("aliceCallers")
+	@GroupThreads(2)
+	public void aliceMotorWriter() {
+		finch.setWheelVelocities(50, 50);
+	}
+
+} // class HttpBenchmark
@@ -0,0 +1,55 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks RTTTL parsing and note frequency calculation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MelodyBenchmark {
+
+	String song = "Greensleaves:d=4,o=5,b=140:g,2a#,c6,d.6,8d#6,d6,2c6,a,f.,8g,a,2a#,g,g.,8f,g,2a,f,2d,g,2a#,c6,d.6,8e6,d6,2c6,a,f.,8g,a,a#.,8a,g,f#.,8e,f#,2g";
+	String note = "8c#.6";
+	Note parsedNote = new Note("C#", 6, 8, true);
+
+	@Benchmark
+	public Melody parseMelody() {
+		return Melody.parseRTTTL(song);
+	}
+
+	@Benchmark
+	public Melody cachedMelody() {
+		return MelodyCache.get(song);
+	}
+
+	@Benchmark
+	public Melody cachedBuiltInMelody() {
+		return MelodyCache.getBuiltIn(5);
+	}
+
+	@Benchmark
+	public Note parseNote() {
+		return Note.parseRTTTL(note, 4, 5);
+	}
+
+	@Benchmark
+	public double noteFrequency() {
+		return parsedNote.getFrequency();
+	}
+
+} // class MelodyBenchmark
@@ -0,0 +1,73 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks the public output setters of FinchHTTP down to the transport, using a transport
+ * which responds immediately without any I/O.
+ *
+ * <p>Run with the {@code gc} profiler to see the allocations made by FinchHTTP itself for each
+ * command, excluding those made by the HTTP connection (which are covered by
+ * {@link FormattingBenchmark} and {@link HttpBenchmark}).</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OutputBenchmark {
+
+	/**
+	 * Transport which acknowledges every request.
+	 */
+	static final class AckTransport
+		implements FinchTransport
+	{
+		public String getLocation() {
+			return "ack";
+		}
+
+		public String request(String path, String... args) {
+			return "Output set";
+		}
+	} // class AckTransport
+
+	FinchHTTP finch;
+	int speed;
+
+	@Setup
+	public void setup() {
+		finch = new FinchHTTP(new AckTransport());
+	}
+
+	@TearDown
+	public void tearDown() {
+		finch.close();
+	}
+
+	@Benchmark
+	public void setWheelVelocities() {
+		speed = (speed + 1) & 0xFF;
+		finch.setWheelVelocities(speed, -speed);
+	}
+
+	@Benchmark
+	public void setLED() {
+		speed = (speed + 1) & 0xFF;
+		finch.setLED(speed, 0, 255 - speed);
+	}
+
+} // class OutputBenchmark
@@ -0,0 +1,60 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks parsing of a poll response, without any transport overhead.  Run with
+ * {@code -PjmhProfilers=gc} to confirm that parsing into a reused snapshot does not allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PollParserBenchmark {
+
+	String response;
+	FinchSensorSnapshot snapshot = new FinchSensorSnapshot();
+
+	@Setup
+	public void setup() {
+		FinchSimulator simulator = new FinchSimulator();
+		simulator.setTemperature(21.37);
+		simulator.setLightSensors(42, 87);
+		simulator.setObstacleSensors(true, false);
+		simulator.setAccelerations(0.12, -0.5, 0.86);
+		response = simulator.handle("poll", new String[0]);
+	}
+
+	/**
+	 * Measures parsing into a reused snapshot.
+	 */
+	@Benchmark
+	public FinchSensorSnapshot parseInto() {
+		PollParser.parse(response, snapshot);
+		return snapshot;
+	}
+
+	/**
+	 * Measures parsing into a new snapshot, as done by {@link FinchHTTP#poll()}.
+	 */
+	@Benchmark
+	public FinchSensorSnapshot parseNew() {
+		FinchSensorSnapshot s = new FinchSensorSnapshot();
+		PollParser.parse(response, s);
+		return s;
+	}
+
+} // class PollParserBenchmark
@@ -0,0 +1,58 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks recording and querying the sensor history.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SensorHistoryBenchmark {
+
+	SensorHistory history = new SensorHistory();
+	FinchSensorSnapshot snapshot;
+	long time;
+
+	@Setup
+	public void setup() {
+		snapshot = new FinchHTTP(new LoopbackFinchTransport(new FinchSimulator())).poll();
+		for (int i = 0; i < history.getCapacity(); ++i)
+			history.add(++time, snapshot);
+	}
+
+	@Benchmark
+	public void add() {
+		history.add(++time, snapshot);
+	}
+
+	@Benchmark
+	public double mean() {
+		return history.getMean(SensorHistory.LEFT_LIGHT, 100);
+	}
+
+	@Benchmark
+	public double windowMax() {
+		return history.getMax(SensorHistory.X_ACCELERATION);
+	}
+
+	@Benchmark
+	public double scanMax() {
+		return history.getMax(SensorHistory.X_ACCELERATION, 100);
+	}
+
+} // class SensorHistoryBenchmark
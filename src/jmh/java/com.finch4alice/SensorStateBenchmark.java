@@ -0,0 +1,97 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the API layer in isolation from the network, using an in-process loopback
+ * transport backed by a {@link FinchSimulator}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SensorStateBenchmark {
+
+	/**
+	 * Whether request metrics are recorded.
+	 */
+	@Param({ "false", "true" })
+	boolean metrics;
+
+	FinchHTTP finch;
+	FinchSensorState snapshot;
+	FinchSensorSnapshot reused = new FinchSensorSnapshot();
+	CachingFinchSensorState cached;
+
+	@Setup
+	public void setup() {
+		finch = new FinchHTTP(new LoopbackFinchTransport(new FinchSimulator()));
+		finch.getMetrics().setEnabled(metrics);
+		snapshot = finch.poll();
+		cached = new CachingFinchSensorState(finch, finch::poll);
+	}
+
+	/**
+	 * Measures parsing of the poll response.
+	 */
+	@Benchmark
+	public FinchSensorState poll() {
+		return finch.poll();
+	}
+
+	/**
+	 * Measures parsing of the poll response into a reused snapshot.
+	 */
+	@Benchmark
+	public boolean pollInto() {
+		return finch.poll(reused);
+	}
+
+	/**
+	 * Measures a single sensor read through the API layer.
+	 */
+	@Benchmark
+	public int getLeftLightSensor() {
+		return finch.getLeftLightSensor();
+	}
+
+	/**
+	 * Measures building a status report from a single poll.
+	 */
+	@Benchmark
+	public String getStatusReport() {
+		return finch.getStatusReport();
+	}
+
+	/**
+	 * Measures building a status report from an already polled snapshot.
+	 */
+	@Benchmark
+	public String getSnapshotStatusReport() {
+		return snapshot.getStatusReport();
+	}
+
+	/**
+	 * Measures reading the derived orientation values through the caching decorator, which
+	 * polls at most once per time to live.
+	 */
+	@Benchmark
+	public double getCachedOrientationAngles() {
+		return cached.getXOrientationAngle() + cached.getYOrientationAngle();
+	}
+
+} // class SensorStateBenchmark
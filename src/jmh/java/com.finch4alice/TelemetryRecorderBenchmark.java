@@ -0,0 +1,73 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks recording telemetry into memory-mapped segments.
+ *
+ * <p>Run with the {@code gc} profiler to confirm that recording allocates nothing: all of the
+ * benchmarks should report close to 0 B/op.  The number of records dropped because the next
+ * segment was not ready is printed at the end of each iteration, and should be 0 at the
+ * rates a control loop produces.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TelemetryRecorderBenchmark {
+
+	Path directory;
+	TelemetryRecorder recorder;
+	FinchSensorSnapshot snapshot = new FinchSensorSnapshot();
+	int speed;
+
+	@Setup(Level.Iteration)
+	public void setUp() throws IOException {
+		PollParser.parse(new FinchSimulator().handle("poll", new String[0]), snapshot);
+		directory = Files.createTempDirectory("finch-telemetry");
+		recorder = new TelemetryRecorder(directory, "bench");
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() throws IOException {
+		recorder.close();
+		System.out.println(" recorded "+ recorder.getRecordCount() +", dropped "+ recorder.getDroppedCount());
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path p : (Iterable<Path>)files::iterator)
+				Files.delete(p);
+		}
+		Files.delete(directory);
+	}
+
+	@Benchmark
+	public boolean recordPoll() {
+		return recorder.recordPoll(snapshot);
+	}
+
+	@Benchmark
+	public boolean recordMotor() {
+		speed = (speed + 1) & 0xFF;
+		return recorder.recordMotor(speed, -speed);
+	}
+
+}
@@ -0,0 +1,83 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks requests made the way FinchHTTP originally made them, with a new
+ * {@link HttpURLConnection} for each request, against the same local {@link FinchSimulator} as
+ * {@link HttpBenchmark}.  The results are the reference point for the pooled keep-alive
+ * connections used by FinchHTTP.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UrlConnectionBenchmark {
+
+	FinchSimulator simulator;
+	String baseURL;
+
+	@Setup
+	public void setup() throws IOException {
+		simulator = new FinchSimulator();
+		simulator.start(0);
+		baseURL = simulator.getBaseURL();
+	}
+
+	@TearDown
+	public void tearDown() {
+		simulator.stop();
+	}
+
+	@Benchmark
+	public String getLightSensors() throws IOException {
+		return get("finch/in/lights");
+	}
+
+	@Benchmark
+	public String setWheelVelocities() throws IOException {
+		return get("finch/out/motor", "39.22", "-39.22");
+	}
+
+	/**
+	 * Makes a request as the original FinchHTTP.httpGET did.
+	 */
+	private String get(String path, String... args) throws IOException {
+		String utf8 = StandardCharsets.UTF_8.name();
+		String fullURL = baseURL + (baseURL.endsWith("/") ? "" : "/") + path;
+		for (String arg : args)
+			fullURL = fullURL + (fullURL.endsWith("/") ? "" : "/") + URLEncoder.encode(arg, utf8);
+
+		HttpURLConnection connection = (HttpURLConnection) new URL(fullURL).openConnection();
+		connection.setRequestProperty("Accept-Charset", utf8);
+		if (connection.getResponseCode() != 200)
+			throw new IOException("Unexpected HTTP status: "+ connection.getResponseCode());
+		BufferedReader responseReader = new BufferedReader(new InputStreamReader(connection.getInputStream(), utf8));
+		return responseReader.readLine();
+	}
+
+} // class UrlConnectionBenchmark
@@ -0,0 +1,333 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+/**
+ * Streaming filter which smooths the accelerometer readings of a series of sensor samples, and
+ * estimates the orientation of the Finch from the smoothed readings.
+ *
+ * <p>Each axis is smoothed with an exponential low-pass filter.  The weight given to each new
+ * sample depends on the time elapsed since the previous one, so the filter responds with the
+ * same {@link #getTimeConstant() time constant} whatever the polling interval.  The orientation
+ * angles and the orientation are computed once for each sample from the smoothed readings, so
+ * each update takes constant time, and querying the filtered state costs nothing.</p>
+ *
+ * <p>The orientation is classified locally, using the same regions as the Bird Brain Robot
+ * Server, with hysteresis: once the Finch is in an orientation, it stays in that orientation
+ * until the smoothed readings leave its region by more than the
+ * {@link #getHysteresis() hysteresis margin}.  Readings which hover around the edge of a region
+ * therefore do not cause the orientation to flicker between two states.</p>
+ *
+ * <p>A filter is typically installed with {@link FinchHTTP#setAccelerometerFilter}, which
+ * feeds it every snapshot obtained by the background poller, but it can also be fed directly
+ * with {@link #update(FinchSensorState)}.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public final class AccelerometerFilter {
+
+	/**
+	 * Default time constant of the low-pass filter, in milliseconds.
+	 */
+	public static final int DEFAULT_TIME_CONSTANT = 200;
+
+	/**
+	 * Default hysteresis margin of the orientation classification, in g.
+	 */
+	public static final double DEFAULT_HYSTERESIS = 0.1;
+
+	/**
+	 * Orientation reported when the Finch is not in any of the other orientations.
+	 */
+	static final String IN_BETWEEN = "In Between";
+
+	/**
+	 * The orientations, in the order they are tested.
+	 */
+	private static final String[] ORIENTATIONS = {
+		"Level", "Upside Down", "Beak Up", "Beak Down", "Left Wing Down", "Right Wing Down"
+	};
+
+	private volatile int timeConstant = DEFAULT_TIME_CONSTANT;
+	private volatile double hysteresis = DEFAULT_HYSTERESIS;
+
+	// Filter state.  Access must be synchronized on this instance.
+	private boolean initialized;
+	private long lastTime;
+	private double x, y, z;
+	private String orientation;
+	private long sampleCount;
+
+	/**
+	 * The most recent filtered state, or null.
+	 */
+	private volatile FinchSensorState state;
+
+	/**
+	 * Constructs a new filter with the default time constant and hysteresis margin.
+	 */
+	public AccelerometerFilter() {
+	} // AccelerometerFilter
+
+	/**
+	 * Constructs a new filter.
+	 * @param	timeConstantMillis	The time constant of the low-pass filter, in milliseconds.
+	 * @param	hysteresis			The hysteresis margin of the orientation classification, in g.
+	 * @throws	IllegalArgumentException if timeConstantMillis or hysteresis is negative.
+	 */
+	public AccelerometerFilter(int timeConstantMillis, double hysteresis) {
+		setTimeConstant(timeConstantMillis);
+		setHysteresis(hysteresis);
+	} // AccelerometerFilter
+
+	/**
+	 * Retrieves the time constant of the low-pass filter.  After a sudden change in the
+	 * readings, the smoothed readings cover about 63% of the change within one time constant.
+	 * @return	The time constant, in milliseconds.
+	 */
+	public int getTimeConstant() {
+		return timeConstant;
+	} // getTimeConstant
+
+	/**
+	 * Sets the time constant of the low-pass filter.
+	 * @param	timeConstantMillis	The time constant, in milliseconds.  0 disables smoothing.
+	 * @throws	IllegalArgumentException if timeConstantMillis is negative.
+	 */
+	public void setTimeConstant(int timeConstantMillis) {
+		if (timeConstantMillis < 0)
+			throw new IllegalArgumentException("timeConstantMillis cannot be negative");
+		timeConstant = timeConstantMillis;
+	} // setTimeConstant
+
+	/**
+	 * Retrieves the hysteresis margin of the orientation classification.
+	 * @return	The hysteresis margin, in g.
+	 */
+	public double getHysteresis() {
+		return hysteresis;
+	} // getHysteresis
+
+	/**
+	 * Sets the hysteresis margin of the orientation classification.
+	 * @param	hysteresis	The hysteresis margin, in g.  0 disables hysteresis.
+	 * @throws	IllegalArgumentException if hysteresis is negative.
+	 */
+	public void setHysteresis(double hysteresis) {
+		if (!(hysteresis >= 0))
+			throw new IllegalArgumentException("hysteresis cannot be negative");
+		this.hysteresis = hysteresis;
+	} // setHysteresis
+
+	/**
+	 * Adds a sample taken now to the filter.
+	 * @param	sample	The sensor readings.
+	 * @return	The filtered state, as returned by {@link #getState()}.
+	 */
+	public FinchSensorState update(FinchSensorState sample) {
+		return update(System.nanoTime() / 1000000, sample);
+	} // update
+
+	/**
+	 * Adds a sample to the filter.
+	 *
+	 * <p>If the sample indicates that the Finch is not connected, the filter is reset, and the
+	 * sample itself is returned.</p>
+	 *
+	 * @param	timeMillis	The time the sample was taken, in milliseconds, on any time base
+	 *						which is consistent between samples.
+	 * @param	sample		The sensor readings.
+	 * @return	The filtered state: a snapshot whose accelerations, orientation angles and
+	 *			orientation are the filtered values, and whose other readings are those of the
+	 *			sample.
+	 */
+	public synchronized FinchSensorState update(long timeMillis, FinchSensorState sample) {
+		double[] accelerations = sample.getAccelerations();
+		if (accelerations == null) {
+			reset();
+			return sample;
+		}
+
+		if (!initialized) {
+			x = accelerations[0];
+			y = accelerations[1];
+			z = accelerations[2];
+			initialized = true;
+		} else {
+			int tau = timeConstant;
+			double dt = Math.max(0, timeMillis - lastTime);
+			double alpha = (tau > 0 ? 1 - Math.exp(-dt / tau) : 1);
+			x += alpha * (accelerations[0] - x);
+			y += alpha * (accelerations[1] - y);
+			z += alpha * (accelerations[2] - z);
+		}
+		lastTime = timeMillis;
+		++sampleCount;
+
+		String current = orientation;
+		if ((current == null) || IN_BETWEEN.equals(current) || !isInRegion(current, x, y, z, hysteresis))
+			orientation = classify(x, y, z);
+
+		FinchSensorState filtered = new FilteredState(sample, x, y, z, orientation);
+		state = filtered;
+		return filtered;
+	} // update
+
+	/**
+	 * Retrieves the most recent filtered state.
+	 * @return	The filtered state returned by the most recent call to {@link #update}, or null
+	 *			if the filter has no samples.
+	 */
+	public FinchSensorState getState() {
+		return state;
+	} // getState
+
+	/**
+	 * Retrieves the number of samples added since the filter was last reset.
+	 * @return	The number of samples.
+	 */
+	public synchronized long getSampleCount() {
+		return sampleCount;
+	} // getSampleCount
+
+	/**
+	 * Discards all of the samples, so the next sample is used as is.
+	 */
+	public synchronized void reset() {
+		initialized = false;
+		orientation = null;
+		sampleCount = 0;
+		state = null;
+	} // reset
+
+	/**
+	 * Classifies accelerometer readings into one of the orientations reported by the Bird Brain
+	 * Robot Server.
+	 * @param	x	The X-axis acceleration, in g.
+	 * @param	y	The Y-axis acceleration, in g.
+	 * @param	z	The Z-axis acceleration, in g.
+	 * @return	The orientation, such as {@code "Level"} or {@code "Beak Up"}, or
+	 *			{@code "In Between"}.
+	 */
+	static String classify(double x, double y, double z) {
+		for (String o : ORIENTATIONS) {
+			if (isInRegion(o, x, y, z, 0))
+				return o;
+		}
+		return IN_BETWEEN;
+	} // classify
+
+	/**
+	 * Determines whether accelerometer readings are within the region of an orientation,
+	 * widened by a margin.
+	 */
+	private static boolean isInRegion(String orientation, double x, double y, double z, double margin) {
+		switch (orientation) {
+		case "Level":
+			return (Math.abs(x) < 0.5 + margin) && (Math.abs(y) < 0.5 + margin) && (z > 0.65 - margin);
+		case "Upside Down":
+			return (Math.abs(x) < 0.5 + margin) && (Math.abs(y) < 0.5 + margin) && (z < -0.65 + margin);
+		case "Beak Up":
+			return (x < -0.8 + margin) && (Math.abs(y) < 0.3 + margin) && (Math.abs(z) < 0.3 + margin);
+		case "Beak Down":
+			return (x > 0.8 - margin) && (Math.abs(y) < 0.3 + margin) && (Math.abs(z) < 0.3 + margin);
+		case "Left Wing Down":
+			return (Math.abs(x) < 0.5 + margin) && (y > 0.7 - margin) && (Math.abs(z) < 0.5 + margin);
+		case "Right Wing Down":
+			return (Math.abs(x) < 0.5 + margin) && (y < -0.7 + margin) && (Math.abs(z) < 0.5 + margin);
+		default:
+			return false;
+		}
+	} // isInRegion
+
+	/**
+	 * Immutable filtered state for a single sample.
+	 */
+	private static final class FilteredState
+		implements FinchSensorState
+	{
+		private final FinchSensorState sample;
+		private final double x, y, z;
+		private final double xAngle, yAngle;
+		private final String orientation;
+
+		FilteredState(FinchSensorState sample, double x, double y, double z, String orientation) {
+			this.sample = sample;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.xAngle = Math.atan2(-x, z);
+			this.yAngle = Math.atan2(-y, z);
+			this.orientation = orientation;
+		} // FilteredState
+
+		public int[] getLightSensors() {
+			return sample.getLightSensors();
+		} // getLightSensors
+
+		public int getLeftLightSensor() {
+			return sample.getLeftLightSensor();
+		} // getLeftLightSensor
+
+		public int getRightLightSensor() {
+			return sample.getRightLightSensor();
+		} // getRightLightSensor
+
+		public boolean[] getObstacleSensors() {
+			return sample.getObstacleSensors();
+		} // getObstacleSensors
+
+		public boolean isObstacleLeftSide() {
+			return sample.isObstacleLeftSide();
+		} // isObstacleLeftSide
+
+		public boolean isObstacleRightSide() {
+			return sample.isObstacleRightSide();
+		} // isObstacleRightSide
+
+		public double[] getAccelerations() {
+			return new double[] { x, y, z };
+		} // getAccelerations
+
+		public double getXAcceleration() {
+			return x;
+		} // getXAcceleration
+
+		public double getYAcceleration() {
+			return y;
+		} // getYAcceleration
+
+		public double getZAcceleration() {
+			return z;
+		} // getZAcceleration
+
+		public double[] getOrientationAngles() {
+			return new double[] { xAngle, yAngle };
+		} // getOrientationAngles
+
+		public double getXOrientationAngle() {
+			return xAngle;
+		} // getXOrientationAngle
+
+		public double getYOrientationAngle() {
+			return yAngle;
+		} // getYOrientationAngle
+
+		public String getOrientation() {
+			return orientation;
+		} // getOrientation
+
+		public double getTemperature() {
+			return sample.getTemperature();
+		} // getTemperature
+
+		public String toString() {
+			return getStatusReport();
+		} // toString
+	} // class FilteredState
+
+} // class AccelerometerFilter
@@ -0,0 +1,457 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * FinchSensorState decorator which caches the sensor readings of another FinchSensorState for a
+ * configurable time to live.
+ *
+ * <p>The readings are cached in groups, matching the underlying requests: {@link #LIGHTS},
+ * {@link #OBSTACLES}, {@link #ACCELERATIONS}, {@link #ORIENTATION} and {@link #TEMPERATURE}.
+ * Each group has its own time to live, so slowly changing readings such as the temperature can
+ * be cached for longer than the others.  Values derived from a reading, such as the orientation
+ * angles derived from the accelerations, are computed once for each new sample rather than on
+ * every call.</p>
+ *
+ * <p>When a bulk source is provided, such as {@link FinchHTTP#poll()}, a reading which has
+ * expired is refreshed by obtaining all of the readings from the bulk source at once, so reading
+ * every sensor (for example, with {@link #getStatusReport()}) costs a single request.  Without a
+ * bulk source, each group is read separately from the decorated instance.</p>
+ *
+ * <pre>
+ * FinchHTTP finch = new FinchHTTP();
+ * FinchSensorState sensors = new CachingFinchSensorState(finch, finch::poll);
+ * </pre>
+ *
+ * <p>The array getters return a new copy of the cached readings on each call.</p>
+ *
+ * <p>This class is thread-safe.  Cached readings are returned without locking.  When a reading
+ * has expired, only one thread refreshes it, and other threads needing the same reading wait for
+ * the refreshed value.</p>
+ */
+public final class CachingFinchSensorState
+	implements FinchSensorState
+{
+
+	/**
+	 * Group of the light sensor readings.
+	 */
+	public static final int LIGHTS = 0;
+
+	/**
+	 * Group of the obstacle sensor readings.
+	 */
+	public static final int OBSTACLES = 1;
+
+	/**
+	 * Group of the accelerometer readings, and the orientation angles derived from them.
+	 */
+	public static final int ACCELERATIONS = 2;
+
+	/**
+	 * Group of the orientation reading.
+	 */
+	public static final int ORIENTATION = 3;
+
+	/**
+	 * Group of the temperature reading.
+	 */
+	public static final int TEMPERATURE = 4;
+
+	/**
+	 * Number of reading groups.
+	 */
+	public static final int GROUP_COUNT = 5;
+
+	/**
+	 * Default number of milliseconds the light, obstacle, acceleration and orientation readings
+	 * are cached.
+	 */
+	public static final int DEFAULT_TIME_TO_LIVE = 50;
+
+	/**
+	 * Default number of milliseconds the temperature reading is cached.
+	 */
+	public static final int DEFAULT_TEMPERATURE_TIME_TO_LIVE = 1000;
+
+	/**
+	 * A cached reading, and the time it was obtained.
+	 */
+	private static final class Entry<T> {
+		final T value;
+		final long time;
+
+		Entry(T value, long time) {
+			this.value = value;
+			this.time = time;
+		} // Entry
+	} // class Entry
+
+	/**
+	 * Cached accelerations, and the orientation angles derived from them.
+	 */
+	private static final class Accelerations {
+		final double[] accelerations;
+		final double[] angles;
+
+		Accelerations(double[] accelerations, double[] angles) {
+			this.accelerations = accelerations;
+			this.angles = angles;
+		} // Accelerations
+	} // class Accelerations
+
+	private final FinchSensorState source;
+	private final Supplier<? extends FinchSensorState> bulkSource;
+
+	private final AtomicLongArray timeToLive = new AtomicLongArray(GROUP_COUNT);
+
+	private volatile Entry<int[]> lights;
+	private volatile Entry<boolean[]> obstacles;
+	private volatile Entry<Accelerations> accelerations;
+	private volatile Entry<String> orientation;
+	private volatile Entry<Double> temperature;
+
+	private final LongAdder fetches = new LongAdder();
+
+	/**
+	 * Constructs a new CachingFinchSensorState which reads each group of readings separately.
+	 * @param	source	The FinchSensorState to cache the readings of.
+	 * @throws	IllegalArgumentException if source is null.
+	 */
+	public CachingFinchSensorState(FinchSensorState source) {
+		this(source, null);
+	} // CachingFinchSensorState
+
+	/**
+	 * Constructs a new CachingFinchSensorState which refreshes all of the readings at once.
+	 * @param	source		The FinchSensorState to cache the readings of.
+	 * @param	bulkSource	Provides all of the current readings in a single request, or returns
+	 *						null if the Finch is not connected.  If null, each group of readings
+	 *						is read separately from the source.
+	 * @throws	IllegalArgumentException if source is null.
+	 */
+	public CachingFinchSensorState(FinchSensorState source, Supplier<? extends FinchSensorState> bulkSource) {
+		if (source == null)
+			throw new IllegalArgumentException("source cannot be null");
+
+		this.source = source;
+		this.bulkSource = bulkSource;
+
+		for (int i = 0; i < GROUP_COUNT; ++i)
+			timeToLive.set(i, DEFAULT_TIME_TO_LIVE * 1000000L);
+		timeToLive.set(TEMPERATURE, DEFAULT_TEMPERATURE_TIME_TO_LIVE * 1000000L);
+	} // CachingFinchSensorState
+
+	/**
+	 * Retrieves the number of milliseconds a group of readings is cached.
+	 * @param	group	The reading group, such as {@link #LIGHTS}.
+	 * @return	The time to live of the group, in milliseconds.
+	 * @throws	IndexOutOfBoundsException if group is not a valid reading group.
+	 */
+	public long getTimeToLive(int group) {
+		return timeToLive.get(group) / 1000000L;
+	} // getTimeToLive
+
+	/**
+	 * Sets the number of milliseconds a group of readings is cached.
+	 * @param	group		The reading group, such as {@link #LIGHTS}.
+	 * @param	millis		The time to live of the group, in milliseconds.  A value of 0 disables
+	 *						caching of the group.
+	 * @throws	IllegalArgumentException if millis is negative.
+	 * @throws	IndexOutOfBoundsException if group is not a valid reading group.
+	 */
+	public void setTimeToLive(int group, long millis) {
+		if (millis < 0)
+			throw new IllegalArgumentException("millis cannot be negative");
+		timeToLive.set(group, millis * 1000000L);
+	} // setTimeToLive
+
+	/**
+	 * Discards all of the cached readings, so the next call of each getter obtains a new reading.
+	 */
+	public synchronized void invalidate() {
+		lights = null;
+		obstacles = null;
+		accelerations = null;
+		orientation = null;
+		temperature = null;
+	} // invalidate
+
+	/**
+	 * Retrieves the number of requests made to the source or bulk source.
+	 * @return	The number of requests made.
+	 */
+	public long getFetchCount() {
+		return fetches.sum();
+	} // getFetchCount
+
+	/**
+	 * Determines whether a cached reading must be refreshed.
+	 */
+	private boolean isStale(Entry<?> entry, int group) {
+		return (entry == null) || (System.nanoTime() - entry.time >= timeToLive.get(group));
+	} // isStale
+
+	/**
+	 * Obtains all of the readings from the bulk source.  Must be called while synchronized.
+	 */
+	private void refreshAll() {
+		FinchSensorState state = bulkSource.get();
+		fetches.increment();
+		long now = System.nanoTime();
+
+		if (state == null) {
+			lights = new Entry<>(null, now);
+			obstacles = new Entry<>(null, now);
+			accelerations = new Entry<>(new Accelerations(null, null), now);
+			orientation = new Entry<>(null, now);
+			temperature = new Entry<>(0.0, now);
+		} else {
+			lights = new Entry<>(state.getLightSensors(), now);
+			obstacles = new Entry<>(state.getObstacleSensors(), now);
+			accelerations = new Entry<>(derive(state.getAccelerations()), now);
+			orientation = new Entry<>(state.getOrientation(), now);
+			temperature = new Entry<>(state.getTemperature(), now);
+		}
+	} // refreshAll
+
+	/**
+	 * Computes the values derived from the accelerations.
+	 */
+	private static Accelerations derive(double[] accelerations) {
+		if (accelerations == null)
+			return new Accelerations(null, null);
+
+		return new Accelerations(accelerations, new double[] {
+			Math.atan2(-accelerations[0], accelerations[2]),
+			Math.atan2(-accelerations[1], accelerations[2])
+		});
+	} // derive
+
+	private int[] lights() {
+		Entry<int[]> e = lights;
+		if (isStale(e, LIGHTS))
+			e = refreshLights();
+		return e.value;
+	} // lights
+
+	private synchronized Entry<int[]> refreshLights() {
+		if (isStale(lights, LIGHTS)) {
+			if (bulkSource != null)
+				refreshAll();
+			else {
+				int[] value = source.getLightSensors();
+				fetches.increment();
+				lights = new Entry<>(value, System.nanoTime());
+			}
+		}
+		return lights;
+	} // refreshLights
+
+	private boolean[] obstacles() {
+		Entry<boolean[]> e = obstacles;
+		if (isStale(e, OBSTACLES))
+			e = refreshObstacles();
+		return e.value;
+	} // obstacles
+
+	private synchronized Entry<boolean[]> refreshObstacles() {
+		if (isStale(obstacles, OBSTACLES)) {
+			if (bulkSource != null)
+				refreshAll();
+			else {
+				boolean[] value = source.getObstacleSensors();
+				fetches.increment();
+				obstacles = new Entry<>(value, System.nanoTime());
+			}
+		}
+		return obstacles;
+	} // refreshObstacles
+
+	private Accelerations accelerations() {
+		Entry<Accelerations> e = accelerations;
+		if (isStale(e, ACCELERATIONS))
+			e = refreshAccelerations();
+		return e.value;
+	} // accelerations
+
+	private synchronized Entry<Accelerations> refreshAccelerations() {
+		if (isStale(accelerations, ACCELERATIONS)) {
+			if (bulkSource != null)
+				refreshAll();
+			else {
+				double[] value = source.getAccelerations();
+				fetches.increment();
+				accelerations = new Entry<>(derive(value), System.nanoTime());
+			}
+		}
+		return accelerations;
+	} // refreshAccelerations
+
+	private synchronized Entry<String> refreshOrientation() {
+		if (isStale(orientation, ORIENTATION)) {
+			if (bulkSource != null)
+				refreshAll();
+			else {
+				String value = source.getOrientation();
+				fetches.increment();
+				orientation = new Entry<>(value, System.nanoTime());
+			}
+		}
+		return orientation;
+	} // refreshOrientation
+
+	private synchronized Entry<Double> refreshTemperature() {
+		if (isStale(temperature, TEMPERATURE)) {
+			if (bulkSource != null)
+				refreshAll();
+			else {
+				double value = source.getTemperature();
+				fetches.increment();
+				temperature = new Entry<>(value, System.nanoTime());
+			}
+		}
+		return temperature;
+	} // refreshTemperature
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getLeftLightSensor() {
+		int[] lights = lights();
+		return ((lights != null) ? lights[0] : 0);
+	} // getLeftLightSensor
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getRightLightSensor() {
+		int[] lights = lights();
+		return ((lights != null) ? lights[1] : 0);
+	} // getRightLightSensor
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int[] getLightSensors() {
+		int[] lights = lights();
+		return ((lights != null) ? lights.clone() : null);
+	} // getLightSensors
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isObstacleLeftSide() {
+		boolean[] obstacles = obstacles();
+		return (obstacles != null) && obstacles[0];
+	} // isObstacleLeftSide
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isObstacleRightSide() {
+		boolean[] obstacles = obstacles();
+		return (obstacles != null) && obstacles[1];
+	} // isObstacleRightSide
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isObstacle() {
+		boolean[] obstacles = obstacles();
+		return (obstacles != null) && (obstacles[0] || obstacles[1]);
+	} // isObstacle
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean[] getObstacleSensors() {
+		boolean[] obstacles = obstacles();
+		return ((obstacles != null) ? obstacles.clone() : null);
+	} // getObstacleSensors
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getXAcceleration() {
+		double[] a = accelerations().accelerations;
+		return ((a != null) ? a[0] : Double.NaN);
+	} // getXAcceleration
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getYAcceleration() {
+		double[] a = accelerations().accelerations;
+		return ((a != null) ? a[1] : Double.NaN);
+	} // getYAcceleration
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getZAcceleration() {
+		double[] a = accelerations().accelerations;
+		return ((a != null) ? a[2] : Double.NaN);
+	} // getZAcceleration
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double[] getAccelerations() {
+		double[] a = accelerations().accelerations;
+		return ((a != null) ? a.clone() : null);
+	} // getAccelerations
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getXOrientationAngle() {
+		double[] angles = accelerations().angles;
+		return ((angles != null) ? angles[0] : Double.NaN);
+	} // getXOrientationAngle
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getYOrientationAngle() {
+		double[] angles = accelerations().angles;
+		return ((angles != null) ? angles[1] : Double.NaN);
+	} // getYOrientationAngle
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double[] getOrientationAngles() {
+		double[] angles = accelerations().angles;
+		return ((angles != null) ? angles.clone() : null);
+	} // getOrientationAngles
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getOrientation() {
+		Entry<String> e = orientation;
+		if (isStale(e, ORIENTATION))
+			e = refreshOrientation();
+		return e.value;
+	} // getOrientation
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getTemperature() {
+		Entry<Double> e = temperature;
+		if (isStale(e, TEMPERATURE))
+			e = refreshTemperature();
+		return e.value;
+	} // getTemperature
+
+} // class CachingFinchSensorState
@@ -0,0 +1,233 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker which stops requests from being made to a server which is not responding.
+ *
+ * <p>The breaker is initially closed, allowing requests.  After {@link #getFailureThreshold()}
+ * consecutive requests fail because the server could not be reached or did not respond in time,
+ * the breaker opens, and {@link #allowRequest()} returns false so callers can fail fast instead of
+ * waiting for each request to time out.  While open, a background thread invokes the probe every
+ * {@link #getProbeInterval()} milliseconds, and the breaker closes again as soon as a probe
+ * succeeds.</p>
+ *
+ * <p>This class is thread-safe.  Checking and recording the outcome of a request does not lock.</p>
+ */
+class CircuitBreaker {
+
+	/**
+	 * Default number of consecutive failures which open the breaker.
+	 */
+	public static final int DEFAULT_FAILURE_THRESHOLD = 2;
+
+	/**
+	 * Default number of milliseconds between probes while the breaker is open.
+	 */
+	public static final int DEFAULT_PROBE_INTERVAL = 1000;
+
+	/**
+	 * A request which determines whether the server is reachable again.
+	 */
+	@FunctionalInterface
+	interface Probe {
+		/**
+		 * Makes a request to the server.
+		 * @throws	Exception if the server could not be reached.
+		 */
+		void probe() throws Exception;
+	} // interface Probe
+
+	private final Probe probe;
+	private final Supplier<String> description;
+	private final String threadName;
+
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+	private final LongAdder rejected = new LongAdder();
+	private volatile boolean open;
+	private volatile int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+	private volatile int probeInterval = DEFAULT_PROBE_INTERVAL;
+	private int openCount;
+
+	private ScheduledExecutorService executor;
+
+	/**
+	 * Constructs a new, closed, CircuitBreaker.
+	 * @param	probe		The request used to determine whether the server is reachable again.
+	 * @param	description	Provides a description of the server, for the messages written to the
+	 *						console when the breaker opens or closes.
+	 * @param	threadName	Name to assign to the background probe thread.
+	 */
+	CircuitBreaker(Probe probe, Supplier<String> description, String threadName) {
+		this.probe = probe;
+		this.description = description;
+		this.threadName = threadName;
+	} // CircuitBreaker
+
+	/**
+	 * Determines whether a request may be made.  Each rejected request is counted.
+	 * @return	{@code true} if the breaker is closed, or {@code false} if the request should fail
+	 *			immediately.
+	 */
+	boolean allowRequest() {
+		if (!open)
+			return true;
+		rejected.increment();
+		return false;
+	} // allowRequest
+
+	/**
+	 * Records a request which reached the server.
+	 */
+	void recordSuccess() {
+		// Avoid writing the shared counter on every request
+		if (consecutiveFailures.get() != 0)
+			consecutiveFailures.set(0);
+	} // recordSuccess
+
+	/**
+	 * Records a request which failed because the server could not be reached or did not respond
+	 * in time.  Opens the breaker once the failure threshold is reached.
+	 */
+	void recordFailure() {
+		int threshold = failureThreshold;
+		if ((consecutiveFailures.incrementAndGet() >= threshold) && (threshold > 0))
+			trip();
+	} // recordFailure
+
+	/**
+	 * Determines whether the breaker is open.
+	 * @return	{@code true} if requests are currently being rejected.
+	 */
+	boolean isOpen() {
+		return open;
+	} // isOpen
+
+	/**
+	 * Retrieves the number of consecutive failures which open the breaker.
+	 * @return	The failure threshold, or 0 if the breaker is disabled.
+	 */
+	int getFailureThreshold() {
+		return failureThreshold;
+	} // getFailureThreshold
+
+	/**
+	 * Sets the number of consecutive failures which open the breaker.
+	 * @param	threshold	The failure threshold.  A value of 0 disables the breaker, closing it if
+	 *						it is open.
+	 * @throws	IllegalArgumentException if threshold is negative.
+	 */
+	void setFailureThreshold(int threshold) {
+		if (threshold < 0)
+			throw new IllegalArgumentException("threshold cannot be negative");
+		failureThreshold = threshold;
+		if (threshold == 0)
+			reset();
+	} // setFailureThreshold
+
+	/**
+	 * Retrieves the number of milliseconds between probes while the breaker is open.
+	 * @return	The probe interval, in milliseconds.
+	 */
+	int getProbeInterval() {
+		return probeInterval;
+	} // getProbeInterval
+
+	/**
+	 * Sets the number of milliseconds between probes while the breaker is open.  Takes effect the
+	 * next time the breaker opens.
+	 * @param	intervalMillis	The probe interval, in milliseconds.
+	 * @throws	IllegalArgumentException if intervalMillis is not positive.
+	 */
+	void setProbeInterval(int intervalMillis) {
+		if (intervalMillis <= 0)
+			throw new IllegalArgumentException("intervalMillis must be positive");
+		probeInterval = intervalMillis;
+	} // setProbeInterval
+
+	/**
+	 * Retrieves the number of requests rejected while the breaker was open.
+	 * @return	The number of rejected requests.
+	 */
+	long getRejectedCount() {
+		return rejected.sum();
+	} // getRejectedCount
+
+	/**
+	 * Retrieves the number of times the breaker has opened.
+	 * @return	The number of times the breaker has opened.
+	 */
+	synchronized int getOpenCount() {
+		return openCount;
+	} // getOpenCount
+
+	/**
+	 * Closes the breaker, without waiting for a successful probe, and stops the probe thread.
+	 */
+	synchronized void reset() {
+		consecutiveFailures.set(0);
+		open = false;
+		stopProbing();
+	} // reset
+
+	/**
+	 * Opens the breaker and starts probing, if not already open.
+	 */
+	private synchronized void trip() {
+		if (open || (failureThreshold == 0))
+			return;
+
+		open = true;
+		++openCount;
+		System.out.println("WARNING: "+ description.get() +" is not responding, requests will fail until it can be reached");
+
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, threadName);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		executor.scheduleWithFixedDelay(this::probeOnce, probeInterval, probeInterval, TimeUnit.MILLISECONDS);
+	} // trip
+
+	/**
+	 * Invokes the probe, and closes the breaker if it succeeds.
+	 */
+	private void probeOnce() {
+		try {
+			probe.probe();
+		} catch (Exception e) {
+			return;
+		}
+
+		synchronized (this) {
+			if (!open)
+				return;
+			consecutiveFailures.set(0);
+			open = false;
+			stopProbing();
+		}
+		System.out.println("Reconnected to "+ description.get());
+	} // probeOnce
+
+	private void stopProbing() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	} // stopProbing
+
+} // class CircuitBreaker
@@ -0,0 +1,149 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.awt.Color;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A burst of output commands which are sent to the Bird Brain Robot Server together.
+ *
+ * <p>Setting several outputs in one step, such as the LED color, the wheel velocities and a
+ * buzzer tone, would normally take one round-trip to the server for each output.  A batch sends
+ * all of its commands at once, pipelined over a single connection, so they share a single
+ * network round-trip.  The server still handles the commands one at a time, so a batch saves the
+ * network time of each command, but not the time the server takes to handle it.  A batch is
+ * obtained from {@link FinchHTTP#batch()}, and its commands are sent, in the order they were
+ * added, when {@link #submit()} is called:</p>
+ *
+ * <pre>
+ * finch.batch().led(255, 0, 0).motor(100, 100).buzz(440, 250).submit();
+ * </pre>
+ *
+ * <p>If asynchronous outputs are enabled (see {@link FinchHTTP#setAsyncOutputs(boolean)}), the
+ * commands are handed to the output dispatcher instead, exactly as if each output had been set
+ * individually.</p>
+ *
+ * <p>Instances are not thread-safe, and are intended to be built and submitted by a single
+ * thread.  A batch can be submitted more than once.</p>
+ */
+public final class FinchBatch {
+
+	private final FinchHTTP finch;
+
+	private final List<FinchRequest> requests = new ArrayList<FinchRequest>();
+	private final List<Integer> slots = new ArrayList<Integer>();
+	private final List<int[]> values = new ArrayList<int[]>();
+
+	/**
+	 * Constructs a new, empty, batch.
+	 * @param	finch	The Finch the commands are sent to.
+	 */
+	FinchBatch(FinchHTTP finch) {
+		this.finch = finch;
+	} // FinchBatch
+
+	/**
+	 * Adds a command which sets the color of the LED in the Finch's beak.
+	 * @param	red		sets the intensity of the red element of the LED, from 0 to 255
+	 * @param	green	sets the intensity of the green element of the LED, from 0 to 255
+	 * @param	blue	sets the intensity of the blue element of the LED, from 0 to 255
+	 * @return	This batch.
+	 * @see		FinchHTTP#setLED(int, int, int)
+	 */
+	public FinchBatch led(int red, int green, int blue) {
+		return add(
+			OutputDispatcher.LED,
+			new int[] { red, green, blue },
+			"finch/out/led",
+			FinchHTTP.formatScaled(red),
+			FinchHTTP.formatScaled(green),
+			FinchHTTP.formatScaled(blue)
+		);
+	} // led
+
+	/**
+	 * Adds a command which sets the color of the LED in the Finch's beak using a
+	 * {@link java.awt.Color} object.
+	 * @param	color	determines the beak's color
+	 * @return	This batch.
+	 * @see		FinchHTTP#setLED(Color)
+	 */
+	public FinchBatch led(Color color) {
+		return led(color.getRed(), color.getGreen(), color.getBlue());
+	} // led
+
+	/**
+	 * Adds a command which sets the velocities of both wheels.
+	 * @param	leftVelocity	The velocity of the left wheel, from -255 to 255
+	 * @param	rightVelocity	The velocity of the right wheel, from -255 to 255
+	 * @return	This batch.
+	 * @see		FinchHTTP#setWheelVelocities(int, int)
+	 */
+	public FinchBatch motor(int leftVelocity, int rightVelocity) {
+		return add(
+			OutputDispatcher.MOTOR,
+			new int[] { leftVelocity, rightVelocity, 0 },
+			"finch/out/motor",
+			FinchHTTP.formatScaled(leftVelocity),
+			FinchHTTP.formatScaled(rightVelocity)
+		);
+	} // motor
+
+	/**
+	 * Adds a command which plays a tone on the Finch's internal buzzer.
+	 * @param	frequency	Frequency in Hertz of the tone to be played
+	 * @param	duration	Duration in milliseconds of the tone
+	 * @return	This batch.
+	 * @see		FinchHTTP#buzz(int, int)
+	 */
+	public FinchBatch buzz(int frequency, int duration) {
+		return add(
+			OutputDispatcher.BUZZER,
+			new int[] { frequency, duration, 0 },
+			"finch/out/buzzer",
+			FinchHTTP.formatInt(frequency),
+			FinchHTTP.formatInt(duration)
+		);
+	} // buzz
+
+	/**
+	 * Retrieves the number of commands in the batch.
+	 * @return	The number of commands in the batch.
+	 */
+	public int size() {
+		return requests.size();
+	} // size
+
+	/**
+	 * Sends all of the commands in the batch, and waits for the server to respond to them,
+	 * unless asynchronous outputs are enabled.  Has no effect if the batch is empty.
+	 */
+	public void submit() {
+		int[] s = new int[slots.size()];
+		for (int i = 0; i < s.length; ++i) {
+			s[i] = slots.get(i);
+			int[] v = values.get(i);
+			finch.recordOutput(s[i], v[0], v[1], v[2]);
+		}
+		finch.submitBatch(s, requests.toArray(new FinchRequest[requests.size()]));
+	} // submit
+
+	private FinchBatch add(int slot, int[] value, String path, String... args) {
+		requests.add(FinchRequest.of(path, args));
+		slots.add(slot);
+		values.add(value);
+		return this;
+	} // add
+
+	public String toString() {
+		return "FinchBatch"+ requests;
+	} // toString
+
+} // class FinchBatch
@@ -0,0 +1,494 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.awt.Color;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a robot behavior as a control loop at a fixed rate.
+ *
+ * <p>A behavior written as a loop which reads the sensors and sets the wheels as fast as it can
+ * runs at whatever rate the server happens to respond, and sends a request for every sensor
+ * read and every output set.  A control loop instead calls a {@link Step} function at a fixed
+ * rate on a dedicated thread.  Each tick:</p>
+ * <ol>
+ *	<li>Reads all of the sensors with a single {@link FinchHTTP#poll(FinchSensorSnapshot) poll}
+ *		request.</li>
+ *	<li>Calls the step function with the sensor readings, which sets the desired outputs.</li>
+ *	<li>Sends the outputs which changed since the previous tick together, as a single
+ *		{@link FinchBatch batch}.  Nothing is sent if no output changed.</li>
+ * </ol>
+ *
+ * <p>For example, to follow a light at 20 ticks per second:</p>
+ *
+ * <pre>
+ * FinchControlLoop loop = new FinchControlLoop(finch, 20, (sensors, outputs) -&gt; {
+ *     int error = sensors.getLeftLightSensor() - sensors.getRightLightSensor();
+ *     outputs.setWheelVelocities(100 - error, 100 + error);
+ * });
+ * loop.start();
+ * </pre>
+ *
+ * <p>Ticks are scheduled on a fixed grid, {@code 1 / rate} seconds apart.  The delay between the
+ * scheduled and actual start of each tick is recorded as the {@link #getJitter() jitter}.  A tick
+ * which is still running when the next tick is due is an overrun: the ticks it overlapped are
+ * skipped, rather than run late in a burst, and the loop continues on the same grid.</p>
+ *
+ * <p>If the step function throws an exception, the exception is written to the console and the
+ * loop stops.  Whenever the loop stops, the wheels are stopped if the loop had set them
+ * moving.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public final class FinchControlLoop
+	implements AutoCloseable
+{
+
+	/**
+	 * Default number of ticks per second.
+	 */
+	public static final double DEFAULT_RATE = 20;
+
+	/**
+	 * Maximum number of milliseconds {@link #stop()} waits for the current tick to complete.
+	 */
+	private static final int STOP_TIMEOUT = 5000;
+
+	/**
+	 * The behavior executed on each tick of a control loop.
+	 */
+	@FunctionalInterface
+	public interface Step {
+		/**
+		 * Computes the outputs for a single tick.
+		 * @param	sensors	The sensor readings for this tick.  If the Finch is not connected,
+		 *					the getters return the "not connected" values (for example,
+		 *					{@link FinchSensorState#getAccelerations()} returns null).  The same
+		 *					instance is updated on each tick, so it must not be retained after
+		 *					the step returns.
+		 * @param	outputs	The outputs of the Finch, as set by the previous ticks.  Only the
+		 *					outputs changed by the step are sent to the Finch.
+		 */
+		public void step(FinchSensorState sensors, Outputs outputs);
+	} // interface Step
+
+	/**
+	 * The desired outputs of the Finch, set by the {@link Step} function of a control loop.
+	 *
+	 * <p>The outputs keep their values from one tick to the next, so a step only needs to set the
+	 * outputs it wants to change.  Outputs which have never been set by the step are left
+	 * unchanged on the Finch.  Instances are only used by the control loop thread, and are not
+	 * thread-safe.</p>
+	 */
+	public static final class Outputs {
+		private int leftVelocity, rightVelocity;
+		private int red, green, blue;
+		private boolean motorSet, ledSet;
+		private int buzzFrequency, buzzDuration;
+		private boolean buzz;
+
+		Outputs() {
+		} // Outputs
+
+		/**
+		 * Sets the velocities of both wheels.
+		 * @param	leftVelocity	The velocity of the left wheel, from -255 to 255
+		 * @param	rightVelocity	The velocity of the right wheel, from -255 to 255
+		 * @see		FinchHTTP#setWheelVelocities(int, int)
+		 */
+		public void setWheelVelocities(int leftVelocity, int rightVelocity) {
+			this.leftVelocity = leftVelocity;
+			this.rightVelocity = rightVelocity;
+			motorSet = true;
+		} // setWheelVelocities
+
+		/**
+		 * Stops both wheels.
+		 */
+		public void stopWheels() {
+			setWheelVelocities(0, 0);
+		} // stopWheels
+
+		/**
+		 * Retrieves the velocity of the left wheel.
+		 * @return	The velocity of the left wheel.
+		 */
+		public int getLeftWheelVelocity() {
+			return leftVelocity;
+		} // getLeftWheelVelocity
+
+		/**
+		 * Retrieves the velocity of the right wheel.
+		 * @return	The velocity of the right wheel.
+		 */
+		public int getRightWheelVelocity() {
+			return rightVelocity;
+		} // getRightWheelVelocity
+
+		/**
+		 * Sets the color of the LED in the Finch's beak.
+		 * @param	red		sets the intensity of the red element of the LED, from 0 to 255
+		 * @param	green	sets the intensity of the green element of the LED, from 0 to 255
+		 * @param	blue	sets the intensity of the blue element of the LED, from 0 to 255
+		 * @see		FinchHTTP#setLED(int, int, int)
+		 */
+		public void setLED(int red, int green, int blue) {
+			this.red = red;
+			this.green = green;
+			this.blue = blue;
+			ledSet = true;
+		} // setLED
+
+		/**
+		 * Sets the color of the LED in the Finch's beak using a {@link java.awt.Color} object.
+		 * @param	color	determines the beak's color
+		 */
+		public void setLED(Color color) {
+			setLED(color.getRed(), color.getGreen(), color.getBlue());
+		} // setLED
+
+		/**
+		 * Retrieves the color of the LED in the Finch's beak.
+		 * @return	The color of the LED.
+		 */
+		public Color getLED() {
+			return new Color(red, green, blue);
+		} // getLED
+
+		/**
+		 * Plays a tone on the Finch's internal buzzer.  The tone is sent at the end of the
+		 * current tick, even if the same tone was played by a previous tick.
+		 * @param	frequency	Frequency in Hertz of the tone to be played
+		 * @param	duration	Duration in milliseconds of the tone
+		 * @see		FinchHTTP#buzz(int, int)
+		 */
+		public void buzz(int frequency, int duration) {
+			buzzFrequency = frequency;
+			buzzDuration = duration;
+			buzz = true;
+		} // buzz
+	} // class Outputs
+
+	private final FinchHTTP finch;
+	private final double rate;
+	private final long period;
+	private final Step step;
+
+	/**
+	 * Sensor readings, reused on every tick.  Only accessed by the loop thread.
+	 */
+	private final FinchSensorSnapshot sensors = new FinchSensorSnapshot();
+
+	/**
+	 * Desired outputs.  Only accessed by the loop thread.
+	 */
+	private final Outputs outputs = new Outputs();
+
+	// Outputs last sent to the Finch.  Only accessed by the loop thread.
+	private boolean motorSent, ledSent;
+	private int sentLeftVelocity, sentRightVelocity;
+	private int sentRed, sentGreen, sentBlue;
+
+	private final LongAdder ticks = new LongAdder();
+	private final LongAdder overruns = new LongAdder();
+	private final LongAdder skipped = new LongAdder();
+	private final LongAdder writes = new LongAdder();
+	private final LatencyHistogram jitter = new LatencyHistogram();
+	private final LatencyHistogram tickDuration = new LatencyHistogram();
+
+	/**
+	 * The most recently started loop thread, until it has terminated.
+	 */
+	private Thread thread;
+
+	/**
+	 * The thread running the loop, or null if the loop is stopped.  Each loop thread runs only
+	 * while it is the active thread, so stopping the loop cannot affect a later thread, and a
+	 * terminating thread only clears the active thread if it is still its own.
+	 */
+	private final AtomicReference<Thread> active = new AtomicReference<>();
+
+	/**
+	 * Constructs a new control loop.  The loop is initially stopped.
+	 * @param	finch	The Finch controlled by the loop.
+	 * @param	rate	The number of ticks per second.
+	 * @param	step	The behavior executed on each tick.
+	 * @throws	IllegalArgumentException if finch or step is null, or rate is not positive or
+	 *			exceeds 1000 ticks per second.
+	 */
+	public FinchControlLoop(FinchHTTP finch, double rate, Step step) {
+		if (finch == null)
+			throw new IllegalArgumentException("finch cannot be null");
+		if (!(rate > 0) || (rate > 1000))
+			throw new IllegalArgumentException("rate must be positive and at most 1000");
+		if (step == null)
+			throw new IllegalArgumentException("step cannot be null");
+
+		this.finch = finch;
+		this.rate = rate;
+		this.period = Math.round(1e9 / rate);
+		this.step = step;
+	} // FinchControlLoop
+
+	/**
+	 * Constructs a new control loop which runs at {@value #DEFAULT_RATE} ticks per second.  The
+	 * loop is initially stopped.
+	 * @param	finch	The Finch controlled by the loop.
+	 * @param	step	The behavior executed on each tick.
+	 * @throws	IllegalArgumentException if finch or step is null.
+	 */
+	public FinchControlLoop(FinchHTTP finch, Step step) {
+		this(finch, DEFAULT_RATE, step);
+	} // FinchControlLoop
+
+	/**
+	 * Starts running the loop on a new daemon thread.  Has no effect if the loop is already
+	 * running.
+	 *
+	 * <p>If the loop was stopped while a tick was in progress, this waits for that tick to
+	 * complete, so only one thread ever runs the step function.</p>
+	 *
+	 * @throws	IllegalStateException if the thread which previously ran the loop has still not
+	 *			terminated after waiting {@value #STOP_TIMEOUT} milliseconds, or this method is
+	 *			called by the step function after the loop was stopped.
+	 */
+	public synchronized void start() {
+		if (active.get() != null)
+			return;
+
+		awaitThread();
+		if (thread != null)
+			throw new IllegalStateException("The previous control loop thread is still running");
+
+		Thread t = new Thread(this::run, "Finch control loop");
+		t.setDaemon(true);
+		thread = t;
+		active.set(t);
+		t.start();
+	} // start
+
+	/**
+	 * Stops the loop, and waits for the current tick to complete unless called by the step
+	 * function itself.  Has no effect if the loop is not running.
+	 */
+	public synchronized void stop() {
+		Thread t = active.getAndSet(null);
+		if (t != null)
+			LockSupport.unpark(t);
+		awaitThread();
+	} // stop
+
+	/**
+	 * Stops the loop.  Equivalent to {@link #stop()}.
+	 */
+	public void close() {
+		stop();
+	} // close
+
+	/**
+	 * Determines whether the loop is running.
+	 * @return	{@code true} if the loop is running.
+	 */
+	public boolean isRunning() {
+		return (active.get() != null);
+	} // isRunning
+
+	/**
+	 * Retrieves the number of ticks per second.
+	 * @return	The number of ticks per second.
+	 */
+	public double getRate() {
+		return rate;
+	} // getRate
+
+	/**
+	 * Retrieves the number of ticks executed.
+	 * @return	The number of ticks executed.
+	 */
+	public long getTickCount() {
+		return ticks.sum();
+	} // getTickCount
+
+	/**
+	 * Retrieves the number of ticks which were still running when the next tick was due.
+	 * @return	The number of overruns.
+	 */
+	public long getOverrunCount() {
+		return overruns.sum();
+	} // getOverrunCount
+
+	/**
+	 * Retrieves the number of ticks skipped because of overruns.
+	 * @return	The number of skipped ticks.
+	 */
+	public long getSkippedTickCount() {
+		return skipped.sum();
+	} // getSkippedTickCount
+
+	/**
+	 * Retrieves the number of ticks which sent outputs to the Finch.
+	 * @return	The number of output batches sent.
+	 */
+	public long getWriteCount() {
+		return writes.sum();
+	} // getWriteCount
+
+	/**
+	 * Retrieves the distribution of the delays, in nanoseconds, between the scheduled and actual
+	 * start of each tick.
+	 * @return	The jitter histogram.
+	 */
+	public LatencyHistogram getJitter() {
+		return jitter;
+	} // getJitter
+
+	/**
+	 * Retrieves the distribution of the durations, in nanoseconds, of the ticks, including the
+	 * sensor read, the step function and sending the outputs.
+	 * @return	The tick duration histogram.
+	 */
+	public LatencyHistogram getTickDuration() {
+		return tickDuration;
+	} // getTickDuration
+
+	/**
+	 * Resets all of the statistics.
+	 */
+	public void resetStatistics() {
+		ticks.reset();
+		overruns.reset();
+		skipped.reset();
+		writes.reset();
+		jitter.reset();
+		tickDuration.reset();
+	} // resetStatistics
+
+	public String toString() {
+		return String.format(
+			"FinchControlLoop[rate=%s, ticks=%d, overruns=%d, skipped=%d, writes=%d, jitter p50=%.3fms p99=%.3fms max=%.3fms]",
+			rate, getTickCount(), getOverrunCount(), getSkippedTickCount(), getWriteCount(),
+			jitter.getPercentile(50) / 1e6, jitter.getPercentile(99) / 1e6, jitter.getMax() / 1e6
+		);
+	} // toString
+
+	/**
+	 * Waits for the loop thread to terminate, unless called by the loop thread itself.
+	 */
+	private void awaitThread() {
+		Thread t = thread;
+		if ((t == null) || (t == Thread.currentThread()))
+			return;
+
+		try {
+			t.join(STOP_TIMEOUT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (!t.isAlive())
+			thread = null;
+	} // awaitThread
+
+	/**
+	 * Body of the loop thread.
+	 */
+	private void run() {
+		Thread self = Thread.currentThread();
+		motorSent = ledSent = false;
+		long next = System.nanoTime();
+		try {
+			while (active.get() == self) {
+				long start = System.nanoTime();
+				if (next - start > 0) {
+					LockSupport.parkNanos(this, next - start);
+					continue;
+				}
+
+				jitter.record(start - next);
+				ticks.increment();
+				if (!tick())
+					break;
+
+				long end = System.nanoTime();
+				tickDuration.record(end - start);
+
+				next += period;
+				if (end - next > 0) {
+					long missed = (end - next) / period + 1;
+					overruns.increment();
+					skipped.add(missed);
+					next += missed * period;
+				}
+			}
+		} finally {
+			active.compareAndSet(self, null);
+			if (motorSent && ((sentLeftVelocity != 0) || (sentRightVelocity != 0)))
+				finch.stopWheels();
+		}
+	} // run
+
+	/**
+	 * Executes a single tick.
+	 * @return	{@code false} if the step function failed.
+	 */
+	private boolean tick() {
+		if (!finch.poll(sensors)) {
+			// Outputs cannot be set, and may be lost, while the Finch is not connected
+			motorSent = ledSent = false;
+		}
+
+		try {
+			step.step(sensors, outputs);
+		} catch (RuntimeException e) {
+			System.out.println("WARNING: Finch control loop stopped, step failed: "+ e);
+			return false;
+		}
+
+		if (sensors.isConnected())
+			write();
+		else
+			outputs.buzz = false;
+		return true;
+	} // tick
+
+	/**
+	 * Sends the outputs which changed since they were last sent, as a single batch.
+	 */
+	private void write() {
+		Outputs o = outputs;
+		FinchBatch batch = null;
+
+		if (o.motorSet && (!motorSent || (o.leftVelocity != sentLeftVelocity) || (o.rightVelocity != sentRightVelocity))) {
+			batch = finch.batch().motor(o.leftVelocity, o.rightVelocity);
+			sentLeftVelocity = o.leftVelocity;
+			sentRightVelocity = o.rightVelocity;
+			motorSent = true;
+		}
+
+		if (o.ledSet && (!ledSent || (o.red != sentRed) || (o.green != sentGreen) || (o.blue != sentBlue))) {
+			batch = (batch != null ? batch : finch.batch()).led(o.red, o.green, o.blue);
+			sentRed = o.red;
+			sentGreen = o.green;
+			sentBlue = o.blue;
+			ledSent = true;
+		}
+
+		if (o.buzz) {
+			batch = (batch != null ? batch : finch.batch()).buzz(o.buzzFrequency, o.buzzDuration);
+			o.buzz = false;
+		}
+
+		if (batch != null) {
+			batch.submit();
+			writes.increment();
+		}
+	} // write
+
+} // class FinchControlLoop
@@ -0,0 +1,140 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+/**
+ * Emits the Finch 4 Alice Java Flight Recorder events.
+ *
+ * <p>The event classes use the {@code jdk.jfr} API, so they are kept in the {@code java11} source
+ * set, which is compiled separately from the rest of Finch 4 Alice, and are only used through
+ * the {@link Recorder} interface.  The recorder is loaded when this class is initialized, if
+ * the API is available and the classes can be loaded (Java 11 or later).  When they cannot, or
+ * when no recording has the events enabled, each method does nothing and returns null.</p>
+ *
+ * <p>The events are disabled by default, and are enabled by the {@code finch4alice.jfc} settings
+ * profile.  For example:</p>
+ *
+ * <pre>-XX:StartFlightRecording=settings=default,settings=finch4alice.jfc,filename=alice.jfr</pre>
+ *
+ * <p>Events are started with a {@code begin} method, which returns an opaque event object, and
+ * are ended and committed by passing that object to the matching {@code commit} method.</p>
+ */
+final class FinchEvents {
+
+	/**
+	 * Status of a request which succeeded (HTTP status 200).
+	 */
+	static final int STATUS_OK = 200;
+
+	/**
+	 * Status of a request to which the server responded with an unexpected HTTP status.
+	 */
+	static final int STATUS_FAILED = 0;
+
+	/**
+	 * Status of a request which failed because the server could not be reached or did not respond
+	 * in time.
+	 */
+	static final int STATUS_UNREACHABLE = -1;
+
+	/**
+	 * Starts and commits the events.  Implemented by {@code JfrRecorder} in the {@code java11}
+	 * source set; each method corresponds to the FinchEvents method of the same name.
+	 */
+	interface Recorder {
+		Object beginHttp();
+		void commitHttp(Object event, String path, int status, String response);
+		Object beginPollParse();
+		void commitPollParse(Object event, String response, boolean connected);
+		Object beginNote();
+		void commitNote(Object event, int index, int frequency, int duration, long scheduled, long actual);
+	} // interface Recorder
+
+	/**
+	 * The recorder, or null if the events are not available.
+	 */
+	private static final Recorder RECORDER = loadRecorder();
+
+	private FinchEvents() {
+	} // FinchEvents
+
+	private static Recorder loadRecorder() {
+		ClassLoader loader = FinchEvents.class.getClassLoader();
+		try {
+			Class.forName("jdk.jfr.Event", false, loader);
+			return (Recorder)Class.forName("com.finch4alice.JfrRecorder", true, loader).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError e) {
+			// No jdk.jfr API, a Java release older than the recorder classes, or a build without them
+			return null;
+		}
+	} // loadRecorder
+
+	/**
+	 * Starts an HTTP request event.
+	 * @return	The event, or null if the event is not enabled.
+	 */
+	static Object beginHttp() {
+		return (RECORDER != null ? RECORDER.beginHttp() : null);
+	} // beginHttp
+
+	/**
+	 * Ends and commits an HTTP request event.
+	 * @param	event		The event returned by {@link #beginHttp()}, or null.
+	 * @param	path		The endpoint path.
+	 * @param	status		The status of the request: {@link #STATUS_OK}, {@link #STATUS_FAILED}
+	 *						or {@link #STATUS_UNREACHABLE}.
+	 * @param	response	The response received, or null.
+	 */
+	static void commitHttp(Object event, String path, int status, String response) {
+		if (event != null)
+			RECORDER.commitHttp(event, path, status, response);
+	} // commitHttp
+
+	/**
+	 * Starts a poll parse event.
+	 * @return	The event, or null if the event is not enabled.
+	 */
+	static Object beginPollParse() {
+		return (RECORDER != null ? RECORDER.beginPollParse() : null);
+	} // beginPollParse
+
+	/**
+	 * Ends and commits a poll parse event.
+	 * @param	event		The event returned by {@link #beginPollParse()}, or null.
+	 * @param	response	The poll response parsed.
+	 * @param	connected	Whether the response reported a connected Finch.
+	 */
+	static void commitPollParse(Object event, String response, boolean connected) {
+		if (event != null)
+			RECORDER.commitPollParse(event, response, connected);
+	} // commitPollParse
+
+	/**
+	 * Starts a melody note event.
+	 * @return	The event, or null if the event is not enabled.
+	 */
+	static Object beginNote() {
+		return (RECORDER != null ? RECORDER.beginNote() : null);
+	} // beginNote
+
+	/**
+	 * Ends and commits a melody note event.
+	 * @param	event		The event returned by {@link #beginNote()}, or null.
+	 * @param	index		The index of the note within the melody.
+	 * @param	frequency	The frequency of the note, in Hertz, or 0 for a rest.
+	 * @param	duration	The duration of the note, in milliseconds.
+	 * @param	scheduled	The scheduled start of the note, in nanoseconds from the start of the
+	 *						melody.
+	 * @param	actual		The actual start of the note, in nanoseconds from the start of the
+	 *						melody.
+	 */
+	static void commitNote(Object event, int index, int frequency, int duration, long scheduled, long actual) {
+		if (event != null)
+			RECORDER.commitNote(event, index, frequency, duration, scheduled, actual);
+	} // commitNote
+
+} // class FinchEvents
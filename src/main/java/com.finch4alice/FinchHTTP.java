@@ -8,22 +8,18 @@ package com.finch4alice;
 
 import java.awt.Color;
 
-import java.text.DecimalFormat;
-
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 
-import java.net.URL;
-import java.net.URLConnection;
-import java.net.URLEncoder;
-import java.net.HttpURLConnection;
 import java.net.ConnectException;
-import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 
 import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.management.ObjectName;
 
 /**
  * Simple wrapper class to communicate with the Bird Brain Robot Server.
@@ -35,6 +31,48 @@ import java.util.Arrays;
  * unsupported.  This currently includes the {@code playTone}, {@code playClip}, {@code isShaken},
  * and {@code isTapped} methods.</p>
  *
+ * <p>Requests are sent over a small pool of persistent (keep-alive) connections, which avoids
+ * establishing a new TCP connection for every sensor read and motor command.  The size of the
+ * pool and how long idle connections are retained can be adjusted with
+ * {@link #setConnectionPoolSize(int)} and {@link #setConnectionIdleTimeout(int)}.  Call
+ * {@link #close()} to release any pooled connections once the instance is no longer needed.</p>
+ *
+ * <p>The wire protocol is provided by a {@link FinchTransport}.  By default, an
+ * {@link HttpFinchTransport} is used, but an alternate transport may be supplied to the
+ * constructor or via {@link #setTransport(FinchTransport)}.</p>
+ *
+ * <p>Optionally, a background polling mode can be enabled with {@link #startPolling(int)}.  While
+ * polling, all of the sensors are read with a single {@link #poll()} request at a fixed rate, and
+ * the sensor getters return values from the most recent snapshot without any network I/O.</p>
+ *
+ * <p>Listeners registered with {@link #addSensorListener(FinchSensorListener)} are notified by
+ * the polling thread when an obstacle appears or clears, the orientation changes, the Finch is
+ * shaken or tapped, or a light sensor reading crosses a threshold.</p>
+ *
+ * <p>Motor, LED and buzzer commands can optionally be sent asynchronously, by enabling
+ * {@link #setAsyncOutputs(boolean)}.  The caller then returns immediately, and if several
+ * commands for the same output are issued faster than the server can process them, only the
+ * newest one is sent.</p>
+ *
+ * <p>Requests to the server are bounded by a {@link #setConnectTimeout(int) connect timeout} and
+ * a {@link #setReadTimeout(int) read timeout}.  When the server cannot be reached or stops
+ * responding, a circuit breaker opens and requests fail immediately with the "not connected"
+ * values, instead of each waiting for a timeout, until a background probe finds the server
+ * responding again.  See {@link #setFailureThreshold(int)}.</p>
+ *
+ * <p>Each instance can register a {@link FinchHTTPMXBean} with the platform MBeanServer, which
+ * allows the instance to be monitored and tuned at runtime through JMX.  Instances obtained from
+ * {@link FinchRegistry} are registered by the registry; other instances are registered by calling
+ * {@link #registerMBean()}.  The MBean is unregistered by {@link #close()}.</p>
+ *
+ * <p>When running on a Java version which supports Flight Recorder events, each request to the
+ * server and each poll response parsed is recorded as an event.  See {@link FinchEvents}.</p>
+ *
+ * <p>This class is thread-safe.  No lock is held while waiting for the server to respond, so
+ * requests issued from multiple threads (for example, a sensor read and a motor command) are
+ * processed concurrently, each on its own pooled connection.  Identical sensor reads issued
+ * concurrently share a single request.</p>
+ *
  * @see <a href="https://github.com/BirdBrainTechnologies/BirdBrainRobotServer/">The BirdBrain Robot Server</a>
  */
 public class FinchHTTP
@@ -42,26 +80,163 @@ public class FinchHTTP
 {
 
 	/**
-	 * Private storage for the serverBaseURL property.
+	 * Base URL of the Bird Brain Robot Server used by the default constructor.
+	 */
+	public static final String DEFAULT_SERVER_URL = "http://localhost:22179/";
+
+	/**
+	 * Private storage for the transport property.
+	 */
+	private volatile FinchTransport _transport;
+
+	/**
+	 * Private storage for the connectionPoolSize property.
+	 */
+	private volatile int _connectionPoolSize = HttpConnectionPool.DEFAULT_MAX_IDLE_CONNECTIONS;
+
+	/**
+	 * Private storage for the connectionIdleTimeout property.
+	 */
+	private volatile int _connectionIdleTimeout = HttpConnectionPool.DEFAULT_IDLE_TIMEOUT;
+
+	/**
+	 * Private storage for the connectTimeout property.
+	 */
+	private volatile int _connectTimeout = HttpConnectionPool.DEFAULT_CONNECT_TIMEOUT;
+
+	/**
+	 * Private storage for the readTimeout property.
+	 */
+	private volatile int _readTimeout = HttpConnectionPool.DEFAULT_READ_TIMEOUT;
+
+	/**
+	 * Stops requests from being made while the server is not responding.  The probe makes a
+	 * request directly through the transport, bypassing the breaker.
+	 */
+	private final CircuitBreaker _circuitBreaker = new CircuitBreaker(
+		() -> _transport.request("poll"),
+		() -> "Bird Brain Robot Server at "+ _transport.getLocation(),
+		"Finch server probe"
+	);
+
+	/**
+	 * Background poller used when polling mode is enabled.
+	 */
+	private final SensorPoller _poller = new SensorPoller(this::poll, this::publishPolledState, "Finch sensor poller");
+
+	/**
+	 * The most recent snapshot obtained by the background poller, or null if polling is not
+	 * enabled or the first poll has not yet completed.
+	 */
+	private volatile FinchSensorState _polledState;
+
+	/**
+	 * Filters the accelerometer readings of the polled snapshots, or null.
+	 */
+	private volatile AccelerometerFilter _accelerometerFilter;
+
+	/**
+	 * Detects sensor changes in the polled snapshots, and notifies the sensor listeners.
+	 */
+	private final SensorEventDetector _eventDetector = new SensorEventDetector(
+		() -> getLastEventTime("finch/in/lastShakenTime"),
+		() -> getLastEventTime("finch/in/lastTappedTime")
+	);
+
+	/**
+	 * Receive each snapshot obtained by the background poller, such as the
+	 * {@link FinchSensorPublisher} instances of this Finch.
 	 */
-	private String _serverBaseURL;
+	private final CopyOnWriteArrayList<Consumer<? super FinchSensorState>> _pollConsumers = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Polling interval used when polling is started by adding a sensor listener.
+	 */
+	public static final int DEFAULT_LISTENER_POLLING_INTERVAL = 100;
+
+	/**
+	 * Request statistics, recorded when enabled.
+	 */
+	private final FinchMetrics _metrics = new FinchMetrics();
+
+	/**
+	 * JMX management interface of this instance.
+	 */
+	private final FinchHTTPManagement _management = new FinchHTTPManagement(this);
+
+	/**
+	 * Private storage for the sensorHistory property.
+	 */
+	private volatile SensorHistory _sensorHistory = new SensorHistory();
+
+	/**
+	 * Records the polls and output commands, or null.
+	 */
+	private volatile TelemetryRecorder _telemetryRecorder;
+
+	/**
+	 * Private storage for the asyncOutputs property.
+	 */
+	private volatile boolean _asyncOutputs;
+
+	/**
+	 * Dispatcher used to send motor, LED and buzzer commands when asynchronous outputs are enabled.
+	 */
+	private final OutputDispatcher _outputDispatcher = new OutputDispatcher(
+		r -> validateOutResult(httpGET(r.getPath(), r.args())),
+		"Finch output dispatcher"
+	);
+
+	/**
+	 * Coalesces concurrent identical sensor reads into a single request.
+	 */
+	private final SingleFlight<String> _readFlights = new SingleFlight<>();
+
+	/**
+	 * Performs a sensor read for {@link #_readFlights}.
+	 */
+	private final Function<String, String> _readRequest = this::sendRequest;
+
+	/**
+	 * Maximum number of milliseconds to wait for pending asynchronous outputs to be sent when
+	 * asynchronous outputs are disabled, or the instance is closed.
+	 */
+	private static final int OUTPUT_FLUSH_TIMEOUT = 5000;
+
+	/**
+	 * Endpoint name under which batches are recorded in the metrics and Flight Recorder events.
+	 */
+	private static final String BATCH_PATH = "batch";
+
+	/**
+	 * Command which stops any tone playing on the buzzer.
+	 */
+	private static final FinchRequest STOP_BUZZER = FinchRequest.of("finch/out/buzzer", "0", "0");
+
+	/**
+	 * Argument arrays reused by each thread for the output commands it sends synchronously,
+	 * indexed by the number of arguments.
+	 */
+	private static final ThreadLocal<String[][]> OUTPUT_ARGS = ThreadLocal.withInitial(
+		() -> new String[][] { null, null, new String[2], new String[3] }
+	);
 
 	/**
 	 * The last known time that the Finch was shaken.
 	 */
-	private long lastShakenTime = Long.MAX_VALUE;
+	private final AtomicLong lastShakenTime = new AtomicLong(Long.MAX_VALUE);
 
 	/**
 	 * The last known time that the Finch was tapped.
 	 */
-	private long lastTappedTime = Long.MAX_VALUE;
+	private final AtomicLong lastTappedTime = new AtomicLong(Long.MAX_VALUE);
 	
 
 	/**
 	 * Constructs a new FinchHTTP instance using the default server URL of "http://localhost:22179/".
 	 */
 	public FinchHTTP() {
-		this("http://localhost:22179/");
+		this(DEFAULT_SERVER_URL);
 	} // FinchHTTP
 
 	/**
@@ -72,32 +247,530 @@ public class FinchHTTP
 		setServerBaseURL(serverBaseURL);
 	} // FinchHTTP
 
+	/**
+	 * Constructs a new FinchHTTP instance which communicates using a custom transport.
+	 * @param	transport	The transport to use for communicating with the Finch.
+	 */
+	public FinchHTTP(FinchTransport transport) {
+		setTransport(transport);
+	} // FinchHTTP
+
 	/**
 	 * Sets the base URL of the Bird Brain Robot Server to communicate with.
+	 *
+	 * <p>This replaces the current transport with a new {@link HttpFinchTransport}, and closes
+	 * the previous transport.</p>
+	 *
 	 * @param	baseURL	The base URL of the Bird Brain Robot Server to communicate with.
-	 * @throws	IllegalArgumentException if the baseURL is null.
+	 * @throws	IllegalArgumentException if the baseURL is null, malformed, or not an http URL.
 	 */
-	public void setServerBaseURL(String baseURL) {
+	public synchronized void setServerBaseURL(String baseURL) {
 		if (baseURL == null)
 			throw new IllegalArgumentException("baseURL cannot be null");
-		_serverBaseURL = baseURL;
+
+		HttpFinchTransport transport = new HttpFinchTransport(baseURL);
+		transport.setConnectionPoolSize(_connectionPoolSize);
+		transport.setConnectionIdleTimeout(_connectionIdleTimeout);
+		transport.setConnectTimeout(_connectTimeout);
+		transport.setReadTimeout(_readTimeout);
+
+		setTransport(transport);
 	} // setServerBaseURL
 
 	/**
 	 * Retrieves the current Bird Brain Robot Server base URL.
-	 * @return	The current Bird Brain Robot Server base URL.
+	 * @return	The current Bird Brain Robot Server base URL.  If a custom transport is in use,
+	 *			the location reported by the transport is returned instead.
 	 */
 	public String getServerBaseURL() {
-		return _serverBaseURL;
+		return _transport.getLocation();
 	} // getServerBaseURL
 
+	/**
+	 * Sets the transport used for communicating with the Finch.  The previous transport, if any,
+	 * is closed.
+	 * @param	transport	The transport to use for communicating with the Finch.
+	 * @throws	IllegalArgumentException if the transport is null.
+	 */
+	public synchronized void setTransport(FinchTransport transport) {
+		if (transport == null)
+			throw new IllegalArgumentException("transport cannot be null");
+
+		FinchTransport oldTransport = _transport;
+		_transport = transport;
+		_circuitBreaker.reset();
+
+		if ((oldTransport != null) && (oldTransport != transport))
+			oldTransport.close();
+	} // setTransport
+
+	/**
+	 * Retrieves the transport used for communicating with the Finch.
+	 * @return	The transport used for communicating with the Finch.
+	 */
+	public FinchTransport getTransport() {
+		return _transport;
+	} // getTransport
+
+	/**
+	 * Retrieves the maximum number of idle keep-alive connections retained for reuse.
+	 * @return	The maximum number of idle connections retained for reuse.
+	 */
+	public int getConnectionPoolSize() {
+		return _connectionPoolSize;
+	} // getConnectionPoolSize
+
+	/**
+	 * Sets the maximum number of idle keep-alive connections retained for reuse.
+	 *
+	 * <p>A single connection is sufficient when the Finch is only accessed from one thread at a
+	 * time.  Larger values allow concurrent requests from multiple threads to each reuse a
+	 * connection.</p>
+	 *
+	 * <p>This setting only applies when communicating with the Bird Brain Robot Server over
+	 * HTTP.  It is retained if the server base URL is changed.</p>
+	 *
+	 * @param	size	The maximum number of idle connections to retain.  A value of 0 disables
+	 *					connection reuse, causing a new connection to be made for every request.
+	 * @throws	IllegalArgumentException if size is negative.
+	 */
+	public synchronized void setConnectionPoolSize(int size) {
+		if (size < 0)
+			throw new IllegalArgumentException("size cannot be negative");
+
+		FinchTransport transport = _transport;
+		if (transport instanceof HttpFinchTransport)
+			((HttpFinchTransport)transport).setConnectionPoolSize(size);
+		_connectionPoolSize = size;
+	} // setConnectionPoolSize
+
+	/**
+	 * Retrieves the number of milliseconds an idle keep-alive connection is retained before it is
+	 * closed.
+	 * @return	The connection idle timeout, in milliseconds.
+	 */
+	public int getConnectionIdleTimeout() {
+		return _connectionIdleTimeout;
+	} // getConnectionIdleTimeout
+
+	/**
+	 * Sets the number of milliseconds an idle keep-alive connection is retained before it is
+	 * closed.
+	 *
+	 * <p>This setting only applies when communicating with the Bird Brain Robot Server over
+	 * HTTP.  It is retained if the server base URL is changed.</p>
+	 *
+	 * @param	timeout	The connection idle timeout, in milliseconds.
+	 * @throws	IllegalArgumentException if timeout is negative.
+	 */
+	public synchronized void setConnectionIdleTimeout(int timeout) {
+		if (timeout < 0)
+			throw new IllegalArgumentException("timeout cannot be negative");
+
+		FinchTransport transport = _transport;
+		if (transport instanceof HttpFinchTransport)
+			((HttpFinchTransport)transport).setConnectionIdleTimeout(timeout);
+		_connectionIdleTimeout = timeout;
+	} // setConnectionIdleTimeout
+
+	/**
+	 * Retrieves the number of milliseconds to wait for a connection to the server to be
+	 * established.
+	 * @return	The connect timeout, in milliseconds.  0 indicates no timeout.
+	 */
+	public int getConnectTimeout() {
+		return _connectTimeout;
+	} // getConnectTimeout
+
+	/**
+	 * Sets the number of milliseconds to wait for a connection to the server to be established.
+	 *
+	 * <p>This setting only applies when communicating with the Bird Brain Robot Server over
+	 * HTTP.  It is retained if the server base URL is changed.</p>
+	 *
+	 * @param	timeout	The connect timeout, in milliseconds.  A value of 0 waits indefinitely.
+	 * @throws	IllegalArgumentException if timeout is negative.
+	 */
+	public synchronized void setConnectTimeout(int timeout) {
+		if (timeout < 0)
+			throw new IllegalArgumentException("timeout cannot be negative");
+
+		FinchTransport transport = _transport;
+		if (transport instanceof HttpFinchTransport)
+			((HttpFinchTransport)transport).setConnectTimeout(timeout);
+		_connectTimeout = timeout;
+	} // setConnectTimeout
+
+	/**
+	 * Retrieves the number of milliseconds to wait for a response from the server.
+	 * @return	The read timeout, in milliseconds.  0 indicates no timeout.
+	 */
+	public int getReadTimeout() {
+		return _readTimeout;
+	} // getReadTimeout
+
+	/**
+	 * Sets the number of milliseconds to wait for a response from the server.  A request which
+	 * times out is treated the same as a request to an unreachable server.
+	 *
+	 * <p>This setting only applies when communicating with the Bird Brain Robot Server over
+	 * HTTP.  It is retained if the server base URL is changed.</p>
+	 *
+	 * @param	timeout	The read timeout, in milliseconds.  A value of 0 waits indefinitely.
+	 * @throws	IllegalArgumentException if timeout is negative.
+	 */
+	public synchronized void setReadTimeout(int timeout) {
+		if (timeout < 0)
+			throw new IllegalArgumentException("timeout cannot be negative");
+
+		FinchTransport transport = _transport;
+		if (transport instanceof HttpFinchTransport)
+			((HttpFinchTransport)transport).setReadTimeout(timeout);
+		_readTimeout = timeout;
+	} // setReadTimeout
+
+	/**
+	 * Determines whether requests are currently failing fast because the server is not
+	 * responding.
+	 * @return	{@code true} if the circuit breaker is open.
+	 * @see		#setFailureThreshold(int)
+	 */
+	public boolean isCircuitOpen() {
+		return _circuitBreaker.isOpen();
+	} // isCircuitOpen
+
+	/**
+	 * Retrieves the number of consecutive unreachable or timed out requests which open the
+	 * circuit breaker.
+	 * @return	The failure threshold, or 0 if the circuit breaker is disabled.
+	 */
+	public int getFailureThreshold() {
+		return _circuitBreaker.getFailureThreshold();
+	} // getFailureThreshold
+
+	/**
+	 * Sets the number of consecutive unreachable or timed out requests which open the circuit
+	 * breaker.
+	 *
+	 * <p>While the circuit breaker is open, requests are not sent to the server, and return the
+	 * "not connected" values immediately (null, {@code NaN} or 0.0, as documented by each
+	 * method).  A background thread probes the server every {@link #getProbeInterval()}
+	 * milliseconds, and the circuit breaker closes as soon as the server responds.</p>
+	 *
+	 * @param	threshold	The failure threshold.  A value of 0 disables the circuit breaker.
+	 * @throws	IllegalArgumentException if threshold is negative.
+	 */
+	public void setFailureThreshold(int threshold) {
+		_circuitBreaker.setFailureThreshold(threshold);
+	} // setFailureThreshold
+
+	/**
+	 * Retrieves the number of milliseconds between probes of the server while the circuit
+	 * breaker is open.
+	 * @return	The probe interval, in milliseconds.
+	 */
+	public int getProbeInterval() {
+		return _circuitBreaker.getProbeInterval();
+	} // getProbeInterval
+
+	/**
+	 * Sets the number of milliseconds between probes of the server while the circuit breaker is
+	 * open.
+	 * @param	intervalMillis	The probe interval, in milliseconds.
+	 * @throws	IllegalArgumentException if intervalMillis is not positive.
+	 */
+	public void setProbeInterval(int intervalMillis) {
+		_circuitBreaker.setProbeInterval(intervalMillis);
+	} // setProbeInterval
+
+	/**
+	 * Retrieves the circuit breaker of this instance.
+	 * @return	The circuit breaker.
+	 */
+	CircuitBreaker getCircuitBreaker() {
+		return _circuitBreaker;
+	} // getCircuitBreaker
+
+	/**
+	 * Registers the {@link FinchHTTPMXBean} of this instance with the platform MBeanServer.  Has no
+	 * effect if the MBean is already registered, or if registration is disabled by setting the
+	 * system property {@code finch4alice.jmx} to {@code false}.  Failures are reported, but do not
+	 * prevent the instance from being used.
+	 * @return	The name the MBean is registered under, or null if it is not registered.
+	 */
+	public ObjectName registerMBean() {
+		_management.register();
+		return _management.getObjectName();
+	} // registerMBean
+
+	/**
+	 * Unregisters the {@link FinchHTTPMXBean} of this instance from the platform MBeanServer, if
+	 * registered.
+	 */
+	public void unregisterMBean() {
+		_management.unregister();
+	} // unregisterMBean
+
+	/**
+	 * Stops polling, waits for any pending asynchronous outputs to be sent, closes any idle
+	 * connections to the Bird Brain Robot Server, and unregisters the MBean of this instance.
+	 *
+	 * <p>Requests can still be made after calling this method, but will need to establish new
+	 * connections.  Polling and the MBean are not restarted automatically.</p>
+	 */
+	public void close() {
+		stopPolling();
+		_outputDispatcher.flush(OUTPUT_FLUSH_TIMEOUT);
+		_transport.close();
+		_circuitBreaker.reset();
+		_management.unregister();
+	} // close
+
+	/**
+	 * Enables background polling mode.
+	 *
+	 * <p>While polling, a daemon thread retrieves all of the sensor readings with a single
+	 * {@link #poll()} request every {@code intervalMillis} milliseconds, and the sensor getters
+	 * ({@link #getLightSensors()}, {@link #getObstacleSensors()}, {@link #getAccelerations()},
+	 * {@link #getOrientation()}, {@link #getTemperature()} and the methods derived from them)
+	 * return values from the most recent snapshot without making any request of their own.
+	 * Until the first poll completes, the getters continue to query the server directly.</p>
+	 *
+	 * <p>If polling is already enabled, the polling interval is updated.</p>
+	 *
+	 * @param	intervalMillis	The number of milliseconds between polls.
+	 * @throws	IllegalArgumentException if intervalMillis is not positive.
+	 */
+	public void startPolling(int intervalMillis) {
+		_poller.start(intervalMillis);
+	} // startPolling
+
+	/**
+	 * Enables background polling mode, unless it is already enabled.  Unlike
+	 * {@link #startPolling(int)}, the polling interval is not changed if polling is already
+	 * enabled.  The check and the start are atomic, so a caller which receives {@code true} knows
+	 * that it was responsible for starting polling.
+	 * @param	intervalMillis	The number of milliseconds between polls.
+	 * @return	{@code true} if polling was started, or {@code false} if it was already enabled.
+	 * @throws	IllegalArgumentException if intervalMillis is not positive.
+	 */
+	public boolean startPollingIfStopped(int intervalMillis) {
+		return _poller.startIfStopped(intervalMillis);
+	} // startPollingIfStopped
+
+	/**
+	 * Disables background polling mode.  Subsequent calls to the sensor getters will query the
+	 * server directly.  Has no effect if polling is not enabled.
+	 */
+	public void stopPolling() {
+		_poller.stop();
+		_polledState = null;
+		AccelerometerFilter filter = _accelerometerFilter;
+		if (filter != null)
+			filter.reset();
+	} // stopPolling
+
+	/**
+	 * Determines whether background polling mode is enabled.
+	 * @return	{@code true} if background polling mode is enabled.
+	 */
+	public boolean isPolling() {
+		return _poller.isRunning();
+	} // isPolling
+
+	/**
+	 * Retrieves the background polling interval.
+	 * @return	The number of milliseconds between polls, or 0 if polling is not enabled.
+	 */
+	public int getPollingInterval() {
+		return _poller.getInterval();
+	} // getPollingInterval
+
+	/**
+	 * Retrieves the most recent sensor snapshot obtained by the background poller.
+	 * @return	The most recent sensor snapshot, or null if polling is not enabled or no poll has
+	 *			completed yet.  If the Finch was not connected at the time of the last poll, a
+	 *			snapshot is returned whose getters all return the "not connected" values.
+	 */
+	public FinchSensorState getPolledState() {
+		return _polledState;
+	} // getPolledState
+
+	/**
+	 * Retrieves the most recent polled snapshot for a sensor getter, recording whether the read
+	 * is served from the snapshot when metrics are enabled.
+	 * @return	The most recent polled snapshot, or null if the sensor must be read from the server.
+	 */
+	private FinchSensorState polledState() {
+		FinchSensorState polled = _polledState;
+		if (_metrics.isEnabled())
+			_metrics.recordSensorRead(polled != null);
+		return polled;
+	} // polledState
+
+	/**
+	 * Receives each snapshot obtained by the background poller.
+	 * @param	state	The new snapshot, or null if the Finch was not connected.
+	 */
+	private void publishPolledState(FinchSensorState state) {
+		if (!_poller.isRunning())
+			return;		// Polling stopped while this poll was in progress
+		FinchSensorState polled = (state != null ? state : NOT_CONNECTED);
+		AccelerometerFilter filter = _accelerometerFilter;
+		if (filter != null)
+			polled = filter.update(polled);
+		_polledState = polled;
+		_eventDetector.update(polled);
+		for (Consumer<? super FinchSensorState> consumer : _pollConsumers)
+			consumer.accept(polled);
+	} // publishPolledState
+
+	/**
+	 * Registers a consumer to receive each snapshot obtained by the background poller.  Snapshots
+	 * are delivered on the polling thread, so the consumer must return quickly.
+	 * @param	consumer	The consumer to register.
+	 */
+	void addPollConsumer(Consumer<? super FinchSensorState> consumer) {
+		_pollConsumers.add(consumer);
+	} // addPollConsumer
+
+	/**
+	 * Removes a consumer registered by {@link #addPollConsumer(Consumer)}.
+	 * @param	consumer	The consumer to remove.
+	 */
+	void removePollConsumer(Consumer<? super FinchSensorState> consumer) {
+		_pollConsumers.remove(consumer);
+	} // removePollConsumer
+
+	/**
+	 * Registers a listener to be notified of changes in the sensor readings.
+	 *
+	 * <p>Listeners are driven by background polling.  If polling is not already enabled, it is
+	 * started with an interval of {@link #DEFAULT_LISTENER_POLLING_INTERVAL} milliseconds, so
+	 * changes are reported within one polling interval.</p>
+	 *
+	 * @param	listener	The listener to register.
+	 */
+	public void addSensorListener(FinchSensorListener listener) {
+		addSensorListener(listener, -1);
+	} // addSensorListener
+
+	/**
+	 * Registers a listener to be notified of changes in the sensor readings, including when
+	 * either light sensor reading crosses the specified threshold.
+	 * @param	listener		The listener to register.
+	 * @param	lightThreshold	The light sensor threshold (0 to 255) for
+	 *							{@link FinchSensorListener#lightThresholdCrossed(boolean, int, boolean)}
+	 *							notifications, or a negative value to disable them.
+	 * @see #addSensorListener(FinchSensorListener)
+	 */
+	public synchronized void addSensorListener(FinchSensorListener listener, int lightThreshold) {
+		if (listener == null)
+			throw new IllegalArgumentException("listener cannot be null");
+
+		_eventDetector.addListener(listener, lightThreshold);
+		startPollingIfStopped(DEFAULT_LISTENER_POLLING_INTERVAL);
+	} // addSensorListener
+
+	/**
+	 * Removes a previously registered sensor listener.  Polling is not stopped, even if no
+	 * listeners remain.
+	 * @param	listener	The listener to remove.
+	 */
+	public void removeSensorListener(FinchSensorListener listener) {
+		_eventDetector.removeListener(listener);
+	} // removeSensorListener
+
+	/**
+	 * Installs a filter which smooths the accelerometer readings obtained by the background
+	 * poller, and classifies the orientation locally from the smoothed readings.
+	 *
+	 * <p>While a filter is installed, each polled snapshot is passed through the filter, so
+	 * {@link #getAccelerations()}, the orientation angles, {@link #getOrientation()} and the
+	 * methods derived from them return the filtered values without any request to the server,
+	 * and the orientation does not flicker between two states when the Finch is held near the
+	 * boundary between them.  The filtered values are also used for the sensor listener
+	 * notifications, {@link #getPolledState()} and the snapshots received by poll consumers.
+	 * Polling is started with an interval of {@value #DEFAULT_LISTENER_POLLING_INTERVAL}
+	 * milliseconds if it is not already enabled.</p>
+	 *
+	 * <p>Snapshots obtained by calling {@link #poll()} directly are not filtered.</p>
+	 *
+	 * @param	filter	The filter to install, or null to remove the current filter.
+	 */
+	public synchronized void setAccelerometerFilter(AccelerometerFilter filter) {
+		_accelerometerFilter = filter;
+		if (filter != null)
+			startPollingIfStopped(DEFAULT_LISTENER_POLLING_INTERVAL);
+	} // setAccelerometerFilter
+
+	/**
+	 * Retrieves the filter applied to the accelerometer readings obtained by the background
+	 * poller.
+	 * @return	The installed filter, or null if the readings are not filtered.
+	 * @see		#setAccelerometerFilter(AccelerometerFilter)
+	 */
+	public AccelerometerFilter getAccelerometerFilter() {
+		return _accelerometerFilter;
+	} // getAccelerometerFilter
+
+	/**
+	 * Enables or disables asynchronous outputs.
+	 *
+	 * <p>When enabled, {@link #setWheelVelocities(int, int)}, {@link #setLED(int, int, int)},
+	 * {@link #buzz(int, int)} and the methods derived from them return immediately, and the
+	 * command is sent to the server on a background thread.  If a new command for the same
+	 * output (motors, LED or buzzer) is issued before a previous one has been sent, the previous
+	 * command is discarded and only the newest one is sent.  At most one request per output is in
+	 * progress at a time, so a command is never delayed by more than the request ahead of it.</p>
+	 *
+	 * <p>Commands for different outputs are sent independently, and may reach the Finch in a
+	 * different order than they were issued.</p>
+	 *
+	 * <p>When disabled, any pending commands are sent before this method returns.</p>
+	 *
+	 * @param	enabled	{@code true} to send outputs asynchronously, or {@code false} to block until
+	 *					each command has been processed by the server.
+	 */
+	public void setAsyncOutputs(boolean enabled) {
+		_asyncOutputs = enabled;
+		if (!enabled)
+			_outputDispatcher.flush(OUTPUT_FLUSH_TIMEOUT);
+	} // setAsyncOutputs
+
+	/**
+	 * Determines whether asynchronous outputs are enabled.
+	 * @return	{@code true} if asynchronous outputs are enabled.
+	 */
+	public boolean isAsyncOutputs() {
+		return _asyncOutputs;
+	} // isAsyncOutputs
+
+	/**
+	 * Waits until all pending asynchronous output commands have been sent.
+	 * @param	timeoutMillis	The maximum number of milliseconds to wait.
+	 * @return	{@code true} if all pending commands were sent, or {@code false} if the timeout
+	 *			elapsed first.
+	 */
+	public boolean flushOutputs(int timeoutMillis) {
+		return _outputDispatcher.flush(timeoutMillis);
+	} // flushOutputs
+
+	/**
+	 * Retrieves the dispatcher used to send asynchronous outputs.
+	 * @return	The output dispatcher.
+	 */
+	OutputDispatcher getOutputDispatcher() {
+		return _outputDispatcher;
+	} // getOutputDispatcher
+
 	/**
 	 * Formats an integer as a string.
 	 * Used when constructing service URLs for querying the Bird Brain Robot Server.
 	 * @param	value	The integer value to convert to a string.
 	 * @return	The value formatted as a string.
 	 */
-	private String formatInt(int value) {
+	static String formatInt(int value) {
 		return Integer.toString(value);
 	} // formatInt
 
@@ -107,72 +780,242 @@ public class FinchHTTP
 	 * @param	value	The double value to convert to a string.
 	 * @return	The value formatted as a string.
 	 */
-	private String formatDouble(double value) {
-		return new DecimalFormat("#.##").format(value);
+	static String formatDouble(double value) {
+		return RequestEncoder.formatDouble(value);
 	} // formatDouble
 
 	/**
-	 * Executes an HTTP GET request to the Bird Brain Robot Server.
+	 * Formats a wheel velocity or LED intensity, ranging from -255 to 255, as the percentage
+	 * expected by the Bird Brain Robot Server.  Values in that range are formatted without
+	 * allocating.
+	 * @param	value	The value to convert to a percentage string.
+	 * @return	The percentage formatted as a string, as by {@code formatDouble(value / 2.55)}.
+	 */
+	static String formatScaled(int value) {
+		return RequestEncoder.formatScaled(value);
+	} // formatScaled
+
+	/**
+	 * Executes a request to the Bird Brain Robot Server through the current transport.
+	 *
+	 * <p>Sensor reads (requests without arguments for {@code poll} or a {@code finch/in/} path)
+	 * issued by several threads at the same time are coalesced.  A thread which requests a sensor
+	 * while an identical request is already in flight waits for that request to complete and
+	 * receives the same response, so the load on the server grows with the number of distinct
+	 * sensors read rather than with the number of callers.</p>
+	 *
 	 * @param	path	Relative path from the server root URL of the service to request
 	 * @param	args	Array of arguments for the request.  Each argument in this array is appended
 	 * 					to the request URL separated by slashes.
 	 * @return	The response returned by the server on success.  Returns the string {@code "null"} if
-	 *			a connection could not be established to the specified server.
+	 *			the request failed.
+	 * @see		#sendRequest(String, String...)
 	 */
 	private String httpGET(String path, String... args) {
-		//System.out.println("httpGET: path="+ path +" args="+ (args == null ? "null" : Arrays.toString(args)));
-
-		String utf8 = java.nio.charset.StandardCharsets.UTF_8.name();
-		String baseURL = getServerBaseURL();
-		String fullURL = baseURL + (baseURL.endsWith("/") ? "" : "/") + path;
-		for (int i = 0; i < args.length; ++i) {
-			String arg = "?";
-			try {
-				arg = URLEncoder.encode(args[i], utf8);
-			} catch (UnsupportedEncodingException e) {
-				throw new RuntimeException("Unexpected Exception", e);
-			}
-
-			fullURL = fullURL + (fullURL.endsWith("/") ? "" : "/") + arg;
-		}
+		if (((args == null) || (args.length == 0)) && isReadPath(path))
+			return _readFlights.execute(path, _readRequest);
+		return sendRequest(path, args);
+	} // httpGET
 
-		URL url;
-		try {
-			url = new URL(fullURL);
-		} catch (MalformedURLException e) {
-			throw new RuntimeException("Unexpected Exception", e);
-		}
+	/**
+	 * Determines whether a service path is a sensor read, which has no side-effects and may be
+	 * shared between callers.
+	 */
+	private static boolean isReadPath(String path) {
+		return path.startsWith("finch/in/") || path.equals("poll");
+	} // isReadPath
+
+	/**
+	 * Sends a request to the Bird Brain Robot Server through the current transport.
+	 * @param	path	Relative path from the server root URL of the service to request
+	 * @param	args	Array of arguments for the request.  Each argument in this array is appended
+	 * 					to the request URL separated by slashes.
+	 * @return	The response returned by the server on success.  Returns the string {@code "null"} if
+	 *			a connection could not be established to the specified server, the server did not
+	 *			respond in time or responded with an error, or the circuit breaker is open.
+	 */
+	private String sendRequest(String path, String... args) {
+		String response = exchange(path, args, null, null);
+		return (response == null ? "null" : response);
+	} // sendRequest
+
+	/**
+	 * Sends several output requests to the Bird Brain Robot Server together through the current
+	 * transport.
+	 * @param	requests	The requests to send.
+	 * @return	The responses returned by the server, in the order of the requests.  Each response
+	 *			is the string {@code "null"} if the request failed, as for
+	 *			{@link #sendRequest(String, String...)}.
+	 */
+	private String[] sendBatch(FinchRequest... requests) {
+		String[] responses = new String[requests.length];
+		Arrays.fill(responses, "null");
+		exchange(BATCH_PATH, null, requests, responses);
+		return responses;
+	} // sendBatch
 
+	/**
+	 * Sends either a single request or a batch of requests through the current transport, subject
+	 * to the circuit breaker, and records the exchange in the metrics and as a Flight Recorder
+	 * event.  Connection failures and timeouts are reported and counted by the circuit breaker.
+	 * @param	path		The path of the single request, or {@link #BATCH_PATH} for a batch.
+	 * @param	args		The arguments of the single request, or null for a batch.
+	 * @param	batch		The requests of the batch, or null to send a single request.
+	 * @param	responses	For a batch, receives the response to each request which succeeded.
+	 * @return	The response to the single request, or all of the responses to the batch separated
+	 *			by line breaks.  Returns null if any request failed or the circuit breaker is open.
+	 */
+	private String exchange(String path, String[] args, FinchRequest[] batch, String[] responses) {
+		FinchTransport transport = _transport;
+		CircuitBreaker breaker = _circuitBreaker;
+		if (!breaker.allowRequest())
+			return null;
+
+		_metrics.countRequest();
+		boolean measure = _metrics.isEnabled();
+		long start = (measure ? System.nanoTime() : 0);
+		Object event = FinchEvents.beginHttp();
+		int status = FinchEvents.STATUS_FAILED;
 		String response = null;
 		try {
-			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestProperty("Accept-Charset", utf8);
-
-			int httpStatus = connection.getResponseCode();
-			if (httpStatus == 200) {
-				BufferedReader responseReader = new BufferedReader(new InputStreamReader(connection.getInputStream(), utf8));
-				// Return response stream contents
-				response = responseReader.readLine();
-			} else {
-				System.out.println("Unexpected HTTP status received: "+ httpStatus +": "+ connection.getResponseMessage());
-				BufferedReader errorReader = new BufferedReader(new InputStreamReader(connection.getErrorStream(), utf8));
-				if (errorReader != null) {
-					// Echo error stream contents...
-					String err;
-					while ((err = errorReader.readLine()) != null) {
-						System.out.println(err);
-					}
-				}
-			}
+			if (batch == null)
+				response = transport.request(path, args);
+			else
+				response = collect(transport.batch(batch), responses);
+			breaker.recordSuccess();
+			if (response != null)
+				status = FinchEvents.STATUS_OK;
+			return response;
 		} catch (ConnectException e) {
-			System.out.println("WARNING: Unable to connect to Bird Brain Robot Server at "+ baseURL);
-			response = "null";
+			status = FinchEvents.STATUS_UNREACHABLE;
+			System.out.println("WARNING: Unable to connect to Bird Brain Robot Server at "+ transport.getLocation());
+			breaker.recordFailure();
+			return null;
+		} catch (SocketTimeoutException e) {
+			status = FinchEvents.STATUS_UNREACHABLE;
+			System.out.println("WARNING: Timed out waiting for Bird Brain Robot Server at "+ transport.getLocation());
+			breaker.recordFailure();
+			return null;
 		} catch (IOException e) {
 			throw new RuntimeException("Unexpected Exception", e);
+		} finally {
+			if (measure)
+				_metrics.record(path, System.nanoTime() - start, response);
+			FinchEvents.commitHttp(event, path, status, response);
 		}
+	} // exchange
 
-		return response;
-	} // httpGET
+	/**
+	 * Copies the responses to a batch which succeeded.
+	 * @param	received	The responses returned by the transport, null where a request failed.
+	 * @param	responses	Receives the response to each request which succeeded.
+	 * @return	All of the responses separated by line breaks, or null if any request failed.
+	 */
+	private static String collect(String[] received, String[] responses) {
+		boolean ok = true;
+		for (int i = 0; i < responses.length; ++i) {
+			if (received[i] != null)
+				responses[i] = received[i];
+			else
+				ok = false;
+		}
+		return (ok ? String.join("\n", responses) : null);
+	} // collect
+
+	/**
+	 * Retrieves the number of sensor reads which shared the response of an identical request
+	 * issued concurrently by another thread, instead of making a request of their own.
+	 * @return	The number of coalesced sensor reads.
+	 */
+	public long getCoalescedReadCount() {
+		return _readFlights.getSharedCount();
+	} // getCoalescedReadCount
+
+	/**
+	 * Retrieves the request statistics of this instance.  Recording is disabled by default; call
+	 * {@code getMetrics().setEnabled(true)} to enable it.
+	 * @return	The request statistics.
+	 */
+	public FinchMetrics getMetrics() {
+		return _metrics;
+	} // getMetrics
+
+	/**
+	 * Sends an output command with two arguments to the Bird Brain Robot Server, either
+	 * immediately or through the output dispatcher if asynchronous outputs are enabled.  A command
+	 * sent immediately reuses the calling thread's argument array instead of allocating one.
+	 * @param	slot	The output dispatcher slot of the output being set.
+	 * @param	path	Relative path from the server root URL of the service to request
+	 * @param	arg0	The first argument for the request.
+	 * @param	arg1	The second argument for the request.
+	 */
+	private void sendOutput(int slot, String path, String arg0, String arg1) {
+		if (_asyncOutputs) {
+			_outputDispatcher.submit(slot, FinchRequest.of(path, arg0, arg1));
+		} else {
+			String[] args = OUTPUT_ARGS.get()[2];
+			args[0] = arg0;
+			args[1] = arg1;
+			validateOutResult(httpGET(path, args));
+		}
+	} // sendOutput
+
+	/**
+	 * Sends an output command with three arguments to the Bird Brain Robot Server, either
+	 * immediately or through the output dispatcher if asynchronous outputs are enabled.
+	 * @param	slot	The output dispatcher slot of the output being set.
+	 * @param	path	Relative path from the server root URL of the service to request
+	 * @param	arg0	The first argument for the request.
+	 * @param	arg1	The second argument for the request.
+	 * @param	arg2	The third argument for the request.
+	 * @see		#sendOutput(int, String, String, String)
+	 */
+	private void sendOutput(int slot, String path, String arg0, String arg1, String arg2) {
+		if (_asyncOutputs) {
+			_outputDispatcher.submit(slot, FinchRequest.of(path, arg0, arg1, arg2));
+		} else {
+			String[] args = OUTPUT_ARGS.get()[3];
+			args[0] = arg0;
+			args[1] = arg1;
+			args[2] = arg2;
+			validateOutResult(httpGET(path, args));
+		}
+	} // sendOutput
+
+	/**
+	 * Creates a new, empty, batch of output commands, which are sent to the Bird Brain Robot
+	 * Server together when the batch is submitted.  For example:
+	 *
+	 * <pre>
+	 * finch.batch().led(255, 0, 0).motor(100, 100).buzz(440, 250).submit();
+	 * </pre>
+	 *
+	 * <p>The commands in a batch are pipelined over a single connection, so setting several
+	 * outputs takes about one round-trip to the server instead of one round-trip per output.</p>
+	 *
+	 * @return	A new batch.
+	 */
+	public FinchBatch batch() {
+		return new FinchBatch(this);
+	} // batch
+
+	/**
+	 * Sends the output commands of a batch, either together or through the output dispatcher if
+	 * asynchronous outputs are enabled.
+	 * @param	slots		The output dispatcher slot of each command.
+	 * @param	requests	The commands.
+	 */
+	void submitBatch(int[] slots, FinchRequest[] requests) {
+		if (_asyncOutputs) {
+			for (int i = 0; i < requests.length; ++i)
+				_outputDispatcher.submit(slots[i], requests[i]);
+		} else if (requests.length == 1) {
+			validateOutResult(sendRequest(requests[0].getPath(), requests[0].args()));
+		} else if (requests.length > 1) {
+			for (String result : sendBatch(requests))
+				validateOutResult(result);
+		}
+	} // submitBatch
 
 	/**
 	 * Validates the response received from the Bird Brain Robot Server as a result of an "out" query.
@@ -191,6 +1034,10 @@ public class FinchHTTP
 	 *			status data for an attached Finch, otherwise returns {@code false}.
 	 */
 	public boolean isConnected() {
+		FinchSensorState polled = polledState();
+		if (polled != null)
+			return (polled != NOT_CONNECTED);
+
 		// The server will return 'null' for the sensor inputs if finch is not connected
 		return !("null".equals(httpGET("finch/in/lights")));
 	} // isConnected
@@ -209,9 +1056,35 @@ public class FinchHTTP
 	 * @param	duration	Duration in milliseconds of the tone
 	 */
 	public void buzz(int frequency, int duration) {
-		validateOutResult(httpGET("finch/out/buzzer", formatInt(frequency), formatInt(duration)));
+		recordOutput(OutputDispatcher.BUZZER, frequency, duration, 0);
+		sendOutput(OutputDispatcher.BUZZER, "finch/out/buzzer", formatInt(frequency), formatInt(duration));
 	} // buzz
 
+	/**
+	 * Stops any tone currently playing on the Finch's internal buzzer, and plays a new tone.
+	 *
+	 * <p>The Finch ignores a new tone requested while a tone is already playing, but a tone with
+	 * a duration of 0 stops the current tone and allows a new tone to be set immediately.  The
+	 * two commands are sent together, and if asynchronous outputs are enabled they are submitted
+	 * to the output dispatcher as a unit, so the stop command cannot be replaced by the new tone
+	 * before it is sent.</p>
+	 *
+	 * @param	frequency	Frequency in Hertz of the tone to be played
+	 * @param	duration	Duration in milliseconds of the tone
+	 */
+	void restartBuzzer(int frequency, int duration) {
+		recordOutput(OutputDispatcher.BUZZER, 0, 0, 0);
+		recordOutput(OutputDispatcher.BUZZER, frequency, duration, 0);
+
+		FinchRequest tone = FinchRequest.of("finch/out/buzzer", formatInt(frequency), formatInt(duration));
+		if (_asyncOutputs) {
+			_outputDispatcher.submit(OutputDispatcher.BUZZER, STOP_BUZZER, tone);
+		} else {
+			for (String result : sendBatch(STOP_BUZZER, tone))
+				validateOutResult(result);
+		}
+	} // restartBuzzer
+
 	/**
 	 * Plays a tone at the specified frequency for the specified duration on the Finch's
 	 * internal buzzer, and blocks until complete.
@@ -334,6 +1207,10 @@ public class FinchHTTP
 	 * {@inheritDoc}
 	 */
 	public int[] getLightSensors() {
+		FinchSensorState polled = polledState();
+		if (polled != null)
+			return polled.getLightSensors();
+
 		String[] lights = httpGET("finch/in/lights").split(" ");
 
 		if ("null".equals(lights[0]))
@@ -353,6 +1230,10 @@ public class FinchHTTP
 	 * {@inheritDoc}
 	 */
 	public boolean[] getObstacleSensors() {
+		FinchSensorState polled = polledState();
+		if (polled != null)
+			return polled.getObstacleSensors();
+
 		String[] obstacles = httpGET("finch/in/obstacles").split(" ");
 		if ("null".equals(obstacles[0]))
 			return null;
@@ -407,12 +1288,12 @@ public class FinchHTTP
 	 * @param	rightVelocity	The velocity at which to move the right wheel
 	 */
 	public void setWheelVelocities(int leftVelocity, int rightVelocity) {
-		validateOutResult(
-			httpGET(
-				"finch/out/motor",
-				formatDouble(leftVelocity / 2.55),
-				formatDouble(rightVelocity / 2.55)
-			)
+		recordOutput(OutputDispatcher.MOTOR, leftVelocity, rightVelocity, 0);
+		sendOutput(
+			OutputDispatcher.MOTOR,
+			"finch/out/motor",
+			formatScaled(leftVelocity),
+			formatScaled(rightVelocity)
 		);
 	} // setWheelVelocities
 
@@ -455,13 +1336,13 @@ public class FinchHTTP
 	 * @param	blue	sets the intensity of the blue element of the LED
 	 */
 	public void setLED(int red, int green, int blue) {
-		validateOutResult(
-			httpGET(
-				"finch/out/led",
-				formatDouble(red / 2.55),
-				formatDouble(green / 2.55),
-				formatDouble(blue / 2.55)
-			)
+		recordOutput(OutputDispatcher.LED, red, green, blue);
+		sendOutput(
+			OutputDispatcher.LED,
+			"finch/out/led",
+			formatScaled(red),
+			formatScaled(green),
+			formatScaled(blue)
 		);
 	} // setLED
 
@@ -488,6 +1369,10 @@ public class FinchHTTP
 	 * {@inheritDoc}
 	 */
 	public double[] getAccelerations() {
+		FinchSensorState polled = polledState();
+		if (polled != null)
+			return polled.getAccelerations();
+
 		String[] accelerations = httpGET("finch/in/accelerations").split(" ");
 		if ("null".equals(accelerations[0]))
 			return null;
@@ -507,6 +1392,10 @@ public class FinchHTTP
 	 * {@inheritDoc}
 	 */
 	public String getOrientation() {
+		FinchSensorState polled = polledState();
+		if (polled != null)
+			return polled.getOrientation();
+
 		String result = httpGET("finch/in/orientation");
 		return ("null".equals(result)
 				? null
@@ -527,13 +1416,23 @@ public class FinchHTTP
 			throw new RuntimeException("Server returned invalid response (NumberFormatException)");
 		}
 
-		boolean shaken = (time > lastShakenTime);
-
-		lastShakenTime = time;
-
-		return shaken;
+		return (time > lastShakenTime.getAndSet(time));
 	} // isShaken
 
+	/**
+	 * Retrieves the time of the last shake or tap event, for detecting events without affecting
+	 * the results of {@link #isShaken()} and {@link #isTapped()}.
+	 * @param	path	The service path of the event time.
+	 * @return	The time of the last event, or -1 if it could not be retrieved.
+	 */
+	private long getLastEventTime(String path) {
+		try {
+			return Long.parseLong(httpGET(path));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	} // getLastEventTime
+
 	/**
 	 * Returns {@code true} if the Finch has been tapped since the last call to the method.
 	 * @return	{@code true} if the Finch is connected and was recently tapped
@@ -548,17 +1447,17 @@ public class FinchHTTP
 			throw new RuntimeException("Server returned invalid response (NumberFormatException)");
 		}
 
-		boolean tapped = (time > lastTappedTime);
-
-		lastTappedTime = time;
-
-		return tapped;
+		return (time > lastTappedTime.getAndSet(time));
 	} // isTapped
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public double getTemperature() {
+		FinchSensorState polled = polledState();
+		if (polled != null)
+			return polled.getTemperature();
+
 		try {
 			String response = httpGET("finch/in/temperature");
 			if (!"null".equals(response))
@@ -570,114 +1469,144 @@ public class FinchHTTP
 		}
 	} // getTemperature
 
-	private static class FinchState
-		implements FinchSensorState
-	{
-		private double temperature;
-		private int[] lightSensors;
-		private boolean[] obstacles;
-		private double[] accelerations;
-		private String orientation;
-
-		public double getTemperature() { return temperature; }
-		public int[] getLightSensors() { return lightSensors; }
-		public boolean[] getObstacleSensors() { return obstacles; }
-		public double[] getAccelerations() { return accelerations; }
-		public String getOrientation() { return orientation; }
-
-		public FinchState(
-			double temperature, int[] lightSensors, boolean[] obstacles,
-			String orientation, double[] accelerations
-		) {
-			this.temperature = temperature;
-			this.lightSensors = lightSensors;
-			this.obstacles = obstacles;
-			this.orientation = orientation;
-			this.accelerations = accelerations;
-		} // FinchState
-
-	} // class FinchState
+	/**
+	 * Snapshot representing a Finch which is not connected.
+	 */
+	private static final FinchSensorSnapshot NOT_CONNECTED = new FinchSensorSnapshot();
 
 	/**
 	 * Polls all of the Finch sensor data in one request to the server.
-	 * @return	A FinchSensorState instance containing the sensor readings, or null if not connected.
+	 * @return	A FinchSensorSnapshot containing the sensor readings, or null if not connected.
 	 */
-	public FinchSensorState poll() {
-		String result = httpGET("poll");
+	public FinchSensorSnapshot poll() {
+		FinchSensorSnapshot snapshot = new FinchSensorSnapshot();
+		return (poll(snapshot) ? snapshot : null);
+	} // poll
 
-		if (result == null || "null".equals(result))
-			return null;
+	/**
+	 * Polls all of the Finch sensor data in one request to the server, storing the readings into
+	 * an existing snapshot.  Reusing a snapshot avoids allocating new objects for each poll, which
+	 * is useful when polling at a high rate.
+	 * @param	into	The snapshot to store the sensor readings into.  If the Finch is not
+	 *					connected, the snapshot is reset to the "not connected" values.
+	 * @return	Returns {@code true} if the sensor readings were retrieved, or {@code false} if the
+	 *			Finch is not connected.
+	 */
+	public boolean poll(FinchSensorSnapshot into) {
+		String response = httpGET("poll");
+		Object event = FinchEvents.beginPollParse();
+		boolean connected = PollParser.parse(response, into);
+		FinchEvents.commitPollParse(event, response, connected);
+
+		TelemetryRecorder recorder = _telemetryRecorder;
+		if (recorder != null)
+			recorder.recordPoll(into);
+		if (!connected)
+			return false;
 
-		if (result.startsWith("_problem ")) {
-			// Some sort of problem occurred
-			String message = result.substring("_problem ".length());
+		SensorHistory history = _sensorHistory;
+		if (history != null)
+			history.add(SensorHistory.now(), into);
+		return true;
+	} // poll
 
-			// TODO: Should we throw an exception or provide a way to read the problem message?
+	/**
+	 * Retrieves the history of sensor readings obtained by {@link #poll()}.
+	 *
+	 * <p>Each successful poll, including those made by the background poller, adds a sample to
+	 * the history.  The history can be used to obtain smoothed readings (for example, the mean
+	 * of the last several light sensor readings) without additional requests to the server.</p>
+	 *
+	 * @return	The sensor history, or null if the history has been disabled.
+	 */
+	public SensorHistory getSensorHistory() {
+		return _sensorHistory;
+	} // getSensorHistory
 
-			return null;
-		}
+	/**
+	 * Replaces the history of sensor readings obtained by {@link #poll()}.  By default, a
+	 * history with {@link SensorHistory#DEFAULT_CAPACITY} samples is used.
+	 * @param	history	The new sensor history, or null to disable recording the history.
+	 */
+	public void setSensorHistory(SensorHistory history) {
+		_sensorHistory = history;
+	} // setSensorHistory
 
-		double temperature = 0;
-		int[] lightSensors = new int[2];
-		boolean[] obstacles = new boolean[2];
-		String orientation = "";
-		double[] accelerations = new double[3];
-
-		String[] lines = result.split("(?:\r\n|\n|\r)+");
-		for (String line : lines) {
-			String[] pieces = line.split("\\s+");
-			switch (pieces[0]) {
-			case "temperature":
-				temperature = Double.parseDouble(pieces[1]);
-				break;
-			case "leftLight":
-				lightSensors[0] = (int)(Double.parseDouble(pieces[1]) * 2.55);
-				break;
-			case "rightLight":
-				lightSensors[1] = (int)(Double.parseDouble(pieces[1]) * 2.55);
-				break;
-			case "leftObstacle":
-				obstacles[0] = "true".equals(pieces[1]);
-				break;
-			case "rightObstacle":
-				obstacles[1] = "true".equals(pieces[1]);
-				break;
-			case "orientation":
-				orientation = pieces[1].replace('_', ' ');
-				break;
-			case "XAcceleration":
-				accelerations[0] = Double.parseDouble(pieces[1]);
-				break;
-			case "YAcceleration":
-				accelerations[1] = Double.parseDouble(pieces[1]);
-				break;
-			case "ZAcceleration":
-				accelerations[2] = Double.parseDouble(pieces[1]);
-				break;
-			}
-		} // for
-
-		return new FinchState(temperature, lightSensors, obstacles, orientation, accelerations);
-	} // poll
+	/**
+	 * Retrieves the recorder which records the polls and output commands.
+	 * @return	The telemetry recorder, or null if telemetry is not being recorded.
+	 */
+	public TelemetryRecorder getTelemetryRecorder() {
+		return _telemetryRecorder;
+	} // getTelemetryRecorder
+
+	/**
+	 * Installs a recorder which records every {@link #poll()}, including those made by the
+	 * background poller and those which find no Finch, and every motor, LED and buzzer command,
+	 * including those sent in a {@link FinchBatch}.  Commands are recorded when they are issued,
+	 * before they are sent to the server.  Recording does not block the calling thread.
+	 *
+	 * <p>The recorder is not closed when it is replaced or removed.</p>
+	 *
+	 * @param	recorder	The recorder to install, or null to stop recording.
+	 */
+	public void setTelemetryRecorder(TelemetryRecorder recorder) {
+		_telemetryRecorder = recorder;
+	} // setTelemetryRecorder
+
+	/**
+	 * Records an output command with the telemetry recorder, if one is installed.
+	 * @param	slot	The output dispatcher slot of the command, which identifies its type.
+	 * @param	a		The first argument of the command.
+	 * @param	b		The second argument of the command.
+	 * @param	c		The third argument of the command, or 0.
+	 */
+	void recordOutput(int slot, int a, int b, int c) {
+		TelemetryRecorder recorder = _telemetryRecorder;
+		if (recorder == null)
+			return;
+
+		switch (slot) {
+		case OutputDispatcher.MOTOR:
+			recorder.recordMotor(a, b);
+			break;
+		case OutputDispatcher.LED:
+			recorder.recordLED(a, b, c);
+			break;
+		case OutputDispatcher.BUZZER:
+			recorder.recordBuzzer(a, b);
+			break;
+		}
+	} // recordOutput
 
 	/**
 	 * Turns off all motors, servos, and LEDs on the connected Finch.
 	 */
 	public void reset() {
+		// Discard pending outputs, and wait for any already being sent, so they are not applied
+		// after the reset
+		_outputDispatcher.cancel();
+		_outputDispatcher.flush(OUTPUT_FLUSH_TIMEOUT);
 		httpGET("reset_all");
 	} // reset()
 
 	/**
 	 * Retrieves a brief status report string containing the current status of the Finch.
+	 *
+	 * <p>All of the readings in the report are obtained with a single {@link #poll()} request,
+	 * or from the most recent snapshot if polling is enabled.</p>
+	 *
 	 * @return	A brief status report string containing the current status of the Finch.
 	 */
 	public String getStatusReport() {
-		boolean connected = isConnected();
+		FinchSensorState state = polledState();
+		if (state == null)
+			state = poll();
 
-		if (!connected)
+		if ((state == null) || (state == NOT_CONNECTED))
 			return "Finch NOT CONNECTED at "+ getServerBaseURL();
 
-		return "Finch Connected at "+ getServerBaseURL() +":\n"+ FinchSensorState.super.getStatusReport();
+		return "Finch Connected at "+ getServerBaseURL() +":\n"+ state.getStatusReport();
 	} // getStatusReport
 
 } // FinchHTTP
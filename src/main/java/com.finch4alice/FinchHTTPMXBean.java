@@ -0,0 +1,220 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.Map;
+
+/**
+ * JMX management interface of a {@link FinchHTTP} instance.
+ *
+ * <p>Each FinchHTTP instance obtained from {@link FinchRegistry}, or registered with
+ * {@link FinchHTTP#registerMBean()}, registers an MXBean implementing this interface with the
+ * platform MBeanServer, under the name {@code com.finch4alice:type=FinchHTTP,id=<n>}.  It can be
+ * used to monitor and tune a running client with a JMX console such as JConsole or VisualVM.</p>
+ *
+ * <p>Request statistics (counts, latencies and the snapshot hit ratio) are only collected while
+ * {@link #isMetricsEnabled() metrics are enabled}.  The request rate is always collected.</p>
+ */
+public interface FinchHTTPMXBean {
+
+	/**
+	 * @return	The location of the Bird Brain Robot Server, as reported by the transport.
+	 * @see		FinchHTTP#getServerBaseURL()
+	 */
+	public String getServerURL();
+
+	/**
+	 * @return	Whether a Finch is connected.  If polling is enabled, this is determined from the
+	 *			most recent poll, otherwise a request is made to the server.
+	 * @see		FinchHTTP#isConnected()
+	 */
+	public boolean isConnected();
+
+	/**
+	 * @return	Whether background polling is enabled.
+	 */
+	public boolean isPolling();
+
+	/**
+	 * @return	The number of milliseconds between polls, or 0 if polling is disabled.
+	 */
+	public int getPollingInterval();
+
+	/**
+	 * @param	intervalMillis	The number of milliseconds between polls, or 0 to disable polling.
+	 */
+	public void setPollingInterval(int intervalMillis);
+
+	/**
+	 * @return	The maximum number of idle keep-alive connections retained for reuse.
+	 */
+	public int getConnectionPoolSize();
+
+	/**
+	 * @param	size	The maximum number of idle keep-alive connections retained for reuse.
+	 */
+	public void setConnectionPoolSize(int size);
+
+	/**
+	 * @return	The number of milliseconds an idle keep-alive connection is retained.
+	 */
+	public int getConnectionIdleTimeout();
+
+	/**
+	 * @param	timeout	The number of milliseconds an idle keep-alive connection is retained.
+	 */
+	public void setConnectionIdleTimeout(int timeout);
+
+	/**
+	 * @return	The number of milliseconds to wait for a connection to be established.
+	 */
+	public int getConnectTimeout();
+
+	/**
+	 * @param	timeout	The number of milliseconds to wait for a connection to be established, or
+	 *					0 to wait indefinitely.
+	 */
+	public void setConnectTimeout(int timeout);
+
+	/**
+	 * @return	The number of milliseconds to wait for a response from the server.
+	 */
+	public int getReadTimeout();
+
+	/**
+	 * @param	timeout	The number of milliseconds to wait for a response from the server, or 0
+	 *					to wait indefinitely.
+	 */
+	public void setReadTimeout(int timeout);
+
+	/**
+	 * @return	Whether requests are failing fast because the server is not responding.
+	 * @see		FinchHTTP#isCircuitOpen()
+	 */
+	public boolean isCircuitOpen();
+
+	/**
+	 * @return	The number of consecutive failed requests which open the circuit breaker, or 0 if
+	 *			the circuit breaker is disabled.
+	 */
+	public int getFailureThreshold();
+
+	/**
+	 * @param	threshold	The number of consecutive failed requests which open the circuit
+	 *						breaker, or 0 to disable the circuit breaker.
+	 */
+	public void setFailureThreshold(int threshold);
+
+	/**
+	 * @return	The number of milliseconds between probes of the server while the circuit breaker
+	 *			is open.
+	 */
+	public int getProbeInterval();
+
+	/**
+	 * @param	intervalMillis	The number of milliseconds between probes of the server while the
+	 *							circuit breaker is open.
+	 */
+	public void setProbeInterval(int intervalMillis);
+
+	/**
+	 * @return	The number of times the circuit breaker has opened.
+	 */
+	public int getCircuitOpenCount();
+
+	/**
+	 * @return	The number of requests which failed fast while the circuit breaker was open.
+	 */
+	public long getRejectedRequestCount();
+
+	/**
+	 * @return	Whether motor, LED and buzzer commands are sent asynchronously and coalesced.
+	 */
+	public boolean isAsyncOutputs();
+
+	/**
+	 * @param	enabled	Whether motor, LED and buzzer commands are sent asynchronously and
+	 *					coalesced.
+	 */
+	public void setAsyncOutputs(boolean enabled);
+
+	/**
+	 * @return	The number of asynchronous output commands waiting to be sent.
+	 */
+	public int getPendingOutputCount();
+
+	/**
+	 * @return	The total number of asynchronous output commands submitted.
+	 */
+	public long getSubmittedOutputCount();
+
+	/**
+	 * @return	The number of asynchronous output commands replaced by a newer command before
+	 *			being sent.
+	 */
+	public long getCoalescedOutputCount();
+
+	/**
+	 * @return	The number of sensor reads which shared the response of an identical concurrent
+	 *			request.
+	 */
+	public long getCoalescedReadCount();
+
+	/**
+	 * @return	Whether request statistics are being recorded.
+	 */
+	public boolean isMetricsEnabled();
+
+	/**
+	 * @param	enabled	Whether request statistics are recorded.
+	 */
+	public void setMetricsEnabled(boolean enabled);
+
+	/**
+	 * @return	The total number of requests recorded.
+	 */
+	public long getRequestCount();
+
+	/**
+	 * @return	The total number of failed requests recorded.
+	 */
+	public long getErrorCount();
+
+	/**
+	 * @return	The number of requests per second, averaged over the last
+	 *			{@value FinchMetrics#RATE_WINDOW_SECONDS} seconds.
+	 * @see		FinchMetrics#getRequestRate()
+	 */
+	public double getRequestRate();
+
+	/**
+	 * @return	The median request latency of each endpoint, in microseconds.
+	 */
+	public Map<String, Double> getLatencyP50();
+
+	/**
+	 * @return	The 99th percentile request latency of each endpoint, in microseconds.
+	 */
+	public Map<String, Double> getLatencyP99();
+
+	/**
+	 * @return	The fraction of sensor reads served from the most recent polled snapshot, rather
+	 *			than by a request to the server, from 0.0 to 1.0.  NaN if no reads were recorded.
+	 */
+	public double getSnapshotHitRatio();
+
+	/**
+	 * Discards all recorded request statistics.
+	 */
+	public void resetMetrics();
+
+	/**
+	 * @return	A table of the recorded request statistics.
+	 */
+	public String dumpMetrics();
+
+} // interface FinchHTTPMXBean
@@ -0,0 +1,251 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Implementation of the {@link FinchHTTPMXBean} management interface, and its registration with
+ * the platform MBeanServer.
+ *
+ * <p>Registration can be disabled by setting the system property
+ * {@value #JMX_PROPERTY} to {@code false}.</p>
+ */
+class FinchHTTPManagement
+	implements FinchHTTPMXBean
+{
+
+	/**
+	 * System property which disables MBean registration when set to {@code false}.
+	 */
+	static final String JMX_PROPERTY = "finch4alice.jmx";
+
+	/**
+	 * Domain and type of the registered MBean names.
+	 */
+	static final String OBJECT_NAME_PREFIX = "com.finch4alice:type=FinchHTTP,id=";
+
+	/**
+	 * Source of the unique ids used in the MBean names.
+	 */
+	private static final AtomicInteger nextId = new AtomicInteger(1);
+
+	private final FinchHTTP finch;
+
+	private ObjectName objectName;
+
+	/**
+	 * Constructs a new FinchHTTPManagement instance.
+	 * @param	finch	The instance to manage.
+	 */
+	FinchHTTPManagement(FinchHTTP finch) {
+		this.finch = finch;
+	} // FinchHTTPManagement
+
+	/**
+	 * Registers this MBean with the platform MBeanServer, unless disabled by the
+	 * {@value #JMX_PROPERTY} system property.  Failures are reported, but do not prevent the
+	 * FinchHTTP instance from being used.
+	 */
+	synchronized void register() {
+		if ((objectName != null) || "false".equalsIgnoreCase(System.getProperty(JMX_PROPERTY)))
+			return;
+
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME_PREFIX + nextId.getAndIncrement());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			objectName = name;
+		} catch (JMException | SecurityException e) {
+			System.out.println("WARNING: Unable to register Finch MBean: "+ e);
+		}
+	} // register
+
+	/**
+	 * Unregisters this MBean from the platform MBeanServer, if registered.
+	 */
+	synchronized void unregister() {
+		if (objectName == null)
+			return;
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException | SecurityException e) {
+			System.out.println("WARNING: Unable to unregister Finch MBean: "+ e);
+		}
+		objectName = null;
+	} // unregister
+
+	/**
+	 * Retrieves the name this MBean is registered under.
+	 * @return	The registered name, or null if not registered.
+	 */
+	synchronized ObjectName getObjectName() {
+		return objectName;
+	} // getObjectName
+
+	public String getServerURL() {
+		return finch.getServerBaseURL();
+	} // getServerURL
+
+	public boolean isConnected() {
+		return finch.isConnected();
+	} // isConnected
+
+	public boolean isPolling() {
+		return finch.isPolling();
+	} // isPolling
+
+	public int getPollingInterval() {
+		return finch.getPollingInterval();
+	} // getPollingInterval
+
+	public void setPollingInterval(int intervalMillis) {
+		if (intervalMillis > 0)
+			finch.startPolling(intervalMillis);
+		else
+			finch.stopPolling();
+	} // setPollingInterval
+
+	public int getConnectionPoolSize() {
+		return finch.getConnectionPoolSize();
+	} // getConnectionPoolSize
+
+	public void setConnectionPoolSize(int size) {
+		finch.setConnectionPoolSize(size);
+	} // setConnectionPoolSize
+
+	public int getConnectionIdleTimeout() {
+		return finch.getConnectionIdleTimeout();
+	} // getConnectionIdleTimeout
+
+	public void setConnectionIdleTimeout(int timeout) {
+		finch.setConnectionIdleTimeout(timeout);
+	} // setConnectionIdleTimeout
+
+	public int getConnectTimeout() {
+		return finch.getConnectTimeout();
+	} // getConnectTimeout
+
+	public void setConnectTimeout(int timeout) {
+		finch.setConnectTimeout(timeout);
+	} // setConnectTimeout
+
+	public int getReadTimeout() {
+		return finch.getReadTimeout();
+	} // getReadTimeout
+
+	public void setReadTimeout(int timeout) {
+		finch.setReadTimeout(timeout);
+	} // setReadTimeout
+
+	public boolean isCircuitOpen() {
+		return finch.isCircuitOpen();
+	} // isCircuitOpen
+
+	public int getFailureThreshold() {
+		return finch.getFailureThreshold();
+	} // getFailureThreshold
+
+	public void setFailureThreshold(int threshold) {
+		finch.setFailureThreshold(threshold);
+	} // setFailureThreshold
+
+	public int getProbeInterval() {
+		return finch.getProbeInterval();
+	} // getProbeInterval
+
+	public void setProbeInterval(int intervalMillis) {
+		finch.setProbeInterval(intervalMillis);
+	} // setProbeInterval
+
+	public int getCircuitOpenCount() {
+		return finch.getCircuitBreaker().getOpenCount();
+	} // getCircuitOpenCount
+
+	public long getRejectedRequestCount() {
+		return finch.getCircuitBreaker().getRejectedCount();
+	} // getRejectedRequestCount
+
+	public boolean isAsyncOutputs() {
+		return finch.isAsyncOutputs();
+	} // isAsyncOutputs
+
+	public void setAsyncOutputs(boolean enabled) {
+		finch.setAsyncOutputs(enabled);
+	} // setAsyncOutputs
+
+	public int getPendingOutputCount() {
+		return finch.getOutputDispatcher().getPendingCount();
+	} // getPendingOutputCount
+
+	public long getSubmittedOutputCount() {
+		return finch.getOutputDispatcher().getSubmittedCount();
+	} // getSubmittedOutputCount
+
+	public long getCoalescedOutputCount() {
+		return finch.getOutputDispatcher().getCoalescedCount();
+	} // getCoalescedOutputCount
+
+	public long getCoalescedReadCount() {
+		return finch.getCoalescedReadCount();
+	} // getCoalescedReadCount
+
+	public boolean isMetricsEnabled() {
+		return finch.getMetrics().isEnabled();
+	} // isMetricsEnabled
+
+	public void setMetricsEnabled(boolean enabled) {
+		finch.getMetrics().setEnabled(enabled);
+	} // setMetricsEnabled
+
+	public long getRequestCount() {
+		return finch.getMetrics().getCallCount();
+	} // getRequestCount
+
+	public long getErrorCount() {
+		return finch.getMetrics().getErrorCount();
+	} // getErrorCount
+
+	public double getRequestRate() {
+		return finch.getMetrics().getRequestRate();
+	} // getRequestRate
+
+	public Map<String, Double> getLatencyP50() {
+		return getLatencyPercentile(50);
+	} // getLatencyP50
+
+	public Map<String, Double> getLatencyP99() {
+		return getLatencyPercentile(99);
+	} // getLatencyP99
+
+	private Map<String, Double> getLatencyPercentile(double percentile) {
+		Map<String, Double> result = new TreeMap<>();
+		for (FinchMetrics.Endpoint e : finch.getMetrics().getEndpoints().values())
+			result.put(e.getPath(), e.getLatency().getPercentile(percentile) / 1000.0);
+		return result;
+	} // getLatencyPercentile
+
+	public double getSnapshotHitRatio() {
+		return finch.getMetrics().getSnapshotHitRatio();
+	} // getSnapshotHitRatio
+
+	public void resetMetrics() {
+		finch.getMetrics().reset();
+	} // resetMetrics
+
+	public String dumpMetrics() {
+		return finch.getMetrics().toString();
+	} // dumpMetrics
+
+} // class FinchHTTPManagement
@@ -0,0 +1,344 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.io.PrintStream;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-endpoint request statistics for a {@link FinchHTTP} instance.
+ *
+ * <p>For each endpoint path (such as {@code finch/in/lights}, {@code finch/out/motor} or
+ * {@code poll}), the number of requests, the number of failed requests, the number of response
+ * bytes received, and a {@link LatencyHistogram} of request latencies are recorded.  The
+ * number of sensor reads served from a polled snapshot, rather than by a request to the server,
+ * is also recorded.</p>
+ *
+ * <p>Recording is disabled by default, and can be enabled with {@link #setEnabled(boolean)}.
+ * While disabled, requests are not timed and nothing is recorded.  While enabled, recording is
+ * lock-free and does not allocate, except when an endpoint is used for the first time.</p>
+ *
+ * <p>The {@link #getRequestRate() request rate} is always counted, whether or not recording is
+ * enabled, as it costs a single atomic update per request.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class FinchMetrics {
+
+	/**
+	 * Statistics of a single endpoint.
+	 */
+	public static final class Endpoint {
+
+		private final String path;
+		private final LongAdder errors = new LongAdder();
+		private final LongAdder bytes = new LongAdder();
+		private final LatencyHistogram latency = new LatencyHistogram();
+
+		Endpoint(String path) {
+			this.path = path;
+		} // Endpoint
+
+		void record(long nanos, String response) {
+			latency.record(nanos);
+			if (response == null)
+				errors.increment();
+			else
+				bytes.add(byteCount(response));
+		} // record
+
+		/**
+		 * Retrieves the endpoint path.
+		 * @return	The endpoint path.
+		 */
+		public String getPath() {
+			return path;
+		} // getPath
+
+		/**
+		 * Retrieves the number of requests made, including failed requests.
+		 * @return	The number of requests made.
+		 */
+		public long getCallCount() {
+			return latency.getCount();
+		} // getCallCount
+
+		/**
+		 * Retrieves the number of requests which failed, due to a network error or an
+		 * unexpected HTTP status.
+		 * @return	The number of failed requests.
+		 */
+		public long getErrorCount() {
+			return errors.sum();
+		} // getErrorCount
+
+		/**
+		 * Retrieves the total size of the responses received.  Each response is counted as the
+		 * size of its text encoded in UTF-8, as the Bird Brain Robot Server sends it.  The trailing
+		 * line break of a response, which is not part of its text, is not counted.
+		 * @return	The number of response bytes received.
+		 */
+		public long getBytes() {
+			return bytes.sum();
+		} // getBytes
+
+		/**
+		 * Retrieves the histogram of request latencies.
+		 * @return	The latency histogram.
+		 */
+		public LatencyHistogram getLatency() {
+			return latency;
+		} // getLatency
+
+		void reset() {
+			errors.reset();
+			bytes.reset();
+			latency.reset();
+		} // reset
+
+	} // class Endpoint
+
+	private volatile boolean enabled;
+
+	private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+	private final LongAdder snapshotReads = new LongAdder();
+	private final LongAdder networkReads = new LongAdder();
+
+	/**
+	 * Number of whole seconds over which the request rate is averaged.
+	 */
+	public static final int RATE_WINDOW_SECONDS = 10;
+
+	// Number of requests started in each second, indexed by the second modulo the number of
+	// buckets.  Each element holds the second (counted from rateOrigin) in its upper 32 bits and
+	// the count in its lower 32 bits, so that a bucket is reused for a new second atomically.  The
+	// extra bucket holds the current, incomplete second.
+	private final LongSupplier nanoTime;
+	private final long rateOrigin;
+	private final AtomicLongArray rateBuckets = new AtomicLongArray(RATE_WINDOW_SECONDS + 1);
+
+	/**
+	 * Constructs a new FinchMetrics, with recording disabled.
+	 */
+	public FinchMetrics() {
+		this(System::nanoTime);
+	} // FinchMetrics
+
+	/**
+	 * Constructs a new FinchMetrics which times the request rate with the specified clock.
+	 * @param	nanoTime	Supplies the current time in nanoseconds, like {@link System#nanoTime()}.
+	 */
+	FinchMetrics(LongSupplier nanoTime) {
+		this.nanoTime = nanoTime;
+		rateOrigin = nanoTime.getAsLong();
+	} // FinchMetrics
+
+	/**
+	 * Determines whether recording is enabled.
+	 * @return	{@code true} if recording is enabled.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	} // isEnabled
+
+	/**
+	 * Enables or disables recording.  Previously recorded statistics are retained.
+	 * @param	enabled	Whether to record request statistics.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	} // setEnabled
+
+	/**
+	 * Records a completed request.
+	 * @param	path		The endpoint path.
+	 * @param	nanos		The latency of the request, in nanoseconds.
+	 * @param	response	The response received, or null if the request failed.
+	 */
+	void record(String path, long nanos, String response) {
+		Endpoint endpoint = endpoints.get(path);
+		if (endpoint == null)
+			endpoint = endpoints.computeIfAbsent(path, Endpoint::new);
+		endpoint.record(nanos, response);
+	} // record
+
+	/**
+	 * Counts a request towards the request rate.  Called for every request, whether or not
+	 * recording is enabled.
+	 */
+	void countRequest() {
+		long second = rateSecond();
+		int i = (int)(second % rateBuckets.length());
+		long bucket, updated;
+		do {
+			bucket = rateBuckets.get(i);
+			updated = ((bucket >>> 32) == second ? bucket + 1 : (second << 32) | 1);
+		} while (!rateBuckets.compareAndSet(i, bucket, updated));
+	} // countRequest
+
+	/**
+	 * Retrieves the number of whole seconds elapsed since this instance was created.
+	 * @return	The current second of the request rate buckets.
+	 */
+	private long rateSecond() {
+		return (nanoTime.getAsLong() - rateOrigin) / 1000000000L;
+	} // rateSecond
+
+	/**
+	 * Retrieves the number of requests per second, averaged over the last
+	 * {@value #RATE_WINDOW_SECONDS} whole seconds (or fewer, if this instance was created more
+	 * recently).  Reading the rate does not affect it.
+	 * @return	The number of requests per second, or 0 during the first second.
+	 */
+	public double getRequestRate() {
+		long second = rateSecond();
+		long count = 0;
+		for (int i = 0; i < rateBuckets.length(); ++i) {
+			long bucket = rateBuckets.get(i);
+			long age = second - (bucket >>> 32);
+			if ((age >= 1) && (age <= RATE_WINDOW_SECONDS))
+				count += (bucket & 0xFFFFFFFFL);
+		}
+		long seconds = Math.min(second, RATE_WINDOW_SECONDS);
+		return (seconds == 0 ? 0.0 : (double)count / seconds);
+	} // getRequestRate
+
+	/**
+	 * Counts the bytes of a response encoded in UTF-8, without encoding it.
+	 * @param	response	The response text.
+	 * @return	The number of bytes in the UTF-8 encoding of the response.
+	 */
+	static long byteCount(String response) {
+		int length = response.length();
+		long count = length;
+		for (int i = 0; i < length; ++i) {
+			char c = response.charAt(i);
+			if (c >= 0x800) {
+				// Surrogate pairs encode to 4 bytes (2 per char), other characters to 3 bytes
+				count += (Character.isSurrogate(c) ? 1 : 2);
+			} else if (c >= 0x80) {
+				count += 1;
+			}
+		}
+		return count;
+	} // byteCount
+
+	/**
+	 * Records a sensor read.
+	 * @param	fromSnapshot	{@code true} if the read was served from a polled snapshot, or
+	 *							{@code false} if a request was made to the server.
+	 */
+	void recordSensorRead(boolean fromSnapshot) {
+		if (fromSnapshot)
+			snapshotReads.increment();
+		else
+			networkReads.increment();
+	} // recordSensorRead
+
+	/**
+	 * Retrieves the fraction of sensor reads served from a polled snapshot.
+	 * @return	The fraction of sensor reads served from a polled snapshot, from 0.0 to 1.0, or
+	 *			{@code NaN} if no sensor reads have been recorded.
+	 */
+	public double getSnapshotHitRatio() {
+		long hits = snapshotReads.sum();
+		long total = hits + networkReads.sum();
+		return (total == 0 ? Double.NaN : (double)hits / total);
+	} // getSnapshotHitRatio
+
+	/**
+	 * Retrieves the total number of requests recorded, for all endpoints.
+	 * @return	The total number of requests recorded.
+	 */
+	public long getCallCount() {
+		long n = 0;
+		for (Endpoint e : endpoints.values())
+			n += e.getCallCount();
+		return n;
+	} // getCallCount
+
+	/**
+	 * Retrieves the total number of failed requests recorded, for all endpoints.
+	 * @return	The total number of failed requests recorded.
+	 */
+	public long getErrorCount() {
+		long n = 0;
+		for (Endpoint e : endpoints.values())
+			n += e.getErrorCount();
+		return n;
+	} // getErrorCount
+
+	/**
+	 * Retrieves the statistics of an endpoint.
+	 * @param	path	The endpoint path.
+	 * @return	The statistics of the endpoint, or null if no requests have been recorded for it.
+	 */
+	public Endpoint getEndpoint(String path) {
+		return endpoints.get(path);
+	} // getEndpoint
+
+	/**
+	 * Retrieves the statistics of all endpoints for which requests have been recorded.
+	 * @return	An unmodifiable map of the endpoint statistics, sorted by endpoint path.
+	 */
+	public Map<String, Endpoint> getEndpoints() {
+		return Collections.unmodifiableMap(new TreeMap<>(endpoints));
+	} // getEndpoints
+
+	/**
+	 * Removes all recorded statistics.
+	 */
+	public void reset() {
+		for (Endpoint e : endpoints.values())
+			e.reset();
+		snapshotReads.reset();
+		networkReads.reset();
+		for (int i = 0; i < rateBuckets.length(); ++i)
+			rateBuckets.set(i, 0);
+	} // reset
+
+	/**
+	 * Writes a table of the recorded statistics.  Latencies are in microseconds.
+	 * @param	out	The stream to write to.
+	 */
+	public void dump(PrintStream out) {
+		out.println(toString());
+	} // dump
+
+	/**
+	 * Returns a table of the recorded statistics.  Latencies are in microseconds.
+	 * @return	A table of the recorded statistics.
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(
+			"%-28s %10s %8s %12s %10s %10s %10s %10s",
+			"Endpoint", "Calls", "Errors", "Bytes", "Mean", "p50", "p99", "Max"
+		));
+		for (Endpoint e : getEndpoints().values()) {
+			LatencyHistogram l = e.getLatency();
+			sb.append(String.format(
+				"%n%-28s %10d %8d %12d %10.1f %10.1f %10.1f %10.1f",
+				e.getPath(), e.getCallCount(), e.getErrorCount(), e.getBytes(),
+				l.getMean() / 1000.0, l.getPercentile(50) / 1000.0,
+				l.getPercentile(99) / 1000.0, l.getMax() / 1000.0
+			));
+		}
+		sb.append(String.format("%nSnapshot hit ratio: %.3f", getSnapshotHitRatio()));
+		return sb.toString();
+	} // toString
+
+} // class FinchMetrics
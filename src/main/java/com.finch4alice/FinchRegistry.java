@@ -0,0 +1,105 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of shared {@link FinchHTTP} instances, keyed by the Bird Brain Robot Server base URL.
+ *
+ * <p>Multiple Finch robots can be controlled by running a Bird Brain Robot Server for each one,
+ * on different ports.  The registry maintains one FinchHTTP instance per server, so all callers
+ * controlling the same robot share its connection pool, poller and sensor history, while each
+ * robot is controlled independently of the others.</p>
+ *
+ * <p>This class is thread-safe.  Looking up an existing instance does not acquire any lock.</p>
+ */
+public final class FinchRegistry {
+
+	/**
+	 * The registered instances, keyed by normalized server base URL.
+	 */
+	private static final ConcurrentMap<String, FinchHTTP> instances = new ConcurrentHashMap<>();
+
+	private FinchRegistry() {
+	} // FinchRegistry
+
+	/**
+	 * Normalizes a server base URL, so that equivalent URLs map to the same instance.
+	 * @param	serverBaseURL	The server base URL.
+	 * @return	The URL, with a trailing slash added if not already present.
+	 */
+	static String normalize(String serverBaseURL) {
+		if (serverBaseURL == null)
+			throw new IllegalArgumentException("serverBaseURL cannot be null");
+
+		String url = serverBaseURL.trim();
+		return (url.endsWith("/") ? url : url + "/");
+	} // normalize
+
+	/**
+	 * Retrieves the shared FinchHTTP instance for the default server URL,
+	 * {@link FinchHTTP#DEFAULT_SERVER_URL}.
+	 * @return	The shared FinchHTTP instance for the default server.
+	 */
+	public static FinchHTTP get() {
+		return get(FinchHTTP.DEFAULT_SERVER_URL);
+	} // get
+
+	/**
+	 * Retrieves the shared FinchHTTP instance for a server, creating it if necessary.  A new
+	 * instance has its MBean registered with the platform MBeanServer.
+	 * @param	serverBaseURL	The base URL of the Bird Brain Robot Server.
+	 * @return	The shared FinchHTTP instance for the server.
+	 * @throws	IllegalArgumentException if the URL is null, malformed, or not an http URL.
+	 */
+	public static FinchHTTP get(String serverBaseURL) {
+		String url = normalize(serverBaseURL);
+		FinchHTTP finch = instances.get(url);
+		if (finch == null)
+			finch = instances.computeIfAbsent(url, FinchRegistry::create);
+		return finch;
+	} // get
+
+	/**
+	 * Creates the instance for a server, and registers its MBean once it is fully constructed.
+	 * @param	url	The normalized server base URL.
+	 * @return	The new instance.
+	 */
+	private static FinchHTTP create(String url) {
+		FinchHTTP finch = new FinchHTTP(url);
+		finch.registerMBean();
+		return finch;
+	} // create
+
+	/**
+	 * Removes the instance for a server from the registry, and closes it, which unregisters its
+	 * MBean.  A subsequent call to {@link #get(String)} for the same server creates a new
+	 * instance.
+	 * @param	serverBaseURL	The base URL of the Bird Brain Robot Server.
+	 * @return	{@code true} if an instance was registered for the server.
+	 */
+	public static boolean remove(String serverBaseURL) {
+		FinchHTTP finch = instances.remove(normalize(serverBaseURL));
+		if (finch == null)
+			return false;
+		finch.close();
+		return true;
+	} // remove
+
+	/**
+	 * Retrieves the server base URLs of all registered instances.
+	 * @return	A new list of the registered server base URLs.
+	 */
+	public static List<String> getServerURLs() {
+		return new ArrayList<>(instances.keySet());
+	} // getServerURLs
+
+} // class FinchRegistry
@@ -0,0 +1,133 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.Arrays;
+
+/**
+ * Immutable description of a single request to a Finch server, consisting of a service path and
+ * an optional list of arguments.
+ *
+ * @see FinchTransport
+ */
+public final class FinchRequest {
+
+	private static final String[] NO_ARGS = new String[0];
+
+	private final String path;
+	private final String[] args;
+
+	/**
+	 * Constructs a new FinchRequest.
+	 * @param	path	Relative path from the server root of the service to request (for example
+	 *					{@code "finch/out/motor"}).
+	 * @param	args	Arguments for the request.  May be empty.
+	 * @throws	IllegalArgumentException if path or any argument is null.
+	 */
+	public FinchRequest(String path, String... args) {
+		if (path == null)
+			throw new IllegalArgumentException("path cannot be null");
+
+		this.path = path;
+		if ((args == null) || (args.length == 0)) {
+			this.args = NO_ARGS;
+		} else {
+			this.args = args.clone();
+			for (String arg : this.args) {
+				if (arg == null)
+					throw new IllegalArgumentException("args cannot contain null");
+			}
+		}
+	} // FinchRequest
+
+	/**
+	 * Constructs a new FinchRequest which uses an array of arguments directly, without copying or
+	 * checking it.
+	 */
+	private FinchRequest(String[] args, String path) {
+		this.path = path;
+		this.args = args;
+	} // FinchRequest
+
+	/**
+	 * Creates a FinchRequest which takes ownership of an array of arguments, without copying it.
+	 * @param	path	Relative path from the server root of the service to request.
+	 * @param	args	Arguments for the request, none of which are null.  The array must not be
+	 *					modified afterwards.
+	 * @return	The new request.
+	 */
+	static FinchRequest of(String path, String... args) {
+		return new FinchRequest(args, path);
+	} // of
+
+	/**
+	 * Retrieves the service path of the request.
+	 * @return	The service path of the request.
+	 */
+	public String getPath() {
+		return path;
+	} // getPath
+
+	/**
+	 * Retrieves the number of arguments of the request.
+	 * @return	The number of arguments of the request.
+	 */
+	public int getArgCount() {
+		return args.length;
+	} // getArgCount
+
+	/**
+	 * Retrieves an argument of the request.
+	 * @param	index	The index of the argument to retrieve.
+	 * @return	The argument at the specified index.
+	 */
+	public String getArg(int index) {
+		return args[index];
+	} // getArg
+
+	/**
+	 * Retrieves a copy of the arguments of the request.
+	 * @return	A copy of the arguments of the request.
+	 */
+	public String[] getArgs() {
+		return args.clone();
+	} // getArgs
+
+	/**
+	 * Retrieves the arguments of the request without copying them, for the transports.  The
+	 * array must not be modified.
+	 * @return	The arguments of the request.
+	 */
+	String[] args() {
+		return args;
+	} // args
+
+	/**
+	 * Returns a string representation of the request, in the form {@code path/arg1/arg2}.
+	 * @return	A string representation of the request.
+	 */
+	public String toString() {
+		StringBuilder rv = new StringBuilder(path);
+		for (String arg : args)
+			rv.append('/').append(arg);
+		return rv.toString();
+	} // toString
+
+	public boolean equals(Object other) {
+		if (this == other)
+			return true;
+		if (!(other instanceof FinchRequest))
+			return false;
+		FinchRequest r = (FinchRequest)other;
+		return path.equals(r.path) && Arrays.equals(args, r.args);
+	} // equals
+
+	public int hashCode() {
+		return path.hashCode() * 31 + Arrays.hashCode(args);
+	} // hashCode
+
+} // class FinchRequest
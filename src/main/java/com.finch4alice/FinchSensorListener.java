@@ -0,0 +1,69 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+/**
+ * Receives notifications of changes in the Finch sensor readings.
+ *
+ * <p>Listeners are registered with {@link FinchHTTP#addSensorListener(FinchSensorListener)},
+ * and are notified from the background polling thread, at most once per poll.  Each method
+ * is called only when the corresponding reading changes (an edge), not while it remains in the
+ * same state.  All methods have empty default implementations, so a listener only needs to
+ * implement the notifications it is interested in.</p>
+ *
+ * <p>The notification methods are called on the polling thread, and the next poll is not
+ * started until they return.  Lengthy processing should be handed off to another thread.</p>
+ */
+public interface FinchSensorListener {
+
+	/**
+	 * Called when an obstacle appears or clears in front of either side of the Finch.
+	 * @param	leftObstacle	Whether an obstacle is now detected in front of the left side.
+	 * @param	rightObstacle	Whether an obstacle is now detected in front of the right side.
+	 */
+	default public void obstacleChanged(boolean leftObstacle, boolean rightObstacle) {
+	} // obstacleChanged
+
+	/**
+	 * Called when the orientation of the Finch changes.
+	 * @param	previousOrientation	The previous orientation, as returned by
+	 *								{@link FinchSensorState#getOrientation()}.
+	 * @param	orientation			The new orientation.
+	 */
+	default public void orientationChanged(String previousOrientation, String orientation) {
+	} // orientationChanged
+
+	/**
+	 * Called when the Finch has been shaken.
+	 *
+	 * <p>Detecting shakes requires an additional request to the server on each poll, which is
+	 * only made if a registered listener overrides this method.</p>
+	 */
+	default public void shaken() {
+	} // shaken
+
+	/**
+	 * Called when the Finch has been tapped.
+	 *
+	 * <p>Detecting taps requires an additional request to the server on each poll, which is
+	 * only made if a registered listener overrides this method.</p>
+	 */
+	default public void tapped() {
+	} // tapped
+
+	/**
+	 * Called when a light sensor reading rises above, or falls to or below, the light threshold
+	 * specified when the listener was registered with
+	 * {@link FinchHTTP#addSensorListener(FinchSensorListener, int)}.
+	 * @param	leftSensor	{@code true} for the left light sensor, {@code false} for the right.
+	 * @param	value		The new light sensor reading.
+	 * @param	above		Whether the reading is now above the threshold.
+	 */
+	default public void lightThresholdCrossed(boolean leftSensor, int value, boolean above) {
+	} // lightThresholdCrossed
+
+} // interface FinchSensorListener
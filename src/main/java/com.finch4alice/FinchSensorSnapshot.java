@@ -0,0 +1,244 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+/**
+ * Snapshot of all of the Finch sensor readings, as returned by {@link FinchHTTP#poll()}.
+ *
+ * <p>The readings are stored in primitive fields, and the single-value getters (such as
+ * {@link #getLeftLightSensor()} or {@link #getXAcceleration()}) are overridden to read those
+ * fields directly.  The array getters return a new copy of the readings on each call.</p>
+ *
+ * <p>Snapshots can only be modified by the classes in this package.  A snapshot may be reused
+ * for multiple polls with {@link FinchHTTP#poll(FinchSensorSnapshot)}, which overwrites the
+ * previous readings without allocating any new objects.  Snapshots returned by
+ * {@link FinchHTTP#poll()} are never modified after they are returned, and may be freely shared
+ * between threads.</p>
+ */
+public final class FinchSensorSnapshot
+	implements FinchSensorState
+{
+
+	private boolean connected;
+	private double temperature;
+	private int leftLight;
+	private int rightLight;
+	private boolean leftObstacle;
+	private boolean rightObstacle;
+	private double xAcceleration = Double.NaN;
+	private double yAcceleration = Double.NaN;
+	private double zAcceleration = Double.NaN;
+	private String orientation;
+
+	/**
+	 * Constructs a new snapshot representing a Finch which is not connected.
+	 */
+	public FinchSensorSnapshot() {
+	} // FinchSensorSnapshot
+
+	/**
+	 * Determines whether the Finch was connected when the snapshot was taken.  When not
+	 * connected, the getters return the documented "not connected" values ({@code null},
+	 * {@code NaN}, {@code 0} or {@code false}).
+	 * @return	Whether the Finch was connected when the snapshot was taken.
+	 */
+	public boolean isConnected() {
+		return connected;
+	} // isConnected
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getTemperature() {
+		return temperature;
+	} // getTemperature
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int[] getLightSensors() {
+		return (connected ? new int[] { leftLight, rightLight } : null);
+	} // getLightSensors
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getLeftLightSensor() {
+		return leftLight;
+	} // getLeftLightSensor
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getRightLightSensor() {
+		return rightLight;
+	} // getRightLightSensor
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean[] getObstacleSensors() {
+		return (connected ? new boolean[] { leftObstacle, rightObstacle } : null);
+	} // getObstacleSensors
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isObstacleLeftSide() {
+		return leftObstacle;
+	} // isObstacleLeftSide
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isObstacleRightSide() {
+		return rightObstacle;
+	} // isObstacleRightSide
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isObstacle() {
+		return leftObstacle || rightObstacle;
+	} // isObstacle
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double[] getAccelerations() {
+		return (connected ? new double[] { xAcceleration, yAcceleration, zAcceleration } : null);
+	} // getAccelerations
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getXAcceleration() {
+		return xAcceleration;
+	} // getXAcceleration
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getYAcceleration() {
+		return yAcceleration;
+	} // getYAcceleration
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getZAcceleration() {
+		return zAcceleration;
+	} // getZAcceleration
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getXOrientationAngle() {
+		return Math.atan2(-xAcceleration, zAcceleration);
+	} // getXOrientationAngle
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getYOrientationAngle() {
+		return Math.atan2(-yAcceleration, zAcceleration);
+	} // getYOrientationAngle
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getOrientation() {
+		return orientation;
+	} // getOrientation
+
+	/**
+	 * Resets the snapshot to represent a Finch which is not connected.
+	 */
+	void clear() {
+		connected = false;
+		temperature = 0.0;
+		leftLight = 0;
+		rightLight = 0;
+		leftObstacle = false;
+		rightObstacle = false;
+		xAcceleration = Double.NaN;
+		yAcceleration = Double.NaN;
+		zAcceleration = Double.NaN;
+		orientation = null;
+	} // clear
+
+	/**
+	 * Resets the snapshot to the default readings of a connected Finch, prior to applying the
+	 * values from a poll response.
+	 */
+	void clearConnected() {
+		connected = true;
+		temperature = 0.0;
+		leftLight = 0;
+		rightLight = 0;
+		leftObstacle = false;
+		rightObstacle = false;
+		xAcceleration = 0.0;
+		yAcceleration = 0.0;
+		zAcceleration = 0.0;
+		orientation = "";
+	} // clearConnected
+
+	/**
+	 * Copies all readings from another snapshot.
+	 * @param	other	The snapshot to copy from.
+	 */
+	void set(FinchSensorSnapshot other) {
+		connected = other.connected;
+		temperature = other.temperature;
+		leftLight = other.leftLight;
+		rightLight = other.rightLight;
+		leftObstacle = other.leftObstacle;
+		rightObstacle = other.rightObstacle;
+		xAcceleration = other.xAcceleration;
+		yAcceleration = other.yAcceleration;
+		zAcceleration = other.zAcceleration;
+		orientation = other.orientation;
+	} // set
+
+	void setTemperature(double temperature) {
+		this.temperature = temperature;
+	} // setTemperature
+
+	void setLeftLightSensor(int value) {
+		leftLight = value;
+	} // setLeftLightSensor
+
+	void setRightLightSensor(int value) {
+		rightLight = value;
+	} // setRightLightSensor
+
+	void setLeftObstacle(boolean value) {
+		leftObstacle = value;
+	} // setLeftObstacle
+
+	void setRightObstacle(boolean value) {
+		rightObstacle = value;
+	} // setRightObstacle
+
+	void setXAcceleration(double value) {
+		xAcceleration = value;
+	} // setXAcceleration
+
+	void setYAcceleration(double value) {
+		yAcceleration = value;
+	} // setYAcceleration
+
+	void setZAcceleration(double value) {
+		zAcceleration = value;
+	} // setZAcceleration
+
+	void setOrientation(String value) {
+		orientation = value;
+	} // setOrientation
+
+} // class FinchSensorSnapshot
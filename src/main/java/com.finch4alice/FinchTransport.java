@@ -0,0 +1,78 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.io.IOException;
+
+/**
+ * Transport used by {@link FinchHTTP} to exchange requests and responses with a Finch server.
+ *
+ * <p>A request consists of a service path (such as {@code "finch/in/lights"} or
+ * {@code "finch/out/motor"}) and a list of string arguments, mirroring the services offered by
+ * the Bird Brain Robot Server.  The response is the text returned by the service.
+ * {@link HttpFinchTransport} is the standard implementation, which talks to the Bird Brain
+ * Robot Server over HTTP.  Other implementations can exchange the same requests over a faster
+ * channel, or handle them in-process (see {@link LoopbackFinchTransport}).</p>
+ *
+ * <p>Implementations must be thread-safe.</p>
+ */
+public interface FinchTransport {
+
+	/**
+	 * Retrieves a human readable description of where requests are sent, used in status and
+	 * diagnostic messages.  For HTTP transports, this is the server base URL.
+	 * @return	A description of the transport's destination.
+	 */
+	public String getLocation();
+
+	/**
+	 * Sends a request and waits for the response.
+	 *
+	 * <p>The caller may reuse the args array once this method returns, so implementations must
+	 * not modify it, or retain it after returning.</p>
+	 *
+	 * @param	path	Relative path from the server root of the service to request.
+	 * @param	args	Arguments for the request.  May be empty.
+	 *
+	 * @return	The text of the response, without any trailing line break.  Returns null if the
+	 *			server reported an error for the request.
+	 *
+	 * @throws	java.net.ConnectException if the server could not be contacted.
+	 * @throws	IOException if the request failed for any other reason.
+	 */
+	public String request(String path, String... args) throws IOException;
+
+	/**
+	 * Sends a batch of requests and waits for all of the responses.
+	 *
+	 * <p>The default implementation sends each request in turn.  Implementations should override
+	 * this method if they are able to send several requests at once, for example by pipelining
+	 * them over a single connection.</p>
+	 *
+	 * @param	requests	The requests to send.
+	 *
+	 * @return	The responses, in the same order as the requests.  Each element follows the same
+	 *			rules as the return value of {@link #request(String, String...)}.
+	 *
+	 * @throws	java.net.ConnectException if the server could not be contacted.
+	 * @throws	IOException if any request failed for any other reason.
+	 */
+	default public String[] batch(FinchRequest... requests) throws IOException {
+		String[] rv = new String[requests.length];
+		for (int i = 0; i < requests.length; ++i)
+			rv[i] = request(requests[i].getPath(), requests[i].args());
+		return rv;
+	} // batch
+
+	/**
+	 * Releases any resources (such as open connections) held by the transport.  The default
+	 * implementation does nothing.
+	 */
+	default public void close() {
+	} // close
+
+} // interface FinchTransport
@@ -0,0 +1,717 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal HTTP/1.1 client which keeps a small pool of persistent (keep-alive) connections open to
+ * a single server.
+ *
+ * <p>Every response body is read completely before the connection is returned to the pool, so the
+ * next request can reuse the same socket instead of paying for a new TCP handshake.  Connections
+ * that the server asks to close, or that have been idle for longer than the configured timeout,
+ * are discarded.</p>
+ *
+ * <p>Connecting and waiting for a response are each bounded by a configurable timeout, so a
+ * server which has stopped responding causes a {@link java.net.SocketTimeoutException} rather
+ * than blocking the calling thread indefinitely.</p>
+ *
+ * <p>This class is thread-safe.  When several threads issue requests at the same time, additional
+ * connections are opened as needed, but at most {@link #getMaxIdleConnections()} of them are kept
+ * once the requests complete.</p>
+ */
+class HttpConnectionPool {
+
+	/**
+	 * Default number of idle connections retained by the pool.
+	 */
+	public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 2;
+
+	/**
+	 * Default number of milliseconds an idle connection is retained before being closed.
+	 */
+	public static final int DEFAULT_IDLE_TIMEOUT = 15000;
+
+	/**
+	 * Default number of milliseconds to wait for a connection to be established.
+	 */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 1000;
+
+	/**
+	 * Default number of milliseconds to wait for data from the server before a request fails.
+	 */
+	public static final int DEFAULT_READ_TIMEOUT = 2000;
+
+	/**
+	 * Number of retry tokens a stale connection retry costs.  Each request earns one token, so
+	 * retries are limited to about one for every RETRY_COST requests.
+	 */
+	private static final int RETRY_COST = 10;
+
+	/**
+	 * Maximum number of retry tokens which can be accumulated.
+	 */
+	private static final int MAX_RETRY_TOKENS = 5 * RETRY_COST;
+
+	/**
+	 * Simple representation of a response received from the server.
+	 */
+	static class Response {
+		final int status;
+		final String message;
+		final String body;
+		final boolean keepAlive;
+
+		Response(int status, String message, String body, boolean keepAlive) {
+			this.status = status;
+			this.message = message;
+			this.body = body;
+			this.keepAlive = keepAlive;
+		} // Response
+	} // class Response
+
+	/**
+	 * A single socket connection to the server, along with its buffered streams.
+	 */
+	private static class Connection {
+		final Socket socket;
+		final InputStream in;
+		final OutputStream out;
+		long lastUsed;
+		int readTimeout;
+
+		Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			this.in = new BufferedInputStream(socket.getInputStream());
+			this.out = new BufferedOutputStream(socket.getOutputStream());
+		} // Connection
+
+		void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Ignore, nothing useful to do here
+			}
+		} // close
+	} // class Connection
+
+	private final String host;
+	private final int port;
+	private final String hostHeader;
+
+	/**
+	 * Encodes the requests sent to the server.
+	 */
+	private final RequestEncoder encoder;
+
+	/**
+	 * Whether the server answers pipelined requests.  Cleared the first time the server stops
+	 * responding partway through a pipelined batch, after which batches are sent one request at a
+	 * time.
+	 */
+	private volatile boolean pipelining = true;
+
+	/**
+	 * Idle connections available for reuse.  The most recently used connection is at the head.
+	 * Access must be synchronized on the deque itself.
+	 */
+	private final ArrayDeque<Connection> idle = new ArrayDeque<Connection>();
+
+	private volatile int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+	private volatile int idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	private volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+
+	/**
+	 * Tokens available for retrying requests on a new connection.
+	 */
+	private final AtomicInteger retryTokens = new AtomicInteger(MAX_RETRY_TOKENS);
+	private volatile boolean closed;
+
+	/**
+	 * Constructs a new pool for the server identified by the specified URL.
+	 * @param	serverURL	URL of the server.  Requests are made relative to its path.
+	 * @throws	IllegalArgumentException if the URL is malformed or is not an http URL.
+	 */
+	HttpConnectionPool(String serverURL) {
+		URL url;
+		try {
+			url = new URL(serverURL);
+		} catch (MalformedURLException e) {
+			throw new IllegalArgumentException("Invalid server URL: "+ serverURL, e);
+		}
+
+		if (!"http".equalsIgnoreCase(url.getProtocol()))
+			throw new IllegalArgumentException("Only http URLs are supported: "+ serverURL);
+
+		host = url.getHost();
+		port = (url.getPort() == -1 ? url.getDefaultPort() : url.getPort());
+		hostHeader = (url.getPort() == -1 ? host : host +":"+ port);
+
+		String basePath = url.getPath();
+		if (!basePath.endsWith("/"))
+			basePath = basePath + "/";
+		encoder = new RequestEncoder(basePath, hostHeader);
+	} // HttpConnectionPool
+
+	/**
+	 * Retrieves the maximum number of idle connections retained for reuse.
+	 * @return	The maximum number of idle connections retained for reuse.
+	 */
+	int getMaxIdleConnections() {
+		return maxIdleConnections;
+	} // getMaxIdleConnections
+
+	/**
+	 * Sets the maximum number of idle connections retained for reuse.
+	 * @param	max	The maximum number of idle connections to retain.  A value of 0 disables
+	 *				connection reuse entirely.
+	 * @throws	IllegalArgumentException if max is negative.
+	 */
+	void setMaxIdleConnections(int max) {
+		if (max < 0)
+			throw new IllegalArgumentException("max cannot be negative");
+		maxIdleConnections = max;
+		evict(System.currentTimeMillis());
+	} // setMaxIdleConnections
+
+	/**
+	 * Retrieves the number of milliseconds an idle connection is retained before being closed.
+	 * @return	The idle timeout, in milliseconds.
+	 */
+	int getIdleTimeout() {
+		return idleTimeout;
+	} // getIdleTimeout
+
+	/**
+	 * Sets the number of milliseconds an idle connection is retained before being closed.
+	 * @param	timeout	The idle timeout, in milliseconds.
+	 * @throws	IllegalArgumentException if timeout is negative.
+	 */
+	void setIdleTimeout(int timeout) {
+		if (timeout < 0)
+			throw new IllegalArgumentException("timeout cannot be negative");
+		idleTimeout = timeout;
+		evict(System.currentTimeMillis());
+	} // setIdleTimeout
+
+	/**
+	 * Retrieves the number of milliseconds to wait for a connection to be established.
+	 * @return	The connect timeout, in milliseconds.  0 indicates no timeout.
+	 */
+	int getConnectTimeout() {
+		return connectTimeout;
+	} // getConnectTimeout
+
+	/**
+	 * Sets the number of milliseconds to wait for a connection to be established.
+	 * @param	timeout	The connect timeout, in milliseconds.  A value of 0 waits indefinitely.
+	 * @throws	IllegalArgumentException if timeout is negative.
+	 */
+	void setConnectTimeout(int timeout) {
+		if (timeout < 0)
+			throw new IllegalArgumentException("timeout cannot be negative");
+		connectTimeout = timeout;
+	} // setConnectTimeout
+
+	/**
+	 * Retrieves the number of milliseconds to wait for data from the server before a request
+	 * fails.
+	 * @return	The read timeout, in milliseconds.  0 indicates no timeout.
+	 */
+	int getReadTimeout() {
+		return readTimeout;
+	} // getReadTimeout
+
+	/**
+	 * Sets the number of milliseconds to wait for data from the server before a request fails.
+	 * @param	timeout	The read timeout, in milliseconds.  A value of 0 waits indefinitely.
+	 * @throws	IllegalArgumentException if timeout is negative.
+	 */
+	void setReadTimeout(int timeout) {
+		if (timeout < 0)
+			throw new IllegalArgumentException("timeout cannot be negative");
+		readTimeout = timeout;
+	} // setReadTimeout
+
+	/**
+	 * Retrieves the number of connections currently idle in the pool.
+	 * @return	The number of connections currently idle in the pool.
+	 */
+	int getIdleConnectionCount() {
+		synchronized (idle) {
+			return idle.size();
+		}
+	} // getIdleConnectionCount
+
+	/**
+	 * Closes all idle connections and prevents any further connections from being pooled.
+	 * Requests issued after calling this method will still succeed, but will each use a new
+	 * connection.
+	 */
+	void close() {
+		closed = true;
+		synchronized (idle) {
+			for (Connection c : idle)
+				c.close();
+			idle.clear();
+		}
+	} // close
+
+	/**
+	 * Executes an HTTP GET request.
+	 *
+	 * <p>If a pooled connection turns out to have been closed by the server, the request is
+	 * transparently retried once on a new connection.  Retries are limited by a retry budget of
+	 * about one retry for every {@value #RETRY_COST} requests, so a server which repeatedly drops
+	 * connections does not receive twice the load.  Requests which time out are never retried.</p>
+	 *
+	 * @param	path	Relative path from the server root of the service to request.
+	 * @param	args	Arguments for the request.  Each argument is URL-encoded and appended to the
+	 *					request target separated by slashes.
+	 * @return	The response received from the server.
+	 * @throws	IOException if the request could not be completed.
+	 * @throws	SocketTimeoutException if the server did not respond within the read timeout.
+	 */
+	Response get(String path, String... args) throws IOException {
+		if (retryTokens.get() < MAX_RETRY_TOKENS)
+			retryTokens.incrementAndGet();
+
+		Connection c = borrow();
+		if (c != null) {
+			try {
+				return execute(c, path, args);
+			} catch (SocketTimeoutException e) {
+				throw e;
+			} catch (IOException e) {
+				// Most likely the server closed the idle connection, try again with a new one
+				c.close();
+				if (!acquireRetry())
+					throw e;
+			}
+		}
+
+		return execute(open(), path, args);
+	} // get
+
+	/**
+	 * Takes the tokens for a retry from the retry budget.
+	 * @return	{@code true} if a retry is permitted.
+	 */
+	private boolean acquireRetry() {
+		int tokens;
+		do {
+			tokens = retryTokens.get();
+			if (tokens < RETRY_COST)
+				return false;
+		} while (!retryTokens.compareAndSet(tokens, tokens - RETRY_COST));
+		return true;
+	} // acquireRetry
+
+	/**
+	 * Obtains an idle connection from the pool, discarding any which have expired.
+	 * @return	A pooled connection, or null if none are available.
+	 */
+	private Connection borrow() {
+		long now = System.currentTimeMillis();
+		evict(now);
+		synchronized (idle) {
+			return idle.pollFirst();
+		}
+	} // borrow
+
+	/**
+	 * Returns a connection to the pool, or closes it if the pool is full or closed.
+	 * @param	c	The connection to release.
+	 */
+	private void release(Connection c) {
+		c.lastUsed = System.currentTimeMillis();
+		synchronized (idle) {
+			if (!closed && (idle.size() < maxIdleConnections)) {
+				idle.addFirst(c);
+				return;
+			}
+		}
+		c.close();
+	} // release
+
+	/**
+	 * Closes idle connections exceeding the timeout or the maximum pool size.
+	 * @param	now	The current time, in milliseconds.
+	 */
+	private void evict(long now) {
+		synchronized (idle) {
+			int keep = maxIdleConnections;
+			long expires = now - idleTimeout;
+			int count = 0;
+			for (Iterator<Connection> i = idle.iterator(); i.hasNext(); ) {
+				Connection c = i.next();
+				if ((++count > keep) || (c.lastUsed < expires)) {
+					c.close();
+					i.remove();
+				}
+			}
+		}
+	} // evict
+
+	/**
+	 * Opens a new connection to the server.
+	 * @return	The new connection.
+	 * @throws	IOException if the connection could not be established.
+	 */
+	private Connection open() throws IOException {
+		Socket socket = new Socket();
+		try {
+			socket.setTcpNoDelay(true);
+			socket.connect(new InetSocketAddress(host, port), connectTimeout);
+			return new Connection(socket);
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+	} // open
+
+	/**
+	 * Sends a request on the specified connection and reads the complete response.  On success,
+	 * the connection is released back to the pool when appropriate.  On failure, the connection
+	 * is closed.
+	 */
+	private Response execute(Connection c, String path, String[] args) throws IOException {
+		try {
+			setReadTimeout(c);
+			writeRequest(c, path, args);
+			c.out.flush();
+
+			Response response = readResponse(c);
+			if (response.keepAlive)
+				release(c);
+			else
+				c.close();
+			return response;
+		} catch (IOException | RuntimeException e) {
+			c.close();
+			throw e;
+		}
+	} // execute
+
+	/**
+	 * Executes several HTTP GET requests, pipelined over a single connection.
+	 *
+	 * <p>All of the requests are written to the connection before any of the responses are read,
+	 * so the requests complete in about the time of a single round-trip instead of one round-trip
+	 * each.  The responses are returned in the same order as the requests.</p>
+	 *
+	 * <p>If the server closes the connection after responding to only some of the requests, the
+	 * remaining requests are sent again on a new connection.  As with
+	 * {@link #get(String, String...)}, the
+	 * whole batch is retried on a new connection, within the retry budget, if a pooled connection
+	 * turns out to have been closed by the server before any response was received.</p>
+	 *
+	 * <p>A server which does not support pipelining responds to the first request, then ignores
+	 * the rest or drops the connection.  When that happens, the remaining requests are sent one at
+	 * a time with {@link #get(String, String...)}, and so are all later batches, since the server
+	 * would behave the same way again.  Detecting it costs a single read timeout, the first
+	 * time.</p>
+	 *
+	 * @param	requests	The requests to send.
+	 * @return	The responses received from the server, in the order of the requests.
+	 * @throws	IOException if the requests could not be completed.
+	 * @throws	SocketTimeoutException if the server did not respond within the read timeout.
+	 */
+	Response[] pipeline(FinchRequest... requests) throws IOException {
+		Response[] responses = new Response[requests.length];
+		if (!pipelining)
+			return sequential(requests, responses, 0);
+
+		if (retryTokens.get() < MAX_RETRY_TOKENS)
+			retryTokens.incrementAndGet();
+
+		int done = 0;
+
+		Connection c = borrow();
+		if (c != null) {
+			try {
+				done = pipelineOrFallBack(c, requests, responses, 0);
+			} catch (SocketTimeoutException e) {
+				throw e;
+			} catch (IOException e) {
+				// Most likely the server closed the idle connection, try again with a new one, but
+				// only if none of the requests are known to have been processed
+				if ((responses[0] != null) || !acquireRetry())
+					throw e;
+			}
+		}
+
+		while (done < requests.length)
+			done = pipelineOrFallBack(open(), requests, responses, done);
+
+		return responses;
+	} // pipeline
+
+	/**
+	 * Sends requests pipelined on the specified connection, like
+	 * {@link #pipeline(Connection, FinchRequest[], Response[], int)}.  If the server responds to
+	 * some of the requests and then stops, pipelining is disabled, and the remaining requests are
+	 * sent one at a time.
+	 * @return	The index of the first request for which no response was received.
+	 */
+	private int pipelineOrFallBack(Connection c, FinchRequest[] requests, Response[] responses, int first) throws IOException {
+		try {
+			return pipeline(c, requests, responses, first);
+		} catch (IOException e) {
+			int done = first;
+			while ((done < requests.length) && (responses[done] != null))
+				++done;
+
+			// No response at all is a failed connection or server, not a lack of pipelining
+			if (done == first)
+				throw e;
+
+			System.out.println("WARNING: Bird Brain Robot Server did not answer pipelined requests, sending them one at a time");
+			pipelining = false;
+			sequential(requests, responses, done);
+			return requests.length;
+		}
+	} // pipelineOrFallBack
+
+	/**
+	 * Executes requests one at a time with {@link #get(String, String...)}.
+	 * @param	requests	The requests.
+	 * @param	responses	Receives the responses.
+	 * @param	first		The index of the first request to send.
+	 * @return	The responses.
+	 */
+	private Response[] sequential(FinchRequest[] requests, Response[] responses, int first) throws IOException {
+		for (int i = first; i < requests.length; ++i)
+			responses[i] = get(requests[i].getPath(), requests[i].args());
+		return responses;
+	} // sequential
+
+	/**
+	 * Determines whether batches are pipelined, which is the case until the server is found not
+	 * to answer pipelined requests.
+	 * @return	{@code true} if batches are pipelined.
+	 */
+	boolean isPipelining() {
+		return pipelining;
+	} // isPipelining
+
+	/**
+	 * Sends requests on the specified connection, and reads the responses until all of them
+	 * have been received or the server closes the connection.  On success, the connection is
+	 * released back to the pool when appropriate.  On failure, the connection is closed.
+	 * @param	c			The connection to use.
+	 * @param	requests	The requests.
+	 * @param	responses	Receives the responses.
+	 * @param	first		The index of the first request to send.
+	 * @return	The index of the first request for which no response was received.
+	 */
+	private int pipeline(Connection c, FinchRequest[] requests, Response[] responses, int first) throws IOException {
+		try {
+			setReadTimeout(c);
+			for (int i = first; i < requests.length; ++i)
+				writeRequest(c, requests[i].getPath(), requests[i].args());
+			c.out.flush();
+
+			int i = first;
+			while (i < requests.length) {
+				Response response = readResponse(c);
+				responses[i++] = response;
+				if (!response.keepAlive) {
+					// The server will not process the remaining requests on this connection
+					c.close();
+					return i;
+				}
+			}
+
+			release(c);
+			return i;
+		} catch (IOException | RuntimeException e) {
+			c.close();
+			throw e;
+		}
+	} // pipeline
+
+	/**
+	 * Applies the current read timeout to a connection, if it has changed.
+	 */
+	private void setReadTimeout(Connection c) throws IOException {
+		int timeout = readTimeout;
+		if (c.readTimeout != timeout) {
+			c.socket.setSoTimeout(timeout);
+			c.readTimeout = timeout;
+		}
+	} // setReadTimeout
+
+	/**
+	 * Writes a request to a connection, without flushing it.
+	 */
+	private void writeRequest(Connection c, String path, String[] args) throws IOException {
+		RequestEncoder.Buffer request = encoder.encode(path, args);
+		c.out.write(request.bytes, 0, request.length);
+	} // writeRequest
+
+	/**
+	 * Reads a complete response from a connection.
+	 */
+	private static Response readResponse(Connection c) throws IOException {
+		// Status line
+		String statusLine = readLine(c.in);
+		if (statusLine == null)
+			throw new EOFException("Connection closed by server");
+
+		String[] status = statusLine.split(" ", 3);
+		if ((status.length < 2) || !status[0].startsWith("HTTP/"))
+			throw new IOException("Malformed HTTP status line: "+ statusLine);
+
+		int statusCode;
+		try {
+			statusCode = Integer.parseInt(status[1]);
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed HTTP status line: "+ statusLine);
+		}
+
+		// Headers
+		long contentLength = -1;
+		boolean chunked = false;
+		boolean keepAlive = !status[0].equals("HTTP/1.0");
+		String line;
+		while ((line = readLine(c.in)) != null && line.length() > 0) {
+			int colon = line.indexOf(':');
+			if (colon == -1)
+				continue;
+
+			String name = line.substring(0, colon).trim();
+			String value = line.substring(colon + 1).trim();
+			if (name.equalsIgnoreCase("Content-Length")) {
+				try {
+					contentLength = Long.parseLong(value);
+				} catch (NumberFormatException e) {
+					throw new IOException("Malformed Content-Length header: "+ value);
+				}
+			} else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+				chunked = value.toLowerCase().contains("chunked");
+			} else if (name.equalsIgnoreCase("Connection")) {
+				if (value.equalsIgnoreCase("close"))
+					keepAlive = false;
+				else if (value.equalsIgnoreCase("keep-alive"))
+					keepAlive = true;
+			}
+		}
+
+		// Body
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		if ((statusCode / 100 == 1) || (statusCode == 204) || (statusCode == 304)) {
+			// No body
+		} else if (chunked) {
+			readChunked(c.in, body);
+		} else if (contentLength >= 0) {
+			copy(c.in, body, contentLength);
+		} else {
+			// No framing information, the body extends until the connection is closed
+			copy(c.in, body, Long.MAX_VALUE);
+			keepAlive = false;
+		}
+
+		return new Response(
+			statusCode,
+			(status.length > 2 ? status[2] : ""),
+			new String(body.toByteArray(), StandardCharsets.UTF_8),
+			keepAlive
+		);
+	} // readResponse
+
+	/**
+	 * Reads a single CRLF (or LF) terminated line of ISO-8859-1 text.
+	 * @return	The line read, without the line terminator, or null if the end of the stream was
+	 *			reached before any characters were read.
+	 */
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int ch;
+		while ((ch = in.read()) != -1) {
+			if (ch == '\n') {
+				int len = sb.length();
+				if ((len > 0) && (sb.charAt(len - 1) == '\r'))
+					sb.setLength(len - 1);
+				return sb.toString();
+			}
+			sb.append((char)ch);
+		}
+		return (sb.length() == 0 ? null : sb.toString());
+	} // readLine
+
+	/**
+	 * Reads a body encoded with the chunked transfer coding, discarding any trailers.
+	 */
+	private static void readChunked(InputStream in, OutputStream out) throws IOException {
+		while (true) {
+			String sizeLine = readLine(in);
+			if (sizeLine == null)
+				throw new EOFException("Unexpected end of chunked response");
+
+			int semi = sizeLine.indexOf(';');
+			long size;
+			try {
+				size = Long.parseLong((semi == -1 ? sizeLine : sizeLine.substring(0, semi)).trim(), 16);
+			} catch (NumberFormatException e) {
+				throw new IOException("Malformed chunk size: "+ sizeLine);
+			}
+
+			if (size == 0)
+				break;
+
+			copy(in, out, size);
+			readLine(in);	// CRLF following the chunk data
+		}
+
+		// Trailers
+		String line;
+		while ((line = readLine(in)) != null && line.length() > 0)
+			;
+	} // readChunked
+
+	/**
+	 * Copies up to the specified number of bytes from an input stream to an output stream.
+	 * @throws	EOFException if the input ends before {@code length} bytes are read, unless
+	 *			{@code length} is {@code Long.MAX_VALUE}.
+	 */
+	private static void copy(InputStream in, OutputStream out, long length) throws IOException {
+		byte[] buffer = new byte[512];
+		long remaining = length;
+		while (remaining > 0) {
+			int n = in.read(buffer, 0, (int)Math.min(buffer.length, remaining));
+			if (n == -1) {
+				if (length == Long.MAX_VALUE)
+					return;
+				throw new EOFException("Unexpected end of response body");
+			}
+			out.write(buffer, 0, n);
+			remaining -= n;
+		}
+	} // copy
+
+} // class HttpConnectionPool
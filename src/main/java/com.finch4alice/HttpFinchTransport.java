@@ -0,0 +1,187 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.io.IOException;
+
+/**
+ * FinchTransport which communicates with the Bird Brain Robot Server using HTTP GET requests.
+ *
+ * <p>Each request is mapped to a URL of the form {@code baseURL/path/arg1/arg2...}, with each
+ * argument URL-encoded.  Requests are sent over a small pool of persistent (keep-alive)
+ * connections.</p>
+ *
+ * @see <a href="https://github.com/BirdBrainTechnologies/BirdBrainRobotServer/">The BirdBrain Robot Server</a>
+ */
+public class HttpFinchTransport
+	implements FinchTransport
+{
+
+	private final String serverBaseURL;
+
+	/**
+	 * Pool of persistent connections to the server.
+	 */
+	private final HttpConnectionPool connectionPool;
+
+	/**
+	 * Constructs a new HttpFinchTransport.
+	 * @param	serverBaseURL	The base URL of the Bird Brain Robot Server to communicate with.
+	 * @throws	IllegalArgumentException if the serverBaseURL is null, malformed, or not an http
+	 *			URL.
+	 */
+	public HttpFinchTransport(String serverBaseURL) {
+		if (serverBaseURL == null)
+			throw new IllegalArgumentException("serverBaseURL cannot be null");
+
+		this.serverBaseURL = serverBaseURL;
+		this.connectionPool = new HttpConnectionPool(serverBaseURL);
+	} // HttpFinchTransport
+
+	/**
+	 * Retrieves the base URL of the Bird Brain Robot Server.
+	 * @return	The base URL of the Bird Brain Robot Server.
+	 */
+	public String getServerBaseURL() {
+		return serverBaseURL;
+	} // getServerBaseURL
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getLocation() {
+		return serverBaseURL;
+	} // getLocation
+
+	/**
+	 * Retrieves the maximum number of idle keep-alive connections retained for reuse.
+	 * @return	The maximum number of idle connections retained for reuse.
+	 */
+	public int getConnectionPoolSize() {
+		return connectionPool.getMaxIdleConnections();
+	} // getConnectionPoolSize
+
+	/**
+	 * Sets the maximum number of idle keep-alive connections retained for reuse.
+	 * @param	size	The maximum number of idle connections to retain.  A value of 0 disables
+	 *					connection reuse, causing a new connection to be made for every request.
+	 * @throws	IllegalArgumentException if size is negative.
+	 */
+	public void setConnectionPoolSize(int size) {
+		connectionPool.setMaxIdleConnections(size);
+	} // setConnectionPoolSize
+
+	/**
+	 * Retrieves the number of milliseconds an idle keep-alive connection is retained before it is
+	 * closed.
+	 * @return	The connection idle timeout, in milliseconds.
+	 */
+	public int getConnectionIdleTimeout() {
+		return connectionPool.getIdleTimeout();
+	} // getConnectionIdleTimeout
+
+	/**
+	 * Sets the number of milliseconds an idle keep-alive connection is retained before it is
+	 * closed.
+	 * @param	timeout	The connection idle timeout, in milliseconds.
+	 * @throws	IllegalArgumentException if timeout is negative.
+	 */
+	public void setConnectionIdleTimeout(int timeout) {
+		connectionPool.setIdleTimeout(timeout);
+	} // setConnectionIdleTimeout
+
+	/**
+	 * Retrieves the number of milliseconds to wait for a connection to the server to be
+	 * established.
+	 * @return	The connect timeout, in milliseconds.  0 indicates no timeout.
+	 */
+	public int getConnectTimeout() {
+		return connectionPool.getConnectTimeout();
+	} // getConnectTimeout
+
+	/**
+	 * Sets the number of milliseconds to wait for a connection to the server to be established.
+	 * @param	timeout	The connect timeout, in milliseconds.  A value of 0 waits indefinitely.
+	 * @throws	IllegalArgumentException if timeout is negative.
+	 */
+	public void setConnectTimeout(int timeout) {
+		connectionPool.setConnectTimeout(timeout);
+	} // setConnectTimeout
+
+	/**
+	 * Retrieves the number of milliseconds to wait for a response from the server.
+	 * @return	The read timeout, in milliseconds.  0 indicates no timeout.
+	 */
+	public int getReadTimeout() {
+		return connectionPool.getReadTimeout();
+	} // getReadTimeout
+
+	/**
+	 * Sets the number of milliseconds to wait for a response from the server.  A request which
+	 * exceeds the timeout fails with a {@link java.net.SocketTimeoutException}.
+	 * @param	timeout	The read timeout, in milliseconds.  A value of 0 waits indefinitely.
+	 * @throws	IllegalArgumentException if timeout is negative.
+	 */
+	public void setReadTimeout(int timeout) {
+		connectionPool.setReadTimeout(timeout);
+	} // setReadTimeout
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>If the server responds with an HTTP status other than 200, the status and any
+	 * response text are written to the console, and null is returned.</p>
+	 */
+	public String request(String path, String... args) throws IOException {
+		return toResult(connectionPool.get(path, args));
+	} // request
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * <p>The requests are pipelined over a single persistent connection: all of them are sent
+	 * before any response is read, so the batch completes in about one round-trip.  If the server
+	 * turns out not to answer pipelined requests, they are sent one at a time instead (see
+	 * {@link HttpConnectionPool#pipeline(FinchRequest...)}).</p>
+	 */
+	public String[] batch(FinchRequest... requests) throws IOException {
+		HttpConnectionPool.Response[] responses = connectionPool.pipeline(requests);
+		String[] rv = new String[responses.length];
+		for (int i = 0; i < responses.length; ++i)
+			rv[i] = toResult(responses[i]);
+		return rv;
+	} // batch
+
+	/**
+	 * Converts a response into the result of a request.
+	 */
+	private static String toResult(HttpConnectionPool.Response r) {
+		if (r.status != 200) {
+			System.out.println("Unexpected HTTP status received: "+ r.status +": "+ r.message);
+			// Echo error contents...
+			if (r.body.length() > 0)
+				System.out.println(r.body);
+			return null;
+		}
+
+		// Return response contents, without any trailing line break
+		String response = r.body;
+		int end = response.length();
+		while ((end > 0) && ((response.charAt(end - 1) == '\n') || (response.charAt(end - 1) == '\r')))
+			--end;
+		return response.substring(0, end);
+	} // toResult
+
+	/**
+	 * Closes any idle connections to the server.  The transport remains usable, but subsequent
+	 * requests will need to establish new connections.
+	 */
+	public void close() {
+		connectionPool.close();
+	} // close
+
+} // class HttpFinchTransport
@@ -0,0 +1,163 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies, in nanoseconds, with logarithmically sized buckets.
+ *
+ * <p>Each power of two range of values is divided into {@value #SUB_BUCKETS} linearly sized
+ * buckets, so recorded values are retained with a relative precision of about 6%, from 1
+ * nanosecond up to about 36 minutes.  Larger values are counted in the last bucket.  Recording a
+ * value performs a few arithmetic operations and two atomic updates, and never allocates.
+ * Queries scan all of the buckets.</p>
+ *
+ * <p>This class is thread-safe.  Queries made while values are being recorded may not reflect
+ * the most recent values.</p>
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * Base 2 logarithm of {@link #SUB_BUCKETS}.
+	 */
+	private static final int SUB_BUCKET_BITS = 4;
+
+	/**
+	 * Number of buckets each power of two range is divided into.
+	 */
+	public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Base 2 logarithm of the largest power of two range recorded precisely (up to about 36
+	 * minutes, in nanoseconds).
+	 */
+	private static final int MAX_EXPONENT = 40;
+
+	/**
+	 * Total number of buckets.
+	 */
+	private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Determines the bucket a value is counted in.
+	 */
+	static int bucketIndex(long value) {
+		if (value < SUB_BUCKETS)
+			return (int)Math.max(0, value);
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent > MAX_EXPONENT)
+			return BUCKET_COUNT - 1;
+
+		int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	} // bucketIndex
+
+	/**
+	 * Determines the smallest value counted in a bucket.
+	 */
+	static long bucketLowerBound(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+
+		int exponent = (index / SUB_BUCKETS) + SUB_BUCKET_BITS - 1;
+		long subBucket = index % SUB_BUCKETS;
+		return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+	} // bucketLowerBound
+
+	/**
+	 * Records a value.
+	 * @param	nanos	The value to record, in nanoseconds.  Negative values are recorded as 0.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+
+		buckets.incrementAndGet(bucketIndex(nanos));
+		total.add(nanos);
+
+		long m = max.get();
+		while ((nanos > m) && !max.compareAndSet(m, nanos))
+			m = max.get();
+	} // record
+
+	/**
+	 * Retrieves the number of values recorded.
+	 * @return	The number of values recorded.
+	 */
+	public long getCount() {
+		// Not tracked separately, to avoid an additional atomic update in record()
+		long n = 0;
+		for (int i = 0; i < BUCKET_COUNT; ++i)
+			n += buckets.get(i);
+		return n;
+	} // getCount
+
+	/**
+	 * Retrieves the sum of all values recorded.
+	 * @return	The sum of all values recorded, in nanoseconds.
+	 */
+	public long getTotal() {
+		return total.sum();
+	} // getTotal
+
+	/**
+	 * Retrieves the mean of the values recorded.
+	 * @return	The mean value in nanoseconds, or 0 if no values have been recorded.
+	 */
+	public double getMean() {
+		long n = getCount();
+		return (n == 0 ? 0.0 : (double)total.sum() / n);
+	} // getMean
+
+	/**
+	 * Retrieves the largest value recorded.
+	 * @return	The largest value recorded, in nanoseconds, or 0 if no values have been recorded.
+	 */
+	public long getMax() {
+		return max.get();
+	} // getMax
+
+	/**
+	 * Retrieves the value at a given percentile.
+	 * @param	percentile	The percentile, from 0 to 100.
+	 * @return	The lower bound of the bucket containing the value at the given percentile, in
+	 *			nanoseconds, or 0 if no values have been recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long n = getCount();
+		if (n == 0)
+			return 0;
+
+		long rank = Math.max(1, (long)Math.ceil(n * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; ++i) {
+			seen += buckets.get(i);
+			if (seen >= rank)
+				return Math.min(bucketLowerBound(i), getMax());
+		}
+		return getMax();
+	} // getPercentile
+
+	/**
+	 * Removes all recorded values.  Values recorded concurrently with the reset may be lost.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; ++i)
+			buckets.set(i, 0);
+		total.reset();
+		max.set(0);
+	} // reset
+
+} // class LatencyHistogram
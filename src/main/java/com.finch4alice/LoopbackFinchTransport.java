@@ -0,0 +1,65 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+/**
+ * FinchTransport which handles requests in-process, without any network communication.
+ *
+ * <p>Each request is passed directly to a {@link Handler}, which produces the response text.
+ * This allows the rest of the Finch API to be exercised and benchmarked in isolation from the
+ * network and the Bird Brain Robot Server.</p>
+ */
+public class LoopbackFinchTransport
+	implements FinchTransport
+{
+
+	/**
+	 * Handles requests sent through a LoopbackFinchTransport.  Implementations must be
+	 * thread-safe.
+	 */
+	@FunctionalInterface
+	public interface Handler {
+
+		/**
+		 * Handles a single request.
+		 * @param	path	Relative path from the server root of the service requested.
+		 * @param	args	Arguments for the request.  The handler must not modify this array, or
+		 *					retain it after returning.
+		 * @return	The response text, or null to indicate an error.
+		 */
+		public String handle(String path, String[] args);
+
+	} // interface Handler
+
+	private final Handler handler;
+
+	/**
+	 * Constructs a new LoopbackFinchTransport.
+	 * @param	handler	The handler which will process the requests.
+	 * @throws	IllegalArgumentException if handler is null.
+	 */
+	public LoopbackFinchTransport(Handler handler) {
+		if (handler == null)
+			throw new IllegalArgumentException("handler cannot be null");
+		this.handler = handler;
+	} // LoopbackFinchTransport
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getLocation() {
+		return "loopback:"+ handler;
+	} // getLocation
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String request(String path, String... args) {
+		return handler.handle(path, args);
+	} // request
+
+} // class LoopbackFinchTransport
@@ -0,0 +1,166 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Cache of parsed {@link Melody} instances, so that a melody can be played repeatedly without
+ * parsing its RTTTL string each time.
+ *
+ * <p>The built-in melodies are parsed on first use and retained for the life of the JVM.
+ * Melodies parsed from other RTTTL strings are retained in a bounded cache, from which the least
+ * recently used melodies are evicted.</p>
+ *
+ * <p>The parsed melodies are never handed out.  Each call returns a new copy of the cached
+ * melody, which is much cheaper than parsing it again, so a caller which modifies the melody it
+ * receives does not affect other callers.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public final class MelodyCache {
+
+	/**
+	 * RTTTL strings of the built-in melodies, in order of their melody number.
+	 */
+	private static final String[] BUILT_IN_MELODIES = {
+		"JingleBell:d=8,o=5,b=112:32p,a,a,4a,a,a,4a,a,c6,f.,16g,2a,a#,a#,a#.,16a#,a#,a,a.,16a,a,g,g,a,4g,4c6",
+		"StarSpangledBanner:d=4,o=5,b=100:8g.,16e,c,e,g,2c6,8e6.,16d6,c6,e,f#,2g,g,e6.,8d6,c6,2b,8a.,16b,c6,c6,g,e,c",
+		"HauntHouse: d=4,o=5,b=108: 2a4, 2e, 2d#, 2b4, 2a4, 2c, 2d, 2a#4, 2e., e, 1f4, 1a4, 1d#, 2e., d, 2c., b4, 1a4, 1p, 2a4, 2e, 2d#, 2b4, 2a4, 2c, 2d, 2a#4, 2e., e, 1f4, 1a4, 1d#, 2e., d, 2c., b4, 1a4",
+		"TakeOnMe:d=4,o=4,b=160:8f#5,8f#5,8f#5,8d5,8p,8b,8p,8e5,8p,8e5,8p,8e5,8g#5,8g#5,8a5,8b5,8a5,8a5,8a5,8e5,8p,8d5,8p,8f#5,8p,8f#5,8p,8f#5,8e5,8e5,8f#5,8e5,8f#5,8f#5,8f#5,8d5,8p,8b,8p,8e5,8p,8e5,8p,8e5,8g#5,8g#5,8a5,8b5,8a5,8a5,8a5,8e5,8p,8d5,8p,8f#5,8p,8f#5,8p,8f#5,8e5,8e5",
+		"dualingbanjos:d=4,o=5,b=200:8c#,8d,e,c#,d,b4,c#,d#4,b4,p,16c#6,16p,16d6,16p,8e6,8p,8c#6,8p,8d6,8p,8b,8p,8c#6,8p,8a,8p,b,p,a4,a4,b4,c#,d#4,c#,b4,p,8a,8p,8a,8p,8b,8p,8c#6,8p,8a,8p,8c#6,8p,8b",
+		"Greensleaves:d=4,o=5,b=140:g,2a#,c6,d.6,8d#6,d6,2c6,a,f.,8g,a,2a#,g,g.,8f,g,2a,f,2d,g,2a#,c6,d.6,8e6,d6,2c6,a,f.,8g,a,a#.,8a,g,f#.,8e,f#,2g",
+		"Indiana:d=4,o=5,b=250:e,8p,8f,8g,8p,1c6,8p.,d,8p,8e,1f,p.,g,8p,8a,8b,8p,1f6,p,a,8p,8b,2c6,2d6,2e6,e,8p,8f,8g,8p,1c6,p,d6,8p,8e6,1f.6,g,8p,8g,e.6,8p,d6,8p,8g,e.6,8p,d6,8p,8g,f.6,8p,e6,8p,8d6,2c6",
+		"KnightRider:d=4,o=5,b=125:16e,16p,16f,16e,16e,16p,16e,16e,16f,16e,16e,16e,16d#,16e,16e,16e,16e,16p,16f,16e,16e,16p,16f,16e,16f,16e,16e,16e,16d#,16e,16e,16e,16d,16p,16e,16d,16d,16p,16e,16d,16e,16d,16d,16d,16c,16d,16d,16d,16d,16p,16e,16d,16d,16p,16e,16d,16e,16d,16d,16d,16c,16d,16d,16d",
+		"munsters:d=4,o=5,b=160:d,8f,8d,8g#,8a,d6,8a#,8a,2g,8f,8g,a,8a4,8d#4,8a4,8b4,c#,8d,p,c,c6,c6,2c6,8a#,8a,8a#,8g,8a,f,p,g,g,2g,8f,8e,8f,8d,8e,2c#,p,d,8f,8d,8g#,8a,d6,8a#,8a,2g,8f,8g,a,8d#4,8a4,8d#4,8b4,c#,2d",
+		"aadams:d=4,o=5,b=160:8c,f,8a,f,8c,b4,2g,8f,e,8g,e,8e4,a4,2f,8c,f,8a,f,8c,b4,2g,8f,e,8c,d,8e,1f,8c,8d,8e,8f,1p,8d,8e,8f#,8g,1p,8d,8e,8f#,8g,p,8d,8e,8f#,8g,p,8c,8d,8e,8f",
+		"PinkPanther:d=4,o=5,b=160:8d#,8e,2p,8f#,8g,2p,8d#,8e,16p,8f#,8g,16p,8c6,8b,16p,8d#,8e,16p,8b,2a#,2p,16a,16g,16e,16d,2e",
+		"ScoobyDoo:d=4,o=5,b=160:8e6,8e6,8d6,8d6,2c6,8d6,e6,2a,8a,b,g,e6,8d6,c6,8d6,2e6,p,8e6,8e6,8d6,8d6,2c6,8d6,f6,2a,8a,b,g,e6,8d6,2c6"
+	};
+
+	/**
+	 * Maximum number of melodies parsed from user-supplied RTTTL strings to retain.
+	 */
+	public static final int MAX_CACHED_MELODIES = 32;
+
+	/**
+	 * Parsed built-in melodies, indexed by melody number.  Each entry is null until first used.
+	 */
+	private static final AtomicReferenceArray<Melody> builtInCache = new AtomicReferenceArray<>(BUILT_IN_MELODIES.length);
+
+	/**
+	 * Parsed user-supplied melodies, keyed by RTTTL string, in least recently used order.
+	 */
+	private static final Map<String, Melody> rtttlCache = new LinkedHashMap<String, Melody>(16, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry<String, Melody> eldest) {
+			return size() > MAX_CACHED_MELODIES;
+		}
+	};
+
+	private MelodyCache() {
+	} // MelodyCache
+
+	/**
+	 * Retrieves the number of built-in melodies.
+	 * @return	The number of built-in melodies.
+	 */
+	public static int getBuiltInCount() {
+		return BUILT_IN_MELODIES.length;
+	} // getBuiltInCount
+
+	/**
+	 * Retrieves the RTTTL string of a built-in melody.
+	 * @param	melodyNumber	The number of the built-in melody, starting from 0.
+	 * @return	The RTTTL string of the melody.
+	 * @throws	IndexOutOfBoundsException if there is no built-in melody with the specified number.
+	 */
+	public static String getBuiltInRTTTL(int melodyNumber) {
+		return BUILT_IN_MELODIES[melodyNumber];
+	} // getBuiltInRTTTL
+
+	/**
+	 * Retrieves a built-in melody, parsing it if it has not been used before.
+	 * @param	melodyNumber	The number of the built-in melody, starting from 0.
+	 * @return	A new copy of the parsed melody.
+	 * @throws	IndexOutOfBoundsException if there is no built-in melody with the specified number.
+	 */
+	public static Melody getBuiltIn(int melodyNumber) {
+		return copy(parsedBuiltIn(melodyNumber));
+	} // getBuiltIn
+
+	/**
+	 * Retrieves the cached instance of a built-in melody, parsing it if it has not been used
+	 * before.
+	 */
+	private static Melody parsedBuiltIn(int melodyNumber) {
+		Melody melody = builtInCache.get(melodyNumber);
+		if (melody == null) {
+			// Two threads may parse the same melody concurrently; only the first result is kept
+			builtInCache.compareAndSet(melodyNumber, null, Melody.parseRTTTL(BUILT_IN_MELODIES[melodyNumber]));
+			melody = builtInCache.get(melodyNumber);
+		}
+		return melody;
+	} // parsedBuiltIn
+
+	/**
+	 * Retrieves the melody for an RTTTL string, parsing it if it is not already cached.
+	 * @param	rtttl	The RTTTL-encoded string.
+	 * @return	A new copy of the parsed melody.
+	 * @throws	RuntimeException if the RTTTL string cannot be parsed.  Strings which fail to
+	 *			parse are not cached.
+	 */
+	public static Melody get(String rtttl) {
+		if (rtttl == null)
+			throw new IllegalArgumentException("rtttl cannot be null");
+
+		for (int i = 0; i < BUILT_IN_MELODIES.length; ++i) {
+			if (BUILT_IN_MELODIES[i].equals(rtttl))
+				return getBuiltIn(i);
+		}
+
+		Melody melody;
+		synchronized (rtttlCache) {
+			melody = rtttlCache.get(rtttl);
+		}
+		if (melody == null) {
+			// Parse outside the lock, so a long string doesn't block other callers
+			melody = Melody.parseRTTTL(rtttl);
+			synchronized (rtttlCache) {
+				Melody existing = rtttlCache.putIfAbsent(rtttl, melody);
+				if (existing != null)
+					melody = existing;
+			}
+		}
+		return copy(melody);
+	} // get
+
+	/**
+	 * Copies a cached melody, including each of its notes.
+	 */
+	private static Melody copy(Melody melody) {
+		List<Note> notes = melody.getNotes();
+		List<Note> copies = new ArrayList<Note>(notes.size());
+		for (Note n : notes)
+			copies.add(new Note(n.getNote(), n.getOctave(), n.getDuration(), n.isDotted()));
+		return new Melody(melody.getName(), melody.getBeatsPerMinute(), copies);
+	} // copy
+
+	/**
+	 * Removes all melodies parsed from user-supplied RTTTL strings from the cache.  Built-in
+	 * melodies are retained.
+	 */
+	public static void clear() {
+		synchronized (rtttlCache) {
+			rtttlCache.clear();
+		}
+	} // clear
+
+} // class MelodyCache
@@ -0,0 +1,193 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a {@link Melody} on a Finch, keeping the notes in time with the melody's tempo.
+ *
+ * <p>Each note is scheduled against an absolute deadline measured from the start of the melody
+ * using {@link System#nanoTime()}, rather than sleeping for the duration of each note after it
+ * has been sent.  The time spent sending a note to the server is therefore deducted from the
+ * wait before the next note, and a late note does not delay the notes that follow it.  Timing
+ * errors do not accumulate over the course of the melody.</p>
+ *
+ * <p>The timing of each playback is summarized in a {@link Timing} instance.</p>
+ */
+public class MelodyPlayer {
+
+	/**
+	 * Timing statistics for a single playback of a melody.  All times are in nanoseconds.
+	 */
+	public static final class Timing {
+
+		private final int noteCount;
+		private final long totalError;
+		private final long maxError;
+		private final long drift;
+		private final boolean completed;
+
+		Timing(int noteCount, long totalError, long maxError, long drift, boolean completed) {
+			this.noteCount = noteCount;
+			this.totalError = totalError;
+			this.maxError = maxError;
+			this.drift = drift;
+			this.completed = completed;
+		} // Timing
+
+		/**
+		 * Retrieves the number of notes (including rests) which were played.
+		 * @return	The number of notes played.
+		 */
+		public int getNoteCount() {
+			return noteCount;
+		} // getNoteCount
+
+		/**
+		 * Retrieves the sum of the amounts by which each note started later than scheduled.
+		 * @return	The accumulated timing error, in nanoseconds.
+		 */
+		public long getTotalError() {
+			return totalError;
+		} // getTotalError
+
+		/**
+		 * Retrieves the largest amount by which a single note started later than scheduled.
+		 * @return	The largest timing error of a single note, in nanoseconds.
+		 */
+		public long getMaxError() {
+			return maxError;
+		} // getMaxError
+
+		/**
+		 * Retrieves the amount by which the end of the melody was later than scheduled.
+		 * @return	The drift at the end of the melody, in nanoseconds.
+		 */
+		public long getDrift() {
+			return drift;
+		} // getDrift
+
+		/**
+		 * Determines whether the entire melody was played.
+		 * @return	{@code false} if playback was stopped early because the thread was interrupted.
+		 */
+		public boolean isCompleted() {
+			return completed;
+		} // isCompleted
+
+		public String toString() {
+			return String.format(
+				"%d notes, mean error %.3f ms, max error %.3f ms, drift %.3f ms%s",
+				noteCount,
+				(noteCount == 0 ? 0.0 : totalError / 1e6 / noteCount),
+				maxError / 1e6,
+				drift / 1e6,
+				(completed ? "" : " (interrupted)")
+			);
+		} // toString
+
+	} // class Timing
+
+	private final FinchHTTP finch;
+
+	/**
+	 * Constructs a new MelodyPlayer.
+	 * @param	finch	The Finch to play melodies on.
+	 */
+	public MelodyPlayer(FinchHTTP finch) {
+		if (finch == null)
+			throw new IllegalArgumentException("finch cannot be null");
+		this.finch = finch;
+	} // MelodyPlayer
+
+	/**
+	 * Plays a melody, blocking until the melody is complete or the thread is interrupted.
+	 *
+	 * @param	melody				The melody to play.
+	 * @param	frequencyMultiplier	Multiplier to apply to the note frequencies.  Use 1.0 to hear
+	 *								the notes as intended.
+	 * @param	durationMultiplier	Multiplier to apply to the note durations.  Use 1.0 to play
+	 *								the notes with their typical duration.
+	 * @param	useComputerSpeakers	Whether to play the notes through the computer's speakers (true)
+	 *								or the Finch buzzer (false).
+	 *
+	 * @return	The timing statistics of the playback.
+	 */
+	public Timing play(Melody melody, double frequencyMultiplier, double durationMultiplier, boolean useComputerSpeakers) {
+		double msPerWholeNote = durationMultiplier * melody.getMillisecondsPerWholeNote();
+		List<Note> notes = melody.getNotes();
+
+		long start = System.nanoTime();
+		double scheduledMillis = 0.0;		// Start of the current note, relative to start
+		long deadline = start;
+
+		int noteCount = 0;
+		long totalError = 0;
+		long maxError = 0;
+		boolean completed = true;
+
+		for (Note n : notes) {
+			Object event = FinchEvents.beginNote();
+			long actual = System.nanoTime();
+			long error = actual - deadline;
+			if (error > 0) {
+				totalError += error;
+				if (error > maxError)
+					maxError = error;
+			}
+			++noteCount;
+
+			double durationMillis = n.getDurationFraction() * msPerWholeNote;
+			int frequency = (int) (n.getFrequency() * frequencyMultiplier);
+			int duration = (int) durationMillis;
+
+			if (frequency != 0) {
+				if (useComputerSpeakers)
+					finch.playTone(frequency, duration);
+				else {
+					// It seems the Finch will ignore a new tone+duration if it is requested
+					// while a tone is already playing.  However, if a duration of 0 is provided,
+					// it will stop any current tone and allow a new tone to be set immediately.
+					finch.restartBuzzer(frequency, duration);
+				}
+			}
+			FinchEvents.commitNote(event, noteCount - 1, frequency, duration, deadline - start, actual - start);
+
+			// The deadline is derived from the total elapsed time of the melody, so rounding
+			// errors in individual note durations do not accumulate
+			scheduledMillis += durationMillis;
+			deadline = start + (long)(scheduledMillis * 1000000.0);
+
+			if (!waitUntil(deadline)) {
+				completed = false;
+				break;
+			}
+		}
+
+		long drift = Math.max(0, System.nanoTime() - deadline);
+		return new Timing(noteCount, totalError, maxError, drift, completed);
+	} // play
+
+	/**
+	 * Waits until the specified time.
+	 * @param	deadline	The time to wait until, as returned by {@link System#nanoTime()}.
+	 * @return	{@code false} if the thread was interrupted while waiting.  The interrupted status
+	 *			of the thread is preserved.
+	 */
+	private static boolean waitUntil(long deadline) {
+		long remaining;
+		while ((remaining = deadline - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(remaining);
+			if (Thread.currentThread().isInterrupted())
+				return false;
+		}
+		return !Thread.currentThread().isInterrupted();
+	} // waitUntil
+
+} // class MelodyPlayer
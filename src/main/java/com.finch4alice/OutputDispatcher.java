@@ -0,0 +1,221 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Sends output commands asynchronously on background daemon threads, coalescing the commands
+ * for each actuator so that only the newest pending command is sent.
+ *
+ * <p>Each actuator has a single slot holding its pending command.  Submitting a command replaces
+ * any command in the slot which has not yet been sent (last writer wins), and returns
+ * immediately.  Several commands for the same actuator can also be submitted as a unit, which is
+ * sent in order, and replaced as a whole.  At most one request per actuator is in progress at any time, so a command
+ * waits for no more than the one request already in progress before it is sent, regardless of
+ * how quickly commands are submitted.</p>
+ *
+ * <p>Actuators are independent: a slow motor command does not delay an LED command.  No
+ * ordering is guaranteed between commands for different actuators.</p>
+ */
+class OutputDispatcher {
+
+	/**
+	 * Slot index of the motor actuator.
+	 */
+	static final int MOTOR = 0;
+
+	/**
+	 * Slot index of the LED actuator.
+	 */
+	static final int LED = 1;
+
+	/**
+	 * Slot index of the buzzer actuator.
+	 */
+	static final int BUZZER = 2;
+
+	/**
+	 * Number of actuator slots.
+	 */
+	static final int SLOT_COUNT = 3;
+
+	/**
+	 * Number of seconds an idle background thread is retained before it terminates.
+	 */
+	private static final int THREAD_KEEP_ALIVE = 30;
+
+	/**
+	 * Pending command and scheduling state of a single actuator.
+	 */
+	private static final class Slot {
+		final AtomicReference<FinchRequest[]> pending = new AtomicReference<>();
+		final AtomicBoolean scheduled = new AtomicBoolean();
+	} // class Slot
+
+	private final Consumer<FinchRequest> sender;
+	private final Slot[] slots = new Slot[SLOT_COUNT];
+	private final ThreadPoolExecutor executor;
+
+	private final LongAdder submittedCount = new LongAdder();
+	private final LongAdder coalescedCount = new LongAdder();
+
+	/**
+	 * Constructs a new OutputDispatcher.
+	 * @param	sender		Sends a single command to the Finch, blocking until complete.
+	 * @param	threadName	Name to assign to the background threads.
+	 */
+	OutputDispatcher(Consumer<FinchRequest> sender, final String threadName) {
+		this.sender = sender;
+		for (int i = 0; i < SLOT_COUNT; ++i)
+			slots[i] = new Slot();
+
+		// One thread per slot at most, since each slot has at most one drain task queued
+		executor = new ThreadPoolExecutor(
+			SLOT_COUNT, SLOT_COUNT, THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(),
+			new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, threadName);
+					t.setDaemon(true);
+					return t;
+				}
+			}
+		);
+		executor.allowCoreThreadTimeOut(true);
+	} // OutputDispatcher
+
+	/**
+	 * Submits a command for an actuator, replacing any pending command for the same actuator
+	 * which has not yet been sent.
+	 * @param	slot	The actuator slot ({@link #MOTOR}, {@link #LED} or {@link #BUZZER}).
+	 * @param	request	The command to send.
+	 */
+	void submit(int slot, FinchRequest request) {
+		submit(slot, new FinchRequest[] { request });
+	} // submit
+
+	/**
+	 * Submits several commands for an actuator as a unit, replacing any pending commands for the
+	 * same actuator which have not yet been sent.  The commands are sent in order, and are never
+	 * separated by coalescing.
+	 * @param	slot		The actuator slot ({@link #MOTOR}, {@link #LED} or {@link #BUZZER}).
+	 * @param	requests	The commands to send.  The array must not be modified afterwards.
+	 */
+	void submit(int slot, FinchRequest... requests) {
+		Slot s = slots[slot];
+		submittedCount.increment();
+		if (s.pending.getAndSet(requests) != null)
+			coalescedCount.increment();
+		if (s.scheduled.compareAndSet(false, true))
+			executor.execute(() -> drain(s));
+	} // submit
+
+	/**
+	 * Sends the pending commands of a slot until none remain.
+	 */
+	private void drain(Slot s) {
+		for (;;) {
+			FinchRequest[] requests = s.pending.getAndSet(null);
+			if (requests != null) {
+				for (FinchRequest request : requests)
+					send(request);
+				continue;
+			}
+
+			s.scheduled.set(false);
+
+			// A command may have been submitted after the slot was found empty, but before the
+			// scheduled flag was cleared; if so, continue draining unless another task has already
+			// been scheduled for it
+			if ((s.pending.get() == null) || !s.scheduled.compareAndSet(false, true))
+				return;
+		}
+	} // drain
+
+	/**
+	 * Sends a single command.  Exceptions are reported rather than propagated, since the caller
+	 * which submitted the command has already returned.
+	 */
+	private void send(FinchRequest request) {
+		try {
+			sender.accept(request);
+		} catch (RuntimeException e) {
+			System.out.println("WARNING: Finch output command '"+ request +"' failed: "+ e);
+		}
+	} // send
+
+	/**
+	 * Discards all pending commands which have not yet been sent.  Commands already in progress
+	 * are not affected; call {@link #flush(long)} to wait for them.
+	 */
+	void cancel() {
+		for (Slot s : slots)
+			s.pending.set(null);
+	} // cancel
+
+	/**
+	 * Waits until all pending commands, including any in progress, have been sent.
+	 * @param	timeoutMillis	The maximum number of milliseconds to wait.
+	 * @return	{@code true} if all commands were sent, or {@code false} if the timeout elapsed or
+	 *			the thread was interrupted.
+	 */
+	boolean flush(long timeoutMillis) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		for (Slot s : slots) {
+			while (s.scheduled.get()) {
+				if ((System.nanoTime() - deadline) >= 0)
+					return false;
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+		}
+		return true;
+	} // flush
+
+	/**
+	 * Retrieves the number of commands which have been submitted but not yet started.
+	 * @return	The number of pending commands, counting a unit of commands once; at most one per
+	 *			actuator.
+	 */
+	int getPendingCount() {
+		int count = 0;
+		for (Slot s : slots) {
+			if (s.pending.get() != null)
+				++count;
+		}
+		return count;
+	} // getPendingCount
+
+	/**
+	 * Retrieves the total number of commands submitted.
+	 * @return	The number of commands submitted.
+	 */
+	long getSubmittedCount() {
+		return submittedCount.sum();
+	} // getSubmittedCount
+
+	/**
+	 * Retrieves the number of commands which were replaced by a newer command before being sent.
+	 * @return	The number of coalesced commands.
+	 */
+	long getCoalescedCount() {
+		return coalescedCount.sum();
+	} // getCoalescedCount
+
+} // class OutputDispatcher
@@ -0,0 +1,253 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+/**
+ * Single-pass parser for the response of the Bird Brain Robot Server {@code poll} service.
+ *
+ * <p>The response consists of one {@code key value} pair per line, for example:</p>
+ * <pre>
+ * temperature 21.5
+ * leftLight 50
+ * orientation Beak_Up
+ * </pre>
+ *
+ * <p>Keys and values are read directly from the response characters, and the values are stored
+ * into a reusable {@link FinchSensorSnapshot}.  No objects are allocated while parsing, except
+ * for the rare case of an unrecognized orientation name or a number too long to be converted
+ * exactly by the fast path.</p>
+ */
+final class PollParser {
+
+	/**
+	 * Orientation names reported by the server.  Parsed orientations are mapped to these
+	 * instances, so no new strings are created for the known values.
+	 */
+	private static final String[] ORIENTATIONS = {
+		"Level", "Upside Down", "Beak Up", "Beak Down", "Left Wing Down", "Right Wing Down", "In Between"
+	};
+
+	/**
+	 * Exact powers of ten which can be represented as a double.
+	 */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * Largest mantissa which can be converted to a double without loss of precision (2^53).
+	 */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	private PollParser() {
+	} // PollParser
+
+	/**
+	 * Parses a poll response.
+	 *
+	 * @param	response	The response text.  May be null.
+	 * @param	into		The snapshot to store the readings into.  If the response indicates
+	 *						the Finch is not connected, or a problem occurred, the snapshot is
+	 *						reset to the "not connected" state.
+	 *
+	 * @return	{@code true} if the response contained sensor readings, otherwise {@code false}.
+	 *
+	 * @throws	RuntimeException if a value in the response could not be parsed.
+	 */
+	static boolean parse(CharSequence response, FinchSensorSnapshot into) {
+		if ((response == null) || regionEquals(response, 0, response.length(), "null")
+				|| startsWith(response, "_problem ")) {
+			// TODO: Should we throw an exception or provide a way to read the problem message?
+			into.clear();
+			return false;
+		}
+
+		into.clearConnected();
+
+		int len = response.length();
+		int pos = 0;
+		while (pos < len) {
+			// Key
+			pos = skipWhitespace(response, pos, len);
+			int keyStart = pos;
+			while ((pos < len) && !isWhitespace(response.charAt(pos)))
+				++pos;
+			int keyEnd = pos;
+
+			// Value (rest of the line, trimmed)
+			while ((pos < len) && isBlank(response.charAt(pos)))
+				++pos;
+			int valueStart = pos;
+			while ((pos < len) && !isLineBreak(response.charAt(pos)))
+				++pos;
+			int valueEnd = pos;
+			while ((valueEnd > valueStart) && isBlank(response.charAt(valueEnd - 1)))
+				--valueEnd;
+
+			if ((keyEnd > keyStart) && (valueEnd > valueStart))
+				apply(response, keyStart, keyEnd, valueStart, valueEnd, into);
+		}
+
+		return true;
+	} // parse
+
+	/**
+	 * Stores a single key/value pair into the snapshot.  Unrecognized keys are ignored.
+	 */
+	private static void apply(CharSequence s, int keyStart, int keyEnd, int valueStart, int valueEnd, FinchSensorSnapshot into) {
+		switch (s.charAt(keyStart)) {
+		case 't':
+			if (regionEquals(s, keyStart, keyEnd, "temperature"))
+				into.setTemperature(parseDouble(s, valueStart, valueEnd));
+			break;
+		case 'l':
+			if (regionEquals(s, keyStart, keyEnd, "leftLight"))
+				into.setLeftLightSensor((int)(parseDouble(s, valueStart, valueEnd) * 2.55));
+			else if (regionEquals(s, keyStart, keyEnd, "leftObstacle"))
+				into.setLeftObstacle(regionEquals(s, valueStart, valueEnd, "true"));
+			break;
+		case 'r':
+			if (regionEquals(s, keyStart, keyEnd, "rightLight"))
+				into.setRightLightSensor((int)(parseDouble(s, valueStart, valueEnd) * 2.55));
+			else if (regionEquals(s, keyStart, keyEnd, "rightObstacle"))
+				into.setRightObstacle(regionEquals(s, valueStart, valueEnd, "true"));
+			break;
+		case 'o':
+			if (regionEquals(s, keyStart, keyEnd, "orientation"))
+				into.setOrientation(parseOrientation(s, valueStart, valueEnd));
+			break;
+		case 'X':
+			if (regionEquals(s, keyStart, keyEnd, "XAcceleration"))
+				into.setXAcceleration(parseDouble(s, valueStart, valueEnd));
+			break;
+		case 'Y':
+			if (regionEquals(s, keyStart, keyEnd, "YAcceleration"))
+				into.setYAcceleration(parseDouble(s, valueStart, valueEnd));
+			break;
+		case 'Z':
+			if (regionEquals(s, keyStart, keyEnd, "ZAcceleration"))
+				into.setZAcceleration(parseDouble(s, valueStart, valueEnd));
+			break;
+		}
+	} // apply
+
+	/**
+	 * Parses an orientation value, in which spaces are encoded as underscores.
+	 * @return	One of the known orientation names, or a new string for an unrecognized value.
+	 */
+	private static String parseOrientation(CharSequence s, int start, int end) {
+		// Only the first token is used, as the value may not contain spaces
+		int tokenEnd = start;
+		while ((tokenEnd < end) && !isWhitespace(s.charAt(tokenEnd)))
+			++tokenEnd;
+
+		for (String orientation : ORIENTATIONS) {
+			if (orientation.length() != tokenEnd - start)
+				continue;
+
+			int i = 0;
+			for (; i < orientation.length(); ++i) {
+				char c = s.charAt(start + i);
+				if (c == '_')
+					c = ' ';
+				if (c != orientation.charAt(i))
+					break;
+			}
+			if (i == orientation.length())
+				return orientation;
+		}
+
+		return s.subSequence(start, tokenEnd).toString().replace('_', ' ');
+	} // parseOrientation
+
+	/**
+	 * Parses a decimal number without allocating, falling back to {@link Double#parseDouble}
+	 * for values that cannot be converted exactly by the fast path.
+	 * @throws	RuntimeException if the value is not a valid number.
+	 */
+	static double parseDouble(CharSequence s, int start, int end) {
+		int pos = start;
+		boolean negative = false;
+		if ((pos < end) && ((s.charAt(pos) == '-') || (s.charAt(pos) == '+')))
+			negative = (s.charAt(pos++) == '-');
+
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean seenPoint = false;
+		boolean exact = true;
+
+		for (; pos < end; ++pos) {
+			char c = s.charAt(pos);
+			if ((c >= '0') && (c <= '9')) {
+				if (mantissa >= MAX_EXACT_MANTISSA / 10) {
+					exact = false;
+					break;
+				}
+				mantissa = mantissa * 10 + (c - '0');
+				++digits;
+				if (seenPoint)
+					++fractionDigits;
+			} else if ((c == '.') && !seenPoint) {
+				seenPoint = true;
+			} else {
+				break;
+			}
+		}
+
+		if (exact && (pos < end)) {
+			// Exponents and invalid characters are left to the standard parser, which will
+			// report any error
+			exact = false;
+		}
+
+		if (!exact || (digits == 0) || (fractionDigits >= POWERS_OF_TEN.length)) {
+			try {
+				return Double.parseDouble(s.subSequence(start, end).toString());
+			} catch(NumberFormatException e) {
+				throw new RuntimeException("Server returned invalid response (NumberFormatException)");
+			}
+		}
+
+		double value = (double)mantissa / POWERS_OF_TEN[fractionDigits];
+		return (negative ? -value : value);
+	} // parseDouble
+
+	private static boolean regionEquals(CharSequence s, int start, int end, String expected) {
+		if (end - start != expected.length())
+			return false;
+		for (int i = 0; i < expected.length(); ++i) {
+			if (s.charAt(start + i) != expected.charAt(i))
+				return false;
+		}
+		return true;
+	} // regionEquals
+
+	private static boolean startsWith(CharSequence s, String prefix) {
+		return (s.length() >= prefix.length()) && regionEquals(s, 0, prefix.length(), prefix);
+	} // startsWith
+
+	private static int skipWhitespace(CharSequence s, int pos, int end) {
+		while ((pos < end) && isWhitespace(s.charAt(pos)))
+			++pos;
+		return pos;
+	} // skipWhitespace
+
+	private static boolean isWhitespace(char c) {
+		return isBlank(c) || isLineBreak(c);
+	} // isWhitespace
+
+	private static boolean isBlank(char c) {
+		return (c == ' ') || (c == '\t');
+	} // isBlank
+
+	private static boolean isLineBreak(char c) {
+		return (c == '\n') || (c == '\r');
+	} // isLineBreak
+
+} // class PollParser
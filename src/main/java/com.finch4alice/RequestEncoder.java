@@ -0,0 +1,289 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.nio.charset.StandardCharsets;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Encodes Finch service requests into HTTP/1.1 GET requests without producing garbage.
+ *
+ * <p>Each request is encoded as {@code GET basePath/path/arg1/arg2... HTTP/1.1} followed by the
+ * request headers, with each argument URL-encoded exactly as {@link java.net.URLEncoder} would
+ * encode it in UTF-8.  The request line prefix of every service used by {@link FinchHTTP}, and
+ * the headers, are encoded once when the encoder is constructed.  Requests are encoded into a
+ * byte buffer which is reused by each thread, so encoding a request allocates nothing once the
+ * buffer has grown to fit.</p>
+ *
+ * <p>The class also provides the formatting of the numeric arguments of the output services.
+ * The wheel velocities and LED intensities, which range from -255 to 255, are converted to the
+ * percentages expected by the server using a precomputed table of strings.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+final class RequestEncoder {
+
+	/**
+	 * Services whose request line prefix is encoded in advance.
+	 */
+	private static final String[] KNOWN_PATHS = {
+		"poll",
+		"reset_all",
+		"finch/in/lights",
+		"finch/in/obstacles",
+		"finch/in/accelerations",
+		"finch/in/orientation",
+		"finch/in/temperature",
+		"finch/in/lastShakenTime",
+		"finch/in/lastTappedTime",
+		"finch/out/motor",
+		"finch/out/led",
+		"finch/out/buzzer",
+		"finch/out/speak",
+	};
+
+	/**
+	 * Maximum number of request line prefixes retained, including those of the known services.
+	 */
+	private static final int MAX_PREFIXES = 64;
+
+	/**
+	 * Largest magnitude of the values in the table used by {@link #formatScaled(int)}.
+	 */
+	private static final int SCALED_RANGE = 255;
+
+	/**
+	 * Formatted percentages of the values from -{@value #SCALED_RANGE} to {@value #SCALED_RANGE}.
+	 */
+	private static final String[] SCALED_VALUES = new String[2 * SCALED_RANGE + 1];
+	static {
+		for (int i = -SCALED_RANGE; i <= SCALED_RANGE; ++i)
+			SCALED_VALUES[i + SCALED_RANGE] = formatDouble(i / 2.55);
+	}
+
+	/**
+	 * Largest magnitude which {@link #formatDouble(double)} formats without falling back to a
+	 * DecimalFormat.  Values up to this magnitude, multiplied by 100, are exact in a long and
+	 * have a fractional part which can be represented in a double.
+	 */
+	private static final double MAX_FAST_VALUE = 1e13;
+
+	private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.ISO_8859_1);
+
+	/**
+	 * Reusable buffer holding an encoded request.
+	 */
+	static final class Buffer {
+		byte[] bytes = new byte[256];
+		int length;
+
+		void append(byte b) {
+			if (length == bytes.length)
+				bytes = Arrays.copyOf(bytes, bytes.length * 2);
+			bytes[length++] = b;
+		} // append
+
+		void append(byte[] b) {
+			if (length + b.length > bytes.length)
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + b.length));
+			System.arraycopy(b, 0, bytes, length, b.length);
+			length += b.length;
+		} // append
+	} // class Buffer
+
+	private static final ThreadLocal<Buffer> buffers = ThreadLocal.withInitial(Buffer::new);
+
+	private final String basePath;
+
+	/**
+	 * Encoded {@code "GET basePath/path"} for each service.
+	 */
+	private final ConcurrentMap<String, byte[]> prefixes = new ConcurrentHashMap<>();
+
+	/**
+	 * Encoded remainder of the request line, and the request headers.
+	 */
+	private final byte[] suffix;
+
+	/**
+	 * Constructs a new RequestEncoder.
+	 * @param	basePath	Path of the server root, ending with a slash.
+	 * @param	hostHeader	Value of the Host request header.
+	 */
+	RequestEncoder(String basePath, String hostHeader) {
+		this.basePath = basePath;
+		this.suffix = (
+				" HTTP/1.1\r\n"+
+				"Host: "+ hostHeader +"\r\n"+
+				"Accept-Charset: UTF-8\r\n"+
+				"Connection: keep-alive\r\n"+
+				"\r\n"
+			).getBytes(StandardCharsets.ISO_8859_1);
+
+		for (String path : KNOWN_PATHS)
+			prefixes.put(path, encodePrefix(path));
+	} // RequestEncoder
+
+	/**
+	 * Encodes a request into the calling thread's buffer.  The buffer remains valid until the
+	 * next request is encoded by the same thread.
+	 * @param	path	Relative path from the server root of the service to request.
+	 * @param	args	Arguments for the request.  May be empty.
+	 * @return	The calling thread's buffer, holding the encoded request.
+	 */
+	Buffer encode(String path, String... args) {
+		byte[] prefix = prefixes.get(path);
+		if (prefix == null) {
+			prefix = encodePrefix(path);
+			if (prefixes.size() < MAX_PREFIXES)
+				prefixes.putIfAbsent(path, prefix);
+		}
+
+		Buffer buffer = buffers.get();
+		buffer.length = 0;
+		buffer.append(prefix);
+		for (String arg : args) {
+			if (buffer.bytes[buffer.length - 1] != '/')
+				buffer.append((byte)'/');
+			appendEncoded(buffer, arg);
+		}
+		buffer.append(suffix);
+		return buffer;
+	} // encode
+
+	private byte[] encodePrefix(String path) {
+		Buffer buffer = new Buffer();
+		buffer.append("GET ".getBytes(StandardCharsets.ISO_8859_1));
+		appendPath(buffer, basePath);
+		appendPath(buffer, path);
+		return Arrays.copyOf(buffer.bytes, buffer.length);
+	} // encodePrefix
+
+	/**
+	 * Appends a path, which is expected to be ASCII, percent-encoding any other characters.
+	 */
+	private static void appendPath(Buffer buffer, String path) {
+		byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+		for (byte b : bytes) {
+			if ((b > ' ') && (b < 0x7F))
+				buffer.append(b);
+			else
+				appendEscape(buffer, b);
+		}
+	} // appendPath
+
+	/**
+	 * Appends an argument, URL-encoded in the same way as by
+	 * {@code URLEncoder.encode(arg, "UTF-8")}.
+	 */
+	private static void appendEncoded(Buffer buffer, String arg) {
+		int length = arg.length();
+		for (int i = 0; i < length; ++i) {
+			char c = arg.charAt(i);
+			if (((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || ((c >= '0') && (c <= '9'))
+					|| (c == '.') || (c == '-') || (c == '*') || (c == '_')) {
+				buffer.append((byte)c);
+			} else if (c == ' ') {
+				buffer.append((byte)'+');
+			} else if (c < 0x80) {
+				appendEscape(buffer, c);
+			} else if (c < 0x800) {
+				appendEscape(buffer, 0xC0 | (c >> 6));
+				appendEscape(buffer, 0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && (i + 1 < length) && Character.isLowSurrogate(arg.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, arg.charAt(++i));
+				appendEscape(buffer, 0xF0 | (cp >> 18));
+				appendEscape(buffer, 0x80 | ((cp >> 12) & 0x3F));
+				appendEscape(buffer, 0x80 | ((cp >> 6) & 0x3F));
+				appendEscape(buffer, 0x80 | (cp & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				appendEscape(buffer, '?');	// Unpaired surrogate, replaced as by the UTF-8 encoder
+			} else {
+				appendEscape(buffer, 0xE0 | (c >> 12));
+				appendEscape(buffer, 0x80 | ((c >> 6) & 0x3F));
+				appendEscape(buffer, 0x80 | (c & 0x3F));
+			}
+		}
+	} // appendEncoded
+
+	private static void appendEscape(Buffer buffer, int b) {
+		buffer.append((byte)'%');
+		buffer.append(HEX_DIGITS[(b >> 4) & 0xF]);
+		buffer.append(HEX_DIGITS[b & 0xF]);
+	} // appendEscape
+
+	/**
+	 * Formats a value from -255 to 255 as a percentage of 255, with at most two decimal places.
+	 * Values within that range are formatted without allocating.
+	 * @param	value	The value to format, typically a wheel velocity or LED intensity.
+	 * @return	The formatted percentage, as produced by {@code formatDouble(value / 2.55)}.
+	 */
+	static String formatScaled(int value) {
+		if ((value >= -SCALED_RANGE) && (value <= SCALED_RANGE))
+			return SCALED_VALUES[value + SCALED_RANGE];
+		return formatDouble(value / 2.55);
+	} // formatScaled
+
+	/**
+	 * Formats a double with at most two decimal places, rounding half to even.
+	 *
+	 * <p>The result is identical to that of a {@code DecimalFormat("#.##")} using the symbols of
+	 * the US locale, such as {@code "39.22"}, {@code "-5"} or {@code "0.39"}, but the value is
+	 * formatted directly instead of through a new DecimalFormat.  The decimal separator is always
+	 * a period, whatever the default locale.</p>
+	 *
+	 * @param	value	The value to format.
+	 * @return	The formatted value.
+	 */
+	static String formatDouble(double value) {
+		if (!(Math.abs(value) < MAX_FAST_VALUE))
+			return slowFormat(value);
+
+		double scaled = Math.abs(value) * 100;
+		if (scaled - Math.floor(scaled) == 0.5) {
+			// The product may have been rounded to a tie, which only the exact value can resolve
+			return slowFormat(value);
+		}
+		long hundredths = (long)Math.rint(scaled);
+
+		boolean negative = (value < 0) || ((value == 0) && (1 / value < 0));
+		long whole = hundredths / 100;
+		int fraction = (int)(hundredths % 100);
+
+		char[] chars = new char[24];
+		int pos = chars.length;
+		if (fraction != 0) {
+			if (fraction % 10 != 0)
+				chars[--pos] = (char)('0' + fraction % 10);
+			chars[--pos] = (char)('0' + fraction / 10);
+			chars[--pos] = '.';
+		}
+		do {
+			chars[--pos] = (char)('0' + whole % 10);
+			whole /= 10;
+		} while (whole != 0);
+		if (negative)
+			chars[--pos] = '-';
+		return new String(chars, pos, chars.length - pos);
+	} // formatDouble
+
+	/**
+	 * Formats a value which cannot be formatted by the fast path of
+	 * {@link #formatDouble(double)}.
+	 */
+	private static String slowFormat(double value) {
+		return new DecimalFormat("#.##", DecimalFormatSymbols.getInstance(Locale.US)).format(value);
+	} // slowFormat
+
+} // class RequestEncoder
@@ -0,0 +1,232 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Detects changes between successive sensor snapshots, and notifies the registered
+ * {@link FinchSensorListener}s.
+ *
+ * <p>{@link #update(FinchSensorState)} must only be called from a single thread (the polling
+ * thread).  Listeners may be added and removed from any thread.</p>
+ */
+class SensorEventDetector {
+
+	/**
+	 * A registered listener, and the edge detection state specific to it.
+	 */
+	private static final class Registration {
+		final FinchSensorListener listener;
+		final int lightThreshold;
+		final boolean wantsShaken;
+		final boolean wantsTapped;
+
+		// Accessed only by the polling thread
+		boolean lightInitialized;
+		boolean leftAbove;
+		boolean rightAbove;
+
+		Registration(FinchSensorListener listener, int lightThreshold) {
+			this.listener = listener;
+			this.lightThreshold = lightThreshold;
+			this.wantsShaken = overrides(listener, "shaken");
+			this.wantsTapped = overrides(listener, "tapped");
+		} // Registration
+	} // class Registration
+
+	private final LongSupplier lastShakenTime;
+	private final LongSupplier lastTappedTime;
+	private final CopyOnWriteArrayList<Registration> registrations = new CopyOnWriteArrayList<>();
+
+	// Previous readings; accessed only by the polling thread
+	private boolean initialized;
+	private boolean leftObstacle;
+	private boolean rightObstacle;
+	private String orientation;
+	private long shakenTime = -1;
+	private long tappedTime = -1;
+
+	/**
+	 * Constructs a new SensorEventDetector.
+	 * @param	lastShakenTime	Retrieves the time the Finch was last shaken, or -1 if unknown.
+	 * @param	lastTappedTime	Retrieves the time the Finch was last tapped, or -1 if unknown.
+	 */
+	SensorEventDetector(LongSupplier lastShakenTime, LongSupplier lastTappedTime) {
+		this.lastShakenTime = lastShakenTime;
+		this.lastTappedTime = lastTappedTime;
+	} // SensorEventDetector
+
+	/**
+	 * Determines whether a listener provides its own implementation of a notification method,
+	 * rather than inheriting the empty default.
+	 */
+	private static boolean overrides(FinchSensorListener listener, String methodName) {
+		try {
+			return (listener.getClass().getMethod(methodName).getDeclaringClass() != FinchSensorListener.class);
+		} catch (NoSuchMethodException e) {
+			throw new RuntimeException("Unexpected Exception", e);
+		}
+	} // overrides
+
+	/**
+	 * Registers a listener.
+	 * @param	listener		The listener to register.
+	 * @param	lightThreshold	The light sensor threshold, or a negative value if the listener is
+	 *							not interested in light threshold crossings.
+	 */
+	void addListener(FinchSensorListener listener, int lightThreshold) {
+		registrations.add(new Registration(listener, lightThreshold));
+	} // addListener
+
+	/**
+	 * Removes all registrations of a listener.
+	 * @param	listener	The listener to remove.
+	 */
+	void removeListener(FinchSensorListener listener) {
+		registrations.removeIf(r -> r.listener == listener);
+	} // removeListener
+
+	/**
+	 * Determines whether any listeners are registered.
+	 * @return	{@code true} if at least one listener is registered.
+	 */
+	boolean hasListeners() {
+		return !registrations.isEmpty();
+	} // hasListeners
+
+	/**
+	 * Compares a new snapshot with the previous one, and notifies the listeners of any changes.
+	 * @param	state	The new snapshot.
+	 */
+	void update(FinchSensorState state) {
+		if (registrations.isEmpty())
+			return;
+
+		if (Double.isNaN(state.getXAcceleration())) {
+			// Not connected; the next snapshot establishes new baseline readings
+			initialized = false;
+			for (Registration r : registrations)
+				r.lightInitialized = false;
+			return;
+		}
+
+		boolean left = state.isObstacleLeftSide();
+		boolean right = state.isObstacleRightSide();
+		String newOrientation = state.getOrientation();
+
+		if (initialized) {
+			if ((left != leftObstacle) || (right != rightObstacle)) {
+				for (Registration r : registrations) {
+					try {
+						r.listener.obstacleChanged(left, right);
+					} catch (RuntimeException e) {
+						report(e);
+					}
+				}
+			}
+
+			if (!newOrientation.equals(orientation)) {
+				for (Registration r : registrations) {
+					try {
+						r.listener.orientationChanged(orientation, newOrientation);
+					} catch (RuntimeException e) {
+						report(e);
+					}
+				}
+			}
+		}
+
+		leftObstacle = left;
+		rightObstacle = right;
+		orientation = newOrientation;
+		initialized = true;
+
+		updateLight(state.getLeftLightSensor(), state.getRightLightSensor());
+		updateShakenAndTapped();
+	} // update
+
+	/**
+	 * Notifies the listeners of light sensor threshold crossings.
+	 */
+	private void updateLight(int leftLight, int rightLight) {
+		for (Registration r : registrations) {
+			if (r.lightThreshold < 0)
+				continue;
+
+			boolean leftAbove = (leftLight > r.lightThreshold);
+			boolean rightAbove = (rightLight > r.lightThreshold);
+			boolean notify = r.lightInitialized;
+			boolean leftChanged = (leftAbove != r.leftAbove);
+			boolean rightChanged = (rightAbove != r.rightAbove);
+			r.leftAbove = leftAbove;
+			r.rightAbove = rightAbove;
+			r.lightInitialized = true;
+
+			if (!notify)
+				continue;
+			try {
+				if (leftChanged)
+					r.listener.lightThresholdCrossed(true, leftLight, leftAbove);
+				if (rightChanged)
+					r.listener.lightThresholdCrossed(false, rightLight, rightAbove);
+			} catch (RuntimeException e) {
+				report(e);
+			}
+		}
+	} // updateLight
+
+	/**
+	 * Queries the shaken and tapped times, if any listener is interested in them, and notifies
+	 * the listeners if either has changed.
+	 */
+	private void updateShakenAndTapped() {
+		boolean wantsShaken = false, wantsTapped = false;
+		for (Registration r : registrations) {
+			wantsShaken |= r.wantsShaken;
+			wantsTapped |= r.wantsTapped;
+		}
+
+		if (wantsShaken) {
+			long time = lastShakenTime.getAsLong();
+			if ((time >= 0) && (shakenTime >= 0) && (time > shakenTime)) {
+				for (Registration r : registrations) {
+					try {
+						if (r.wantsShaken)
+							r.listener.shaken();
+					} catch (RuntimeException e) {
+						report(e);
+					}
+				}
+			}
+			if (time >= 0)
+				shakenTime = time;
+		}
+
+		if (wantsTapped) {
+			long time = lastTappedTime.getAsLong();
+			if ((time >= 0) && (tappedTime >= 0) && (time > tappedTime)) {
+				for (Registration r : registrations) {
+					try {
+						if (r.wantsTapped)
+							r.listener.tapped();
+					} catch (RuntimeException e) {
+						report(e);
+					}
+				}
+			}
+			if (time >= 0)
+				tappedTime = time;
+		}
+	} // updateShakenAndTapped
+
+	private static void report(RuntimeException e) {
+		System.out.println("WARNING: Finch sensor listener failed: "+ e);
+	} // report
+
+} // class SensorEventDetector
@@ -0,0 +1,474 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+/**
+ * Fixed-capacity history of timestamped sensor samples, supporting windowed queries over the
+ * most recent samples.
+ *
+ * <p>Samples are stored in primitive ring buffers, one per sensor channel ({@link #LEFT_LIGHT},
+ * {@link #X_ACCELERATION}, etc.).  Obstacle channels store {@code 1.0} when an obstacle is
+ * detected and {@code 0.0} otherwise.  Once the history is full, each new sample replaces the
+ * oldest one.</p>
+ *
+ * <p>Windowed queries operate on the most recent {@code n} samples:</p>
+ * <ul>
+ *	<li>{@link #getMean(int, int)} and {@link #getChangeCount(int, int)} run in constant time,
+ *		using running sums maintained as samples are added.</li>
+ *	<li>{@link #getMin(int)} and {@link #getMax(int)} run in constant time for the window size
+ *		specified when the history was constructed, using monotonic queues maintained in
+ *		amortized constant time as samples are added.  {@link #getMin(int, int)} and
+ *		{@link #getMax(int, int)} accept any window size, but scan the window.</li>
+ * </ul>
+ *
+ * <p>Timestamps are in milliseconds on a monotonic time base, such as that of {@link #now()},
+ * and must not decrease from one sample to the next.  The wall clock is not suitable, as it
+ * can jump backwards when it is adjusted.</p>
+ *
+ * <p>No objects are allocated when adding samples or answering queries.  This class is
+ * thread-safe.</p>
+ */
+public class SensorHistory {
+
+	/**
+	 * Channel of the left light sensor readings (0 to 255).
+	 */
+	public static final int LEFT_LIGHT = 0;
+
+	/**
+	 * Channel of the right light sensor readings (0 to 255).
+	 */
+	public static final int RIGHT_LIGHT = 1;
+
+	/**
+	 * Channel of the left obstacle sensor readings (1.0 if an obstacle is detected, otherwise 0.0).
+	 */
+	public static final int LEFT_OBSTACLE = 2;
+
+	/**
+	 * Channel of the right obstacle sensor readings (1.0 if an obstacle is detected, otherwise 0.0).
+	 */
+	public static final int RIGHT_OBSTACLE = 3;
+
+	/**
+	 * Channel of the X-axis acceleration readings.
+	 */
+	public static final int X_ACCELERATION = 4;
+
+	/**
+	 * Channel of the Y-axis acceleration readings.
+	 */
+	public static final int Y_ACCELERATION = 5;
+
+	/**
+	 * Channel of the Z-axis acceleration readings.
+	 */
+	public static final int Z_ACCELERATION = 6;
+
+	/**
+	 * Channel of the temperature readings, in degrees Celsius.
+	 */
+	public static final int TEMPERATURE = 7;
+
+	/**
+	 * Number of channels.
+	 */
+	public static final int CHANNEL_COUNT = 8;
+
+	/**
+	 * Default number of samples retained.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/**
+	 * Default window size of the constant time min/max queries.
+	 */
+	public static final int DEFAULT_WINDOW = 10;
+
+	private final int capacity;
+	private final int window;
+
+	/**
+	 * Sample timestamps, indexed by sample number modulo capacity.
+	 */
+	private final long[] timestamps;
+
+	/**
+	 * Sample values, indexed by channel, then sample number modulo capacity.
+	 */
+	private final double[][] values;
+
+	/**
+	 * Running sums of each channel, indexed by channel, then sample number modulo (capacity + 1).
+	 * Entry k holds the sum of all samples before sample k.
+	 */
+	private final double[][] sums;
+
+	/**
+	 * Running counts of value changes of each channel, indexed like {@link #sums}.  Entry k holds
+	 * the number of samples before sample k which differ from their preceding sample.
+	 */
+	private final long[][] changes;
+
+	/**
+	 * Monotonic queues of sample numbers for the windowed minimum and maximum of each channel,
+	 * indexed by channel, then position modulo window.  The values of the samples in the minimum
+	 * queue are increasing from head to tail, and decreasing in the maximum queue, so the head of
+	 * each queue is the minimum or maximum of the window.
+	 */
+	private final long[][] minQueue;
+	private final long[][] maxQueue;
+	private final long[] minHead, minTail;
+	private final long[] maxHead, maxTail;
+
+	/**
+	 * Total number of samples added.
+	 */
+	private long count;
+
+	/**
+	 * Constructs a new SensorHistory with the default capacity and window size.
+	 */
+	public SensorHistory() {
+		this(DEFAULT_CAPACITY, DEFAULT_WINDOW);
+	} // SensorHistory
+
+	/**
+	 * Constructs a new SensorHistory.
+	 * @param	capacity	The maximum number of samples retained.
+	 * @param	window		The number of samples covered by {@link #getMin(int)} and
+	 *						{@link #getMax(int)}.
+	 * @throws	IllegalArgumentException if capacity is not positive, or window is not between 1
+	 *			and capacity.
+	 */
+	public SensorHistory(int capacity, int window) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive");
+		if ((window <= 0) || (window > capacity))
+			throw new IllegalArgumentException("window must be between 1 and capacity");
+
+		this.capacity = capacity;
+		this.window = window;
+		timestamps = new long[capacity];
+		values = new double[CHANNEL_COUNT][capacity];
+		sums = new double[CHANNEL_COUNT][capacity + 1];
+		changes = new long[CHANNEL_COUNT][capacity + 1];
+		minQueue = new long[CHANNEL_COUNT][window];
+		maxQueue = new long[CHANNEL_COUNT][window];
+		minHead = new long[CHANNEL_COUNT];
+		minTail = new long[CHANNEL_COUNT];
+		maxHead = new long[CHANNEL_COUNT];
+		maxTail = new long[CHANNEL_COUNT];
+	} // SensorHistory
+
+	/**
+	 * Retrieves the maximum number of samples retained.
+	 * @return	The maximum number of samples retained.
+	 */
+	public int getCapacity() {
+		return capacity;
+	} // getCapacity
+
+	/**
+	 * Retrieves the number of samples covered by {@link #getMin(int)} and {@link #getMax(int)}.
+	 * @return	The window size of the constant time min/max queries.
+	 */
+	public int getWindow() {
+		return window;
+	} // getWindow
+
+	/**
+	 * Retrieves the current time on the time base used by {@link FinchHTTP} for the samples it
+	 * adds, which is derived from {@link System#nanoTime()} and never jumps backwards.
+	 * @return	The current monotonic time, in milliseconds.
+	 */
+	public static long now() {
+		return System.nanoTime() / 1000000;
+	} // now
+
+	/**
+	 * Adds a sample of all of the sensor readings.  Does nothing if the state indicates that the
+	 * Finch was not connected.
+	 * @param	timeMillis	The time the sample was taken, as returned by {@link #now()}.  Must
+	 *						not be earlier than the time of the previous sample.
+	 * @param	state		The sensor readings.
+	 */
+	public void add(long timeMillis, FinchSensorState state) {
+		if (Double.isNaN(state.getXAcceleration()))
+			return;		// Not connected
+
+		add(
+			timeMillis,
+			state.getLeftLightSensor(), state.getRightLightSensor(),
+			state.isObstacleLeftSide(), state.isObstacleRightSide(),
+			state.getXAcceleration(), state.getYAcceleration(), state.getZAcceleration(),
+			state.getTemperature()
+		);
+	} // add
+
+	/**
+	 * Adds a sample of all of the sensor readings.
+	 * @param	timeMillis		The time the sample was taken, as returned by {@link #now()}.  Must
+	 *							not be earlier than the time of the previous sample.
+	 * @param	leftLight		The left light sensor reading.
+	 * @param	rightLight		The right light sensor reading.
+	 * @param	leftObstacle	The left obstacle sensor reading.
+	 * @param	rightObstacle	The right obstacle sensor reading.
+	 * @param	xAcceleration	The X-axis acceleration reading.
+	 * @param	yAcceleration	The Y-axis acceleration reading.
+	 * @param	zAcceleration	The Z-axis acceleration reading.
+	 * @param	temperature		The temperature reading.
+	 */
+	public synchronized void add(
+		long timeMillis, int leftLight, int rightLight, boolean leftObstacle, boolean rightObstacle,
+		double xAcceleration, double yAcceleration, double zAcceleration, double temperature
+	) {
+		// Ring buffer positions are computed once for all channels
+		int slot = (int)(count % capacity);
+		int prevSlot = (count > 0 ? (int)((count - 1) % capacity) : -1);
+		int sum = (int)(count % (capacity + 1));
+		int nextSum = (sum == capacity ? 0 : sum + 1);
+
+		timestamps[slot] = timeMillis;
+		addValue(LEFT_LIGHT, leftLight, slot, prevSlot, sum, nextSum);
+		addValue(RIGHT_LIGHT, rightLight, slot, prevSlot, sum, nextSum);
+		addValue(LEFT_OBSTACLE, (leftObstacle ? 1.0 : 0.0), slot, prevSlot, sum, nextSum);
+		addValue(RIGHT_OBSTACLE, (rightObstacle ? 1.0 : 0.0), slot, prevSlot, sum, nextSum);
+		addValue(X_ACCELERATION, xAcceleration, slot, prevSlot, sum, nextSum);
+		addValue(Y_ACCELERATION, yAcceleration, slot, prevSlot, sum, nextSum);
+		addValue(Z_ACCELERATION, zAcceleration, slot, prevSlot, sum, nextSum);
+		addValue(TEMPERATURE, temperature, slot, prevSlot, sum, nextSum);
+		++count;
+	} // add
+
+	/**
+	 * Adds the value of a single channel for sample number {@link #count}.
+	 * @param	slot		Index of the sample in {@link #values}.
+	 * @param	prevSlot	Index of the previous sample in {@link #values}, or -1 if none.
+	 * @param	sum			Index of the running totals before the sample in {@link #sums}.
+	 * @param	nextSum		Index of the running totals after the sample in {@link #sums}.
+	 */
+	private void addValue(int channel, double value, int slot, int prevSlot, int sum, int nextSum) {
+		double[] v = values[channel];
+		boolean changed = (prevSlot >= 0) && (v[prevSlot] != value);
+		v[slot] = value;
+
+		sums[channel][nextSum] = sums[channel][sum] + value;
+		changes[channel][nextSum] = changes[channel][sum] + (changed ? 1 : 0);
+
+		// Remove samples which have left the window from the heads of the queues, and samples
+		// which can no longer be the minimum/maximum from the tails
+		long oldest = count - window + 1;
+		long[] q = minQueue[channel];
+		if ((minHead[channel] < minTail[channel]) && (q[(int)(minHead[channel] % window)] < oldest))
+			++minHead[channel];
+		while ((minTail[channel] > minHead[channel]) && (valueOf(channel, q[(int)((minTail[channel] - 1) % window)]) >= value))
+			--minTail[channel];
+		q[(int)(minTail[channel]++ % window)] = count;
+
+		q = maxQueue[channel];
+		if ((maxHead[channel] < maxTail[channel]) && (q[(int)(maxHead[channel] % window)] < oldest))
+			++maxHead[channel];
+		while ((maxTail[channel] > maxHead[channel]) && (valueOf(channel, q[(int)((maxTail[channel] - 1) % window)]) <= value))
+			--maxTail[channel];
+		q[(int)(maxTail[channel]++ % window)] = count;
+	} // addValue
+
+	private double valueOf(int channel, long sample) {
+		return values[channel][(int)(sample % capacity)];
+	} // valueOf
+
+	/**
+	 * Retrieves the number of samples currently retained.
+	 * @return	The number of samples retained, up to the capacity.
+	 */
+	public synchronized int size() {
+		return (int)Math.min(count, capacity);
+	} // size
+
+	/**
+	 * Retrieves the total number of samples added, including those no longer retained.
+	 * @return	The total number of samples added.
+	 */
+	public synchronized long getTotalCount() {
+		return count;
+	} // getTotalCount
+
+	/**
+	 * Removes all samples.
+	 */
+	public synchronized void clear() {
+		count = 0;
+		for (int c = 0; c < CHANNEL_COUNT; ++c) {
+			sums[c][0] = 0.0;
+			changes[c][0] = 0;
+			minHead[c] = minTail[c] = 0;
+			maxHead[c] = maxTail[c] = 0;
+		}
+	} // clear
+
+	/**
+	 * Retrieves a retained sample value.
+	 * @param	channel	The channel to retrieve.
+	 * @param	age		The age of the sample; 0 is the most recent sample, 1 the one before it, etc.
+	 * @return	The sample value, or {@code NaN} if no such sample is retained.
+	 */
+	public synchronized double get(int channel, int age) {
+		if ((age < 0) || (age >= size()))
+			return Double.NaN;
+		return valueOf(channel, count - 1 - age);
+	} // get
+
+	/**
+	 * Retrieves the most recent sample value.
+	 * @param	channel	The channel to retrieve.
+	 * @return	The most recent sample value, or {@code NaN} if there are no samples.
+	 */
+	public double getLatest(int channel) {
+		return get(channel, 0);
+	} // getLatest
+
+	/**
+	 * Retrieves the timestamp of a retained sample.
+	 * @param	age		The age of the sample; 0 is the most recent sample, 1 the one before it, etc.
+	 * @return	The time the sample was taken, or 0 if no such sample is retained.
+	 */
+	public synchronized long getTimestamp(int age) {
+		if ((age < 0) || (age >= size()))
+			return 0;
+		return timestamps[(int)((count - 1 - age) % capacity)];
+	} // getTimestamp
+
+	/**
+	 * Counts the retained samples taken at or after a specified time.  The result may be used as
+	 * the sample count of the windowed queries, to query a time window.
+	 * @param	timeMillis	The time, on the same time base as the samples (for example
+	 *						{@code now() - 1000} for the last second).
+	 * @return	The number of retained samples taken at or after the specified time.
+	 */
+	public synchronized int countSince(long timeMillis) {
+		// Binary search for the oldest sample at or after timeMillis, as timestamps are ascending
+		int lo = 0, hi = size();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (timestamps[(int)((count - 1 - mid) % capacity)] >= timeMillis)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	} // countSince
+
+	/**
+	 * Limits a requested sample count to the number of retained samples.
+	 */
+	private int window(int samples) {
+		return Math.max(0, Math.min(samples, size()));
+	} // window
+
+	/**
+	 * Calculates the mean of the most recent samples of a channel, in constant time.
+	 * @param	channel	The channel to query.
+	 * @param	samples	The number of recent samples to include.  Limited to the number of samples
+	 *					retained.
+	 * @return	The mean, or {@code NaN} if there are no samples.
+	 */
+	public synchronized double getMean(int channel, int samples) {
+		int n = window(samples);
+		if (n == 0)
+			return Double.NaN;
+		double[] s = sums[channel];
+		return (s[(int)(count % (capacity + 1))] - s[(int)((count - n) % (capacity + 1))]) / n;
+	} // getMean
+
+	/**
+	 * Counts how many times the value of a channel changed within the most recent samples, in
+	 * constant time.  For obstacle channels, this is the number of times an obstacle appeared or
+	 * cleared.
+	 * @param	channel	The channel to query.
+	 * @param	samples	The number of recent samples to include.  Limited to the number of samples
+	 *					retained.
+	 * @return	The number of samples which differ from the sample before them, not counting the
+	 *			oldest sample in the window.
+	 */
+	public synchronized int getChangeCount(int channel, int samples) {
+		int n = window(samples);
+		if (n <= 1)
+			return 0;
+		long[] c = changes[channel];
+		return (int)(c[(int)(count % (capacity + 1))] - c[(int)((count - n + 1) % (capacity + 1))]);
+	} // getChangeCount
+
+	/**
+	 * Retrieves the minimum of the most recent {@link #getWindow()} samples of a channel, in
+	 * constant time.
+	 * @param	channel	The channel to query.
+	 * @return	The minimum, or {@code NaN} if there are no samples.
+	 */
+	public synchronized double getMin(int channel) {
+		if (count == 0)
+			return Double.NaN;
+		return valueOf(channel, minQueue[channel][(int)(minHead[channel] % window)]);
+	} // getMin
+
+	/**
+	 * Retrieves the maximum of the most recent {@link #getWindow()} samples of a channel, in
+	 * constant time.
+	 * @param	channel	The channel to query.
+	 * @return	The maximum, or {@code NaN} if there are no samples.
+	 */
+	public synchronized double getMax(int channel) {
+		if (count == 0)
+			return Double.NaN;
+		return valueOf(channel, maxQueue[channel][(int)(maxHead[channel] % window)]);
+	} // getMax
+
+	/**
+	 * Retrieves the minimum of the most recent samples of a channel.  Runs in constant time if
+	 * {@code samples} equals {@link #getWindow()}, otherwise scans the samples.
+	 * @param	channel	The channel to query.
+	 * @param	samples	The number of recent samples to include.  Limited to the number of samples
+	 *					retained.
+	 * @return	The minimum, or {@code NaN} if there are no samples.
+	 */
+	public synchronized double getMin(int channel, int samples) {
+		if (samples == window)
+			return getMin(channel);
+
+		int n = window(samples);
+		double min = Double.NaN;
+		for (int i = 0; i < n; ++i) {
+			double v = valueOf(channel, count - 1 - i);
+			if (!(v >= min))
+				min = v;
+		}
+		return min;
+	} // getMin
+
+	/**
+	 * Retrieves the maximum of the most recent samples of a channel.  Runs in constant time if
+	 * {@code samples} equals {@link #getWindow()}, otherwise scans the samples.
+	 * @param	channel	The channel to query.
+	 * @param	samples	The number of recent samples to include.  Limited to the number of samples
+	 *					retained.
+	 * @return	The maximum, or {@code NaN} if there are no samples.
+	 */
+	public synchronized double getMax(int channel, int samples) {
+		if (samples == window)
+			return getMax(channel);
+
+		int n = window(samples);
+		double max = Double.NaN;
+		for (int i = 0; i < n; ++i) {
+			double v = valueOf(channel, count - 1 - i);
+			if (!(v <= max))
+				max = v;
+		}
+		return max;
+	} // getMax
+
+} // class SensorHistory
@@ -0,0 +1,127 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Periodically retrieves a sensor snapshot from a source on a background daemon thread, and
+ * hands each snapshot to a consumer.
+ *
+ * <p>Polls are executed at a fixed rate.  If a single poll takes longer than the polling
+ * interval, the next poll starts as soon as the previous one completes; polls never overlap.</p>
+ */
+class SensorPoller {
+
+	private final Supplier<FinchSensorState> source;
+	private final Consumer<FinchSensorState> sink;
+	private final String threadName;
+
+	private ScheduledExecutorService executor;
+	private ScheduledFuture<?> task;
+	private int interval;
+
+	/**
+	 * Constructs a new SensorPoller.  The poller is initially stopped.
+	 * @param	source		Provides the sensor snapshots.  May return null.
+	 * @param	sink		Receives each snapshot obtained from the source.
+	 * @param	threadName	Name to assign to the background polling thread.
+	 */
+	SensorPoller(Supplier<FinchSensorState> source, Consumer<FinchSensorState> sink, String threadName) {
+		this.source = source;
+		this.sink = sink;
+		this.threadName = threadName;
+	} // SensorPoller
+
+	/**
+	 * Starts polling at the specified interval.  If already running, the interval is updated.
+	 * @param	intervalMillis	Number of milliseconds between the start of each poll.
+	 * @throws	IllegalArgumentException if intervalMillis is not positive.
+	 */
+	synchronized void start(int intervalMillis) {
+		if (intervalMillis <= 0)
+			throw new IllegalArgumentException("intervalMillis must be positive");
+
+		if (task != null)
+			task.cancel(false);
+
+		if (executor == null) {
+			executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, threadName);
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+
+		interval = intervalMillis;
+		task = executor.scheduleAtFixedRate(this::pollOnce, 0, intervalMillis, TimeUnit.MILLISECONDS);
+	} // start
+
+	/**
+	 * Starts polling at the specified interval, unless already running.  The check and the start
+	 * are atomic, so concurrent callers cannot both start polling.
+	 * @param	intervalMillis	Number of milliseconds between the start of each poll.
+	 * @return	{@code true} if polling was started, or {@code false} if it was already running, in
+	 *			which case the interval is not changed.
+	 * @throws	IllegalArgumentException if intervalMillis is not positive.
+	 */
+	synchronized boolean startIfStopped(int intervalMillis) {
+		if (executor != null)
+			return false;
+		start(intervalMillis);
+		return true;
+	} // startIfStopped
+
+	/**
+	 * Stops polling and terminates the background thread.  Has no effect if not running.
+	 */
+	synchronized void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+			task = null;
+			interval = 0;
+		}
+	} // stop
+
+	/**
+	 * Determines whether the poller is currently running.
+	 * @return	{@code true} if the poller is running.
+	 */
+	synchronized boolean isRunning() {
+		return (executor != null);
+	} // isRunning
+
+	/**
+	 * Retrieves the current polling interval.
+	 * @return	The number of milliseconds between polls, or 0 if not running.
+	 */
+	synchronized int getInterval() {
+		return interval;
+	} // getInterval
+
+	/**
+	 * Performs a single poll.  Exceptions are reported rather than propagated, since an uncaught
+	 * exception would silently cancel all future polls.
+	 */
+	private void pollOnce() {
+		try {
+			sink.accept(source.get());
+		} catch (RuntimeException e) {
+			System.out.println("WARNING: Finch sensor poll failed: "+ e);
+		}
+	} // pollOnce
+
+} // class SensorPoller
@@ -0,0 +1,86 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent calls for the same key into a single call.
+ *
+ * <p>The first thread to request a key (the leader) performs the call.  Any other thread
+ * requesting the same key while the call is in flight waits for, and receives, the leader's
+ * result instead of making a call of its own.  If the call throws an exception, the exception is
+ * thrown to the leader and all of the waiting threads.  Once the call completes, the next request
+ * for the key performs a new call, so results are never reused after they are returned.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @param	<T>	The type of result produced by the calls.
+ */
+class SingleFlight<T> {
+
+	private final ConcurrentMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+
+	private final LongAdder shared = new LongAdder();
+
+	/**
+	 * Performs a call, or waits for an identical call which is already in flight.
+	 * @param	key		Identifies the call.  Calls with equal keys must produce equivalent
+	 *					results.
+	 * @param	call	Performs the call for a key.
+	 * @return	The result of the call.
+	 */
+	T execute(String key, Function<String, T> call) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		CompletableFuture<T> existing = inFlight.putIfAbsent(key, future);
+		if (existing != null) {
+			shared.increment();
+			return await(existing);
+		}
+
+		try {
+			T result = call.apply(key);
+			future.complete(result);
+			return result;
+		} catch (RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, future);
+		}
+	} // execute
+
+	/**
+	 * Retrieves the number of calls which received the result of another thread's call.
+	 * @return	The number of calls which shared a result.
+	 */
+	long getSharedCount() {
+		return shared.sum();
+	} // getSharedCount
+
+	/**
+	 * Waits for the result of an in-flight call, rethrowing any exception it threw.
+	 */
+	private static <T> T await(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if (cause instanceof Error)
+				throw (Error)cause;
+			throw e;
+		}
+	} // await
+
+} // class SingleFlight
@@ -0,0 +1,501 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.io.IOException;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records sensor snapshots and output commands as fixed-width binary records, appended to a
+ * series of memory-mapped files.
+ *
+ * <p>Records are written to segment files named {@code prefix-000001.tlm},
+ * {@code prefix-000002.tlm}, and so on, in the recorder's directory.  Each segment is mapped into
+ * memory with {@link FileChannel#map}, and a new segment is started once the current one is full.
+ * Recording a record claims a slot in the current segment with a single atomic increment and
+ * writes the record into the mapping, so it never allocates, never locks, and never performs
+ * I/O on the calling thread.  The next segment is created and mapped in advance by a background
+ * thread, which also flushes the segments which are full.  If a record cannot be written
+ * without waiting, because the next segment is not ready yet or the recorder has been closed,
+ * it is dropped and counted (see {@link #getDroppedCount()}) instead.</p>
+ *
+ * <p>A recorder is typically installed with {@link FinchHTTP#setTelemetryRecorder}, which
+ * records every {@link FinchHTTP#poll() poll} and every motor, LED and buzzer command.</p>
+ *
+ * <h2>File format</h2>
+ *
+ * <p>All values are big-endian.  Each segment starts with a {@value #HEADER_SIZE} byte
+ * header:</p>
+ * <table>
+ *	<caption>Segment header</caption>
+ *	<tr><th>Offset</th><th>Type</th><th>Contents</th></tr>
+ *	<tr><td>0</td><td>byte[8]</td><td>{@code "FNCHTLM1"}</td></tr>
+ *	<tr><td>8</td><td>int</td><td>Record size, {@value #RECORD_SIZE}</td></tr>
+ *	<tr><td>12</td><td>int</td><td>Segment number, starting from 1</td></tr>
+ *	<tr><td>16</td><td>long</td><td>Time the recorder was created, in milliseconds since the epoch</td></tr>
+ * </table>
+ *
+ * <p>The header is followed by {@value #RECORD_SIZE} byte records, up to the end of the file.
+ * Records from different threads may appear slightly out of timestamp order.  A record whose
+ * type is 0 was never written (it was at the end of the recording, or its writer was
+ * interrupted by the process exiting) and should be skipped.</p>
+ * <table>
+ *	<caption>Record</caption>
+ *	<tr><th>Offset</th><th>Type</th><th>Contents</th></tr>
+ *	<tr><td>0</td><td>long</td><td>Timestamp, in nanoseconds since the epoch</td></tr>
+ *	<tr><td>8</td><td>long</td><td>Id of the thread which recorded the record</td></tr>
+ *	<tr><td>16</td><td>int</td><td>Values {@code a}, {@code b} and {@code c} (see below)</td></tr>
+ *	<tr><td>28</td><td>float</td><td>X, Y and Z accelerations, and temperature (polls only)</td></tr>
+ *	<tr><td>44</td><td>int</td><td>Flags (polls only): 1 if connected, 2 if left obstacle,
+ *		4 if right obstacle</td></tr>
+ *	<tr><td>48</td><td>byte[12]</td><td>Reserved</td></tr>
+ *	<tr><td>60</td><td>int</td><td>Record type</td></tr>
+ * </table>
+ *
+ * <p>The record types, and their {@code a}, {@code b} and {@code c} values, are:</p>
+ * <ul>
+ *	<li>{@value #TYPE_POLL}: a poll.  Left light, right light, orientation code (0 unknown,
+ *		1 Level, 2 Upside Down, 3 Beak Up, 4 Beak Down, 5 Left Wing Down, 6 Right Wing Down,
+ *		7 In Between).</li>
+ *	<li>{@value #TYPE_MOTOR}: a motor command.  Left and right velocity, from -255 to 255.</li>
+ *	<li>{@value #TYPE_LED}: an LED command.  Red, green and blue, from 0 to 255.</li>
+ *	<li>{@value #TYPE_BUZZER}: a buzzer command.  Frequency in Hertz and duration in
+ *		milliseconds.</li>
+ * </ul>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public final class TelemetryRecorder
+	implements AutoCloseable
+{
+
+	/**
+	 * Record type of a poll.
+	 */
+	public static final int TYPE_POLL = 1;
+
+	/**
+	 * Record type of a motor command.
+	 */
+	public static final int TYPE_MOTOR = 2;
+
+	/**
+	 * Record type of an LED command.
+	 */
+	public static final int TYPE_LED = 3;
+
+	/**
+	 * Record type of a buzzer command.
+	 */
+	public static final int TYPE_BUZZER = 4;
+
+	/**
+	 * Size of each record, in bytes.
+	 */
+	public static final int RECORD_SIZE = 64;
+
+	/**
+	 * Size of the header at the start of each segment, in bytes.
+	 */
+	public static final int HEADER_SIZE = 64;
+
+	/**
+	 * Default maximum size of each segment file, in bytes.
+	 */
+	public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * Number of milliseconds between checks by the background thread, and before retrying to
+	 * create a segment after a failure.
+	 */
+	private static final int BACKGROUND_INTERVAL = 100;
+
+	/**
+	 * Maximum number of milliseconds {@link #close()} waits for the background thread.
+	 */
+	private static final int CLOSE_TIMEOUT = 5000;
+
+	private static final byte[] MAGIC = "FNCHTLM1".getBytes(StandardCharsets.ISO_8859_1);
+
+	/**
+	 * A mapped segment file.
+	 */
+	private static final class Segment {
+		final Path path;
+		final FileChannel channel;
+		final MappedByteBuffer buffer;
+		final long capacity;
+
+		/**
+		 * Offset of the next record to be claimed.  May exceed the capacity once the segment is
+		 * full.
+		 */
+		final AtomicLong cursor = new AtomicLong(HEADER_SIZE);
+
+		Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+			this.path = path;
+			this.channel = channel;
+			this.buffer = buffer;
+			this.capacity = buffer.capacity();
+		} // Segment
+
+		boolean isFull() {
+			return cursor.get() + RECORD_SIZE > capacity;
+		} // isFull
+
+		/**
+		 * Flushes the segment to the file, and closes the file.  The mapping remains valid until
+		 * it is garbage collected, so a late record cannot fail.
+		 */
+		void finish() {
+			try {
+				buffer.force();
+				channel.close();
+			} catch (IOException e) {
+				System.out.println("WARNING: Unable to close telemetry segment "+ path +": "+ e);
+			}
+		} // finish
+	} // class Segment
+
+	private final Path directory;
+	private final String prefix;
+	private final int segmentSize;
+
+	/**
+	 * Timestamps are the epoch time the recorder was created, plus the monotonic time elapsed
+	 * since.
+	 */
+	private final long startMillis;
+	private final long startNanos;
+
+	private final AtomicReference<Segment> current = new AtomicReference<>();
+	private final AtomicReference<Segment> spare = new AtomicReference<>();
+	private final ConcurrentLinkedQueue<Segment> retired = new ConcurrentLinkedQueue<>();
+
+	private final LongAdder recorded = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+
+	private final Thread thread;
+	private volatile boolean closed;
+	private int nextSegment = 1;	// Only accessed by the constructor and the background thread
+
+	/**
+	 * Constructs a new recorder, which writes segments of {@value #DEFAULT_SEGMENT_SIZE} bytes.
+	 * @param	directory	The directory to write the segment files to.  Created if it does not
+	 *						exist.
+	 * @param	prefix		The prefix of the segment file names.  Existing segment files with
+	 *						the same names are overwritten.
+	 * @throws	IOException if the first segment could not be created.
+	 */
+	public TelemetryRecorder(Path directory, String prefix) throws IOException {
+		this(directory, prefix, DEFAULT_SEGMENT_SIZE);
+	} // TelemetryRecorder
+
+	/**
+	 * Constructs a new recorder.
+	 * @param	directory	The directory to write the segment files to.  Created if it does not
+	 *						exist.
+	 * @param	prefix		The prefix of the segment file names.  Existing segment files with
+	 *						the same names are overwritten.
+	 * @param	segmentSize	The maximum size of each segment file, in bytes.  Rounded down to a
+	 *						whole number of records.
+	 * @throws	IllegalArgumentException if directory or prefix is null, or segmentSize cannot hold
+	 *			the header and at least one record.
+	 * @throws	IOException if the first segment could not be created.
+	 */
+	public TelemetryRecorder(Path directory, String prefix, int segmentSize) throws IOException {
+		if (directory == null)
+			throw new IllegalArgumentException("directory cannot be null");
+		if (prefix == null)
+			throw new IllegalArgumentException("prefix cannot be null");
+		if (segmentSize < HEADER_SIZE + RECORD_SIZE)
+			throw new IllegalArgumentException("segmentSize must be at least "+ (HEADER_SIZE + RECORD_SIZE));
+
+		this.directory = directory;
+		this.prefix = prefix;
+		this.segmentSize = HEADER_SIZE + (segmentSize - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+		this.startMillis = System.currentTimeMillis();
+		this.startNanos = System.nanoTime();
+
+		Files.createDirectories(directory);
+		current.set(openSegment());
+
+		thread = new Thread(this::runBackground, "Finch telemetry recorder");
+		thread.setDaemon(true);
+		thread.start();
+	} // TelemetryRecorder
+
+	/**
+	 * Records a poll.
+	 * @param	snapshot	The sensor readings obtained by the poll.
+	 * @return	{@code true} if the record was written, or {@code false} if it was dropped.
+	 */
+	public boolean recordPoll(FinchSensorSnapshot snapshot) {
+		int flags = (snapshot.isConnected() ? 1 : 0)
+				| (snapshot.isObstacleLeftSide() ? 2 : 0)
+				| (snapshot.isObstacleRightSide() ? 4 : 0);
+		return write(
+			TYPE_POLL,
+			snapshot.getLeftLightSensor(), snapshot.getRightLightSensor(), orientationCode(snapshot.getOrientation()),
+			(float)snapshot.getXAcceleration(), (float)snapshot.getYAcceleration(), (float)snapshot.getZAcceleration(),
+			(float)snapshot.getTemperature(),
+			flags
+		);
+	} // recordPoll
+
+	/**
+	 * Records a motor command.
+	 * @param	leftVelocity	The velocity of the left wheel.
+	 * @param	rightVelocity	The velocity of the right wheel.
+	 * @return	{@code true} if the record was written, or {@code false} if it was dropped.
+	 */
+	public boolean recordMotor(int leftVelocity, int rightVelocity) {
+		return write(TYPE_MOTOR, leftVelocity, rightVelocity, 0, 0, 0, 0, 0, 0);
+	} // recordMotor
+
+	/**
+	 * Records an LED command.
+	 * @param	red		The intensity of the red element of the LED.
+	 * @param	green	The intensity of the green element of the LED.
+	 * @param	blue	The intensity of the blue element of the LED.
+	 * @return	{@code true} if the record was written, or {@code false} if it was dropped.
+	 */
+	public boolean recordLED(int red, int green, int blue) {
+		return write(TYPE_LED, red, green, blue, 0, 0, 0, 0, 0);
+	} // recordLED
+
+	/**
+	 * Records a buzzer command.
+	 * @param	frequency	Frequency in Hertz of the tone.
+	 * @param	duration	Duration in milliseconds of the tone.
+	 * @return	{@code true} if the record was written, or {@code false} if it was dropped.
+	 */
+	public boolean recordBuzzer(int frequency, int duration) {
+		return write(TYPE_BUZZER, frequency, duration, 0, 0, 0, 0, 0, 0);
+	} // recordBuzzer
+
+	/**
+	 * Retrieves the number of records written.
+	 * @return	The number of records written.
+	 */
+	public long getRecordCount() {
+		return recorded.sum();
+	} // getRecordCount
+
+	/**
+	 * Retrieves the number of records dropped, because the next segment was not ready when the
+	 * current one became full, or the recorder was closed.
+	 * @return	The number of records dropped.
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	} // getDroppedCount
+
+	/**
+	 * Retrieves the directory the segment files are written to.
+	 * @return	The directory of the segment files.
+	 */
+	public Path getDirectory() {
+		return directory;
+	} // getDirectory
+
+	/**
+	 * Retrieves the file of the segment currently being written.
+	 * @return	The path of the current segment file.
+	 */
+	public Path getCurrentSegment() {
+		return current.get().path;
+	} // getCurrentSegment
+
+	/**
+	 * Determines whether the recorder has been closed.
+	 * @return	{@code true} if {@link #close()} has been called.
+	 */
+	public boolean isClosed() {
+		return closed;
+	} // isClosed
+
+	/**
+	 * Stops recording, flushes all of the records to the segment files, and closes them.  Any
+	 * later records are dropped.
+	 */
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+
+		LockSupport.unpark(thread);
+		try {
+			thread.join(CLOSE_TIMEOUT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	} // close
+
+	/**
+	 * Writes a record into the current segment, starting a new segment if it is full.
+	 */
+	private boolean write(int type, int a, int b, int c, float x, float y, float z, float temperature, int flags) {
+		if (closed) {
+			dropped.increment();
+			return false;
+		}
+
+		long timestamp = startMillis * 1000000 + (System.nanoTime() - startNanos);
+		for (int attempt = 0; attempt < 2; ++attempt) {
+			Segment s = current.get();
+			long offset = s.cursor.getAndAdd(RECORD_SIZE);
+			if (offset + RECORD_SIZE <= s.capacity) {
+				int i = (int)offset;
+				MappedByteBuffer buffer = s.buffer;
+				buffer.putLong(i, timestamp);
+				buffer.putLong(i + 8, Thread.currentThread().getId());
+				buffer.putInt(i + 16, a);
+				buffer.putInt(i + 20, b);
+				buffer.putInt(i + 24, c);
+				buffer.putFloat(i + 28, x);
+				buffer.putFloat(i + 32, y);
+				buffer.putFloat(i + 36, z);
+				buffer.putFloat(i + 40, temperature);
+				buffer.putInt(i + 44, flags);
+				buffer.putInt(i + 60, type);	// Last, so a partial record reads as unwritten
+				recorded.increment();
+				return true;
+			}
+
+			// The segment is full, switch to the spare segment if it is ready
+			if (!roll(s))
+				break;
+		}
+
+		dropped.increment();
+		return false;
+	} // write
+
+	/**
+	 * Replaces a full segment with the spare segment.
+	 * @return	{@code true} if the full segment is no longer the current one.
+	 */
+	private boolean roll(Segment full) {
+		if (current.get() != full)
+			return true;	// Another thread already rolled
+
+		Segment next = spare.getAndSet(null);
+		if (next == null) {
+			LockSupport.unpark(thread);
+			return false;
+		}
+
+		if (current.compareAndSet(full, next)) {
+			retired.add(full);
+		} else if (!spare.compareAndSet(null, next)) {
+			retired.add(next);	// Another thread rolled, and a new spare is already ready
+		}
+		LockSupport.unpark(thread);
+		return true;
+	} // roll
+
+	/**
+	 * Body of the background thread, which prepares the spare segment and finishes the full
+	 * segments.
+	 */
+	private void runBackground() {
+		while (!closed) {
+			if (spare.get() == null) {
+				try {
+					Segment s = openSegment();
+					spare.set(s);
+					Segment full = current.get();
+					if (full.isFull())
+						roll(full);
+				} catch (IOException e) {
+					System.out.println("WARNING: Unable to create telemetry segment: "+ e);
+				}
+			}
+
+			finishRetired();
+			LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(BACKGROUND_INTERVAL));
+		}
+
+		// Closing
+		finishRetired();
+		current.get().finish();
+		Segment s = spare.getAndSet(null);
+		if (s != null) {
+			s.finish();
+			try {
+				Files.deleteIfExists(s.path);
+			} catch (IOException e) {
+				// Ignore, the unused segment only contains a header
+			}
+		}
+	} // runBackground
+
+	private void finishRetired() {
+		Segment s;
+		while ((s = retired.poll()) != null)
+			s.finish();
+	} // finishRetired
+
+	/**
+	 * Creates and maps the next segment file, and writes its header.
+	 */
+	private Segment openSegment() throws IOException {
+		int number = nextSegment;
+		Path path = directory.resolve(String.format("%s-%06d.tlm", prefix, number));
+		FileChannel channel = FileChannel.open(
+			path,
+			StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+			StandardOpenOption.READ, StandardOpenOption.WRITE
+		);
+		try {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			for (int i = 0; i < MAGIC.length; ++i)
+				buffer.put(i, MAGIC[i]);
+			buffer.putInt(8, RECORD_SIZE);
+			buffer.putInt(12, number);
+			buffer.putLong(16, startMillis);
+			++nextSegment;	// Only once created, so a failed attempt does not leave a gap
+			return new Segment(path, channel, buffer);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	} // openSegment
+
+	/**
+	 * Converts an orientation to its code in the poll records.
+	 */
+	private static int orientationCode(String orientation) {
+		if (orientation == null)
+			return 0;
+		switch (orientation) {
+		case "Level":			return 1;
+		case "Upside Down":		return 2;
+		case "Beak Up":			return 3;
+		case "Beak Down":		return 4;
+		case "Left Wing Down":	return 5;
+		case "Right Wing Down":	return 6;
+		case "In Between":		return 7;
+		default:				return 0;
+		}
+	} // orientationCode
+
+} // class TelemetryRecorder
@@ -34,32 +34,51 @@ public class STransport
 	/* ALL CHANGES BELOW HERE */
 
 	/**
-	 * Object used for acquiring a thread synchronization lock on the underlying FinchHTTP object.
+	 * Base URL of the Bird Brain Robot Server controlling the Finch robot bound to this
+	 * instance.
+	 *
+	 * <p>The FinchHTTP instance for each server is shared through the {@link FinchRegistry}, so
+	 * all STransport instances bound to the same server control the same robot, while instances
+	 * bound to different servers control separate robots independently.  FinchHTTP is
+	 * thread-safe, so calls from separate Alice threads (eg. within a {@code doTogether} block)
+	 * proceed in parallel rather than waiting for each other's network requests to complete.</p>
 	 */
-	private static Object finchLock = new Object();
+	private volatile String finchServerURL = FinchHTTP.DEFAULT_SERVER_URL;
 
 	/**
-	 * FinchHTTP object instance used for communicating with the attached Finch robot.
-	 * Only one instance is maintained, regardless of how many STransport subclass instances are
-	 * created, and the BirdbrainRobotServer doesn't support multiple connected Finch robots
-	 * anyway.
+	 * Retrieves the FinchHTTP instance for the server bound to this instance.
+	 * A new instance will be created if one has not yet been.
+	 *
+	 * @return	The FinchHTTP instance for the server bound to this instance.
 	 */
-	private static FinchHTTP finch;
+	private FinchHTTP getFinch() {
+		return FinchRegistry.get(finchServerURL);
+	}
 
 	/**
-	 * Retrieves the FinchHTTP instance maintained by this class.
-	 * A new instance will be created if one has not yet been.
+	 * Sets the base URL of the Bird Brain Robot Server controlling the Finch robot used by this
+	 * object.  Use this to control multiple Finch robots, each connected to a separate server
+	 * (eg. "http://localhost:22180/").
 	 *
-	 * @return	The FinchHTTP instance maintained by this class.
+	 * @param	url	The base URL of the Bird Brain Robot Server
 	 */
-	private FinchHTTP getFinch() {
-        synchronized (finchLock) {
-            if (finch == null)
-                finch = new FinchHTTP();
-// TODO: Support specifying the server base URL...
-            return finch;
-        }
-    }
+	@MethodTemplate
+	public void finchSetServerURL(String url) {
+		// Create the FinchHTTP instance now, so an invalid URL is reported immediately
+		FinchRegistry.get(url);
+		finchServerURL = url;
+	}
+
+	/**
+	 * Returns the base URL of the Bird Brain Robot Server controlling the Finch robot used by
+	 * this object.
+	 *
+	 * @return	The base URL of the Bird Brain Robot Server
+	 */
+	@MethodTemplate
+	public String finchGetServerURL() {
+		return finchServerURL;
+	}
 
 	/**
 	 * Plays a tone at the specified frequency for the specified duration on the Finch's
@@ -76,9 +95,7 @@ public class STransport
 	 */
 	@MethodTemplate
     public void finchBuzz(int frequency, int duration) {
-		synchronized (finchLock) {
-			getFinch().buzz(frequency, duration);
-		}
+		getFinch().buzz(frequency, duration);
     }
 
 	/**
@@ -89,9 +106,7 @@ public class STransport
 	 */
 	@MethodTemplate
 	public int[] finchGetLightSensors() {
-		synchronized (finchLock) {
-			return getFinch().getLightSensors();
-		}
+		return getFinch().getLightSensors();
 	}
 
 	/**
@@ -102,9 +117,7 @@ public class STransport
 	 */
 	@MethodTemplate
 	public int finchGetLeftLightSensor() {
-		synchronized (finchLock) {
-			return getFinch().getLeftLightSensor();
-		}
+		return getFinch().getLeftLightSensor();
 	}
 
 	/**
@@ -115,9 +128,7 @@ public class STransport
 	 */
 	@MethodTemplate
 	public int finchGetRightLightSensor() {
-		synchronized (finchLock) {
-			return getFinch().getRightLightSensor();
-		}
+		return getFinch().getRightLightSensor();
 	}
 
 	/**
@@ -128,9 +139,7 @@ public class STransport
 	 */
 	@MethodTemplate
 	public boolean finchIsLeftLightSensor(int limit) {
-		synchronized (finchLock) {
-			return getFinch().isLeftLightSensor(limit);
-		}
+		return getFinch().isLeftLightSensor(limit);
 	}
 
 	/**
@@ -141,9 +150,35 @@ public class STransport
 	 */
 	@MethodTemplate
 	public boolean finchIsRightLightSensor(int limit) {
-		synchronized (finchLock) {
-			return getFinch().isRightLightSensor(limit);
-		}
+		return getFinch().isRightLightSensor(limit);
+	}
+
+	/**
+	 * Returns the average of the most recent left light sensor readings.  The readings are
+	 * recorded by background polling, so {@link #finchStartPolling(int)} must be called first.
+	 *
+	 * @param	samples	The number of recent readings to average
+	 * @return	The average light level at the left light sensor, or {@code NaN} if no readings
+	 *			have been recorded
+	 */
+	@MethodTemplate
+	public double finchGetAverageLeftLightSensor(int samples) {
+		SensorHistory history = getFinch().getSensorHistory();
+		return (history == null ? Double.NaN : history.getMean(SensorHistory.LEFT_LIGHT, samples));
+	}
+
+	/**
+	 * Returns the average of the most recent right light sensor readings.  The readings are
+	 * recorded by background polling, so {@link #finchStartPolling(int)} must be called first.
+	 *
+	 * @param	samples	The number of recent readings to average
+	 * @return	The average light level at the right light sensor, or {@code NaN} if no readings
+	 *			have been recorded
+	 */
+	@MethodTemplate
+	public double finchGetAverageRightLightSensor(int samples) {
+		SensorHistory history = getFinch().getSensorHistory();
+		return (history == null ? Double.NaN : history.getMean(SensorHistory.RIGHT_LIGHT, samples));
 	}
 
 /*
@@ -161,13 +196,11 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 * /
 	@MethodTemplate
 	public Double[] finchGetAccelerations() {
-		synchronized (finchLock) {
-			double[] tmp = getFinch().getAccelerations();
-			if (tmp == null)
-				return null;
+		double[] tmp = getFinch().getAccelerations();
+		if (tmp == null)
+			return null;
 
-			return new Double[] { tmp[0], tmp[1], tmp[2] };
-		}
+		return new Double[] { tmp[0], tmp[1], tmp[2] };
 	}
 */
 
@@ -189,17 +222,15 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 		if (accelerations == null || accelerations.length < 3)
 			return false;
 
-		synchronized (finchLock) {
-			double[] tmp = getFinch().getAccelerations();
-			if (tmp == null)
-				return false;
+		double[] tmp = getFinch().getAccelerations();
+		if (tmp == null)
+			return false;
 
-			accelerations[0] = tmp[0];
-			accelerations[1] = tmp[1];
-			accelerations[2] = tmp[2];
+		accelerations[0] = tmp[0];
+		accelerations[1] = tmp[1];
+		accelerations[2] = tmp[2];
 
-			return true;
-		}
+		return true;
 	}
 
 	/**
@@ -212,9 +243,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public double finchGetXAcceleration() {
-		synchronized (finchLock) {
-			return getFinch().getXAcceleration();
-		}
+		return getFinch().getXAcceleration();
 	}
 
 	/**
@@ -227,9 +256,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public double finchGetYAcceleration() {
-		synchronized (finchLock) {
-			return getFinch().getYAcceleration();
-		}
+		return getFinch().getYAcceleration();
 	}
 
 	/**
@@ -243,9 +270,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public double finchGetZAcceleration() {
-		synchronized (finchLock) {
-			return getFinch().getZAcceleration();
-		}
+		return getFinch().getZAcceleration();
 	}
 
 	/**
@@ -254,9 +279,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public boolean finchIsBeakDown() {
-		synchronized (finchLock) {
-			return getFinch().isBeakDown();
-		}
+		return getFinch().isBeakDown();
 	}
 
 	/**
@@ -265,9 +288,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public boolean finchIsBeakUp() {
-		synchronized (finchLock) {
-			return getFinch().isBeakUp();
-		}
+		return getFinch().isBeakUp();
 	}
 
 	/**
@@ -276,9 +297,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public boolean finchIsLevel() {
-		synchronized (finchLock) {
-			return getFinch().isFinchLevel();
-		}
+		return getFinch().isFinchLevel();
 	}
 
 	/**
@@ -287,9 +306,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public boolean finchIsUpsideDown() {
-		synchronized (finchLock) {
-			return getFinch().isFinchUpsideDown();
-		}
+		return getFinch().isFinchUpsideDown();
 	}
 
 	/**
@@ -298,9 +315,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public boolean finchIsLeftWingDown() {
-		synchronized (finchLock) {
-			return getFinch().isLeftWingDown();
-		}
+		return getFinch().isLeftWingDown();
 	}
 
 	/**
@@ -309,9 +324,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public boolean finchIsRightWingDown() {
-		synchronized (finchLock) {
-			return getFinch().isRightWingDown();
-		}
+		return getFinch().isRightWingDown();
 	}
 
 /*
@@ -321,9 +334,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 * /
 	@MethodTemplate
 	public boolean finchIsShaken() {
-		synchronized (finchLock) {
-			return getFinch().isShaken();
-		}
+		return getFinch().isShaken();
 	}
 */
 
@@ -334,9 +345,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 * /
 	@MethodTemplate
 	public boolean finchIsTapped() {
-		synchronized (finchLock) {
-			return getFinch().isTapped();
-		}
+		return getFinch().isTapped();
 	}
 */
 
@@ -349,9 +358,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public String finchGetOrientation() {
-		synchronized (finchLock) {
-			return getFinch().getOrientation();
-		}
+		return getFinch().getOrientation();
 	}
 
 	/**
@@ -366,9 +373,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public double finchGetXOrientationAngle() {
-		synchronized (finchLock) {
-			return getFinch().getXOrientationAngle();
-		}
+		return getFinch().getXOrientationAngle();
 	}
 
 	/**
@@ -385,9 +390,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public double finchGetYOrientationAngle() {
-		synchronized (finchLock) {
-			return getFinch().getYOrientationAngle();
-		}
+		return getFinch().getYOrientationAngle();
 	}
 
 /*
@@ -408,9 +411,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 * /
 	@MethodTemplate
 	public double[] finchGetOrientationAngles() {
-		synchronized (finchLock) {
-			return getFinch().finchGetOrientationAngles();
-		}
+		return getFinch().finchGetOrientationAngles();
 	}
 */
 
@@ -421,9 +422,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public boolean[] finchGetObstacleSensors() {
-		synchronized (finchLock) {
-			return getFinch().getObstacleSensors();
-		}
+		return getFinch().getObstacleSensors();
 	}
 
 	/**
@@ -432,9 +431,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public boolean finchIsObstacleLeftSide() {
-		synchronized (finchLock) {
-			return getFinch().isObstacleLeftSide();
-		}
+		return getFinch().isObstacleLeftSide();
 	}
 
 	/**
@@ -443,9 +440,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public boolean finchIsObstacleRightSide() {
-		synchronized (finchLock) {
-			return getFinch().isObstacleRightSide();
-		}
+		return getFinch().isObstacleRightSide();
 	}
 
 	/**
@@ -454,9 +449,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public boolean finchIsObstacle() {
-		synchronized (finchLock) {
-			return getFinch().isObstacle();
-		}
+		return getFinch().isObstacle();
 	}
 
 	/**
@@ -469,9 +462,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public double finchGetTemperature() {
-		synchronized (finchLock) {
-			return getFinch().getTemperature();
-		}
+		return getFinch().getTemperature();
 	}
 
 	/**
@@ -483,9 +474,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public boolean finchIsTemperature(double limit) {
-		synchronized (finchLock) {
-			return getFinch().isTemperature(limit);
-		}
+		return getFinch().isTemperature(limit);
 	}
 
 	/**
@@ -495,9 +484,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public double finchGetTemperatureFahrenheit() {
-		synchronized (finchLock) {
-			return getFinch().getTemperatureFahrenheit();
-		}
+		return getFinch().getTemperatureFahrenheit();
 	}
 
 	/**
@@ -510,9 +497,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
     public void finchSetWheelVelocities(int leftVelocity, int rightVelocity) {
-		synchronized (finchLock) {
-			getFinch().setWheelVelocities(leftVelocity, rightVelocity);
-		}
+		getFinch().setWheelVelocities(leftVelocity, rightVelocity);
     }
 
 	/**
@@ -520,9 +505,7 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
     public void finchStopWheels() {
-		synchronized (finchLock) {
-			getFinch().stopWheels();
-		}
+		getFinch().stopWheels();
     }
 
 	/**
@@ -539,29 +522,12 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
     public void finchSetLED(int red, int green, int blue) {
-		synchronized (finchLock) {
-			getFinch().setLED(red, green, blue);
-		}
+		getFinch().setLED(red, green, blue);
     }
 
 	@MethodTemplate
     public void finchPlayMelody(int melodyNumber, double frequencyMultiplier, double durationMultiplier) {
-		String[] melodies = new String[] {
-						"JingleBell:d=8,o=5,b=112:32p,a,a,4a,a,a,4a,a,c6,f.,16g,2a,a#,a#,a#.,16a#,a#,a,a.,16a,a,g,g,a,4g,4c6",
-						"StarSpangledBanner:d=4,o=5,b=100:8g.,16e,c,e,g,2c6,8e6.,16d6,c6,e,f#,2g,g,e6.,8d6,c6,2b,8a.,16b,c6,c6,g,e,c",
-						"HauntHouse: d=4,o=5,b=108: 2a4, 2e, 2d#, 2b4, 2a4, 2c, 2d, 2a#4, 2e., e, 1f4, 1a4, 1d#, 2e., d, 2c., b4, 1a4, 1p, 2a4, 2e, 2d#, 2b4, 2a4, 2c, 2d, 2a#4, 2e., e, 1f4, 1a4, 1d#, 2e., d, 2c., b4, 1a4",
-						"TakeOnMe:d=4,o=4,b=160:8f#5,8f#5,8f#5,8d5,8p,8b,8p,8e5,8p,8e5,8p,8e5,8g#5,8g#5,8a5,8b5,8a5,8a5,8a5,8e5,8p,8d5,8p,8f#5,8p,8f#5,8p,8f#5,8e5,8e5,8f#5,8e5,8f#5,8f#5,8f#5,8d5,8p,8b,8p,8e5,8p,8e5,8p,8e5,8g#5,8g#5,8a5,8b5,8a5,8a5,8a5,8e5,8p,8d5,8p,8f#5,8p,8f#5,8p,8f#5,8e5,8e5",
-						"dualingbanjos:d=4,o=5,b=200:8c#,8d,e,c#,d,b4,c#,d#4,b4,p,16c#6,16p,16d6,16p,8e6,8p,8c#6,8p,8d6,8p,8b,8p,8c#6,8p,8a,8p,b,p,a4,a4,b4,c#,d#4,c#,b4,p,8a,8p,8a,8p,8b,8p,8c#6,8p,8a,8p,8c#6,8p,8b",
-						"Greensleaves:d=4,o=5,b=140:g,2a#,c6,d.6,8d#6,d6,2c6,a,f.,8g,a,2a#,g,g.,8f,g,2a,f,2d,g,2a#,c6,d.6,8e6,d6,2c6,a,f.,8g,a,a#.,8a,g,f#.,8e,f#,2g",
-						"Indiana:d=4,o=5,b=250:e,8p,8f,8g,8p,1c6,8p.,d,8p,8e,1f,p.,g,8p,8a,8b,8p,1f6,p,a,8p,8b,2c6,2d6,2e6,e,8p,8f,8g,8p,1c6,p,d6,8p,8e6,1f.6,g,8p,8g,e.6,8p,d6,8p,8g,e.6,8p,d6,8p,8g,f.6,8p,e6,8p,8d6,2c6",
-						"KnightRider:d=4,o=5,b=125:16e,16p,16f,16e,16e,16p,16e,16e,16f,16e,16e,16e,16d#,16e,16e,16e,16e,16p,16f,16e,16e,16p,16f,16e,16f,16e,16e,16e,16d#,16e,16e,16e,16d,16p,16e,16d,16d,16p,16e,16d,16e,16d,16d,16d,16c,16d,16d,16d,16d,16p,16e,16d,16d,16p,16e,16d,16e,16d,16d,16d,16c,16d,16d,16d",
-						"munsters:d=4,o=5,b=160:d,8f,8d,8g#,8a,d6,8a#,8a,2g,8f,8g,a,8a4,8d#4,8a4,8b4,c#,8d,p,c,c6,c6,2c6,8a#,8a,8a#,8g,8a,f,p,g,g,2g,8f,8e,8f,8d,8e,2c#,p,d,8f,8d,8g#,8a,d6,8a#,8a,2g,8f,8g,a,8d#4,8a4,8d#4,8b4,c#,2d",
-						"aadams:d=4,o=5,b=160:8c,f,8a,f,8c,b4,2g,8f,e,8g,e,8e4,a4,2f,8c,f,8a,f,8c,b4,2g,8f,e,8c,d,8e,1f,8c,8d,8e,8f,1p,8d,8e,8f#,8g,1p,8d,8e,8f#,8g,p,8d,8e,8f#,8g,p,8c,8d,8e,8f",
-						"PinkPanther:d=4,o=5,b=160:8d#,8e,2p,8f#,8g,2p,8d#,8e,16p,8f#,8g,16p,8c6,8b,16p,8d#,8e,16p,8b,2a#,2p,16a,16g,16e,16d,2e",
-						"ScoobyDoo:d=4,o=5,b=160:8e6,8e6,8d6,8d6,2c6,8d6,e6,2a,8a,b,g,e6,8d6,c6,8d6,2e6,p,8e6,8e6,8d6,8d6,2c6,8d6,f6,2a,8a,b,g,e6,8d6,2c6"
-					};
-
-		finchPlayRTTTL(melodies[melodyNumber], frequencyMultiplier, durationMultiplier, false);
+		playMelody(MelodyCache.getBuiltIn(melodyNumber), frequencyMultiplier, durationMultiplier, false);
 	}
 
 	/**
@@ -591,42 +557,27 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	{
 		Melody melody;
 		try {
-			melody = Melody.parseRTTTL( rtttl );
+			melody = MelodyCache.get( rtttl );
 		} catch (Throwable e) {
 			return;
 		}
 
-		durationMultiplier = durationMultiplier * melody.getMillisecondsPerWholeNote();
-
-		for (Note n : melody.getNotes()) {
-			int frequency = (int) (n.getFrequency() * frequencyMultiplier);
-			int duration = (int) (n.getDurationFraction() * durationMultiplier);
-
-			if (frequency != 0) {
-				if (useComputerSpeakers)
-					synchronized (finchLock) {
-						getFinch().playTone(frequency, duration);
-					}
-				else {
-					// It seems the Finch will ignore a new tone+duration if it is requested
-					// while a tone is already playing.  However, if a duration of 0 is provided,
-					// it will stop any current tone and allow a new tone to be set immediately.
-					finchBuzz(0, 0);
-
-					finchBuzz(frequency, duration);
-				}
-			}
-
-			if (!useComputerSpeakers) {
-				try {
-					Thread.sleep(duration);
-				} catch (InterruptedException e) {
-					// Interrupt thread again to ensure any following sleep is interrupted (eg. signal the thread to shutdown gracefully)
-					Thread.currentThread().interrupt();
-					break; // Exit the current loop, as the thread should terminate
-				}
-			}
-		}
+		playMelody(melody, frequencyMultiplier, durationMultiplier, useComputerSpeakers);
+	}
+
+	/**
+	 * Plays a parsed melody on the Finch or the Computer's speaker.
+	 * @see #finchPlayRTTTL(String, double, double, boolean)
+	 */
+	private void playMelody(
+					Melody melody, double frequencyMultiplier,
+					double durationMultiplier, boolean useComputerSpeakers
+				)
+	{
+		// Notes are scheduled against the start of the melody, so the time taken to send each
+		// note to the Finch doesn't slow down the tempo
+		new MelodyPlayer(getFinch()).play(melody, frequencyMultiplier, durationMultiplier, useComputerSpeakers);
+
 		try {
 			Thread.sleep(1000);
 		} catch (InterruptedException e) {
@@ -642,17 +593,56 @@ TODO: While we can add this method returning a Double[] (or double[]), it doesn'
 	 */
 	@MethodTemplate
 	public boolean finchIsConnected() {
-		synchronized (finchLock) {
-			return getFinch().isConnected();
-		}
+		return getFinch().isConnected();
+	}
+
+	/**
+	 * Enables background polling of the Finch sensors.
+	 *
+	 * <p>While polling, all of the sensors are read with a single request to the server every
+	 * {@code intervalMilliseconds} milliseconds, and the sensor methods return the most recent
+	 * readings immediately instead of each making their own request.  This is recommended for
+	 * scenes that read several sensors every frame.</p>
+	 *
+	 * @param	intervalMilliseconds	The number of milliseconds between polls.  Values of 0 or
+	 *									less disable polling.
+	 */
+	@MethodTemplate
+	public void finchStartPolling(int intervalMilliseconds) {
+		if (intervalMilliseconds > 0)
+			getFinch().startPolling(intervalMilliseconds);
+		else
+			getFinch().stopPolling();
+	}
+
+	/**
+	 * Disables background polling of the Finch sensors.  The sensor methods will once again make
+	 * a request to the server each time they are called.
+	 */
+	@MethodTemplate
+	public void finchStopPolling() {
+		getFinch().stopPolling();
+	}
+
+	/**
+	 * Enables or disables asynchronous motor, LED and buzzer commands.
+	 *
+	 * <p>When enabled, the motor, LED and buzzer methods return immediately instead of waiting
+	 * for the server to respond.  If commands are issued faster than the server can process them,
+	 * only the newest command for each output is sent.  This keeps the Finch responsive during
+	 * fast animations.</p>
+	 *
+	 * @param	enabled	Whether commands should be sent asynchronously.
+	 */
+	@MethodTemplate
+	public void finchSetAsyncOutputs(boolean enabled) {
+		getFinch().setAsyncOutputs(enabled);
 	}
 
 /*
 	@MethodTemplate
     public void finchQuit() {
-		synchronized (finchLock) {
-			getFinch().quit();
-		}
+		getFinch().quit();
     }
 */
 
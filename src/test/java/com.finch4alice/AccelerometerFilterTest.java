@@ -0,0 +1,128 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the smoothing, hysteresis and reset of {@link AccelerometerFilter}.
+ */
+public class AccelerometerFilterTest {
+
+	private long time = 1000;
+
+	/**
+	 * Creates a sample from a connected Finch with the given accelerations.
+	 */
+	private static FinchSensorSnapshot sample(double x, double y, double z) {
+		FinchSensorSnapshot snapshot = new FinchSensorSnapshot();
+		assertTrue(PollParser.parse(
+				"XAcceleration "+ x +"\n"+
+				"YAcceleration "+ y +"\n"+
+				"ZAcceleration "+ z +"\n", snapshot));
+		return snapshot;
+	}
+
+	/**
+	 * Adds a sample taken 10ms after the previous one, and returns the filtered orientation.
+	 */
+	private String update(AccelerometerFilter filter, double x, double y, double z) {
+		time += 10;
+		return filter.update(time, sample(x, y, z)).getOrientation();
+	}
+
+	@Test
+	public void hysteresisHoldsOrientationAtRegionBoundary() {
+		// No smoothing, so only the hysteresis holds the orientation
+		AccelerometerFilter filter = new AccelerometerFilter(0, 0.1);
+		assertEquals("Level", update(filter, 0.0, 0.0, 1.0));
+
+		// Just outside the Level region, but within the hysteresis margin of it
+		assertEquals(AccelerometerFilter.IN_BETWEEN, AccelerometerFilter.classify(0.55, 0.0, 1.0));
+		assertEquals("Level", update(filter, 0.55, 0.0, 1.0));
+		assertEquals("Level", update(filter, 0.0, 0.0, 0.6));
+
+		// Readings flickering across the boundary do not change the orientation
+		for (int i = 0; i < 20; ++i)
+			assertEquals("Level", update(filter, (i % 2 == 0 ? 0.49 : 0.51), 0.0, 1.0));
+
+		// Beyond the margin, the orientation is classified again
+		assertEquals(AccelerometerFilter.IN_BETWEEN, update(filter, 0.65, 0.0, 1.0));
+
+		// "In Between" has no margin, so the region must be entered again to leave it
+		assertEquals(AccelerometerFilter.IN_BETWEEN, update(filter, 0.55, 0.0, 1.0));
+		assertEquals("Level", update(filter, 0.45, 0.0, 1.0));
+	}
+
+	@Test
+	public void hysteresisHoldsAgainstNeighbouringRegion() {
+		AccelerometerFilter filter = new AccelerometerFilter(0, 0.1);
+		assertEquals("Left Wing Down", update(filter, 0.0, 0.75, 0.0));
+
+		// Tipping towards Beak Down keeps Left Wing Down until outside its widened region
+		assertEquals("Left Wing Down", update(filter, 0.58, 0.75, 0.0));
+		assertEquals(AccelerometerFilter.IN_BETWEEN, update(filter, 0.62, 0.75, 0.0));
+		assertEquals("Beak Down", update(filter, 0.9, 0.2, 0.0));
+	}
+
+	@Test
+	public void noHysteresisFollowsBoundary() {
+		AccelerometerFilter filter = new AccelerometerFilter(0, 0.0);
+		for (int i = 0; i < 20; ++i) {
+			double x = (i % 2 == 0 ? 0.49 : 0.51);
+			assertEquals(AccelerometerFilter.classify(x, 0.0, 1.0), update(filter, x, 0.0, 1.0));
+		}
+		assertEquals(AccelerometerFilter.IN_BETWEEN, update(filter, 0.51, 0.0, 1.0));
+		assertEquals("Level", update(filter, 0.49, 0.0, 1.0));
+	}
+
+	@Test
+	public void timeConstantSmoothsAccelerations() {
+		AccelerometerFilter filter = new AccelerometerFilter(100, AccelerometerFilter.DEFAULT_HYSTERESIS);
+		FinchSensorState state = filter.update(0, sample(0.0, 0.0, 1.0));
+		assertEquals(1.0, state.getZAcceleration(), 0.0);
+
+		// One time constant later, the filter has moved 1 - 1/e of the way to the new reading
+		state = filter.update(100, sample(0.0, 0.0, -1.0));
+		double expected = 1.0 - 2.0 * (1 - Math.exp(-1));
+		assertEquals(expected, state.getZAcceleration(), 1e-12);
+		assertEquals(0.0, state.getXAcceleration(), 0.0);
+
+		// A sample at the same time does not move the filter
+		state = filter.update(100, sample(0.0, 0.0, -1.0));
+		assertEquals(expected, state.getZAcceleration(), 1e-12);
+		assertEquals(3, filter.getSampleCount());
+	}
+
+	@Test
+	public void disconnectedSampleResetsFilter() {
+		AccelerometerFilter filter = new AccelerometerFilter(100, AccelerometerFilter.DEFAULT_HYSTERESIS);
+		for (int i = 0; i < 5; ++i)
+			update(filter, 0.0, 0.0, 1.0);
+		assertEquals(5, filter.getSampleCount());
+
+		FinchSensorSnapshot disconnected = new FinchSensorSnapshot();
+		time += 10;
+		assertSame(disconnected, filter.update(time, disconnected));
+		assertNull(filter.getState());
+		assertEquals(0, filter.getSampleCount());
+
+		// The next sample is used as is, rather than smoothed with the samples before the reset
+		time += 10;
+		FinchSensorState state = filter.update(time, sample(0.0, 0.0, -1.0));
+		assertSame(state, filter.getState());
+		assertEquals(-1.0, state.getZAcceleration(), 0.0);
+		assertEquals("Upside Down", state.getOrientation());
+		assertEquals(1, filter.getSampleCount());
+	}
+
+} // class AccelerometerFilterTest
@@ -0,0 +1,161 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests {@link CircuitBreaker}.
+ */
+public class CircuitBreakerTest {
+
+	private static final int PROBE_INTERVAL = 10;
+	private static final long TIMEOUT = 5000;
+
+	private CircuitBreaker breaker;
+
+	@After
+	public void tearDown() {
+		if (breaker != null)
+			breaker.reset();
+	}
+
+	private CircuitBreaker newBreaker(CircuitBreaker.Probe probe, int threshold) {
+		breaker = new CircuitBreaker(probe, () -> "test server", "Circuit breaker test probe");
+		breaker.setFailureThreshold(threshold);
+		breaker.setProbeInterval(PROBE_INTERVAL);
+		return breaker;
+	}
+
+	/**
+	 * Waits until the breaker is closed, or the timeout elapses.
+	 */
+	private static boolean awaitClosed(CircuitBreaker breaker) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (breaker.isOpen() && (System.currentTimeMillis() < deadline))
+			Thread.sleep(1);
+		return !breaker.isOpen();
+	}
+
+	@Test
+	public void opensAtThreshold() {
+		CircuitBreaker b = newBreaker(() -> { throw new Exception("unreachable"); }, 3);
+		b.recordFailure();
+		b.recordFailure();
+		assertFalse(b.isOpen());
+		assertTrue(b.allowRequest());
+
+		b.recordFailure();
+		assertTrue(b.isOpen());
+		assertFalse(b.allowRequest());
+		assertEquals(1, b.getOpenCount());
+		assertEquals(1, b.getRejectedCount());
+	}
+
+	@Test
+	public void successResetsFailureCount() {
+		CircuitBreaker b = newBreaker(() -> { throw new Exception("unreachable"); }, 2);
+		b.recordFailure();
+		b.recordSuccess();
+		b.recordFailure();
+		assertFalse(b.isOpen());
+		b.recordFailure();
+		assertTrue(b.isOpen());
+	}
+
+	@Test
+	public void zeroThresholdDisables() {
+		CircuitBreaker b = newBreaker(() -> { throw new Exception("unreachable"); }, 0);
+		for (int i = 0; i < 10; ++i)
+			b.recordFailure();
+		assertFalse(b.isOpen());
+		assertEquals(0, b.getOpenCount());
+	}
+
+	@Test
+	public void closesOnSuccessfulProbe() throws InterruptedException {
+		AtomicBoolean reachable = new AtomicBoolean();
+		AtomicInteger probes = new AtomicInteger();
+		CircuitBreaker b = newBreaker(() -> {
+			probes.incrementAndGet();
+			if (!reachable.get())
+				throw new Exception("unreachable");
+		}, 1);
+
+		b.recordFailure();
+		assertTrue(b.isOpen());
+
+		// Failed probes leave the breaker open
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while ((probes.get() < 3) && (System.currentTimeMillis() < deadline))
+			Thread.sleep(1);
+		assertTrue(probes.get() >= 3);
+		assertTrue(b.isOpen());
+
+		reachable.set(true);
+		assertTrue(awaitClosed(b));
+		assertTrue(b.allowRequest());
+		assertEquals(1, b.getOpenCount());
+
+		// The probe thread stops once closed
+		int count = probes.get();
+		Thread.sleep(PROBE_INTERVAL * 5);
+		assertEquals(count, probes.get());
+	}
+
+	@Test
+	public void resetDuringProbe() throws InterruptedException {
+		CountDownLatch probing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch probed = new CountDownLatch(1);
+		CircuitBreaker b = newBreaker(() -> {
+			probing.countDown();
+			// Ignore the interrupt from reset(), so the probe completes after the reset
+			boolean done = false;
+			while (!done) {
+				try {
+					done = release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					// Keep waiting
+				}
+			}
+			probed.countDown();
+		}, 1);
+
+		b.recordFailure();
+		assertTrue(b.isOpen());
+		assertTrue(probing.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+		b.reset();
+		assertFalse(b.isOpen());
+		assertTrue(b.allowRequest());
+
+		// The successful probe completing after the reset leaves the breaker closed
+		release.countDown();
+		assertTrue(probed.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		Thread.sleep(PROBE_INTERVAL);
+		assertFalse(b.isOpen());
+		assertEquals(1, b.getOpenCount());
+
+		// The breaker can open again after the reset
+		b.recordFailure();
+		assertTrue(b.isOpen());
+		assertEquals(2, b.getOpenCount());
+		assertTrue(awaitClosed(b));
+	}
+
+} // class CircuitBreakerTest
@@ -0,0 +1,135 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests starting and stopping a {@link FinchControlLoop}.
+ */
+public class FinchControlLoopTest {
+
+	private static final double RATE = 200;
+	private static final long TIMEOUT = 5000;
+
+	private FinchHTTP finch;
+	private FinchControlLoop loop;
+
+	@Before
+	public void setUp() {
+		finch = new FinchHTTP(new LoopbackFinchTransport(new FinchSimulator()));
+	}
+
+	@After
+	public void tearDown() {
+		if (loop != null)
+			loop.stop();
+		finch.close();
+	}
+
+	/**
+	 * Waits until the loop has executed more than the given number of ticks.
+	 */
+	private boolean awaitTicks(long ticks) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while ((loop.getTickCount() <= ticks) && (System.currentTimeMillis() < deadline))
+			Thread.sleep(1);
+		return (loop.getTickCount() > ticks);
+	}
+
+	@Test
+	public void startAndStop() throws InterruptedException {
+		loop = new FinchControlLoop(finch, RATE, (sensors, outputs) -> outputs.setWheelVelocities(50, 50));
+		loop.start();
+		assertTrue(loop.isRunning());
+		assertTrue(awaitTicks(2));
+
+		loop.stop();
+		assertFalse(loop.isRunning());
+		long ticks = loop.getTickCount();
+		Thread.sleep(50);
+		assertTrue(ticks == loop.getTickCount());
+
+		loop.start();
+		assertTrue(awaitTicks(ticks + 2));
+	}
+
+	@Test
+	public void startRefusedWhilePreviousThreadRunning() throws InterruptedException {
+		AtomicReference<RuntimeException> startError = new AtomicReference<>();
+		CountDownLatch stepped = new CountDownLatch(1);
+		loop = new FinchControlLoop(finch, RATE, (sensors, outputs) -> {
+			if (stepped.getCount() == 0)
+				return;
+			// Stopping from the step returns immediately, while this thread is still running
+			loop.stop();
+			try {
+				loop.start();
+			} catch (RuntimeException e) {
+				startError.set(e);
+			}
+			stepped.countDown();
+		});
+		loop.start();
+		assertTrue(stepped.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertTrue(startError.get() instanceof IllegalStateException);
+		assertFalse(loop.isRunning());
+	}
+
+	@Test
+	public void previousThreadDoesNotStopNewLoop() throws InterruptedException {
+		CountDownLatch stopped = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger firstThreadTicks = new AtomicInteger();
+		AtomicReference<Thread> firstThread = new AtomicReference<>();
+		loop = new FinchControlLoop(finch, RATE, (sensors, outputs) -> {
+			firstThread.compareAndSet(null, Thread.currentThread());
+			if (firstThread.get() != Thread.currentThread())
+				return;
+			if (firstThreadTicks.incrementAndGet() > 1)
+				fail("Stopped loop thread ran another tick");
+
+			// Stop the loop, then keep the old thread busy while the loop is restarted
+			loop.stop();
+			stopped.countDown();
+			try {
+				release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		loop.start();
+		assertTrue(stopped.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		assertFalse(loop.isRunning());
+
+		// start() waits for the old thread, which exits once released
+		Thread starter = new Thread(() -> loop.start());
+		starter.start();
+		Thread.sleep(50);
+		release.countDown();
+		starter.join(TIMEOUT);
+		assertFalse(starter.isAlive());
+
+		assertTrue(loop.isRunning());
+		long ticks = loop.getTickCount();
+		assertTrue(awaitTicks(ticks + 5));
+		assertTrue(loop.isRunning());
+		assertTrue(firstThreadTicks.get() == 1);
+	}
+
+} // class FinchControlLoopTest
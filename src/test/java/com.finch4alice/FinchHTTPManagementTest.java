@@ -0,0 +1,117 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link FinchHTTPMXBean} of a FinchHTTP instance through the platform MBeanServer.
+ */
+public class FinchHTTPManagementTest {
+
+	/**
+	 * Transport which acknowledges every request.
+	 */
+	static final class AckTransport
+		implements FinchTransport
+	{
+		public String getLocation() {
+			return "ack";
+		}
+
+		public String request(String path, String... args) {
+			return "Output set";
+		}
+	} // class AckTransport
+
+	private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	private FinchHTTP finch;
+
+	@Before
+	public void setUp() {
+		finch = new FinchHTTP(new AckTransport());
+	}
+
+	@After
+	public void tearDown() {
+		finch.close();
+	}
+
+	private int registeredCount() throws Exception {
+		return server.queryNames(new ObjectName(FinchHTTPManagement.OBJECT_NAME_PREFIX + "*"), null).size();
+	}
+
+	@Test
+	public void constructorDoesNotRegister() throws Exception {
+		int before = registeredCount();
+		FinchHTTP other = new FinchHTTP(new AckTransport());
+		assertEquals(before, registeredCount());
+		other.close();
+	}
+
+	@Test
+	public void registerAndUnregister() throws Exception {
+		ObjectName name = finch.registerMBean();
+		assertNotNull(name);
+		assertTrue(server.isRegistered(name));
+		assertEquals(name, finch.registerMBean());
+
+		finch.close();
+		assertFalse(server.isRegistered(name));
+	}
+
+	@Test
+	public void attributes() throws Exception {
+		ObjectName name = finch.registerMBean();
+		assertEquals("ack", server.getAttribute(name, "ServerURL"));
+		assertEquals(Boolean.FALSE, server.getAttribute(name, "Polling"));
+
+		server.setAttribute(name, new Attribute("FailureThreshold", 7));
+		assertEquals(7, finch.getFailureThreshold());
+		assertEquals(7, server.getAttribute(name, "FailureThreshold"));
+
+		server.setAttribute(name, new Attribute("MetricsEnabled", true));
+		finch.setLED(255, 0, 0);
+		assertEquals(1L, server.getAttribute(name, "RequestCount"));
+		server.invoke(name, "resetMetrics", null, null);
+		assertEquals(0L, server.getAttribute(name, "RequestCount"));
+	}
+
+	@Test
+	public void requestRateIsNotResetByReading() throws Exception {
+		ObjectName name = finch.registerMBean();
+		assertFalse(finch.getMetrics().isEnabled());
+		for (int i = 0; i < 20; ++i)
+			finch.setLED(i, 0, 0);
+
+		// The rate covers whole seconds only, and its value changes as each second passes, so
+		// read it until two consecutive reads fall within the same second
+		Thread.sleep(1100);
+		double rate = 0.0, again = -1.0;
+		for (int i = 0; (i < 10) && (rate != again); ++i) {
+			rate = (Double)server.getAttribute(name, "RequestRate");
+			again = (Double)server.getAttribute(name, "RequestRate");
+		}
+		assertEquals(rate, again, 0.0);
+		assertTrue(rate > 0.0);
+		assertTrue(rate <= 20.0);
+	}
+
+} // class FinchHTTPManagementTest
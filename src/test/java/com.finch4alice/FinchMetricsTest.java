@@ -0,0 +1,88 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests the request rate of {@link FinchMetrics}, using a manually advanced clock.
+ */
+public class FinchMetricsTest {
+
+	private static final long SECOND = 1000000000L;
+
+	/**
+	 * Current time of the clock, in nanoseconds.  Starts away from zero, like System.nanoTime().
+	 */
+	private long now = -123456789L;
+
+	private final FinchMetrics metrics = new FinchMetrics(() -> now);
+
+	private void countRequests(int count) {
+		for (int i = 0; i < count; ++i)
+			metrics.countRequest();
+	}
+
+	@Test
+	public void noRateDuringFirstSecond() {
+		countRequests(5);
+		now += SECOND - 1;
+		assertEquals(0.0, metrics.getRequestRate(), 0.0);
+	}
+
+	@Test
+	public void rateCoversWholeSecondsOnly() {
+		countRequests(20);
+		now += SECOND;
+		countRequests(7);		// In the current, incomplete second
+		assertEquals(20.0, metrics.getRequestRate(), 0.0);
+		assertEquals(20.0, metrics.getRequestRate(), 0.0);
+
+		now += SECOND;
+		assertEquals((20.0 + 7.0) / 2, metrics.getRequestRate(), 0.0);
+	}
+
+	@Test
+	public void rateIsAveragedOverWindow() {
+		for (int second = 0; second < 3 * FinchMetrics.RATE_WINDOW_SECONDS; ++second) {
+			countRequests(second);
+			now += SECOND;
+
+			// Requests counted in the last RATE_WINDOW_SECONDS whole seconds
+			int seconds = Math.min(second + 1, FinchMetrics.RATE_WINDOW_SECONDS);
+			double sum = 0;
+			for (int s = second - seconds + 1; s <= second; ++s)
+				sum += s;
+			assertEquals(sum / seconds, metrics.getRequestRate(), 1e-9);
+		}
+	}
+
+	@Test
+	public void idleSecondsAreNotCounted() {
+		countRequests(30);
+		now += 3 * SECOND;
+		assertEquals(10.0, metrics.getRequestRate(), 0.0);
+
+		// The buckets of the old seconds are stale once the window has passed
+		now += FinchMetrics.RATE_WINDOW_SECONDS * SECOND;
+		assertEquals(0.0, metrics.getRequestRate(), 0.0);
+		countRequests(4);
+		now += SECOND;
+		assertEquals(0.4, metrics.getRequestRate(), 1e-9);
+	}
+
+	@Test
+	public void resetClearsRate() {
+		countRequests(10);
+		now += SECOND;
+		metrics.reset();
+		assertEquals(0.0, metrics.getRequestRate(), 0.0);
+	}
+
+} // class FinchMetricsTest
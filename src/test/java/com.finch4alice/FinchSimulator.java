@@ -0,0 +1,743 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process simulator of the Bird Brain Robot Server and an attached Finch.
+ *
+ * <p>The simulator implements every service used by {@link FinchHTTP}: the {@code finch/in/*}
+ * sensor services, the {@code finch/out/*} output services, {@code poll} and
+ * {@code reset_all}.  It can be used in two ways:</p>
+ * <ul>
+ *	<li>As a {@link LoopbackFinchTransport.Handler}, handling requests in-process without any
+ *		networking.</li>
+ *	<li>As an HTTP server listening on a local port (see {@link #start(int)}), which allows the
+ *		HTTP client, connection pooling and caching to be exercised end to end.  The server is
+ *		headless and supports HTTP/1.1 keep-alive, using one thread per connection.</li>
+ * </ul>
+ *
+ * <p>Sensor values can be set directly, or updated before each request by a {@link Script}.
+ * Injected latency, jitter and failures can be configured to model a slow or unreliable
+ * server, and a network round-trip time to model a remote one.  Values are expressed in the units used by the server protocol: light sensors range
+ * from 0 to 100, motor velocities from -100 to 100, and LED intensities from 0 to 100.</p>
+ *
+ * <p>The simulator is a test fixture, used by the tests and benchmarks, and is not part of the
+ * Finch 4 Alice Jar.  It can also be run as a standalone server, for load tests without a
+ * Finch, with {@code ./gradlew runSimulator [-PsimulatorPort=port]}.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public class FinchSimulator
+	implements LoopbackFinchTransport.Handler
+{
+
+	/**
+	 * The default port used by the Bird Brain Robot Server.
+	 */
+	public static final int DEFAULT_PORT = 22179;
+
+	/**
+	 * Callback used to update the simulated sensor values over time.
+	 */
+	@FunctionalInterface
+	public interface Script {
+
+		/**
+		 * Invoked before each request is handled, allowing the sensor values to be updated.
+		 * @param	simulator		The simulator to update.
+		 * @param	elapsedMillis	Number of milliseconds elapsed since the script was assigned.
+		 */
+		public void update(FinchSimulator simulator, long elapsedMillis);
+
+	} // interface Script
+
+	// Sensor state
+	private boolean connected = true;
+	private double leftLight = 50;
+	private double rightLight = 50;
+	private boolean leftObstacle;
+	private boolean rightObstacle;
+	private double xAcceleration = 0;
+	private double yAcceleration = 0;
+	private double zAcceleration = 1;
+	private String orientation;
+	private double temperature = 21.5;
+	private long lastShakenTime;
+	private long lastTappedTime;
+
+	// Output state
+	private double leftMotor;
+	private double rightMotor;
+	private double[] led = new double[3];
+	private int buzzerFrequency;
+	private int buzzerDuration;
+	private String lastSpoken;
+
+	// Scripting
+	private Script script;
+	private long scriptStartTime;
+
+	// Fault injection
+	private volatile int latency;
+	private volatile int jitter;
+	private volatile int roundTripTime;
+	private volatile double failureRate;
+	private volatile boolean pipelining = true;
+
+	// Statistics
+	private final ConcurrentHashMap<String, LongAdder> requestCounts = new ConcurrentHashMap<String, LongAdder>();
+
+	// HTTP server
+	private ServerSocket serverSocket;
+	private Thread acceptor;
+	private final List<Socket> connections = new ArrayList<Socket>();
+
+	/**
+	 * Runs the simulator as a standalone HTTP server until the process is terminated.
+	 * @param	args	Optionally, the port to listen on.  Defaults to {@link #DEFAULT_PORT}.
+	 * @throws	IOException if the server could not be started.
+	 * @throws	InterruptedException if the main thread is interrupted.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int port = (args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT);
+		FinchSimulator simulator = new FinchSimulator();
+		simulator.start(port);
+		System.out.println("Finch simulator listening at "+ simulator.getBaseURL());
+
+		// The server threads are daemon threads, so keep the JVM running until the server stops
+		simulator.join();
+	} // main
+
+	//==========================================================================
+	// Sensor values
+	//==========================================================================
+
+	/**
+	 * Sets whether a Finch is connected to the simulated server.  When not connected, the sensor
+	 * and output services all respond with {@code "null"}, as the real server does.
+	 * @param	connected	Whether a Finch is connected.
+	 */
+	public synchronized void setConnected(boolean connected) {
+		this.connected = connected;
+	} // setConnected
+
+	/**
+	 * Determines whether a Finch is connected to the simulated server.
+	 * @return	Whether a Finch is connected.
+	 */
+	public synchronized boolean isConnected() {
+		return connected;
+	} // isConnected
+
+	/**
+	 * Sets the light sensor values.
+	 * @param	left	The left light sensor value, from 0 to 100.
+	 * @param	right	The right light sensor value, from 0 to 100.
+	 */
+	public synchronized void setLightSensors(double left, double right) {
+		leftLight = left;
+		rightLight = right;
+	} // setLightSensors
+
+	/**
+	 * Sets the obstacle sensor values.
+	 * @param	left	Whether the left obstacle sensor detects an obstacle.
+	 * @param	right	Whether the right obstacle sensor detects an obstacle.
+	 */
+	public synchronized void setObstacleSensors(boolean left, boolean right) {
+		leftObstacle = left;
+		rightObstacle = right;
+	} // setObstacleSensors
+
+	/**
+	 * Sets the accelerometer values.
+	 * @param	x	The X-axis acceleration, in g.
+	 * @param	y	The Y-axis acceleration, in g.
+	 * @param	z	The Z-axis acceleration, in g.
+	 */
+	public synchronized void setAccelerations(double x, double y, double z) {
+		xAcceleration = x;
+		yAcceleration = y;
+		zAcceleration = z;
+	} // setAccelerations
+
+	/**
+	 * Sets the orientation reported by the simulated server.
+	 * @param	orientation	The orientation (eg. {@code "Level"} or {@code "Beak Up"}), or null to
+	 *						derive the orientation from the accelerometer values.
+	 */
+	public synchronized void setOrientation(String orientation) {
+		this.orientation = orientation;
+	} // setOrientation
+
+	/**
+	 * Retrieves the orientation reported by the simulated server.
+	 * @return	The orientation reported by the simulated server.
+	 */
+	public synchronized String getOrientation() {
+		if (orientation != null)
+			return orientation;
+
+		return AccelerometerFilter.classify(xAcceleration, yAcceleration, zAcceleration);
+	} // getOrientation
+
+	/**
+	 * Sets the temperature value.
+	 * @param	celsius	The temperature, in degrees Celsius.
+	 */
+	public synchronized void setTemperature(double celsius) {
+		temperature = celsius;
+	} // setTemperature
+
+	/**
+	 * Simulates shaking the Finch, updating the last shaken time to the current time.
+	 */
+	public synchronized void shake() {
+		lastShakenTime = System.currentTimeMillis();
+	} // shake
+
+	/**
+	 * Simulates tapping the Finch, updating the last tapped time to the current time.
+	 */
+	public synchronized void tap() {
+		lastTappedTime = System.currentTimeMillis();
+	} // tap
+
+	/**
+	 * Assigns a script used to update the sensor values before each request.
+	 * @param	script	The script, or null to remove the current script.
+	 */
+	public synchronized void setScript(Script script) {
+		this.script = script;
+		this.scriptStartTime = System.nanoTime();
+	} // setScript
+
+	//==========================================================================
+	// Output values
+	//==========================================================================
+
+	/**
+	 * Retrieves the most recently set motor velocities.
+	 * @return	A 2 element array containing the left and right motor velocities, from -100 to 100.
+	 */
+	public synchronized double[] getMotorVelocities() {
+		return new double[] { leftMotor, rightMotor };
+	} // getMotorVelocities
+
+	/**
+	 * Retrieves the most recently set LED intensities.
+	 * @return	A 3 element array containing the red, green and blue intensities, from 0 to 100.
+	 */
+	public synchronized double[] getLED() {
+		return led.clone();
+	} // getLED
+
+	/**
+	 * Retrieves the most recently requested buzzer frequency.
+	 * @return	The buzzer frequency in Hertz.
+	 */
+	public synchronized int getBuzzerFrequency() {
+		return buzzerFrequency;
+	} // getBuzzerFrequency
+
+	/**
+	 * Retrieves the most recently requested buzzer duration.
+	 * @return	The buzzer duration in milliseconds.
+	 */
+	public synchronized int getBuzzerDuration() {
+		return buzzerDuration;
+	} // getBuzzerDuration
+
+	/**
+	 * Retrieves the most recent text passed to the speak service.
+	 * @return	The most recent text spoken, or null if none.
+	 */
+	public synchronized String getLastSpoken() {
+		return lastSpoken;
+	} // getLastSpoken
+
+	//==========================================================================
+	// Fault injection
+	//==========================================================================
+
+	/**
+	 * Sets the latency injected before each response, modelling the time the server takes to
+	 * handle a request.  The latency is applied to every request, including each of several
+	 * pipelined requests, since the server handles them one at a time.
+	 * @param	latencyMillis	The base number of milliseconds to delay each response.
+	 * @param	jitterMillis	A random number of milliseconds, from 0 up to this value, added to
+	 *							the base latency of each response.
+	 * @throws	IllegalArgumentException if either value is negative.
+	 * @see		#setRoundTripTime(int)
+	 */
+	public void setLatency(int latencyMillis, int jitterMillis) {
+		if ((latencyMillis < 0) || (jitterMillis < 0))
+			throw new IllegalArgumentException("latency and jitter cannot be negative");
+		latency = latencyMillis;
+		jitter = jitterMillis;
+	} // setLatency
+
+	/**
+	 * Sets the network round-trip time, modelling a server reached over a network rather than
+	 * on the local machine.  The HTTP server applies it once for each burst of requests read
+	 * from a connection together, so pipelined requests which arrive together share a single
+	 * round-trip.  When used as a loopback handler, it is applied to each request.
+	 * @param	roundTripMillis	The number of milliseconds of each round-trip.
+	 * @throws	IllegalArgumentException if roundTripMillis is negative.
+	 * @see		#setLatency(int, int)
+	 */
+	public void setRoundTripTime(int roundTripMillis) {
+		if (roundTripMillis < 0)
+			throw new IllegalArgumentException("roundTripMillis cannot be negative");
+		roundTripTime = roundTripMillis;
+	} // setRoundTripTime
+
+	/**
+	 * Sets the fraction of requests which fail.  Failed requests receive an HTTP 500 response
+	 * (or a null response when used as a loopback handler).
+	 * @param	failureRate	The fraction of requests which fail, from 0.0 to 1.0.
+	 * @throws	IllegalArgumentException if failureRate is outside the range 0.0 to 1.0.
+	 */
+	public void setFailureRate(double failureRate) {
+		if (!(failureRate >= 0) || (failureRate > 1))
+			throw new IllegalArgumentException("failureRate must be between 0.0 and 1.0");
+		this.failureRate = failureRate;
+	} // setFailureRate
+
+	/**
+	 * Sets whether the HTTP server answers pipelined requests.  When disabled, the server reads
+	 * one request at a time and discards any further requests which have already arrived, as
+	 * some simple HTTP servers do, so a client which pipelines its requests only receives the
+	 * response to the first one.  Enabled by default.
+	 * @param	pipelining	Whether to answer pipelined requests.
+	 */
+	public void setPipelining(boolean pipelining) {
+		this.pipelining = pipelining;
+	} // setPipelining
+
+	//==========================================================================
+	// Statistics
+	//==========================================================================
+
+	/**
+	 * Retrieves the number of requests received for a service.
+	 * @param	path	The service path (eg. {@code "finch/in/lights"}).
+	 * @return	The number of requests received for the service.
+	 */
+	public long getRequestCount(String path) {
+		LongAdder count = requestCounts.get(path);
+		return (count == null ? 0 : count.sum());
+	} // getRequestCount
+
+	/**
+	 * Retrieves the total number of requests received for all services.
+	 * @return	The total number of requests received.
+	 */
+	public long getTotalRequestCount() {
+		long total = 0;
+		for (LongAdder count : requestCounts.values())
+			total += count.sum();
+		return total;
+	} // getTotalRequestCount
+
+	/**
+	 * Retrieves the number of requests received for each service.
+	 * @return	A map from service path to the number of requests received, sorted by path.
+	 */
+	public Map<String, Long> getRequestCounts() {
+		TreeMap<String, Long> rv = new TreeMap<String, Long>();
+		for (Map.Entry<String, LongAdder> e : requestCounts.entrySet())
+			rv.put(e.getKey(), e.getValue().sum());
+		return rv;
+	} // getRequestCounts
+
+	/**
+	 * Resets all request counts to zero.
+	 */
+	public void resetRequestCounts() {
+		requestCounts.clear();
+	} // resetRequestCounts
+
+	//==========================================================================
+	// Request handling
+	//==========================================================================
+
+	/**
+	 * Handles a single request, including the round-trip time and any injected latency and
+	 * failures.
+	 * @param	path	The service path (eg. {@code "finch/out/motor"}).
+	 * @param	args	The request arguments.
+	 * @return	The response text, or null if the request failed or the service is unknown.
+	 */
+	public String handle(String path, String[] args) {
+		count(path);
+		sleep(roundTripTime);
+		delay();
+		return process(path, args);
+	} // handle
+
+	/**
+	 * Handles a request which has already been counted, without any injected latency.
+	 */
+	private String process(String path, String[] args) {
+		double rate = failureRate;
+		if ((rate > 0) && (ThreadLocalRandom.current().nextDouble() < rate))
+			return null;
+
+		synchronized (this) {
+			if (script != null)
+				script.update(this, (System.nanoTime() - scriptStartTime) / 1000000);
+			try {
+				return respond(path, args);
+			} catch (NumberFormatException e) {
+				return null;	// Malformed argument
+			}
+		}
+	} // process
+
+	private void count(String path) {
+		requestCounts.computeIfAbsent(path, k -> new LongAdder()).increment();
+	} // count
+
+	/**
+	 * Sleeps for the injected latency and jitter of a single request.
+	 */
+	private void delay() {
+		int delay = latency;
+		int j = jitter;
+		if (j > 0)
+			delay += ThreadLocalRandom.current().nextInt(j + 1);
+		sleep(delay);
+	} // delay
+
+	private static void sleep(int millis) {
+		if (millis > 0) {
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	} // sleep
+
+	/**
+	 * Produces the response for a request.  Must be called while synchronized on this instance.
+	 */
+	private String respond(String path, String[] args) {
+		switch (path) {
+		case "finch/in/lights":
+			return (connected ? format(leftLight) +" "+ format(rightLight) : "null");
+		case "finch/in/obstacles":
+			return (connected ? leftObstacle +" "+ rightObstacle : "null");
+		case "finch/in/accelerations":
+			return (connected ? format(xAcceleration) +" "+ format(yAcceleration) +" "+ format(zAcceleration) : "null");
+		case "finch/in/orientation":
+			return (connected ? getOrientation() : "null");
+		case "finch/in/temperature":
+			return (connected ? format(temperature) : "null");
+		case "finch/in/lastShakenTime":
+			return (connected ? Long.toString(lastShakenTime) : "null");
+		case "finch/in/lastTappedTime":
+			return (connected ? Long.toString(lastTappedTime) : "null");
+		case "poll":
+			if (!connected)
+				return "null";
+			return "temperature "+ format(temperature) +"\n"+
+					"leftLight "+ format(leftLight) +"\n"+
+					"rightLight "+ format(rightLight) +"\n"+
+					"leftObstacle "+ leftObstacle +"\n"+
+					"rightObstacle "+ rightObstacle +"\n"+
+					"orientation "+ getOrientation().replace(' ', '_') +"\n"+
+					"XAcceleration "+ format(xAcceleration) +"\n"+
+					"YAcceleration "+ format(yAcceleration) +"\n"+
+					"ZAcceleration "+ format(zAcceleration) +"\n";
+		case "finch/out/motor":
+			if (args.length < 2)
+				return null;
+			if (!connected)
+				return "null";
+			leftMotor = Double.parseDouble(args[0]);
+			rightMotor = Double.parseDouble(args[1]);
+			return "Output set";
+		case "finch/out/led":
+			if (args.length < 3)
+				return null;
+			if (!connected)
+				return "null";
+			led = new double[] {
+					Double.parseDouble(args[0]), Double.parseDouble(args[1]), Double.parseDouble(args[2])
+				};
+			return "Output set";
+		case "finch/out/buzzer":
+			if (args.length < 2)
+				return null;
+			if (!connected)
+				return "null";
+			buzzerFrequency = Integer.parseInt(args[0]);
+			buzzerDuration = Integer.parseInt(args[1]);
+			return "Output set";
+		case "finch/out/speak":
+			lastSpoken = (args.length > 0 ? args[0] : "");
+			return "Output set";
+		case "reset_all":
+			leftMotor = rightMotor = 0;
+			led = new double[3];
+			buzzerFrequency = buzzerDuration = 0;
+			return "Output set";
+		default:
+			return null;
+		}
+	} // respond
+
+	/**
+	 * Formats a sensor value for a response.
+	 */
+	private static String format(double value) {
+		return ((value == Math.rint(value)) && !Double.isInfinite(value)
+				? Long.toString((long)value)
+				: Double.toString(value));
+	} // format
+
+	//==========================================================================
+	// HTTP server
+	//==========================================================================
+
+	/**
+	 * Starts serving requests over HTTP on the loopback interface.
+	 * @param	port	The port to listen on, or 0 to use any free port.
+	 * @return	The port the server is listening on.
+	 * @throws	IOException if the server could not be started.
+	 * @throws	IllegalStateException if the server is already running.
+	 */
+	public synchronized int start(int port) throws IOException {
+		if (serverSocket != null)
+			throw new IllegalStateException("The simulator is already running");
+
+		ServerSocket ss = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		serverSocket = ss;
+
+		acceptor = new Thread(() -> acceptLoop(ss), "Finch simulator");
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		return ss.getLocalPort();
+	} // start
+
+	/**
+	 * Stops serving requests over HTTP, and closes any open connections.  Has no effect if the
+	 * server is not running.
+	 */
+	public void stop() {
+		ServerSocket ss;
+		List<Socket> open;
+		synchronized (this) {
+			ss = serverSocket;
+			serverSocket = null;
+		}
+		synchronized (connections) {
+			open = new ArrayList<Socket>(connections);
+			connections.clear();
+		}
+
+		closeQuietly(ss);
+		for (Socket s : open)
+			closeQuietly(s);
+	} // stop
+
+	/**
+	 * Waits until the HTTP server is stopped.  Returns immediately if the server is not running.
+	 * @throws	InterruptedException if the calling thread is interrupted while waiting.
+	 */
+	public void join() throws InterruptedException {
+		Thread t;
+		synchronized (this) {
+			t = acceptor;
+		}
+		if (t != null)
+			t.join();
+	} // join
+
+	/**
+	 * Retrieves the base URL of the HTTP server.
+	 * @return	The base URL of the HTTP server.
+	 * @throws	IllegalStateException if the server is not running.
+	 */
+	public synchronized String getBaseURL() {
+		if (serverSocket == null)
+			throw new IllegalStateException("The simulator is not running");
+		return "http://127.0.0.1:"+ serverSocket.getLocalPort() +"/";
+	} // getBaseURL
+
+	private void acceptLoop(ServerSocket ss) {
+		try {
+			while (true) {
+				Socket socket = ss.accept();
+				synchronized (connections) {
+					connections.add(socket);
+				}
+				Thread t = new Thread(() -> serve(socket), "Finch simulator connection");
+				t.setDaemon(true);
+				t.start();
+			}
+		} catch (IOException e) {
+			// Server socket closed
+		}
+	} // acceptLoop
+
+	/**
+	 * Serves requests on a single connection until it is closed.
+	 */
+	private void serve(Socket socket) {
+		try {
+			socket.setTcpNoDelay(true);
+			InputStream in = new BufferedInputStream(socket.getInputStream());
+			OutputStream out = socket.getOutputStream();
+
+			List<String> burst = new ArrayList<String>();
+			String target;
+			while ((target = readRequest(in)) != null) {
+				// Pipelined requests which have already arrived are handled as a burst, which
+				// incurs a single network round-trip, but the latency of each request
+				burst.add(target);
+				while (!pipelining && (in.available() > 0))
+					in.skip(in.available());
+				while ((in.available() > 0) && ((target = readRequest(in)) != null))
+					burst.add(target);
+
+				sleep(roundTripTime);
+				for (String t : burst) {
+					delay();
+					int status = 200;
+					String body = handleTarget(t);
+					if (body == null) {
+						status = 500;
+						body = "Internal server error";
+					}
+
+					byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+					String head =
+							"HTTP/1.1 "+ status + (status == 200 ? " OK" : " Server Error") +"\r\n"+
+							"Content-Type: text/plain; charset=UTF-8\r\n"+
+							"Content-Length: "+ bytes.length +"\r\n"+
+							"\r\n";
+					out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+					out.write(bytes);
+				}
+				out.flush();
+				burst.clear();
+			}
+		} catch (IOException e) {
+			// Connection dropped
+		} finally {
+			synchronized (connections) {
+				connections.remove(socket);
+			}
+			closeQuietly(socket);
+		}
+	} // serve
+
+	/**
+	 * Handles a request received by the HTTP server.  The round-trip time and injected latency
+	 * have already been applied.
+	 */
+	private String handleTarget(String target) {
+		String[] request = parseTarget(target);
+		count(request[0]);
+		return process(request[0], Arrays.copyOfRange(request, 1, request.length));
+	} // handleTarget
+
+	/**
+	 * Splits a request target into a service path, followed by the arguments.
+	 */
+	private static String[] parseTarget(String target) {
+		int query = target.indexOf('?');
+		if (query != -1)
+			target = target.substring(0, query);
+
+		String[] segments = target.split("/");
+		List<String> parts = new ArrayList<String>();
+		for (String segment : segments) {
+			if (segment.length() > 0) {
+				try {
+					parts.add(URLDecoder.decode(segment, "UTF-8"));
+				} catch (UnsupportedEncodingException e) {
+					throw new RuntimeException("Unexpected Exception", e);
+				}
+			}
+		}
+
+		// Services are either "name" or "finch/direction/name", followed by the arguments
+		int pathLength = ((parts.size() >= 3) && "finch".equals(parts.get(0)) ? 3 : Math.min(1, parts.size()));
+		List<String> rv = new ArrayList<String>();
+		rv.add(String.join("/", parts.subList(0, pathLength)));
+		rv.addAll(parts.subList(pathLength, parts.size()));
+		return rv.toArray(new String[rv.size()]);
+	} // parseTarget
+
+	/**
+	 * Reads a request head and returns the request target, or null at the end of the stream.
+	 */
+	private static String readRequest(InputStream in) throws IOException {
+		String target = null;
+		StringBuilder line = new StringBuilder();
+		int ch;
+		while ((ch = in.read()) != -1) {
+			if (ch == '\r')
+				continue;
+			if (ch != '\n') {
+				line.append((char)ch);
+				continue;
+			}
+
+			if (line.length() == 0) {
+				if (target != null)
+					return target;
+				continue;	// Tolerate blank lines between requests
+			}
+
+			if (target == null) {
+				String[] parts = line.toString().split(" ");
+				target = (parts.length > 1 ? parts[1] : "/");
+			}
+			line.setLength(0);
+		}
+		return null;
+	} // readRequest
+
+	private static void closeQuietly(java.io.Closeable c) {
+		if (c == null)
+			return;
+		try {
+			c.close();
+		} catch (IOException e) {
+			// Ignore
+		}
+	} // closeQuietly
+
+} // class FinchSimulator
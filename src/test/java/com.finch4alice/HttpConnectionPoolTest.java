@@ -0,0 +1,98 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the pipelined batches of {@link HttpConnectionPool} against the simulator's HTTP server.
+ */
+public class HttpConnectionPoolTest {
+
+	private static final int READ_TIMEOUT = 300;
+
+	private FinchSimulator simulator;
+	private HttpConnectionPool pool;
+
+	@Before
+	public void setUp() throws IOException {
+		simulator = new FinchSimulator();
+		simulator.start(0);
+		pool = new HttpConnectionPool(simulator.getBaseURL());
+		pool.setReadTimeout(READ_TIMEOUT);
+	}
+
+	@After
+	public void tearDown() {
+		pool.close();
+		simulator.stop();
+	}
+
+	private static final FinchRequest[] BATCH = {
+		new FinchRequest("finch/out/led", "10", "20", "30"),
+		new FinchRequest("finch/out/motor", "-50", "50"),
+		new FinchRequest("finch/out/buzzer", "440", "100"),
+		new FinchRequest("finch/in/temperature")
+	};
+
+	private void assertBatchApplied(HttpConnectionPool.Response[] responses) {
+		assertEquals(BATCH.length, responses.length);
+		for (HttpConnectionPool.Response response : responses)
+			assertEquals(200, response.status);
+		assertEquals("21.5", responses[3].body);
+		assertArrayEquals(new double[] { 10, 20, 30 }, simulator.getLED(), 0.0);
+		assertArrayEquals(new double[] { -50, 50 }, simulator.getMotorVelocities(), 0.0);
+		assertEquals(440, simulator.getBuzzerFrequency());
+		for (FinchRequest request : BATCH)
+			assertEquals(request.getPath(), 1, simulator.getRequestCount(request.getPath()));
+	}
+
+	@Test
+	public void batchIsPipelined() throws IOException {
+		assertBatchApplied(pool.pipeline(BATCH));
+		assertTrue(pool.isPipelining());
+	}
+
+	@Test
+	public void batchFallsBackWhenServerDoesNotPipeline() throws IOException {
+		simulator.setPipelining(false);
+
+		// The server only answers the first request; the rest are sent again after the timeout
+		assertBatchApplied(pool.pipeline(BATCH));
+		assertFalse(pool.isPipelining());
+
+		// Later batches are sent one at a time without waiting for a timeout
+		simulator.resetRequestCounts();
+		long start = System.nanoTime();
+		assertBatchApplied(pool.pipeline(BATCH));
+		assertTrue((System.nanoTime() - start) / 1000000 < READ_TIMEOUT);
+	}
+
+	@Test
+	public void unresponsiveServerIsNotMistakenForNoPipelining() throws IOException {
+		simulator.setLatency(2 * READ_TIMEOUT, 0);
+		try {
+			pool.pipeline(BATCH);
+			fail("No timeout");
+		} catch (SocketTimeoutException e) {
+			// Expected
+		}
+		assertTrue(pool.isPipelining());
+	}
+
+} // class HttpConnectionPoolTest
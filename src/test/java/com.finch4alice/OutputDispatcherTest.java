@@ -0,0 +1,264 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests {@link OutputDispatcher}.
+ */
+public class OutputDispatcherTest {
+
+	private static final long TIMEOUT = 5000;
+	private static final int THREADS = 8;
+	private static final int SUBMITS_PER_THREAD = 2000;
+
+	/**
+	 * Commands sent by the dispatcher, in the order they were sent, for each slot.
+	 */
+	private final List<List<FinchRequest>> sent = new ArrayList<>();
+
+	/**
+	 * Number of commands currently being sent for each slot.
+	 */
+	private final AtomicInteger[] inProgress = new AtomicInteger[OutputDispatcher.SLOT_COUNT];
+
+	/**
+	 * Set when more than one command for a slot was being sent at the same time.
+	 */
+	private volatile boolean overlapped;
+
+	/**
+	 * Released to let the sender return; commands block in the sender until then.
+	 */
+	private volatile CountDownLatch release = new CountDownLatch(0);
+
+	/**
+	 * Counted down each time the sender starts sending a command.
+	 */
+	private volatile CountDownLatch started = new CountDownLatch(0);
+
+	private volatile long sendNanos;
+
+	private final OutputDispatcher dispatcher = new OutputDispatcher(this::send, "OutputDispatcherTest");
+
+	public OutputDispatcherTest() {
+		for (int i = 0; i < OutputDispatcher.SLOT_COUNT; ++i) {
+			sent.add(Collections.synchronizedList(new ArrayList<FinchRequest>()));
+			inProgress[i] = new AtomicInteger();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		dispatcher.cancel();
+		assertTrue(dispatcher.flush(TIMEOUT));
+	}
+
+	/**
+	 * Sender used by the dispatcher.  The slot of each command is the number in its path.
+	 */
+	private void send(FinchRequest request) {
+		int slot = Integer.parseInt(request.getPath().substring("slot".length()));
+		if (inProgress[slot].incrementAndGet() > 1)
+			overlapped = true;
+		try {
+			// The latch is read before signalling the start, as the test may then replace it
+			CountDownLatch latch = release;
+			started.countDown();
+			latch.await(TIMEOUT, TimeUnit.MILLISECONDS);
+			long end = System.nanoTime() + sendNanos;
+			while (System.nanoTime() < end)
+				Thread.yield();
+			if (request.getArgCount() > 0 && "fail".equals(request.getArg(0)))
+				throw new IllegalStateException("Send failed");
+			sent.get(slot).add(request);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			inProgress[slot].decrementAndGet();
+		}
+	}
+
+	private static FinchRequest request(int slot, String... args) {
+		return new FinchRequest("slot"+ slot, args);
+	}
+
+	/**
+	 * Blocks the sender, and submits a command which is then held in progress.
+	 */
+	private FinchRequest submitBlocked(int slot) throws InterruptedException {
+		release = new CountDownLatch(1);
+		started = new CountDownLatch(1);
+		FinchRequest first = request(slot, "first");
+		dispatcher.submit(slot, first);
+		assertTrue(started.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		return first;
+	}
+
+	@Test
+	public void onlyNewestPendingCommandIsSent() throws InterruptedException {
+		int slot = OutputDispatcher.LED;
+		FinchRequest first = submitBlocked(slot);
+
+		FinchRequest last = null;
+		for (int i = 0; i < 10; ++i) {
+			last = request(slot, Integer.toString(i));
+			dispatcher.submit(slot, last);
+		}
+		assertEquals(1, dispatcher.getPendingCount());
+
+		release.countDown();
+		assertTrue(dispatcher.flush(TIMEOUT));
+		assertEquals(Arrays.asList(first, last), sent.get(slot));
+		assertEquals(11, dispatcher.getSubmittedCount());
+		assertEquals(9, dispatcher.getCoalescedCount());
+		assertEquals(0, dispatcher.getPendingCount());
+	}
+
+	@Test
+	public void unitIsSentInOrderAndReplacedAsWhole() throws InterruptedException {
+		int slot = OutputDispatcher.BUZZER;
+		FinchRequest first = submitBlocked(slot);
+
+		dispatcher.submit(slot, request(slot, "a"), request(slot, "b"));
+		FinchRequest c = request(slot, "c");
+		FinchRequest d = request(slot, "d");
+		dispatcher.submit(slot, c, d);
+
+		release.countDown();
+		assertTrue(dispatcher.flush(TIMEOUT));
+		assertEquals(Arrays.asList(first, c, d), sent.get(slot));
+	}
+
+	@Test
+	public void slotsAreIndependent() throws InterruptedException {
+		submitBlocked(OutputDispatcher.MOTOR);
+
+		// The LED command is not held up by the motor command in progress
+		CountDownLatch motorRelease = release;
+		release = new CountDownLatch(0);
+		FinchRequest led = request(OutputDispatcher.LED);
+		dispatcher.submit(OutputDispatcher.LED, led);
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (sent.get(OutputDispatcher.LED).isEmpty() && (System.currentTimeMillis() < deadline))
+			Thread.sleep(1);
+		assertEquals(Arrays.asList(led), sent.get(OutputDispatcher.LED));
+		assertTrue(sent.get(OutputDispatcher.MOTOR).isEmpty());
+		motorRelease.countDown();
+	}
+
+	@Test
+	public void cancelDiscardsPendingButNotInProgress() throws InterruptedException {
+		int slot = OutputDispatcher.MOTOR;
+		FinchRequest first = submitBlocked(slot);
+		dispatcher.submit(slot, request(slot, "pending"));
+		assertEquals(1, dispatcher.getPendingCount());
+
+		dispatcher.cancel();
+		assertEquals(0, dispatcher.getPendingCount());
+
+		release.countDown();
+		assertTrue(dispatcher.flush(TIMEOUT));
+		assertEquals(Arrays.asList(first), sent.get(slot));
+
+		// The slot still accepts commands after cancel
+		FinchRequest next = request(slot, "next");
+		dispatcher.submit(slot, next);
+		assertTrue(dispatcher.flush(TIMEOUT));
+		assertEquals(Arrays.asList(first, next), sent.get(slot));
+	}
+
+	@Test
+	public void flushWaitsForCommandInProgress() throws InterruptedException {
+		int slot = OutputDispatcher.LED;
+		submitBlocked(slot);
+		assertFalse(dispatcher.flush(50));
+		assertTrue(sent.get(slot).isEmpty());
+
+		release.countDown();
+		assertTrue(dispatcher.flush(TIMEOUT));
+		assertEquals(1, sent.get(slot).size());
+	}
+
+	@Test
+	public void flushWhenIdle() {
+		assertTrue(dispatcher.flush(0));
+	}
+
+	@Test
+	public void failedCommandDoesNotStopSlot() {
+		int slot = OutputDispatcher.BUZZER;
+		FinchRequest next = request(slot, "next");
+		dispatcher.submit(slot, request(slot, "fail"), next);
+		assertTrue(dispatcher.flush(TIMEOUT));
+		assertEquals(Arrays.asList(next), sent.get(slot));
+	}
+
+	@Test
+	public void concurrentSubmitsWithSlowSender() throws InterruptedException {
+		sendNanos = TimeUnit.MICROSECONDS.toNanos(200);
+
+		Thread[] threads = new Thread[THREADS];
+		CountDownLatch go = new CountDownLatch(1);
+		for (int t = 0; t < THREADS; ++t) {
+			int thread = t;
+			threads[t] = new Thread(() -> {
+				try {
+					go.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < SUBMITS_PER_THREAD; ++i) {
+					int slot = (thread + i) % OutputDispatcher.SLOT_COUNT;
+					dispatcher.submit(slot, request(slot, thread +":"+ i));
+				}
+			});
+			threads[t].start();
+		}
+		go.countDown();
+		for (Thread thread : threads)
+			thread.join(TIMEOUT);
+
+		// Whatever was in progress, the command submitted last for each slot is the last one sent
+		FinchRequest[] last = new FinchRequest[OutputDispatcher.SLOT_COUNT];
+		for (int slot = 0; slot < OutputDispatcher.SLOT_COUNT; ++slot) {
+			last[slot] = request(slot, "last");
+			dispatcher.submit(slot, last[slot]);
+		}
+		assertTrue(dispatcher.flush(TIMEOUT));
+
+		long sentCount = 0;
+		for (int slot = 0; slot < OutputDispatcher.SLOT_COUNT; ++slot) {
+			List<FinchRequest> slotSent = sent.get(slot);
+			assertSame(last[slot], slotSent.get(slotSent.size() - 1));
+			sentCount += slotSent.size();
+		}
+		assertFalse("Commands for a slot were sent concurrently", overlapped);
+
+		long submitted = THREADS * SUBMITS_PER_THREAD + OutputDispatcher.SLOT_COUNT;
+		assertEquals(submitted, dispatcher.getSubmittedCount());
+		assertEquals(submitted, sentCount + dispatcher.getCoalescedCount());
+		assertTrue("Slow sender caused no coalescing", dispatcher.getCoalescedCount() > 0);
+	}
+
+} // class OutputDispatcherTest
@@ -0,0 +1,229 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link PollParser} against the {@code String.split} and {@code Double.parseDouble} parsing
+ * which FinchHTTP.poll() originally used.
+ */
+public class PollParserTest {
+
+	/**
+	 * A response from a connected Finch, in the format sent by the Bird Brain Robot Server.
+	 */
+	static final String CONNECTED =
+			"temperature 21.5\n"+
+			"leftLight 50\n"+
+			"rightLight 40\n"+
+			"leftObstacle true\n"+
+			"rightObstacle false\n"+
+			"orientation Beak_Up\n"+
+			"XAcceleration 0.02\n"+
+			"YAcceleration -0.05\n"+
+			"ZAcceleration 1.0\n";
+
+	/**
+	 * Readings of a poll response, parsed as FinchHTTP.poll() originally parsed them.
+	 */
+	static final class Reference {
+		double temperature;
+		int[] lightSensors = new int[2];
+		boolean[] obstacles = new boolean[2];
+		String orientation = "";
+		double[] accelerations = new double[3];
+
+		Reference(String result) {
+			for (String line : result.split("(?:\r\n|\n|\r)+")) {
+				String[] pieces = line.split("\\s+");
+				switch (pieces[0]) {
+				case "temperature":
+					temperature = Double.parseDouble(pieces[1]);
+					break;
+				case "leftLight":
+					lightSensors[0] = (int)(Double.parseDouble(pieces[1]) * 2.55);
+					break;
+				case "rightLight":
+					lightSensors[1] = (int)(Double.parseDouble(pieces[1]) * 2.55);
+					break;
+				case "leftObstacle":
+					obstacles[0] = "true".equals(pieces[1]);
+					break;
+				case "rightObstacle":
+					obstacles[1] = "true".equals(pieces[1]);
+					break;
+				case "orientation":
+					orientation = pieces[1].replace('_', ' ');
+					break;
+				case "XAcceleration":
+					accelerations[0] = Double.parseDouble(pieces[1]);
+					break;
+				case "YAcceleration":
+					accelerations[1] = Double.parseDouble(pieces[1]);
+					break;
+				case "ZAcceleration":
+					accelerations[2] = Double.parseDouble(pieces[1]);
+					break;
+				}
+			}
+		}
+	} // class Reference
+
+	/**
+	 * Parses a response with PollParser, and checks it matches the original parsing.
+	 */
+	private static FinchSensorSnapshot assertParsesLikeReference(String response) {
+		FinchSensorSnapshot snapshot = new FinchSensorSnapshot();
+		assertTrue(PollParser.parse(response, snapshot));
+		assertTrue(snapshot.isConnected());
+
+		Reference expected = new Reference(response);
+		assertEquals(expected.temperature, snapshot.getTemperature(), 0.0);
+		assertArrayEquals(expected.lightSensors, snapshot.getLightSensors());
+		assertArrayEquals(expected.obstacles, snapshot.getObstacleSensors());
+		assertEquals(expected.orientation, snapshot.getOrientation());
+		assertArrayEquals(expected.accelerations, snapshot.getAccelerations(), 0.0);
+		return snapshot;
+	}
+
+	@Test
+	public void connectedResponse() {
+		FinchSensorSnapshot snapshot = assertParsesLikeReference(CONNECTED);
+		assertEquals(21.5, snapshot.getTemperature(), 0.0);
+		assertEquals(127, snapshot.getLeftLightSensor());
+		assertTrue(snapshot.isObstacleLeftSide());
+		assertFalse(snapshot.isObstacleRightSide());
+		assertEquals(-0.05, snapshot.getYAcceleration(), 0.0);
+	}
+
+	@Test
+	public void simulatorResponses() {
+		FinchSimulator simulator = new FinchSimulator();
+		String[] orientations = { "Level", "Upside Down", "Beak Up", "Beak Down", "Left Wing Down", "Right Wing Down", "In Between" };
+		Random random = new Random(1);
+		for (String orientation : orientations) {
+			simulator.setOrientation(orientation);
+			simulator.setTemperature(random.nextDouble() * 60 - 20);
+			simulator.setLightSensors(random.nextDouble() * 100, random.nextDouble() * 100);
+			simulator.setObstacleSensors(random.nextBoolean(), random.nextBoolean());
+			simulator.setAccelerations(random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+			assertParsesLikeReference(simulator.handle("poll", new String[0]));
+		}
+	}
+
+	@Test
+	public void lineBreaksAndSpacing() {
+		assertParsesLikeReference(CONNECTED.replace("\n", "\r\n"));
+		assertParsesLikeReference(CONNECTED.replace("\n", "\r"));
+		assertParsesLikeReference(CONNECTED.replace("\n", "\n\n"));
+		assertParsesLikeReference(CONNECTED.replace(" ", "\t"));
+		assertParsesLikeReference(CONNECTED.replace(" ", "   "));
+		assertParsesLikeReference(CONNECTED.trim());
+	}
+
+	@Test
+	public void negativeAndExponentValues() {
+		String response =
+				"temperature -12.75\n"+
+				"leftLight 1e2\n"+
+				"rightLight 4.5E1\n"+
+				"orientation Level\n"+
+				"XAcceleration -1.2e-3\n"+
+				"YAcceleration +0.5\n"+
+				"ZAcceleration -0\n";
+		FinchSensorSnapshot snapshot = assertParsesLikeReference(response);
+		assertEquals(-12.75, snapshot.getTemperature(), 0.0);
+		// 100 * 2.55 is just below 255, as it always was
+		assertEquals(254, snapshot.getLeftLightSensor());
+		assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(snapshot.getZAcceleration()));
+	}
+
+	@Test
+	public void knownOrientationsAreShared() {
+		FinchSensorSnapshot snapshot = new FinchSensorSnapshot();
+		PollParser.parse("orientation Left_Wing_Down\n", snapshot);
+		assertSame("Left Wing Down", snapshot.getOrientation());
+		PollParser.parse("orientation Level\n", snapshot);
+		assertSame("Level", snapshot.getOrientation());
+	}
+
+	@Test
+	public void unknownOrientation() {
+		FinchSensorSnapshot snapshot = assertParsesLikeReference("orientation Sideways_Tilted\n");
+		assertEquals("Sideways Tilted", snapshot.getOrientation());
+
+		// A prefix or extension of a known orientation is not mistaken for it
+		assertEquals("Beak", assertParsesLikeReference("orientation Beak\n").getOrientation());
+		assertEquals("Level Ish", assertParsesLikeReference("orientation Level_Ish\n").getOrientation());
+		assertEquals("level", assertParsesLikeReference("orientation level\n").getOrientation());
+	}
+
+	@Test
+	public void disconnectedResponses() {
+		for (String response : new String[] { null, "null", "_problem Finch not connected" }) {
+			FinchSensorSnapshot snapshot = new FinchSensorSnapshot();
+			PollParser.parse(CONNECTED, snapshot);
+			assertFalse(PollParser.parse(response, snapshot));
+			assertFalse(snapshot.isConnected());
+			assertNull(snapshot.getOrientation());
+			assertTrue(Double.isNaN(snapshot.getXAcceleration()));
+		}
+	}
+
+	@Test
+	public void invalidNumber() {
+		for (String value : new String[] { "abc", ".", "-", "1.2.3", "12x" }) {
+			try {
+				PollParser.parse("temperature "+ value +"\n", new FinchSensorSnapshot());
+				fail("No exception for "+ value);
+			} catch (RuntimeException e) {
+				// Expected
+			}
+		}
+	}
+
+	/**
+	 * Checks the fast path and the fallback of parseDouble produce exactly the same value as
+	 * Double.parseDouble.
+	 */
+	private static void assertParseDouble(String text) {
+		String padded = "x"+ text +"y";
+		double actual = PollParser.parseDouble(padded, 1, padded.length() - 1);
+		assertEquals(text, Double.doubleToRawLongBits(Double.parseDouble(text)), Double.doubleToRawLongBits(actual));
+	}
+
+	@Test
+	public void parseDoubleMatchesDoubleParseDouble() {
+		String[] edgeCases = {
+			"0", "-0", "+0", "0.0", "-0.0", ".5", "5.", "007", "1e3", "1E-3", "-2.5e+2",
+			"0.1", "0.2", "0.3", "9007199254740991", "9007199254740993", "123456789012345678901234",
+			"0.0000000000000000000001", "0.00000000000000000000001", "1.7976931348623157E308", "4.9E-324"
+		};
+		for (String text : edgeCases)
+			assertParseDouble(text);
+
+		Random random = new Random(2);
+		for (int i = 0; i < 200000; ++i) {
+			double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12) - 4);
+			assertParseDouble(Double.toString(value));
+			assertParseDouble(String.format(Locale.ROOT, "%."+ random.nextInt(10) +"f", value));
+		}
+	}
+
+} // class PollParserTest
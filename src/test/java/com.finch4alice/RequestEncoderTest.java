@@ -0,0 +1,143 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests that {@link RequestEncoder} formats and encodes arguments exactly as the
+ * {@code DecimalFormat} and {@code URLEncoder} calls it replaced.
+ */
+public class RequestEncoderTest {
+
+	private final DecimalFormat decimalFormat = new DecimalFormat("#.##", DecimalFormatSymbols.getInstance(Locale.US));
+	private final RequestEncoder encoder = new RequestEncoder("/", "localhost");
+	private final Random random = new Random(4);
+
+	private void assertFormatsLikeDecimalFormat(double value) {
+		assertEquals(Double.toString(value), decimalFormat.format(value), RequestEncoder.formatDouble(value));
+	}
+
+	@Test
+	public void formatDoubleOverRange() {
+		for (int i = -100000; i <= 100000; ++i) {
+			assertFormatsLikeDecimalFormat(i / 100.0);
+			assertFormatsLikeDecimalFormat(i / 1000.0);
+			assertFormatsLikeDecimalFormat(i / 2.55);
+			assertFormatsLikeDecimalFormat(i / 1000.0 + 0.005);
+		}
+	}
+
+	@Test
+	public void formatDoubleRandomValues() {
+		for (int i = 0; i < 500000; ++i) {
+			double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(18) - 3);
+			assertFormatsLikeDecimalFormat(value);
+		}
+	}
+
+	@Test
+	public void formatDoubleSpecialValues() {
+		double[] values = {
+			0.0, -0.0, 0.004, -0.004, 0.005, -0.005, 0.015, 0.125, 0.375, 2.675, 1.005, 1.115,
+			0.994999, 0.995, 9.995, 99.995, 999.995, 1e13 - 0.005, 1e13, -1e13, 1e15 + 0.25, 1e20,
+			Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, Long.MAX_VALUE / 100.0,
+			Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+		};
+		for (double value : values) {
+			assertFormatsLikeDecimalFormat(value);
+			assertFormatsLikeDecimalFormat(Math.nextUp(value));
+			assertFormatsLikeDecimalFormat(Math.nextDown(value));
+		}
+	}
+
+	@Test
+	public void formatDoubleIgnoresDefaultLocale() {
+		Locale locale = Locale.getDefault();
+		try {
+			Locale.setDefault(Locale.GERMANY);
+			assertEquals("39.22", RequestEncoder.formatDouble(39.2157));
+			assertEquals("1234567.5", RequestEncoder.formatDouble(1234567.5));
+		} finally {
+			Locale.setDefault(locale);
+		}
+	}
+
+	@Test
+	public void formatScaledMatchesFormatDouble() {
+		for (int value = -300; value <= 300; ++value)
+			assertEquals(RequestEncoder.formatDouble(value / 2.55), RequestEncoder.formatScaled(value));
+	}
+
+	/**
+	 * Encodes a request with a single argument, and extracts the encoded argument.
+	 */
+	private String encodeArg(String arg) {
+		RequestEncoder.Buffer buffer = encoder.encode("test", arg);
+		String request = new String(buffer.bytes, 0, buffer.length, StandardCharsets.ISO_8859_1);
+		String prefix = "GET /test/";
+		assertTrue(request, request.startsWith(prefix));
+		return request.substring(prefix.length(), request.indexOf(" HTTP/1.1\r\n"));
+	}
+
+	private void assertEncodesLikeURLEncoder(String arg) throws UnsupportedEncodingException {
+		assertEquals(arg, URLEncoder.encode(arg, "UTF-8"), encodeArg(arg));
+	}
+
+	@Test
+	public void encodeArgsLikeURLEncoder() throws UnsupportedEncodingException {
+		String[] args = {
+			"Hello World", "50", "-12.5", "a+b=c&d", "100%", "~!@#$^*()_-.[]{}|\\;:'\",<>/?`",
+			"\u0000\t\r\n\u007F",
+			"caf\u00E9", "\u00FF\u0100\u07FF\u0800", "\u65E5\u672C\u8A9E", "\uFFFD\uFFFF",
+			"\uD83D\uDE00", "x\uD83C\uDFB5y\uD834\uDD1E",				// Surrogate pairs
+			"\uD83D", "\uDE00", "a\uD83Db", "\uDE00\uD83D", "\uD83D\uD83D\uDE00", "end\uD83D"	// Unpaired surrogates
+		};
+		for (String arg : args)
+			assertEncodesLikeURLEncoder(arg);
+	}
+
+	@Test
+	public void encodeRandomArgsLikeURLEncoder() throws UnsupportedEncodingException {
+		char[] chars = new char[12];
+		for (int i = 0; i < 100000; ++i) {
+			int length = 1 + random.nextInt(chars.length);
+			for (int j = 0; j < length; ++j) {
+				switch (random.nextInt(5)) {
+				case 0:
+					chars[j] = (char)random.nextInt(0x80);
+					break;
+				case 1:
+					chars[j] = (char)(0x80 + random.nextInt(0x800 - 0x80));
+					break;
+				case 2:
+					chars[j] = (char)(0x800 + random.nextInt(0x10000 - 0x800));	// Includes surrogates
+					break;
+				case 3:
+					chars[j] = (char)(0xD800 + random.nextInt(0x800));				// Surrogates only
+					break;
+				default:
+					chars[j] = (char)(' ' + random.nextInt(0x7F - ' '));
+					break;
+				}
+			}
+			assertEncodesLikeURLEncoder(new String(chars, 0, length));
+		}
+	}
+
+} // class RequestEncoderTest
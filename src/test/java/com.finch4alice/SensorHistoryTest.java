@@ -0,0 +1,204 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the constant time queries of {@link SensorHistory} against a brute-force scan of every
+ * sample added.
+ */
+public class SensorHistoryTest {
+
+	/**
+	 * Capacity and window size of each history tested.
+	 */
+	private static final int[][] SIZES = { { 16, 5 }, { 8, 8 }, { 7, 1 }, { 1, 1 } };
+
+	private static final int SAMPLES = 500;
+
+	private final Random random = new Random(3);
+
+	/**
+	 * Every sample added since the history was last cleared, oldest first.
+	 */
+	private final List<double[]> added = new ArrayList<>();
+	private final List<Long> addedTimes = new ArrayList<>();
+	private long time = 1000;
+
+	/**
+	 * Picks a reading from a small set of values, so runs of equal values and ties for the
+	 * minimum and maximum are common.
+	 */
+	private double reading() {
+		return (random.nextInt(7) - 3) * 0.25;
+	}
+
+	/**
+	 * Adds a random sample to the history and to the list of added samples.
+	 */
+	private void addSample(SensorHistory history) {
+		double[] sample = new double[SensorHistory.CHANNEL_COUNT];
+		sample[SensorHistory.LEFT_LIGHT] = random.nextInt(4) * 85;
+		sample[SensorHistory.RIGHT_LIGHT] = random.nextInt(256);
+		sample[SensorHistory.LEFT_OBSTACLE] = (random.nextInt(4) == 0 ? 1.0 : 0.0);
+		sample[SensorHistory.RIGHT_OBSTACLE] = (random.nextBoolean() ? 1.0 : 0.0);
+		sample[SensorHistory.X_ACCELERATION] = reading();
+		sample[SensorHistory.Y_ACCELERATION] = reading();
+		sample[SensorHistory.Z_ACCELERATION] = random.nextGaussian();
+		sample[SensorHistory.TEMPERATURE] = 20.0 + reading();
+		time += random.nextInt(3);
+
+		history.add(
+			time,
+			(int)sample[SensorHistory.LEFT_LIGHT], (int)sample[SensorHistory.RIGHT_LIGHT],
+			sample[SensorHistory.LEFT_OBSTACLE] != 0.0, sample[SensorHistory.RIGHT_OBSTACLE] != 0.0,
+			sample[SensorHistory.X_ACCELERATION], sample[SensorHistory.Y_ACCELERATION], sample[SensorHistory.Z_ACCELERATION],
+			sample[SensorHistory.TEMPERATURE]
+		);
+		added.add(sample);
+		addedTimes.add(time);
+	}
+
+	/**
+	 * Retrieves the value of a channel in an added sample by age, as SensorHistory.get does.
+	 */
+	private double addedValue(int channel, int age) {
+		return added.get(added.size() - 1 - age)[channel];
+	}
+
+	/**
+	 * Checks every query of the history against a scan of the added samples.
+	 */
+	private void assertMatchesScan(SensorHistory history) {
+		int size = Math.min(added.size(), history.getCapacity());
+		assertEquals(size, history.size());
+		assertEquals(added.size(), history.getTotalCount());
+
+		for (int channel = 0; channel < SensorHistory.CHANNEL_COUNT; ++channel) {
+			for (int age = 0; age < size; ++age)
+				assertEquals(addedValue(channel, age), history.get(channel, age), 0.0);
+			assertTrue(Double.isNaN(history.get(channel, size)));
+
+			int window = Math.min(history.getWindow(), size);
+			assertEquals(scanMin(channel, window), history.getMin(channel), 0.0);
+			assertEquals(scanMax(channel, window), history.getMax(channel), 0.0);
+
+			for (int samples = 0; samples <= history.getCapacity() + 1; ++samples) {
+				int n = Math.min(samples, size);
+				assertEquals(scanMean(channel, n), history.getMean(channel, samples), 1e-9);
+				assertEquals(scanChangeCount(channel, n), history.getChangeCount(channel, samples));
+				assertEquals(scanMin(channel, n), history.getMin(channel, samples), 0.0);
+				assertEquals(scanMax(channel, n), history.getMax(channel, samples), 0.0);
+			}
+		}
+
+		for (int age = 0; age < size; ++age)
+			assertEquals((long)addedTimes.get(addedTimes.size() - 1 - age), history.getTimestamp(age));
+		if (size > 0) {
+			long oldest = addedTimes.get(addedTimes.size() - size);
+			for (long since = oldest - 1; since <= time + 1; ++since)
+				assertEquals(scanCountSince(since, size), history.countSince(since));
+		}
+	}
+
+	private double scanMin(int channel, int n) {
+		double min = Double.NaN;
+		for (int age = 0; age < n; ++age)
+			min = (age == 0 ? addedValue(channel, age) : Math.min(min, addedValue(channel, age)));
+		return min;
+	}
+
+	private double scanMax(int channel, int n) {
+		double max = Double.NaN;
+		for (int age = 0; age < n; ++age)
+			max = (age == 0 ? addedValue(channel, age) : Math.max(max, addedValue(channel, age)));
+		return max;
+	}
+
+	private double scanMean(int channel, int n) {
+		if (n == 0)
+			return Double.NaN;
+		double sum = 0.0;
+		for (int age = 0; age < n; ++age)
+			sum += addedValue(channel, age);
+		return sum / n;
+	}
+
+	private int scanChangeCount(int channel, int n) {
+		int changes = 0;
+		for (int age = 0; age < n - 1; ++age) {
+			if (addedValue(channel, age) != addedValue(channel, age + 1))
+				++changes;
+		}
+		return changes;
+	}
+
+	private int scanCountSince(long since, int size) {
+		int n = 0;
+		for (int age = 0; age < size; ++age) {
+			if (addedTimes.get(addedTimes.size() - 1 - age) >= since)
+				++n;
+		}
+		return n;
+	}
+
+	@Test
+	public void matchesScanAcrossWraparound() {
+		for (int[] sizes : SIZES) {
+			SensorHistory history = new SensorHistory(sizes[0], sizes[1]);
+			added.clear();
+			addedTimes.clear();
+			assertMatchesScan(history);
+			for (int i = 0; i < SAMPLES; ++i) {
+				addSample(history);
+				assertMatchesScan(history);
+			}
+		}
+	}
+
+	@Test
+	public void matchesScanAfterClear() {
+		for (int[] sizes : SIZES) {
+			SensorHistory history = new SensorHistory(sizes[0], sizes[1]);
+			added.clear();
+			addedTimes.clear();
+
+			// Clear at every position in the ring buffers, including when partly filled
+			for (int filled = 0; filled <= 3 * sizes[0]; ++filled) {
+				for (int i = 0; i < filled; ++i)
+					addSample(history);
+				history.clear();
+				added.clear();
+				addedTimes.clear();
+				assertMatchesScan(history);
+				assertTrue(Double.isNaN(history.getMin(SensorHistory.X_ACCELERATION)));
+				assertTrue(Double.isNaN(history.getMean(SensorHistory.X_ACCELERATION, sizes[1])));
+
+				for (int i = 0; i < 2 * sizes[0] + 1; ++i) {
+					addSample(history);
+					assertMatchesScan(history);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void disconnectedStateIsIgnored() {
+		SensorHistory history = new SensorHistory();
+		history.add(SensorHistory.now(), new FinchSensorSnapshot());
+		assertEquals(0, history.size());
+	}
+
+} // class SensorHistoryTest
@@ -0,0 +1,141 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link SingleFlight}.
+ */
+public class SingleFlightTest {
+
+	private static final int WAITERS = 4;
+	private static final long TIMEOUT = 5000;
+
+	private final SingleFlight<String> flights = new SingleFlight<>();
+
+	/**
+	 * Waits until the given number of calls are waiting for the leader's result.
+	 */
+	private void awaitShared(long count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while ((flights.getSharedCount() < count) && (System.currentTimeMillis() < deadline))
+			Thread.sleep(1);
+		assertEquals(count, flights.getSharedCount());
+	}
+
+	/**
+	 * Starts threads which call execute for the key, recording their results or exceptions.
+	 */
+	private Thread[] startWaiters(AtomicReferenceArray<Object> outcomes) {
+		Thread[] threads = new Thread[WAITERS];
+		for (int i = 0; i < WAITERS; ++i) {
+			int index = i;
+			threads[i] = new Thread(() -> {
+				try {
+					outcomes.set(index, flights.execute("key", k -> { throw new AssertionError("Waiter made a call"); }));
+				} catch (RuntimeException e) {
+					outcomes.set(index, e);
+				}
+			});
+			threads[i].start();
+		}
+		return threads;
+	}
+
+	private static void join(Thread[] threads) throws InterruptedException {
+		for (Thread t : threads) {
+			t.join(TIMEOUT);
+			assertTrue(!t.isAlive());
+		}
+	}
+
+	@Test
+	public void waitersShareLeaderResult() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicReferenceArray<Object> outcomes = new AtomicReferenceArray<>(WAITERS);
+		Thread leader = new Thread(() -> flights.execute("key", k -> {
+			try {
+				release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "result";
+		}));
+		leader.start();
+		// Ensure the leader's call is in flight before the waiters start
+		Thread.sleep(50);
+
+		Thread[] waiters = startWaiters(outcomes);
+		awaitShared(WAITERS);
+		release.countDown();
+		join(waiters);
+		leader.join(TIMEOUT);
+
+		for (int i = 0; i < WAITERS; ++i)
+			assertEquals("result", outcomes.get(i));
+	}
+
+	@Test
+	public void leaderExceptionReachesWaiters() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		IllegalStateException failure = new IllegalStateException("call failed");
+		AtomicReferenceArray<Object> outcomes = new AtomicReferenceArray<>(WAITERS + 1);
+		Thread leader = new Thread(() -> {
+			try {
+				flights.execute("key", k -> {
+					try {
+						release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					throw failure;
+				});
+			} catch (RuntimeException e) {
+				outcomes.set(WAITERS, e);
+			}
+		});
+		leader.start();
+		Thread.sleep(50);
+
+		Thread[] waiters = startWaiters(outcomes);
+		awaitShared(WAITERS);
+		release.countDown();
+		join(waiters);
+		leader.join(TIMEOUT);
+
+		for (int i = 0; i <= WAITERS; ++i)
+			assertSame(failure, outcomes.get(i));
+	}
+
+	@Test
+	public void completedCallIsNotReused() {
+		AtomicInteger calls = new AtomicInteger();
+		assertEquals("1", flights.execute("key", k -> String.valueOf(calls.incrementAndGet())));
+		assertEquals("2", flights.execute("key", k -> String.valueOf(calls.incrementAndGet())));
+		assertEquals(0, flights.getSharedCount());
+
+		try {
+			flights.execute("key", k -> { throw new IllegalStateException("call failed"); });
+			fail("Exception not thrown");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		assertEquals("3", flights.execute("key", k -> String.valueOf(calls.incrementAndGet())));
+	}
+
+} // class SingleFlightTest
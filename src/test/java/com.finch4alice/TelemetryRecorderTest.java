@@ -0,0 +1,263 @@
+/**
+ * Finch 4 Alice is released under the BSD 2-Clause License
+ *
+ * Copyright (c) 2015, Brad Fisher
+ * All rights reserved.
+ */
+package com.finch4alice;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link TelemetryRecorder}, by writing past small segments and reading the segment files
+ * back in the documented format.
+ */
+public class TelemetryRecorderTest {
+
+	private static final long TIMEOUT = 5000;
+	private static final String PREFIX = "test";
+
+	/**
+	 * Number of records held by each segment.  The segment size is not a whole number of
+	 * records, to check it is rounded down.
+	 */
+	private static final int RECORDS_PER_SEGMENT = 4;
+	private static final int SEGMENT_SIZE = TelemetryRecorder.HEADER_SIZE + RECORDS_PER_SEGMENT * TelemetryRecorder.RECORD_SIZE + 10;
+
+	private Path directory;
+	private TelemetryRecorder recorder;
+	private long startMillis;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("TelemetryRecorderTest");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		if (recorder != null)
+			recorder.close();
+		deleteRecursively(directory);
+	}
+
+	private static void deleteRecursively(Path path) throws IOException {
+		if (Files.isDirectory(path)) {
+			try (DirectoryStream<Path> entries = Files.newDirectoryStream(path)) {
+				for (Path entry : entries)
+					deleteRecursively(entry);
+			}
+		}
+		Files.deleteIfExists(path);
+	}
+
+	private void createRecorder() throws IOException {
+		startMillis = System.currentTimeMillis();
+		recorder = new TelemetryRecorder(directory, PREFIX, SEGMENT_SIZE);
+	}
+
+	private Path segmentPath(int number) {
+		return directory.resolve(String.format("%s-%06d.tlm", PREFIX, number));
+	}
+
+	/**
+	 * Reads a segment file, and checks its size and header.
+	 */
+	private ByteBuffer readSegment(int number) throws IOException {
+		Path path = segmentPath(number);
+		assertTrue(path +" missing", Files.exists(path));
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+		assertEquals(TelemetryRecorder.HEADER_SIZE + RECORDS_PER_SEGMENT * TelemetryRecorder.RECORD_SIZE, buffer.capacity());
+
+		byte[] magic = new byte[8];
+		buffer.get(magic);
+		assertEquals("FNCHTLM1", new String(magic, StandardCharsets.ISO_8859_1));
+		assertEquals(TelemetryRecorder.RECORD_SIZE, buffer.getInt(8));
+		assertEquals(number, buffer.getInt(12));
+		long created = buffer.getLong(16);
+		assertTrue(created >= startMillis && created <= System.currentTimeMillis());
+		return buffer;
+	}
+
+	/**
+	 * Reads the written records of every segment file, in order, and checks there are no other
+	 * files in the directory.
+	 */
+	private List<ByteBuffer> readRecords() throws IOException {
+		List<ByteBuffer> records = new ArrayList<>();
+		int segments = 0;
+		for (int number = 1; Files.exists(segmentPath(number)); ++number) {
+			++segments;
+			ByteBuffer buffer = readSegment(number);
+			for (int offset = TelemetryRecorder.HEADER_SIZE; offset < buffer.capacity(); offset += TelemetryRecorder.RECORD_SIZE) {
+				buffer.limit(offset + TelemetryRecorder.RECORD_SIZE).position(offset);
+				ByteBuffer record = buffer.slice();
+				buffer.clear();
+				if (record.getInt(60) != 0)
+					records.add(record);
+			}
+		}
+		try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+			int files = 0;
+			for (Path entry : entries)
+				++files;
+			assertEquals("Segment files are not numbered consecutively", segments, files);
+		}
+		return records;
+	}
+
+	/**
+	 * Records a motor command, retrying while it is dropped because the next segment is not
+	 * ready yet.
+	 */
+	private void recordMotorUntilWritten(int left, int right) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while (!recorder.recordMotor(left, right)) {
+			if (System.currentTimeMillis() > deadline)
+				fail("Record was dropped until the timeout");
+			Thread.sleep(1);
+		}
+	}
+
+	@Test
+	public void recordsRollAcrossSegments() throws IOException, InterruptedException {
+		createRecorder();
+		int count = 5 * RECORDS_PER_SEGMENT + 2;
+		for (int i = 0; i < count; ++i)
+			recordMotorUntilWritten(i, -i);
+		assertEquals(count, recorder.getRecordCount());
+		assertEquals(segmentPath(6), recorder.getCurrentSegment());
+		recorder.close();
+		assertTrue(recorder.isClosed());
+
+		// The unused spare segment is deleted on close
+		List<ByteBuffer> records = readRecords();
+		assertFalse(Files.exists(segmentPath(7)));
+		assertEquals(count, records.size());
+		long lastTimestamp = 0;
+		for (int i = 0; i < count; ++i) {
+			ByteBuffer record = records.get(i);
+			assertEquals(TelemetryRecorder.TYPE_MOTOR, record.getInt(60));
+			assertEquals(i, record.getInt(16));
+			assertEquals(-i, record.getInt(20));
+			assertTrue(record.getLong(0) >= lastTimestamp);
+			lastTimestamp = record.getLong(0);
+		}
+	}
+
+	@Test
+	public void recordsAreDroppedUntilSpareIsReady() throws IOException, InterruptedException {
+		// A directory in the way of the second segment file keeps the spare segment from being created
+		Files.createDirectories(segmentPath(2));
+		createRecorder();
+		for (int i = 0; i < RECORDS_PER_SEGMENT; ++i)
+			assertTrue(recorder.recordLED(i, 0, 0));
+		assertFalse(recorder.recordLED(100, 0, 0));
+		assertFalse(recorder.recordBuzzer(440, 100));
+		assertEquals(2, recorder.getDroppedCount());
+		assertEquals(segmentPath(1), recorder.getCurrentSegment());
+
+		// Once the way is clear, the background thread creates the segment and recording resumes
+		Files.delete(segmentPath(2));
+		recordMotorUntilWritten(1, 2);
+		assertEquals(segmentPath(2), recorder.getCurrentSegment());
+		assertEquals(RECORDS_PER_SEGMENT + 1, recorder.getRecordCount());
+		long dropped = recorder.getDroppedCount();
+
+		recorder.close();
+		assertFalse(recorder.recordLED(0, 0, 0));
+		assertEquals(dropped + 1, recorder.getDroppedCount());
+
+		List<ByteBuffer> records = readRecords();
+		assertEquals(RECORDS_PER_SEGMENT + 1, records.size());
+		for (int i = 0; i < RECORDS_PER_SEGMENT; ++i) {
+			assertEquals(TelemetryRecorder.TYPE_LED, records.get(i).getInt(60));
+			assertEquals(i, records.get(i).getInt(16));
+		}
+		assertEquals(TelemetryRecorder.TYPE_MOTOR, records.get(RECORDS_PER_SEGMENT).getInt(60));
+	}
+
+	@Test
+	public void recordLayout() throws IOException {
+		createRecorder();
+		FinchSensorSnapshot snapshot = new FinchSensorSnapshot();
+		assertTrue(PollParser.parse(PollParserTest.CONNECTED, snapshot));
+		long before = System.currentTimeMillis();
+		assertTrue(recorder.recordPoll(snapshot));
+		assertTrue(recorder.recordPoll(new FinchSensorSnapshot()));
+		assertTrue(recorder.recordLED(255, 128, 0));
+		assertTrue(recorder.recordBuzzer(440, 250));
+		long after = System.currentTimeMillis();
+		recorder.close();
+
+		List<ByteBuffer> records = readRecords();
+		assertEquals(4, records.size());
+		for (ByteBuffer record : records) {
+			// Nanoseconds since the epoch, from a monotonic clock, so allow for a little drift
+			long millis = record.getLong(0) / 1000000;
+			assertTrue(millis >= before - 1000 && millis <= after + 1000);
+			assertEquals(Thread.currentThread().getId(), record.getLong(8));
+			byte[] reserved = new byte[12];
+			record.position(48);
+			record.get(reserved);
+			assertArrayEquals(new byte[12], reserved);
+		}
+
+		ByteBuffer poll = records.get(0);
+		assertEquals(TelemetryRecorder.TYPE_POLL, poll.getInt(60));
+		assertEquals(snapshot.getLeftLightSensor(), poll.getInt(16));
+		assertEquals(snapshot.getRightLightSensor(), poll.getInt(20));
+		assertEquals(3, poll.getInt(24));		// Beak Up
+		assertEquals((float)snapshot.getXAcceleration(), poll.getFloat(28), 0.0f);
+		assertEquals((float)snapshot.getYAcceleration(), poll.getFloat(32), 0.0f);
+		assertEquals((float)snapshot.getZAcceleration(), poll.getFloat(36), 0.0f);
+		assertEquals((float)snapshot.getTemperature(), poll.getFloat(40), 0.0f);
+		assertEquals(1 | 2, poll.getInt(44));	// Connected, left obstacle
+
+		ByteBuffer disconnected = records.get(1);
+		assertEquals(TelemetryRecorder.TYPE_POLL, disconnected.getInt(60));
+		assertEquals(0, disconnected.getInt(24));
+		assertTrue(Float.isNaN(disconnected.getFloat(28)));
+		assertEquals(0, disconnected.getInt(44));
+
+		ByteBuffer led = records.get(2);
+		assertEquals(TelemetryRecorder.TYPE_LED, led.getInt(60));
+		assertEquals(Arrays.asList(255, 128, 0), Arrays.asList(led.getInt(16), led.getInt(20), led.getInt(24)));
+
+		ByteBuffer buzzer = records.get(3);
+		assertEquals(TelemetryRecorder.TYPE_BUZZER, buzzer.getInt(60));
+		assertEquals(440, buzzer.getInt(16));
+		assertEquals(250, buzzer.getInt(20));
+	}
+
+	@Test
+	public void invalidArguments() throws IOException {
+		int[] sizes = { TelemetryRecorder.HEADER_SIZE + TelemetryRecorder.RECORD_SIZE - 1, 0 };
+		for (int size : sizes) {
+			try {
+				new TelemetryRecorder(directory, PREFIX, size).close();
+				fail("No exception for segment size "+ size);
+			} catch (IllegalArgumentException e) {
+				// Expected
+			}
+		}
+	}
+
+} // class TelemetryRecorderTest